@@ -0,0 +1,104 @@
+package fwcd.fructose;
+
+import java.util.Random;
+
+/**
+ * An immutable discrete distribution that samples indices
+ * in constant time using Vose's variant of Walker's alias method.
+ * Building the alias table takes linear time, thus this
+ * distribution is suited for many draws from the same weights.
+ * 
+ * <p>Sampling is thread-safe.</p>
+ */
+public class AliasDistribution implements DiscreteSampler {
+	private final double[] probabilities;
+	private final double[] thresholds;
+	private final int[] aliases;
+	
+	/**
+	 * Builds an alias table from non-negative weights,
+	 * which do not need to be normalized.
+	 * 
+	 * @param weights - The weights, of which at least one has to be positive
+	 */
+	public AliasDistribution(double[] weights) {
+		int n = weights.length;
+		double total = 0;
+		
+		for (double weight : weights) {
+			if (weight < 0 || !Double.isFinite(weight)) {
+				throw new IllegalArgumentException("Weight has to be finite and non-negative: " + Double.toString(weight));
+			}
+			total += weight;
+		}
+		
+		if (total <= 0) {
+			throw new IllegalArgumentException("At least one weight has to be positive");
+		}
+		
+		probabilities = new double[n];
+		thresholds = new double[n];
+		aliases = new int[n];
+		
+		// Worklists of the columns that are under- and overfull
+		int[] small = new int[n];
+		int[] large = new int[n];
+		int smallCount = 0;
+		int largeCount = 0;
+		
+		for (int i=0; i<n; i++) {
+			probabilities[i] = weights[i] / total;
+			thresholds[i] = probabilities[i] * n;
+			aliases[i] = i;
+			
+			if (thresholds[i] < 1) {
+				small[smallCount++] = i;
+			} else {
+				large[largeCount++] = i;
+			}
+		}
+		
+		while (smallCount > 0 && largeCount > 0) {
+			int less = small[--smallCount];
+			int more = large[--largeCount];
+			
+			aliases[less] = more;
+			thresholds[more] = (thresholds[more] + thresholds[less]) - 1;
+			
+			if (thresholds[more] < 1) {
+				small[smallCount++] = more;
+			} else {
+				large[largeCount++] = more;
+			}
+		}
+		
+		// The remaining columns are full up to rounding errors
+		while (largeCount > 0) {
+			thresholds[large[--largeCount]] = 1;
+		}
+		while (smallCount > 0) {
+			thresholds[small[--smallCount]] = 1;
+		}
+	}
+	
+	@Override
+	public int sample(double u) {
+		double scaled = u * thresholds.length;
+		int column = Math.min((int) scaled, thresholds.length - 1);
+		return ((scaled - column) < thresholds[column]) ? column : aliases[column];
+	}
+	
+	public int sample(Random random) {
+		return sample(random.nextDouble());
+	}
+	
+	@Override
+	public double getProbability(int index) {
+		return probabilities[index];
+	}
+	
+	@Override
+	public int size() {
+		return probabilities.length;
+	}
+}
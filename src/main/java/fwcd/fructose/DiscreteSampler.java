@@ -0,0 +1,69 @@
+package fwcd.fructose;
+
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Draws indices from a discrete probability distribution.
+ */
+public interface DiscreteSampler {
+	/** The amount of samples drawn from each generator in {@link #sampleParallel}. */
+	static final int PARALLEL_CHUNK = 1 << 14;
+	
+	/**
+	 * @return The amount of indices
+	 */
+	int size();
+	
+	/**
+	 * Draws an index.
+	 * 
+	 * @param u - A uniformly distributed value in [0, 1)
+	 * @return The index
+	 */
+	int sample(double u);
+	
+	/**
+	 * @return The probability of the given index
+	 */
+	double getProbability(int index);
+	
+	default int sample(SplittableRandom random) {
+		return sample(random.nextDouble());
+	}
+	
+	/**
+	 * Fills the given array with sampled indices.
+	 */
+	default void sample(int[] dest, SplittableRandom random) {
+		for (int i=0; i<dest.length; i++) {
+			dest[i] = sample(random.nextDouble());
+		}
+	}
+	
+	/**
+	 * Fills the given array with sampled indices in parallel. Every
+	 * fixed-size chunk of the array uses its own generator split off
+	 * the given one, thus the result only depends on the seed and not on
+	 * the scheduling of the threads.
+	 * 
+	 * <p>Implementations have to be safe for concurrent sampling.</p>
+	 */
+	default void sampleParallel(int[] dest, SplittableRandom random) {
+		int chunks = (dest.length + PARALLEL_CHUNK - 1) / PARALLEL_CHUNK;
+		SplittableRandom[] generators = new SplittableRandom[chunks];
+		
+		for (int i=0; i<chunks; i++) {
+			generators[i] = random.split();
+		}
+		
+		IntStream.range(0, chunks).parallel().forEach(chunk -> {
+			SplittableRandom generator = generators[chunk];
+			int end = Math.min(dest.length, (chunk + 1) * PARALLEL_CHUNK);
+			
+			for (int i=chunk*PARALLEL_CHUNK; i<end; i++) {
+				dest[i] = sample(generator.nextDouble());
+			}
+		});
+	}
+}
@@ -5,6 +5,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.BiConsumer;
@@ -23,10 +24,11 @@ import fwcd.fructose.structs.DoubleList;
  * @param <E> - The item type
  */
 public class Distribution<E> implements BiIterable<E, Double> {
-	private static final ThreadLocalRandom RANDOM = ThreadLocalRandom.current();
 	private final List<E> items = new ArrayList<>();
+	private final Map<E, Integer> indices = new HashMap<>();
 	private DoubleList probabilities = new DoubleList();
 	private double total = 0;
+	private AliasDistribution sampler = null;
 	
 	public static enum Normalizer {
 		NONE, NORMALIZE, SOFTMAX, SCALED_SOFTMAX;
@@ -55,6 +57,7 @@ public class Distribution<E> implements BiIterable<E, Double> {
 		exponentiated.mapInPlace(v -> v / sum);
 		probabilities = exponentiated;
 		total = 1;
+		sampler = null;
 	}
 	
 	public void addAll(Map<? extends E, ? extends Number> distribution) {
@@ -124,7 +127,11 @@ public class Distribution<E> implements BiIterable<E, Double> {
 	}
 	
 	public double getProbability(E item) {
-		return probabilities.get(items.indexOf(item));
+		Integer index = indices.get(item);
+		if (index == null) {
+			throw new NoSuchElementException("Item is not part of the distribution: " + item);
+		}
+		return probabilities.get(index);
 	}
 	
 	public void add(E item, double probability) {
@@ -134,25 +141,36 @@ public class Distribution<E> implements BiIterable<E, Double> {
 			throw new IllegalArgumentException("Probability has to be finite: " + Double.toString(probability));
 		}
 		
+		indices.putIfAbsent(item, items.size());
 		items.add(item);
 		probabilities.add(probability);
 		total += probability;
+		sampler = null;
+	}
+	
+	/**
+	 * Fetches an alias table of the current probabilities, which
+	 * is built once after the distribution has been modified and
+	 * then samples in constant time.
+	 * 
+	 * @return The sampler
+	 */
+	public AliasDistribution getSampler() {
+		if (sampler == null) {
+			sampler = new AliasDistribution(probabilities.toArray());
+		}
+		return sampler;
 	}
 	
+	/**
+	 * @return The index of the picked item or -1 if no item has a positive probability
+	 */
 	public int pickIndexStochastically() {
-		int resultingIndex = -1;
-		double random = RANDOM.nextDouble() * total;
-		
-		for (int i=0; i<items.size(); i++) {
-			random -= probabilities.get(i);
-			
-			if (random <= 0) {
-				resultingIndex = i;
-				break;
-			}
+		if (items.isEmpty() || total <= 0) {
+			return -1;
 		}
 		
-		return resultingIndex;
+		return getSampler().sample(ThreadLocalRandom.current().nextDouble());
 	}
 	
 	public E pickStochastically() {
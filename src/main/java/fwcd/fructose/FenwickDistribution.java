@@ -0,0 +1,131 @@
+package fwcd.fructose;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A mutable discrete distribution backed by a Fenwick tree
+ * (binary indexed tree), which supports both sampling and
+ * weight updates in logarithmic time.
+ * 
+ * <p>NOTE that this implementation is NOT thread-safe, though
+ * concurrent sampling (as in {@link #sampleParallel}) is safe as
+ * long as no weights are updated at the same time.</p>
+ */
+public class FenwickDistribution implements DiscreteSampler {
+	private final double[] weights;
+	/** One-based, tree[i] holds the sum of the weights in (i - lowbit(i), i]. */
+	private final double[] tree;
+	private final int highestBit;
+	
+	/**
+	 * Creates a distribution with the given amount of zero weights.
+	 */
+	public FenwickDistribution(int size) {
+		weights = new double[size];
+		tree = new double[size + 1];
+		highestBit = Integer.highestOneBit(Math.max(1, size));
+	}
+	
+	/**
+	 * Creates a distribution from non-negative weights in linear time.
+	 */
+	public FenwickDistribution(double[] weights) {
+		this(weights.length);
+		
+		for (int i=0; i<weights.length; i++) {
+			checkWeight(weights[i]);
+			this.weights[i] = weights[i];
+			tree[i + 1] += weights[i];
+			
+			int parent = (i + 1) + Integer.lowestOneBit(i + 1);
+			if (parent < tree.length) {
+				tree[parent] += tree[i + 1];
+			}
+		}
+	}
+	
+	private static void checkWeight(double weight) {
+		if (weight < 0 || !Double.isFinite(weight)) {
+			throw new IllegalArgumentException("Weight has to be finite and non-negative: " + Double.toString(weight));
+		}
+	}
+	
+	public void setWeight(int index, double weight) {
+		checkWeight(weight);
+		double delta = weight - weights[index];
+		weights[index] = weight;
+		
+		for (int i=index+1; i<tree.length; i+=Integer.lowestOneBit(i)) {
+			tree[i] += delta;
+		}
+	}
+	
+	public double getWeight(int index) {
+		return weights[index];
+	}
+	
+	/**
+	 * @return The sum of the weights of the indices in [0, end)
+	 */
+	public double prefixSum(int end) {
+		double sum = 0;
+		for (int i=end; i>0; i-=Integer.lowestOneBit(i)) {
+			sum += tree[i];
+		}
+		return sum;
+	}
+	
+	public double getTotal() {
+		return prefixSum(weights.length);
+	}
+	
+	@Override
+	public double getProbability(int index) {
+		return weights[index] / getTotal();
+	}
+	
+	@Override
+	public int sample(double u) {
+		double total = getTotal();
+		if (total <= 0) {
+			throw new IllegalStateException("Can not sample from a distribution without positive weights");
+		}
+		
+		// Descends the implicit tree to find the largest
+		// prefix whose sum does not exceed the target
+		double remaining = u * total;
+		int position = 0;
+		
+		for (int step=highestBit; step>0; step>>>=1) {
+			int next = position + step;
+			if (next < tree.length && tree[next] <= remaining) {
+				position = next;
+				remaining -= tree[next];
+			}
+		}
+		
+		int index = Math.min(position, weights.length - 1);
+		
+		// Rounding errors may land on an index with zero weight
+		while (weights[index] == 0 && index > 0) {
+			index--;
+		}
+		
+		return index;
+	}
+	
+	public int sample(Random random) {
+		return sample(random.nextDouble());
+	}
+	
+	@Override
+	public int size() {
+		return weights.length;
+	}
+	
+	@Override
+	public String toString() {
+		return "FenwickDistribution " + Arrays.toString(weights);
+	}
+}
@@ -69,6 +69,20 @@ public interface GameState<M extends GameMove, R extends GameRole> extends TreeN
 		return child;
 	}
 	
+	/**
+	 * Fetches a 64-bit hash of this position, which allows
+	 * searches to recognize transpositions. Equal positions
+	 * (including the current role) have to yield equal hashes.
+	 * Since transposition tables only compare the hashes,
+	 * they should be spread across all 64 bits, for example by
+	 * xor-ing a random key per piece and square (Zobrist hashing).
+	 * 
+	 * @return The hash or 0 if this game does not provide one (which disables transposition tables)
+	 */
+	default long positionHash() {
+		return 0;
+	}
+	
 	default boolean isLegal(M move) {
 		return getLegalMoves().contains(move);
 	}
@@ -1,5 +1,19 @@
 package fwcd.fructose.game.ai;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import fwcd.fructose.exception.Rethrow;
 import fwcd.fructose.game.GameMove;
 import fwcd.fructose.game.GameRole;
 import fwcd.fructose.game.GameState;
@@ -12,7 +26,29 @@ import fwcd.fructose.time.Timer;
 /**
  * The alpha-beta tree search, which serves as an
  * optimization of the minimax algorithm.
- * 
+ *
+ * <p>The search deepens iteratively until the depth or
+ * the time limit is reached and returns the best move of
+ * the deepest completed iteration. Moves are tried in the order
+ * of the best move found previously, the killer moves (that caused
+ * cutoffs in sibling positions) and their history of cutoffs.</p>
+ *
+ * <p>If the game provides {@link GameState#positionHash()}, searched
+ * positions are stored in a {@link TranspositionTable}. The table only
+ * stores the index of the best move, thus the legal moves have to
+ * be listed in the same order for equal positions.</p>
+ *
+ * <p>Multiple threads search the same tree independently and
+ * only share the transposition table (Lazy SMP). The move of the
+ * deepest iteration completed by any thread is chosen and
+ * published as the best move so far after every iteration.</p>
+ *
+ * <p>The search replaces the parallel move rating of
+ * {@link EvaluatingGameAI}, thus it is parallelized using
+ * {@link #setThreadCount(int)}. The helper searches run on the executor
+ * set by {@link #setExecutor(ExecutorService)} or, if there is none, on
+ * a pool of daemon threads owned by this AI (see {@link #shutdown()}).</p>
+ *
  * @author Fredrik
  *
  */
@@ -20,6 +56,12 @@ public class AlphaBeta<M extends GameMove, R extends GameRole> extends Evaluatin
 	private final MoveEvaluator<M, R> evaluator;
 	private final MovePruner<M, R> pruner;
 	private int depth = 0;
+	private TranspositionTable table = new TranspositionTable(1 << 16);
+	private int threadCount = 1;
+	private ExecutorService helperPool = null;
+	private volatile long lastNodes = 0;
+	private volatile double lastNodesPerSecond = 0;
+	private volatile int lastCompletedDepth = -1;
 	
 	/**
 	 * Creates a new Minimax that attempts to
@@ -43,63 +85,488 @@ public class AlphaBeta<M extends GameMove, R extends GameRole> extends Evaluatin
 		this.pruner = pruner;
 	}
 
+	/**
+	 * Replaces the transposition table (discarding all stored positions).
+	 *
+	 * @param entries - The amount of entries or 0 to disable the table
+	 */
+	public void setTranspositionTableSize(int entries) {
+		table = (entries == 0) ? null : new TranspositionTable(entries);
+	}
+	
+	/**
+	 * Searches using the given amount of threads, which share
+	 * the transposition table (Lazy SMP). The additional threads
+	 * mostly speed up the search by filling the table, thus
+	 * this is only useful if the game provides position hashes.
+	 *
+	 * @param threadCount - The amount of threads (including the searching thread)
+	 */
+	public synchronized void setThreadCount(int threadCount) {
+		if (threadCount < 1) {
+			throw new IllegalArgumentException("Thread count has to be positive: " + Integer.toString(threadCount));
+		}
+		
+		if (threadCount != this.threadCount) {
+			// The pool is created again with the new size by the next search
+			shutdown();
+		}
+		
+		this.threadCount = threadCount;
+	}
+	
+	/**
+	 * Stops the helper threads owned by this AI (which are
+	 * created again by the next parallel search). Executors set
+	 * by {@link #setExecutor(ExecutorService)} are not shut down.
+	 */
+	public synchronized void shutdown() {
+		if (helperPool != null) {
+			helperPool.shutdown();
+			helperPool = null;
+		}
+	}
+	
+	/**
+	 * @return The executor set by {@link #setExecutor(ExecutorService)} or the pool owned by this AI
+	 */
+	private synchronized ExecutorService getHelperExecutor() {
+		ExecutorService executor = getExecutor();
+		
+		if (executor != null) {
+			return executor;
+		} else if (helperPool == null) {
+			helperPool = Executors.newFixedThreadPool(threadCount - 1, task -> {
+				Thread thread = new Thread(task, "Alpha beta helper");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		
+		return helperPool;
+	}
+	
+	/**
+	 * @return The amount of positions visited by the last search
+	 */
+	public long getLastNodes() {
+		return lastNodes;
+	}
+	
+	/**
+	 * @return The positions visited per second by the last search
+	 */
+	public double getLastNodesPerSecond() {
+		return lastNodesPerSecond;
+	}
+	
+	/**
+	 * @return The depth of the deepest iteration the last search completed
+	 */
+	public int getLastCompletedDepth() {
+		return lastCompletedDepth;
+	}
+	
 	@Override
-	protected double rateMove(GameState<M, R> gameBeforeMove, M move, Timer timer) {
+	protected M selectMove(GameState<M, R> game, long softMaxTime) {
+		if (!game.getCurrentRole().hasOpponent()) {
+			throw new IllegalStateException("Alpha beta can only operate on two-player games!");
+		}
+		
+		List<? extends M> moves = game.getLegalMoves();
+		
+		if (moves.isEmpty()) {
+			throw new NoSuchElementException("Game state does not contain any moves.");
+		}
+		
+		Timer timer = new Timer();
+		long startNanos = System.nanoTime();
+		timer.start(softMaxTime);
+		
+		if (table != null) {
+			table.nextGeneration();
+		}
+		
+		SearchProgress<M> progress = getProgress();
+		AtomicBoolean stopped = new AtomicBoolean(false);
+		AtomicReference<Iteration> deepest = new AtomicReference<>(new Iteration(-1, 0));
+		List<Search> searches = new ArrayList<>();
+		
+		for (int i=0; i<threadCount; i++) {
+			searches.add(new Search(game.getCurrentRole(), timer, stopped, progress));
+		}
+		
+		if (threadCount == 1) {
+			deepen(game, searches.get(0), 0, deepest);
+		} else {
+			searchInParallel(game, searches, deepest);
+		}
+		
+		long nodes = 0;
+		for (Search search : searches) {
+			nodes += search.nodes;
+		}
+		
+		double seconds = (System.nanoTime() - startNanos) / 1e9;
+		lastNodes = nodes;
+		lastNodesPerSecond = (seconds > 0) ? nodes / seconds : 0;
+		lastCompletedDepth = deepest.get().depth;
+		
+		return moves.get(deepest.get().moveIndex);
+	}
+	
+	/**
+	 * Runs the helper searches on the helper executor while
+	 * the first search runs on the calling thread (Lazy SMP).
+	 */
+	private void searchInParallel(GameState<M, R> game, List<Search> searches, AtomicReference<Iteration> deepest) {
+		Search main = searches.get(0);
+		ExecutorService executor = getHelperExecutor();
+		List<Future<?>> helpers = new ArrayList<>();
+		List<AtomicBoolean> claims = new ArrayList<>();
+		
+		try {
+			try {
+				for (int i=1; i<searches.size(); i++) {
+					// Every thread operates on its own copy of the game
+					GameState<M, R> helperGame = game.copy();
+					Search helper = searches.get(i);
+					int helperIndex = i;
+					AtomicBoolean claimed = new AtomicBoolean(false);
+					claims.add(claimed);
+					helpers.add(executor.submit(() -> {
+						if (claimed.compareAndSet(false, true)) {
+							deepen(helperGame, helper, helperIndex, deepest);
+						}
+					}));
+				}
+				
+				deepen(game, main, 0, deepest);
+			} finally {
+				main.stopped.set(true);
+			}
+			
+			for (int i=0; i<helpers.size(); i++) {
+				if (claims.get(i).compareAndSet(false, true)) {
+					// A busy executor has not started this helper yet, which is no longer needed
+					helpers.get(i).cancel(false);
+				} else {
+					helpers.get(i).get();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while searching", e);
+		} catch (ExecutionException e) {
+			throw new Rethrow(e.getCause());
+		}
+	}
+	
+	/**
+	 * Deepens the search iteratively until the depth limit is reached,
+	 * the game tree has been searched entirely or the search is stopped.
+	 * Helpers start at a deeper iteration and with a rotated move order,
+	 * thus they fill the shared transposition table with different
+	 * positions than the main search.
+	 *
+	 * @param helperIndex - The index of the helper or 0 for the main search
+	 */
+	private void deepen(GameState<M, R> game, Search search, int helperIndex, AtomicReference<Iteration> deepest) {
+		List<? extends M> moves = game.getLegalMoves();
+		int[] order = new int[moves.size()];
+		for (int i=0; i<order.length; i++) {
+			order[i] = (i + helperIndex) % order.length;
+		}
+		
+		int startDepth = (helperIndex == 0) ? 0 : Math.min(depth, 1 + (helperIndex % 2));
+		
+		for (int iterationDepth=startDepth; iterationDepth<=depth; iterationDepth++) {
+			search.startIteration(iterationDepth);
+			int iterationBest = -1;
+			double bestRating = Double.NEGATIVE_INFINITY;
+			boolean completed = true;
+			
+			for (int i=0; i<order.length; i++) {
+				int index = order[i];
+				double rating = search.alphaBeta(game, moves.get(index), iterationDepth, bestRating, Double.POSITIVE_INFINITY);
+				
+				// The first iteration only evaluates the moves and is thus always completed
+				if (iterationDepth > 0 && !search.isRunning()) {
+					completed = false;
+					break;
+				}
+				
+				if (iterationBest < 0 || rating > bestRating) {
+					iterationBest = index;
+					bestRating = rating;
+				}
+			}
+			
+			if (!completed) {
+				break;
+			}
+			
+			moveToFront(order, iterationBest);
+			Iteration iteration = new Iteration(iterationDepth, iterationBest);
+			
+			synchronized (deepest) {
+				if (iteration.depth > deepest.get().depth) {
+					deepest.set(iteration);
+					search.progress.publish(moves.get(iterationBest));
+				}
+			}
+			
+			if (!search.wasDepthLimited() || !search.isRunning()) {
+				// The entire game tree has been searched or the time is up
+				break;
+			}
+		}
+		
+		// Any finished search stops the others
+		search.stopped.set(true);
+	}
+	
+	private static void moveToFront(int[] order, int value) {
+		int i = 0;
+		while (order[i] != value) {
+			i++;
+		}
+		
+		System.arraycopy(order, 0, order, 1, i);
+		order[0] = value;
+	}
+	
+	@Override
+	protected double rateMove(GameState<M, R> gameBeforeMove, M move, Timer timer, SearchProgress<M> progress) {
 		if (!gameBeforeMove.getCurrentRole().hasOpponent()) {
 			throw new IllegalStateException("Alpha beta can only operate on two-player games!");
 		}
 		
-		return alphaBeta(gameBeforeMove.getCurrentRole(), gameBeforeMove, move, depth, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, timer);
+		Search search = new Search(gameBeforeMove.getCurrentRole(), timer, new AtomicBoolean(false), progress);
+		search.startIteration(depth);
+		return search.alphaBeta(gameBeforeMove, move, depth, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
 	}
 	
-	private double alphaBeta(
-			R role,
-			GameState<M, R> gameBeforeMove,
-			M move,
-			int decrementalDepth,
-			double alpha,
-			double beta,
-			Timer timer
-	) {
-		GameState<M, R> gameAfterMove = gameBeforeMove.spawnChild(move);
+	/**
+	 * A completed iteration of the deepening.
+	 */
+	private static final class Iteration {
+		private final int depth;
+		private final int moveIndex;
 		
-		if (!timer.isRunning()
-				|| decrementalDepth == 0
-				|| pruner.pruneMove(role, gameBeforeMove, gameAfterMove, move, depth - decrementalDepth)
-				|| gameAfterMove.isGameOver()) {
-			return evaluator.rate(role, gameBeforeMove, gameAfterMove, move, depth - decrementalDepth);
-		} else {
+		public Iteration(int depth, int moveIndex) {
+			this.depth = depth;
+			this.moveIndex = moveIndex;
+		}
+	}
+	
+	/**
+	 * The state of a single search, which is
+	 * confined to the searching thread.
+	 */
+	private class Search {
+		private final R role;
+		private final Timer timer;
+		private final AtomicBoolean stopped;
+		private final SearchProgress<M> progress;
+		private final long roleKey;
+		private final TranspositionTable.Entry entry = new TranspositionTable.Entry();
+		private final Map<M, Integer> history = new HashMap<>();
+		private Object[] killers = new Object[16];
+		private int iterationDepth;
+		private boolean depthLimited;
+		private long nodes = 0;
+		
+		public Search(R role, Timer timer, AtomicBoolean stopped, SearchProgress<M> progress) {
+			this.role = role;
+			this.timer = timer;
+			this.stopped = stopped;
+			this.progress = progress;
+			roleKey = role.hashCode() * 0xC2B2AE3D27D4EB4FL;
+		}
+		
+		public void startIteration(int iterationDepth) {
+			this.iterationDepth = iterationDepth;
+			depthLimited = false;
+		}
+		
+		public boolean isRunning() {
+			return timer.isRunning() && !stopped.get() && !progress.isCancelled();
+		}
+		
+		/**
+		 * @return Whether the last iteration stopped at the depth limit anywhere
+		 */
+		public boolean wasDepthLimited() {
+			return depthLimited;
+		}
+		
+		public double alphaBeta(
+				GameState<M, R> gameBeforeMove,
+				M move,
+				int decrementalDepth,
+				double alpha,
+				double beta
+		) {
+			nodes++;
+			GameState<M, R> gameAfterMove = gameBeforeMove.spawnChild(move);
+			int ply = iterationDepth - decrementalDepth;
+			
+			if (!isRunning()
+					|| decrementalDepth == 0
+					|| pruner.pruneMove(role, gameBeforeMove, gameAfterMove, move, ply)
+					|| gameAfterMove.isGameOver()) {
+				if (decrementalDepth == 0 && !gameAfterMove.isGameOver()) {
+					depthLimited = true;
+				}
+				
+				return evaluator.rate(role, gameBeforeMove, gameAfterMove, move, ply);
+			}
+			
+			// The evaluators may rate by depth, thus positions are only transposable within the same ply
+			long hash = (table == null) ? 0 : gameAfterMove.positionHash();
+			long key = hash ^ roleKey ^ (ply * 0x9E3779B97F4A7C15L);
+			int ttMove = TranspositionTable.NO_MOVE;
+			
+			if (hash != 0 && table.probe(key, entry)) {
+				if (entry.getDepth() >= decrementalDepth) {
+					double score = entry.getScore();
+					TranspositionTable.Bound bound = entry.getBound();
+					
+					if (bound == TranspositionTable.Bound.EXACT
+							|| (bound == TranspositionTable.Bound.LOWER && score >= beta)
+							|| (bound == TranspositionTable.Bound.UPPER && score <= alpha)) {
+						if (entry.getDepth() != TranspositionTable.COMPLETE_DEPTH) {
+							depthLimited = true;
+						}
+						
+						return score;
+					}
+				}
+				
+				ttMove = entry.getMoveIndex();
+			}
+			
+			boolean outerDepthLimited = depthLimited;
+			depthLimited = false;
+			
+			List<? extends M> childMoves = gameAfterMove.getLegalMoves();
+			int[] order = orderMoves(childMoves, ttMove, ply);
 			boolean maximizing = gameAfterMove.getCurrentRole().equals(role);
 			double bestRating = maximizing ? alpha : beta;
+			int bestIndex = TranspositionTable.NO_MOVE;
 			
-			for (M childMove : gameAfterMove.getLegalMoves()) {
-				if (!timer.isRunning()) {
+			for (int index : order) {
+				if (!isRunning()) {
 					break;
 				}
 				
+				M childMove = childMoves.get(index);
 				double rating;
+				boolean cutoff = false;
 				
 				if (maximizing) {
-					rating = alphaBeta(role, gameAfterMove, childMove, decrementalDepth - 1, bestRating, beta, timer);
+					rating = alphaBeta(gameAfterMove, childMove, decrementalDepth - 1, bestRating, beta);
 					if (rating > bestRating) {
 						bestRating = rating;
-						if (bestRating >= beta) {
-							break; // Beta-cutoff
-						}
+						bestIndex = index;
+						cutoff = bestRating >= beta; // Beta-cutoff
 					}
 				} else {
-					rating = alphaBeta(role, gameAfterMove, childMove, decrementalDepth - 1, alpha, bestRating, timer);
+					rating = alphaBeta(gameAfterMove, childMove, decrementalDepth - 1, alpha, bestRating);
 					if (rating < bestRating) {
 						bestRating = rating;
-						if (bestRating <= alpha) {
-							break; // Alpha-cutoff
-						}
+						bestIndex = index;
+						cutoff = bestRating <= alpha; // Alpha-cutoff
 					}
 				}
+				
+				if (cutoff) {
+					recordCutoff(childMove, ply, decrementalDepth);
+					break;
+				}
+			}
+			
+			boolean subtreeDepthLimited = depthLimited;
+			depthLimited = outerDepthLimited || subtreeDepthLimited;
+			
+			if (hash != 0 && isRunning()) {
+				TranspositionTable.Bound bound;
+				
+				if (bestRating <= alpha) {
+					bound = TranspositionTable.Bound.UPPER;
+				} else if (bestRating >= beta) {
+					bound = TranspositionTable.Bound.LOWER;
+				} else {
+					bound = TranspositionTable.Bound.EXACT;
+				}
+				
+				int storedDepth = subtreeDepthLimited ? decrementalDepth : TranspositionTable.COMPLETE_DEPTH;
+				table.store(key, storedDepth, bound, bestRating, bestIndex);
 			}
 			
 			return bestRating;
 		}
+		
+		/**
+		 * Orders the move indices by the transposition table move,
+		 * the killer moves of the ply and the history scores.
+		 */
+		private int[] orderMoves(List<? extends M> moves, int ttMove, int ply) {
+			int count = moves.size();
+			int[] order = new int[count];
+			long[] scores = new long[count];
+			int killerSlot = 2 * ply;
+			
+			for (int i=0; i<count; i++) {
+				M move = moves.get(i);
+				order[i] = i;
+				
+				if (i == ttMove) {
+					scores[i] = Long.MAX_VALUE;
+				} else if (killerSlot + 1 < killers.length && move.equals(killers[killerSlot])) {
+					scores[i] = Long.MAX_VALUE - 1;
+				} else if (killerSlot + 1 < killers.length && move.equals(killers[killerSlot + 1])) {
+					scores[i] = Long.MAX_VALUE - 2;
+				} else {
+					scores[i] = history.getOrDefault(move, 0);
+				}
+			}
+			
+			// Insertion sort, which is stable and fast for the usual amounts of moves
+			for (int i=1; i<count; i++) {
+				int index = order[i];
+				long score = scores[i];
+				int j = i;
+				
+				while (j > 0 && scores[j - 1] < score) {
+					order[j] = order[j - 1];
+					scores[j] = scores[j - 1];
+					j--;
+				}
+				
+				order[j] = index;
+				scores[j] = score;
+			}
+			
+			return order;
+		}
+		
+		private void recordCutoff(M move, int ply, int decrementalDepth) {
+			int killerSlot = 2 * ply;
+			
+			if (killerSlot + 1 >= killers.length) {
+				killers = Arrays.copyOf(killers, Math.max(killers.length * 2, killerSlot + 2));
+			}
+			
+			if (!move.equals(killers[killerSlot])) {
+				killers[killerSlot + 1] = killers[killerSlot];
+				killers[killerSlot] = move;
+			}
+			
+			int bonus = Math.min(decrementalDepth, 1 << 10);
+			history.merge(move, bonus * bonus, (a, b) -> (int) Math.min((long) a + b, Integer.MAX_VALUE));
+		}
 	}
 
 	@Override
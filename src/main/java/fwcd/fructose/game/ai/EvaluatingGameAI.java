@@ -1,7 +1,16 @@
 package fwcd.fructose.game.ai;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import fwcd.fructose.concurrent.ClosingExecutor;
+import fwcd.fructose.exception.Rethrow;
 import fwcd.fructose.game.GameMove;
 import fwcd.fructose.game.GameRole;
 import fwcd.fructose.game.GameState;
@@ -10,47 +19,194 @@ import fwcd.fructose.time.Timer;
 /**
  * An evaluation-based game AI that can parallelize the
  * first layer in the game tree.
- * 
+ *
+ * <p>Every legal move is rated exactly once. Parallel ratings
+ * run on a dedicated executor, ratings that are still outstanding
+ * when the time is up are cancelled. The best move among the
+ * ratings that completed in time is chosen. The best move so far
+ * is published after every rating. Once the move selection is
+ * cancelled, no further moves are rated and the ratings in progress
+ * should stop early (see {@link #rateMove}).</p>
+ *
  * @author Fredrik
  *
  */
 public abstract class EvaluatingGameAI<M extends GameMove, R extends GameRole> extends TemplateGameAI<M, R> {
 	private boolean shouldParallelize = true;
+	private ExecutorService executor = null;
 	
 	protected void setParallelization(boolean enabled) {
 		shouldParallelize = enabled;
 	}
 	
+	/**
+	 * Rates the moves using the given executor, which
+	 * is not shut down by this AI.
+	 *
+	 * @param executor - The executor or null to use a new thread pool (with one thread per processor) per move selection
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+	
+	/**
+	 * @return The executor set by {@link #setExecutor(ExecutorService)} or null
+	 */
+	protected ExecutorService getExecutor() {
+		return executor;
+	}
+	
+	/**
+	 * The rating of a single move.
+	 */
+	private static class Rating<M> {
+		private final M move;
+		private final double value;
+		/** Whether the rating finished before the time was up. */
+		private final boolean complete;
+		
+		public Rating(M move, double value, boolean complete) {
+			this.move = move;
+			this.value = value;
+			this.complete = complete;
+		}
+	}
+	
 	@Override
 	protected M selectMove(GameState<M, R> game, long softMaxTime) {
+		SearchProgress<M> progress = getProgress();
 		final Timer timer = new Timer();
 		timer.start(softMaxTime);
 		
-		if (shouldParallelize) {
-			return game.getLegalMoves()
-					.parallelStream()
-					.max((a, b) -> Double.compare(rateMove(game, a, timer), rateMove(game, b, timer)))
-					.orElseThrow(NoSuchElementException::new);
+		List<? extends M> moves = game.getLegalMoves();
+		List<Rating<M>> ratings;
+		
+		if (moves.isEmpty()) {
+			throw new NoSuchElementException("Game state does not contain any moves.");
+		} else if (shouldParallelize && moves.size() > 1) {
+			ratings = rateInParallel(game, moves, timer, progress);
 		} else {
-			M bestMove = null;
-			double bestRating = Double.NEGATIVE_INFINITY;
+			ratings = new ArrayList<>();
 			
-			for (M move : game.getLegalMoves()) {
-				double rating = rateMove(game, move, timer);
+			for (M move : moves) {
+				ratings.add(rate(game, move, timer, progress));
+				progress.publish(bestMove(ratings, moves));
 				
-				if (rating > bestRating) {
-					bestRating = rating;
-					bestMove = move;
+				if (!timer.isRunning() || progress.isCancelled() || Thread.currentThread().isInterrupted()) {
+					break;
 				}
 			}
+		}
+		
+		return bestMove(ratings, moves);
+	}
+	
+	private Rating<M> rate(GameState<M, R> game, M move, Timer timer, SearchProgress<M> progress) {
+		double value = rateMove(game, move, timer, progress);
+		return new Rating<>(move, value, timer.isRunning() && !progress.isCancelled());
+	}
+	
+	private List<Rating<M>> rateInParallel(GameState<M, R> game, List<? extends M> moves, Timer timer, SearchProgress<M> progress) {
+		ExecutorService ratingExecutor = executor;
+		ClosingExecutor ownExecutor = null;
+		
+		if (ratingExecutor == null) {
+			ownExecutor = new ClosingExecutor(Math.min(moves.size(), Runtime.getRuntime().availableProcessors()));
+			ratingExecutor = ownExecutor;
+		}
+		
+		List<Future<Rating<M>>> futures = new ArrayList<>();
+		List<Rating<M>> received = new ArrayList<>();
+		
+		try {
+			for (M move : moves) {
+				futures.add(ratingExecutor.submit(() -> rate(game, move, timer, progress)));
+			}
 			
-			if (bestMove != null) {
-				return bestMove;
-			} else {
-				throw new NoSuchElementException("Game state does not contain any moves.");
+			for (Future<Rating<M>> future : futures) {
+				long remaining = remainingMillis(timer);
+				
+				if (remaining <= 0 || progress.isCancelled()) {
+					break;
+				}
+				
+				received.add(future.get(remaining, TimeUnit.MILLISECONDS));
+				progress.publish(bestMove(received, moves));
+			}
+		} catch (TimeoutException e) {
+			// The outstanding ratings are cancelled below
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while rating moves", e);
+		} catch (ExecutionException e) {
+			throw new Rethrow(e.getCause());
+		} finally {
+			for (Future<Rating<M>> future : futures) {
+				future.cancel(true);
+			}
+			
+			if (ownExecutor != null) {
+				ownExecutor.close();
+			}
+		}
+		
+		List<Rating<M>> ratings = new ArrayList<>();
+		
+		for (Future<Rating<M>> future : futures) {
+			if (future.isDone() && !future.isCancelled()) {
+				try {
+					ratings.add(future.get());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while rating moves", e);
+				} catch (ExecutionException e) {
+					throw new Rethrow(e.getCause());
+				}
 			}
 		}
+		
+		return ratings;
+	}
+	
+	private static long remainingMillis(Timer timer) {
+		try {
+			return timer.getRemainingMillis();
+		} catch (IllegalStateException e) {
+			// The timer has expired since the last check
+			return 0;
+		}
+	}
+	
+	/**
+	 * Picks the best completely rated move. If the time was
+	 * up before any rating completed, the best partially rated
+	 * move or (if there is none) the first move is chosen.
+	 */
+	private M bestMove(List<Rating<M>> ratings, List<? extends M> moves) {
+		Rating<M> best = null;
+		
+		for (Rating<M> rating : ratings) {
+			if (best == null
+					|| (rating.complete && !best.complete)
+					|| (rating.complete == best.complete && rating.value > best.value)) {
+				best = rating;
+			}
+		}
+		
+		return (best == null) ? moves.get(0) : best.move;
 	}
 	
-	protected abstract double rateMove(GameState<M, R> gameBeforeMove, M move, Timer timer);
+	/**
+	 * Rates a move, possibly on another thread than the one that
+	 * selects the move. Long ratings should return early once
+	 * the timer has expired, the progress has been cancelled or the
+	 * rating thread has been interrupted.
+	 * 
+	 * @param gameBeforeMove - The game in which the move is made
+	 * @param move - The rated move
+	 * @param timer - The timer of the soft time limit
+	 * @param progress - The progress of the move selection (only used for cancellation)
+	 * @return The rating (higher is better)
+	 */
+	protected abstract double rateMove(GameState<M, R> gameBeforeMove, M move, Timer timer, SearchProgress<M> progress);
 }
@@ -83,7 +83,7 @@ public class GeneticNeuralGameAI<M extends GameMove, R extends GameRole> extends
 	}
 
 	@Override
-	protected double rateMove(GameState<M, R> gameBeforeMove, M move, Timer timer) {
+	protected double rateMove(GameState<M, R> gameBeforeMove, M move, Timer timer, SearchProgress<M> progress) {
 		try {
 			GameState<M, R> gameAfterMove = gameBeforeMove.spawnChild(move);
 			return neuralDecoder.decode(neuralNet.compute(neuralEncoder.encode(gameAfterMove)));
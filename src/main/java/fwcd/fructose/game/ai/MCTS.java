@@ -1,7 +1,18 @@
 package fwcd.fructose.game.ai;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
 import fwcd.fructose.Option;
+import fwcd.fructose.concurrent.ClosingExecutor;
+import fwcd.fructose.exception.Rethrow;
 import fwcd.fructose.game.GameMove;
+import fwcd.fructose.game.GameObserver;
 import fwcd.fructose.game.GameRole;
 import fwcd.fructose.game.GameState;
 import fwcd.fructose.swing.TreePlotter;
@@ -10,17 +21,149 @@ import fwcd.fructose.time.Timer;
 /**
  * A monte-carlo-tree-search. It doesn't need
  * a domain-specific heuristic and thus is very generally applicable.
- * 
+ *
+ * <p>The search tree is kept between moves. The next search
+ * continues from the node matching the new game state. The node is
+ * located using the moves played in the meantime (if this AI is
+ * registered as an observer of the game) or using
+ * {@link GameState#equals(Object)}.</p>
+ *
+ * <p>The tree is either made of {@link MCTSNode}s or, if compact
+ * trees are enabled, stored in an {@link MCTSArena}. Arenas use
+ * far less memory per node but can not be shared by threads, thus
+ * parallel searches on compact trees are always root-parallel.</p>
+ *
  * @author Fredrik
  *
  */
-public class MCTS<M extends GameMove, R extends GameRole> extends TemplateGameAI<M, R> {
+public class MCTS<M extends GameMove, R extends GameRole> extends TemplateGameAI<M, R> implements GameObserver<M, R> {
+	/**
+	 * Describes how the search is distributed across threads.
+	 */
+	public enum Parallelism {
+		/**
+		 * Every thread searches an independent tree, the
+		 * visit counts of the root moves are summed up
+		 * afterwards. Requires no synchronization at all.
+		 */
+		ROOT,
+		/**
+		 * All threads search a shared tree, virtual losses
+		 * spread them across different branches.
+		 */
+		TREE
+	}
+	
+	private static final int PUBLISH_INTERVAL = 256;
+	
 	private Option<TreePlotter> plotter = Option.empty();
+	private Parallelism parallelism = Parallelism.TREE;
+	private int threadCount = 1;
+	private boolean reuseTree = true;
+	private boolean compactTree = false;
+	private List<MCTSTree<M, R>> lastRoots = new ArrayList<>();
+	private final List<M> playedMoves = new ArrayList<>();
+	private volatile long lastReusedSimulations = 0;
+	private volatile long lastIterations = 0;
+	private volatile double lastIterationsPerSecond = 0;
 
 	public void setPlotter(TreePlotter plotter) {
 		this.plotter = Option.of(plotter);
 	}
 	
+	/**
+	 * Searches using the given amount of threads. A single
+	 * thread searches on the calling thread.
+	 *
+	 * @param threadCount - The amount of threads
+	 * @param parallelism - How multiple threads share the work
+	 */
+	public void setParallelism(int threadCount, Parallelism parallelism) {
+		if (threadCount < 1) {
+			throw new IllegalArgumentException("Thread count has to be positive: " + Integer.toString(threadCount));
+		}
+		
+		this.threadCount = threadCount;
+		this.parallelism = parallelism;
+	}
+	
+	/**
+	 * Stores the search trees in compact arenas that replay
+	 * the moves instead of keeping a game state per node and
+	 * only expand frequently visited nodes (progressive widening).
+	 * This allows far larger trees at the cost of replaying moves.
+	 *
+	 * @param compactTree - Whether {@link MCTSArena}s should be used
+	 */
+	public void setCompactTree(boolean compactTree) {
+		if (this.compactTree != compactTree) {
+			discardTree();
+		}
+		
+		this.compactTree = compactTree;
+	}
+	
+	/**
+	 * @param reuseTree - Whether the search should continue from the matching subtree of the previous search
+	 */
+	public void setReuseTree(boolean reuseTree) {
+		this.reuseTree = reuseTree;
+		
+		if (!reuseTree) {
+			discardTree();
+		}
+	}
+	
+	/**
+	 * @return The amount of simulations the last search inherited from the previous one
+	 */
+	public long getLastReusedSimulations() {
+		return lastReusedSimulations;
+	}
+	
+	/**
+	 * Records the played moves, which are used to locate the
+	 * subtree to continue from.
+	 */
+	@Override
+	public void onGameMove(GameState<M, R> gameBeforeMove, M move) {
+		synchronized (playedMoves) {
+			playedMoves.add(move);
+		}
+	}
+	
+	@Override
+	public void onGameStart(GameState<M, R> intialState, R role) {
+		discardTree();
+	}
+	
+	@Override
+	public void onGameEnd(GameState<M, R> finalState, R role) {
+		discardTree();
+	}
+	
+	private void discardTree() {
+		lastRoots = new ArrayList<>();
+		
+		synchronized (playedMoves) {
+			playedMoves.clear();
+		}
+	}
+	
+	/**
+	 * @return The total amount of iterations (of all threads) performed by the last search
+	 */
+	public long getLastIterations() {
+		return lastIterations;
+	}
+	
+	/**
+	 * @return The total iterations per second (of all threads) of the last search
+	 */
+	public double getLastIterationsPerSecond() {
+		return lastIterationsPerSecond;
+	}
+	
 	/**
 	 * Selects a move using monte-carlo-tree search. Note that
 	 * this method will block "forever", if not an appropriate
@@ -31,17 +174,159 @@ public class MCTS<M extends GameMove, R extends GameRole> extends TemplateGameAI
 			GameState<M, R> game,
 			long softMaxTime
 	) {
+		SearchProgress<M> progress = getProgress();
 		Timer timer = new Timer();
+		long startNanos = System.nanoTime();
 		timer.start(softMaxTime);
 		
-		MCTSNode<M, R> node = new MCTSNode<>(game.getCurrentRole(), game);
+		List<MCTSTree<M, R>> roots = prepareRoots(game);
+		M move;
+		long iterations;
 		
-		while (timer.isRunning()) {
-			node.performIteration();
+		if (roots.size() > 1) {
+			iterations = searchInParallel(roots, timer, progress);
+			move = mostExploredMove(roots);
+		} else if (threadCount > 1) {
+			List<MCTSTree<M, R>> shared = new ArrayList<>();
+			
+			for (int i=0; i<threadCount; i++) {
+				shared.add(roots.get(0));
+			}
+			
+			iterations = searchInParallel(shared, timer, progress);
+			move = roots.get(0).mostExploredMove();
+		} else {
+			iterations = search(roots.get(0), timer, progress, true);
+			move = roots.get(0).mostExploredMove();
 		}
 		
-		plotter.ifPresent(plotter -> plotter.setTree(node));
+		if (roots.get(0) instanceof MCTSNode) {
+			MCTSNode<M, R> root = (MCTSNode<M, R>) roots.get(0);
+			plotter.ifPresent(plotter -> plotter.setTree(root));
+		}
+		
+		// A cancelled search may overlap with the next one, which must not continue from its trees
+		lastRoots = (reuseTree && !progress.isCancelled()) ? roots : new ArrayList<>();
+		
+		double seconds = (System.nanoTime() - startNanos) / 1e9;
+		lastIterations = iterations;
+		lastIterationsPerSecond = (seconds > 0) ? iterations / seconds : 0;
 		
-		return node.mostExploredChild().getMove();
+		return move;
+	}
+	
+	/**
+	 * Creates one root per tree, continuing from
+	 * the previous trees if possible.
+	 */
+	private List<MCTSTree<M, R>> prepareRoots(GameState<M, R> game) {
+		List<M> moves;
+		
+		synchronized (playedMoves) {
+			moves = new ArrayList<>(playedMoves);
+			playedMoves.clear();
+		}
+		
+		boolean rootParallel = compactTree || parallelism == Parallelism.ROOT;
+		int treeCount = (threadCount > 1 && rootParallel) ? threadCount : 1;
+		List<MCTSTree<M, R>> roots = new ArrayList<>();
+		long reused = 0;
+		
+		for (int i=0; i<treeCount; i++) {
+			MCTSTree<M, R> root = (i < lastRoots.size()) ? lastRoots.get(i).reroot(game, moves) : null;
+			
+			if (root == null) {
+				// The tree must not reference the caller's game, which changes later on
+				if (compactTree) {
+					root = new MCTSArena<>(game.getCurrentRole(), game.copy());
+				} else {
+					root = new MCTSNode<>(game.getCurrentRole(), game.copy());
+				}
+			} else {
+				reused += root.getSimulations();
+			}
+			
+			roots.add(root);
+		}
+		
+		lastReusedSimulations = reused;
+		return roots;
+	}
+	
+	/**
+	 * Iterates until the time is up or the selection is cancelled.
+	 *
+	 * @param publishing - Whether the most explored move of the tree should be published regularly
+	 */
+	private long search(MCTSTree<M, R> tree, Timer timer, SearchProgress<M> progress, boolean publishing) {
+		long iterations = 0;
+		
+		while (timer.isRunning() && !progress.isCancelled()) {
+			tree.performIteration();
+			iterations++;
+			
+			if (publishing && (iterations % PUBLISH_INTERVAL) == 0) {
+				progress.publish(tree.mostExploredMove());
+			}
+		}
+		
+		return iterations;
+	}
+	
+	/**
+	 * Searches the given roots (which may be identical) on one thread
+	 * each. Only the first thread publishes its most explored move.
+	 */
+	private long searchInParallel(List<MCTSTree<M, R>> roots, Timer timer, SearchProgress<M> progress) {
+		try (ClosingExecutor executor = new ClosingExecutor(roots.size())) {
+			List<Future<Long>> futures = new ArrayList<>();
+			
+			for (int i=0; i<roots.size(); i++) {
+				MCTSTree<M, R> root = roots.get(i);
+				boolean publishing = i == 0;
+				Callable<Long> task = () -> search(root, timer, progress, publishing);
+				futures.add(executor.submit(task));
+			}
+			
+			long iterations = 0;
+			
+			for (Future<Long> future : futures) {
+				iterations += future.get();
+			}
+			
+			return iterations;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while searching", e);
+		} catch (ExecutionException e) {
+			throw new Rethrow(e.getCause());
+		}
+	}
+	
+	/**
+	 * Merges the visit counts of the root moves of independent trees.
+	 */
+	private M mostExploredMove(List<MCTSTree<M, R>> roots) {
+		Map<M, Integer> visits = new HashMap<>();
+		
+		for (MCTSTree<M, R> root : roots) {
+			root.collectMoveVisits(visits);
+		}
+		
+		M bestMove = null;
+		int bestVisits = -1;
+		
+		for (Map.Entry<M, Integer> entry : visits.entrySet()) {
+			if (entry.getValue() > bestVisits) {
+				bestVisits = entry.getValue();
+				bestMove = entry.getKey();
+			}
+		}
+		
+		if (bestMove == null) {
+			return roots.get(0).mostExploredMove();
+		} else {
+			return bestMove;
+		}
 	}
 }
@@ -0,0 +1,435 @@
+package fwcd.fructose.game.ai;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import fwcd.fructose.game.GameMove;
+import fwcd.fructose.game.GameRole;
+import fwcd.fructose.game.GameState;
+import fwcd.fructose.game.MoveChooser;
+import fwcd.fructose.game.RandomMoveChooser;
+
+/**
+ * A compact monte-carlo search tree that stores its nodes
+ * in parallel primitive arrays (an "arena") instead of one
+ * object per node. Nodes hold no game states, every iteration
+ * reconstructs the states along its path by replaying the moves
+ * from the root. Children are added one at a time as their parent
+ * is visited more often (progressive widening), thus rarely visited
+ * nodes hold no children at all.
+ *
+ * <p>A node only stores the index of its move in the legal moves
+ * of its parent's state, thus {@link GameState#getLegalMoves()} has
+ * to return the moves in the same order for equal states.</p>
+ *
+ * <p>Draws (and simulations that end without a winner) count
+ * as half a win, the wins are stored doubled.</p>
+ *
+ * <p>The tree is not thread-safe, root-parallel searches
+ * use one arena per thread.</p>
+ */
+public class MCTSArena<M extends GameMove, R extends GameRole> implements MCTSTree<M, R> {
+	private static final int ROOT = 0;
+	private static final int NONE = -1;
+	private static final float EPSILON = 1e-8F;
+	
+	private final GameRole ourPlayer;
+	private final GameState<M, R> rootState;
+	private MoveChooser<M, R> moveChooser = new RandomMoveChooser<>();
+	private int explorationWeight = 2;
+	private int maxSimulationDepth = 36;
+	private double wideningFactor = 1;
+	private double wideningExponent = 0.5;
+	private int maxNodes = Integer.MAX_VALUE;
+	
+	// The nodes, stored as parallel arrays
+	private int size = 0;
+	private int[] parents;
+	private int[] firstChilds;
+	private int[] nextSiblings;
+	private int[] moveIndices;
+	private int[] childCounts;
+	private int[] simulations;
+	private int[] halfWins;
+	
+	private int[] path = new int[16];
+	
+	/**
+	 * Creates a new arena containing only the root node.
+	 *
+	 * @param ourPlayer - The player this tree search is playing for
+	 * @param rootState - The game state at the root (which is not modified)
+	 */
+	public MCTSArena(GameRole ourPlayer, GameState<M, R> rootState) {
+		this(ourPlayer, rootState, 1024);
+	}
+	
+	private MCTSArena(GameRole ourPlayer, GameState<M, R> rootState, int capacity) {
+		this.ourPlayer = ourPlayer;
+		this.rootState = rootState;
+		parents = new int[capacity];
+		firstChilds = new int[capacity];
+		nextSiblings = new int[capacity];
+		moveIndices = new int[capacity];
+		childCounts = new int[capacity];
+		simulations = new int[capacity];
+		halfWins = new int[capacity];
+		addNode(NONE, NONE);
+	}
+	
+	/**
+	 * Changes the move chooser used when simulating playouts.
+	 */
+	public void setMoveChooser(MoveChooser<M, R> moveChooser) {
+		this.moveChooser = moveChooser;
+	}
+	
+	/**
+	 * Configures the progressive widening. A node with n
+	 * simulations may have up to ceil(factor * n^exponent) children.
+	 */
+	public void setWidening(double factor, double exponent) {
+		wideningFactor = factor;
+		wideningExponent = exponent;
+	}
+	
+	/**
+	 * Limits the size of the tree, the search continues
+	 * without adding further nodes once it is reached.
+	 */
+	public void setMaxNodes(int maxNodes) {
+		this.maxNodes = maxNodes;
+	}
+	
+	/**
+	 * @return The amount of nodes in this tree
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * @return The game state at the root of this tree
+	 */
+	public GameState<M, R> getRootState() {
+		return rootState;
+	}
+	
+	@Override
+	public GameRole getOurPlayer() {
+		return ourPlayer;
+	}
+	
+	@Override
+	public int getSimulations() {
+		return simulations[ROOT];
+	}
+	
+	private int addNode(int parent, int moveIndex) {
+		if (size == parents.length) {
+			int capacity = (int) Math.min(Integer.MAX_VALUE - 8L, size * 2L);
+			parents = Arrays.copyOf(parents, capacity);
+			firstChilds = Arrays.copyOf(firstChilds, capacity);
+			nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+			moveIndices = Arrays.copyOf(moveIndices, capacity);
+			childCounts = Arrays.copyOf(childCounts, capacity);
+			simulations = Arrays.copyOf(simulations, capacity);
+			halfWins = Arrays.copyOf(halfWins, capacity);
+		}
+		
+		int node = size++;
+		parents[node] = parent;
+		firstChilds[node] = NONE;
+		moveIndices[node] = moveIndex;
+		childCounts[node] = 0;
+		simulations[node] = 0;
+		halfWins[node] = 0;
+		
+		if (parent == NONE) {
+			nextSiblings[node] = NONE;
+		} else {
+			nextSiblings[node] = firstChilds[parent];
+			firstChilds[parent] = node;
+			childCounts[parent]++;
+		}
+		
+		return node;
+	}
+	
+	@Override
+	public void performIteration() {
+		Random random = ThreadLocalRandom.current();
+		GameState<M, R> state = rootState.copy();
+		int node = ROOT;
+		int depth = 0;
+		path[0] = ROOT;
+		simulations[ROOT]++;
+		
+		while (!state.isGameOver()) {
+			List<? extends M> legalMoves = state.getLegalMoves();
+			int allowedChilds = (int) Math.min(legalMoves.size(), Math.ceil(wideningFactor * Math.pow(simulations[node], wideningExponent)));
+			int child;
+			boolean expanded = false;
+			
+			if (childCounts[node] < allowedChilds && size < maxNodes) {
+				child = addNode(node, pickUntriedMove(node, legalMoves.size(), random));
+				expanded = true;
+			} else if (childCounts[node] > 0) {
+				child = selectChild(node, random);
+			} else {
+				break;
+			}
+			
+			state.perform(legalMoves.get(moveIndices[child]));
+			simulations[child]++;
+			
+			if (++depth == path.length) {
+				path = Arrays.copyOf(path, depth * 2);
+			}
+			path[depth] = child;
+			node = child;
+			
+			if (expanded) {
+				break;
+			}
+		}
+		
+		int result = simulate(state);
+		
+		if (result > 0) {
+			for (int i=0; i<=depth; i++) {
+				halfWins[path[i]] += result;
+			}
+		}
+	}
+	
+	/**
+	 * Picks a random move index that is not used by a child yet.
+	 */
+	private int pickUntriedMove(int node, int moveCount, Random random) {
+		boolean[] tried = new boolean[moveCount];
+		
+		for (int child=firstChilds[node]; child!=NONE; child=nextSiblings[child]) {
+			tried[moveIndices[child]] = true;
+		}
+		
+		int remaining = random.nextInt(moveCount - childCounts[node]);
+		
+		for (int i=0; i<moveCount; i++) {
+			if (!tried[i] && remaining-- == 0) {
+				return i;
+			}
+		}
+		
+		throw new IllegalStateException("No untried move left");
+	}
+	
+	private int selectChild(int node, Random random) {
+		double logParent = Math.log(simulations[node] + 1);
+		int best = NONE;
+		float bestValue = Float.NEGATIVE_INFINITY;
+		
+		for (int child=firstChilds[node]; child!=NONE; child=nextSiblings[child]) {
+			float childSimulations = simulations[child];
+			float value = (halfWins[child] / (2F * childSimulations)) + EPSILON
+					+ (random.nextFloat() * EPSILON)
+					+ (explorationWeight * (float) Math.sqrt(logParent / childSimulations + EPSILON));
+			
+			if (best == NONE || value > bestValue) {
+				best = child;
+				bestValue = value;
+			}
+		}
+		
+		return best;
+	}
+	
+	/**
+	 * Plays the game randomly from the given state.
+	 *
+	 * @return The result in half wins (2 if our player has won, 1 for a draw and 0 for a loss)
+	 */
+	private int simulate(GameState<M, R> simulation) {
+		int i = 0;
+		
+		while (!simulation.isGameOver() && i < maxSimulationDepth) {
+			simulation.perform(moveChooser.chooseMove(simulation));
+			i++;
+		}
+		
+		Set<? extends GameRole> winners = simulation.getWinners();
+		
+		if (winners.contains(ourPlayer)) {
+			return 2;
+		} else if (!winners.isEmpty()) {
+			return 0;
+		} else {
+			return 1;
+		}
+	}
+	
+	private int mostExploredChild(int node) {
+		int best = NONE;
+		
+		for (int child=firstChilds[node]; child!=NONE; child=nextSiblings[child]) {
+			if (best == NONE || simulations[child] > simulations[best]) {
+				best = child;
+			}
+		}
+		
+		return best;
+	}
+	
+	@Override
+	public M mostExploredMove() {
+		int child = mostExploredChild(ROOT);
+		
+		if (child == NONE) {
+			throw new IllegalStateException("The root has not been expanded");
+		}
+		
+		return rootState.getLegalMoves().get(moveIndices[child]);
+	}
+	
+	@Override
+	public void collectMoveVisits(Map<M, Integer> visits) {
+		List<? extends M> legalMoves = rootState.getLegalMoves();
+		
+		for (int child=firstChilds[ROOT]; child!=NONE; child=nextSiblings[child]) {
+			visits.merge(legalMoves.get(moveIndices[child]), simulations[child], Integer::sum);
+		}
+	}
+	
+	private int childWithMove(int node, int moveIndex) {
+		for (int child=firstChilds[node]; child!=NONE; child=nextSiblings[child]) {
+			if (moveIndices[child] == moveIndex) {
+				return child;
+			}
+		}
+		
+		return NONE;
+	}
+	
+	/**
+	 * Counts the nodes in the given subtree by walking
+	 * the child and sibling links (without allocating).
+	 */
+	private int subtreeSize(int subtreeRoot) {
+		int count = 0;
+		int node = subtreeRoot;
+		
+		while (true) {
+			count++;
+			
+			if (firstChilds[node] != NONE) {
+				node = firstChilds[node];
+			} else {
+				while (node != subtreeRoot && nextSiblings[node] == NONE) {
+					node = parents[node];
+				}
+				
+				if (node == subtreeRoot) {
+					return count;
+				}
+				
+				node = nextSiblings[node];
+			}
+		}
+	}
+	
+	/**
+	 * Copies the given subtree into a new, compact arena
+	 * (the nodes of this arena are left unchanged).
+	 */
+	private MCTSArena<M, R> copySubtree(int subtreeRoot, GameState<M, R> state) {
+		int count = subtreeSize(subtreeRoot);
+		MCTSArena<M, R> copy = new MCTSArena<>(ourPlayer, state, count);
+		copy.moveChooser = moveChooser;
+		copy.explorationWeight = explorationWeight;
+		copy.maxSimulationDepth = maxSimulationDepth;
+		copy.wideningFactor = wideningFactor;
+		copy.wideningExponent = wideningExponent;
+		copy.maxNodes = maxNodes;
+		copy.simulations[ROOT] = simulations[subtreeRoot];
+		copy.halfWins[ROOT] = halfWins[subtreeRoot];
+		
+		// Breadth-first, every node is copied after its parent. The copies
+		// are numbered in the order of the queue, thus the queue position
+		// of a node is the index of its copy.
+		int[] queue = new int[count];
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = subtreeRoot;
+		
+		while (head < tail) {
+			int nodeCopy = head;
+			int node = queue[head++];
+			
+			for (int child=firstChilds[node]; child!=NONE; child=nextSiblings[child]) {
+				int childCopy = copy.addNode(nodeCopy, moveIndices[child]);
+				copy.simulations[childCopy] = simulations[child];
+				copy.halfWins[childCopy] = halfWins[child];
+				queue[tail++] = child;
+			}
+		}
+		
+		return copy;
+	}
+	
+	@Override
+	public MCTSArena<M, R> reroot(GameState<M, R> game, List<M> moves) {
+		if (!ourPlayer.equals(game.getCurrentRole())) {
+			return null;
+		}
+		
+		int depth = game.getMoveCount() - rootState.getMoveCount();
+		
+		if (depth < 0) {
+			return null;
+		}
+		
+		if (moves.size() == depth) {
+			GameState<M, R> state = rootState.copy();
+			int node = ROOT;
+			
+			for (M move : moves) {
+				int moveIndex = state.getLegalMoves().indexOf(move);
+				node = (moveIndex < 0) ? NONE : childWithMove(node, moveIndex);
+				
+				if (node == NONE) {
+					break;
+				}
+				
+				state.perform(move);
+			}
+			
+			if (node != NONE) {
+				return copySubtree(node, state);
+			}
+		}
+		
+		return findSubtree(ROOT, rootState, game, depth);
+	}
+	
+	private MCTSArena<M, R> findSubtree(int node, GameState<M, R> state, GameState<M, R> game, int depth) {
+		if (depth == 0) {
+			return state.equals(game) ? copySubtree(node, state.copy()) : null;
+		}
+		
+		List<? extends M> legalMoves = state.getLegalMoves();
+		
+		for (int child=firstChilds[node]; child!=NONE; child=nextSiblings[child]) {
+			MCTSArena<M, R> match = findSubtree(child, state.spawnChild(legalMoves.get(moveIndices[child])), game, depth - 1);
+			
+			if (match != null) {
+				return match;
+			}
+		}
+		
+		return null;
+	}
+}
@@ -3,8 +3,10 @@ package fwcd.fructose.game.ai;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import fwcd.fructose.game.GameMove;
 import fwcd.fructose.game.GameRole;
@@ -17,26 +19,39 @@ import fwcd.fructose.structs.TreeNode;
  * A node in the game tree which is capable of performing
  * monte-carlo searches.
  * 
+ * <p>Iterations may be performed concurrently on the same
+ * tree. The counters are updated atomically and every node is
+ * visited as soon as it is selected, thus pending simulations
+ * count as losses until their result is known ("virtual loss").
+ * This spreads concurrent searches across different branches.</p>
+ * 
+ * <p>Draws (and simulations that end without a winner) count
+ * as half a win. The wins are stored doubled to keep the
+ * counters integral.</p>
+ * 
  * @author Fredrik
  *
  */
-public class MCTSNode<M extends GameMove, R extends GameRole> implements TreeNode, Comparable<MCTSNode<M, R>> {
-	private static final Random RANDOM = new Random();
+public class MCTSNode<M extends GameMove, R extends GameRole> implements MCTSTree<M, R>, TreeNode, Comparable<MCTSNode<M, R>> {
+	@SuppressWarnings("rawtypes")
+	private static final AtomicIntegerFieldUpdater<MCTSNode> HALF_WINS = AtomicIntegerFieldUpdater.newUpdater(MCTSNode.class, "halfWins");
+	@SuppressWarnings("rawtypes")
+	private static final AtomicIntegerFieldUpdater<MCTSNode> SIMULATIONS = AtomicIntegerFieldUpdater.newUpdater(MCTSNode.class, "simulations");
 	private static final float EPSILON = 1e-8F; // Small value to prevent NaN's
 	
-	private final MCTSNode<M, R> parent;
+	private MCTSNode<M, R> parent;
 	private final GameRole ourPlayer;
 	private final M move;
 	private final GameState<M, R> stateAfterMove;
-	private List<MCTSNode<M, R>> exploredChilds = null;
+	private volatile List<MCTSNode<M, R>> exploredChilds = null;
 	
 	private MoveChooser<M, R> moveChooser = new RandomMoveChooser<>();
 	
 	private int explorationWeight = 2;
 	private int maxSimulationDepth = 36;
 	
-	private int wins = 0;
-	private int simulations = 0;
+	private volatile int halfWins = 0;
+	private volatile int simulations = 0;
 	
 	/**
 	 * Creates a new root MCTS-node.
@@ -64,9 +79,16 @@ public class MCTSNode<M extends GameMove, R extends GameRole> implements TreeNod
 		ourPlayer = parent.ourPlayer;
 	}
 	
-	private void addWins(int wins) {
-		simulations++;
-		this.wins += wins;
+	/**
+	 * Counts a simulation through this node, which is
+	 * treated as a loss until its result is backpropagated.
+	 */
+	private void addVisit() {
+		SIMULATIONS.incrementAndGet(this);
+	}
+	
+	private void addHalfWins(int halfWins) {
+		HALF_WINS.addAndGet(this, halfWins);
 	}
 	
 	/**
@@ -77,12 +99,12 @@ public class MCTSNode<M extends GameMove, R extends GameRole> implements TreeNod
 	 */
 	private float uct() {
 		return getWinRate()
-				+ (RANDOM.nextFloat() * EPSILON)
+				+ (ThreadLocalRandom.current().nextFloat() * EPSILON)
 				+ (explorationWeight * (float) Math.sqrt(Math.log(parent.simulations + 1) / (float) simulations + EPSILON));
 	}
 	
 	public float getWinRate() {
-		return (float) wins / (float) simulations + EPSILON;
+		return (float) halfWins / (2F * simulations) + EPSILON;
 	}
 	
 	/**
@@ -100,51 +122,156 @@ public class MCTSNode<M extends GameMove, R extends GameRole> implements TreeNod
 		return parent == null;
 	}
 	
+	/**
+	 * Turns this node into a root node. The former ancestors
+	 * and their other descendants are no longer referenced by
+	 * this node and can be garbage-collected. Must not be
+	 * called while iterations are performed on the tree.
+	 */
+	void detach() {
+		parent = null;
+	}
+	
+	/**
+	 * Follows the given moves through the explored part of the tree.
+	 * 
+	 * @return The node reached after performing the moves or null if it has not been explored
+	 */
+	MCTSNode<M, R> findDescendant(List<? extends M> moves) {
+		MCTSNode<M, R> node = this;
+		
+		for (M nextMove : moves) {
+			MCTSNode<M, R> next = null;
+			
+			for (MCTSNode<M, R> child : node.getExploredChilds()) {
+				if (child.move.equals(nextMove)) {
+					next = child;
+					break;
+				}
+			}
+			
+			if (next == null) {
+				return null;
+			}
+			
+			node = next;
+		}
+		
+		return node;
+	}
+	
+	/**
+	 * Searches the explored nodes at the given depth for
+	 * a state that equals the given one.
+	 * 
+	 * @return The matching node or null if there is none
+	 */
+	MCTSNode<M, R> findDescendant(GameState<M, R> state, int depth) {
+		if (depth == 0) {
+			return stateAfterMove.equals(state) ? this : null;
+		}
+		
+		for (MCTSNode<M, R> child : getExploredChilds()) {
+			MCTSNode<M, R> match = child.findDescendant(state, depth - 1);
+			
+			if (match != null) {
+				return match;
+			}
+		}
+		
+		return null;
+	}
+	
+	@Override
+	public MCTSNode<M, R> reroot(GameState<M, R> game, List<M> moves) {
+		if (!ourPlayer.equals(game.getCurrentRole())) {
+			return null;
+		}
+		
+		int depth = game.getMoveCount() - stateAfterMove.getMoveCount();
+		
+		if (depth < 0) {
+			return null;
+		}
+		
+		MCTSNode<M, R> node = null;
+		
+		if (moves.size() == depth) {
+			node = findDescendant(moves);
+		}
+		
+		if (node == null) {
+			node = findDescendant(game, depth);
+		}
+		
+		if (node != null) {
+			node.detach();
+		}
+		
+		return node;
+	}
+	
+	public GameState<M, R> getState() {
+		return stateAfterMove;
+	}
+	
+	@Override
+	public GameRole getOurPlayer() {
+		return ourPlayer;
+	}
+	
 	@Override
 	public boolean isLeaf() {
-		return exploredChilds == null || exploredChilds.isEmpty();
+		List<MCTSNode<M, R>> childs = exploredChilds;
+		return childs == null || childs.isEmpty();
 	}
 	
 	/**
 	 * Performs one iteration of the monte-carlo-tree-search algorithm.
+	 * This method may be called from multiple threads at once.
 	 */
+	@Override
 	public void performIteration() {
 		expand();
+		addVisit();
 		
 		MCTSNode<M, R> leaf = select();
 		leaf.expand();
 		
-		int result = leaf.simulate();
+		int halfWins = leaf.simulate();
 		
-		if (result > 0) {
-			leaf.backpropagate(1);
-		} else if (result < 0) {
-			leaf.backpropagate(0);
+		if (halfWins > 0) {
+			leaf.backpropagate(halfWins);
 		}
 	}
 	
+	/**
+	 * Descends to a leaf, visiting every node on the path.
+	 */
 	private MCTSNode<M, R> select() {
-		MCTSNode<M, R> child = Collections.max(exploredChilds);
+		MCTSNode<M, R> node = this;
 		
-		if (child.isLeaf()) {
-			return child;
-		} else {
-			return child.select();
+		while (!node.isLeaf()) {
+			node = Collections.max(node.exploredChilds);
+			node.addVisit();
 		}
+		
+		return node;
 	}
 	
-	private void backpropagate(int winsDelta) {
-		addWins(winsDelta);
+	private void backpropagate(int halfWinsDelta) {
+		MCTSNode<M, R> node = this;
 		
-		if (!isRoot()) {
-			parent.backpropagate(winsDelta);
+		while (node != null) {
+			node.addHalfWins(halfWinsDelta);
+			node = node.parent;
 		}
 	}
 	
 	/**
 	 * Simulates this game.
 	 * 
-	 * @return 1: Win for our player - 0: Not determined - -1: Win for opponent
+	 * @return The result in half wins - 2: Win for our player - 1: Draw or not determined - 0: Win for opponent
 	 */
 	private int simulate() {
 		GameState<M, R> simulation = stateAfterMove.copy();
@@ -158,20 +285,26 @@ public class MCTSNode<M extends GameMove, R extends GameRole> implements TreeNod
 		Set<? extends GameRole> winners = simulation.getWinners();
 		
 		if (winners.contains(ourPlayer)) {
-			return 1;
+			return 2;
 		} else if (!winners.isEmpty()) {
-			return -1;
-		} else {
 			return 0;
+		} else {
+			return 1;
 		}
 	}
 	
 	private void expand() {
 		if (exploredChilds == null) {
-			exploredChilds = new ArrayList<>();
-			
-			for (M move : stateAfterMove.getLegalMoves()) {
-				exploredChilds.add(new MCTSNode<>(this, move, stateAfterMove.spawnChild(move)));
+			synchronized (this) {
+				if (exploredChilds == null) {
+					List<MCTSNode<M, R>> childs = new ArrayList<>();
+					
+					for (M move : stateAfterMove.getLegalMoves()) {
+						childs.add(new MCTSNode<>(this, move, stateAfterMove.spawnChild(move)));
+					}
+					
+					exploredChilds = childs;
+				}
 			}
 		}
 	}
@@ -198,6 +331,34 @@ public class MCTSNode<M extends GameMove, R extends GameRole> implements TreeNod
 	public MCTSNode<M, R> mostExploredChild() {
 		return Collections.max(exploredChilds, (a, b) -> Integer.compare(a.simulations, b.simulations));
 	}
+	
+	@Override
+	public M mostExploredMove() {
+		return mostExploredChild().getMove();
+	}
+	
+	@Override
+	public void collectMoveVisits(Map<M, Integer> visits) {
+		for (MCTSNode<M, R> child : getExploredChilds()) {
+			visits.merge(child.move, child.simulations, Integer::sum);
+		}
+	}
+	
+	/**
+	 * @return The amount of simulations that passed through this node
+	 */
+	@Override
+	public int getSimulations() {
+		return simulations;
+	}
+	
+	/**
+	 * @return The explored child nodes or an empty list if this node has not been expanded
+	 */
+	public List<MCTSNode<M, R>> getExploredChilds() {
+		List<MCTSNode<M, R>> childs = exploredChilds;
+		return (childs == null) ? Collections.emptyList() : Collections.unmodifiableList(childs);
+	}
 
 	@Override
 	public List<? extends TreeNode> getChildren() {
@@ -206,7 +367,7 @@ public class MCTSNode<M extends GameMove, R extends GameRole> implements TreeNod
 
 	@Override
 	public String getLabel() {
-		return Integer.toString(wins) + "/" + Integer.toString(simulations);
+		return Float.toString(halfWins / 2F) + "/" + Integer.toString(simulations);
 	}
 	
 	@Override
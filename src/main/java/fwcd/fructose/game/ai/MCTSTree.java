@@ -0,0 +1,49 @@
+package fwcd.fructose.game.ai;
+
+import java.util.List;
+import java.util.Map;
+
+import fwcd.fructose.game.GameMove;
+import fwcd.fructose.game.GameRole;
+import fwcd.fructose.game.GameState;
+
+/**
+ * A monte-carlo search tree as seen by {@link MCTS}.
+ */
+interface MCTSTree<M extends GameMove, R extends GameRole> {
+	/**
+	 * Performs one iteration of the monte-carlo-tree-search algorithm.
+	 */
+	void performIteration();
+	
+	/**
+	 * @return The amount of simulations that passed through the root
+	 */
+	int getSimulations();
+	
+	/**
+	 * @return The player this tree search is playing for
+	 */
+	GameRole getOurPlayer();
+	
+	/**
+	 * @return The most simulated move from the root
+	 */
+	M mostExploredMove();
+	
+	/**
+	 * Adds the simulation counts of the moves from the root to the given totals.
+	 */
+	void collectMoveVisits(Map<M, Integer> visits);
+	
+	/**
+	 * Locates the explored node matching the given game, which
+	 * has been reached from the root by the given moves
+	 * (if known), and turns its subtree into a new tree.
+	 * 
+	 * @param game - The game state to locate
+	 * @param moves - The moves played since the root state or an empty list if unknown
+	 * @return The subtree or null if the game state has not been explored
+	 */
+	MCTSTree<M, R> reroot(GameState<M, R> game, List<M> moves);
+}
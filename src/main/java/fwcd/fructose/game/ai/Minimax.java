@@ -1,6 +1,11 @@
 package fwcd.fructose.game.ai;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.OptionalDouble;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.DoubleStream;
 
 import fwcd.fructose.game.GameMove;
@@ -26,6 +31,8 @@ public class Minimax<M extends GameMove, R extends GameRole> extends EvaluatingG
 	private final MoveEvaluator<M, R> evaluator;
 	private final MovePruner<M, R> pruner;
 	private int depth = 0;
+	private int parallelPlies = 0;
+	private ForkJoinPool plyPool = null;
 	
 	/**
 	 * Creates a new Minimax that attempts to
@@ -49,13 +56,37 @@ public class Minimax<M extends GameMove, R extends GameRole> extends EvaluatingG
 		this.depth = depth;
 	}
 
+	/**
+	 * Rates the child moves of the given amount of plies below
+	 * the first one in parallel. Since minimax does not prune,
+	 * sibling subtrees are independent and no work is lost.
+	 * 
+	 * <p>The child moves are rated as fork/join tasks in the
+	 * {@link ForkJoinPool} passed to {@link #setExecutor} or, if there
+	 * is none, in a pool owned by this AI (see {@link #shutdown()}).
+	 * The plies are never forked into the common pool, even if
+	 * it has been passed to {@link #setExecutor}.</p>
+	 * 
+	 * @param parallelPlies - The amount of plies or 0 to only parallelize the first ply
+	 */
+	public void setParallelPlies(int parallelPlies) {
+		this.parallelPlies = parallelPlies;
+	}
+	
 	@Override
-	protected double rateMove(GameState<M, R> gameBeforeMove, M move, Timer timer) {
+	protected double rateMove(GameState<M, R> gameBeforeMove, M move, Timer timer, SearchProgress<M> progress) {
 		if (!gameBeforeMove.getCurrentRole().hasOpponent()) {
 			throw new IllegalStateException("Minimax can only operate on two-player games!");
 		}
 		
-		return minimax(gameBeforeMove.getCurrentRole(), gameBeforeMove, move, depth, timer);
+		return minimax(gameBeforeMove.getCurrentRole(), gameBeforeMove, move, depth, timer, progress);
+	}
+	
+	/**
+	 * @return Whether the search should continue, which is checked by every node (including those rated on other threads)
+	 */
+	private boolean isRunning(Timer timer, SearchProgress<M> progress) {
+		return timer.isRunning() && !progress.isCancelled() && !Thread.currentThread().isInterrupted();
 	}
 	
 	private double minimax(
@@ -63,20 +94,26 @@ public class Minimax<M extends GameMove, R extends GameRole> extends EvaluatingG
 			GameState<M, R> gameBeforeMove,
 			M move,
 			int decrementalDepth,
-			Timer timer
+			Timer timer,
+			SearchProgress<M> progress
 	) {
 		GameState<M, R> gameAfterMove = gameBeforeMove.spawnChild(move);
 		
-		if (!timer.isRunning()
+		if (!isRunning(timer, progress)
 				|| decrementalDepth == 0
 				|| pruner.pruneMove(role, gameBeforeMove, gameAfterMove, move, depth - decrementalDepth)
 				|| gameAfterMove.isGameOver()) {
 			return evaluator.rate(role, gameBeforeMove, gameAfterMove, move, depth - decrementalDepth);
 		} else {
-			DoubleStream childRatings = gameAfterMove
-					.getLegalMoves()
-					.stream()
-					.mapToDouble(childMove -> minimax(role, gameAfterMove, childMove, decrementalDepth - 1, timer));
+			List<? extends M> childMoves = gameAfterMove.getLegalMoves();
+			DoubleStream childRatings;
+			
+			if ((depth - decrementalDepth) < parallelPlies && childMoves.size() > 1) {
+				childRatings = DoubleStream.of(rateInParallel(role, gameAfterMove, childMoves, decrementalDepth - 1, timer, progress));
+			} else {
+				childRatings = childMoves.stream()
+						.mapToDouble(childMove -> minimax(role, gameAfterMove, childMove, decrementalDepth - 1, timer, progress));
+			}
 			
 			OptionalDouble result;
 			
@@ -86,10 +123,71 @@ public class Minimax<M extends GameMove, R extends GameRole> extends EvaluatingG
 				result = childRatings.min();
 			}
 			
-			return result.orElse(evaluator.rate(role, gameBeforeMove, gameAfterMove, move, depth - decrementalDepth));
+			return result.orElseGet(() -> evaluator.rate(role, gameBeforeMove, gameAfterMove, move, depth - decrementalDepth));
 		}
 	}
 
+	private double[] rateInParallel(
+			R role,
+			GameState<M, R> gameBeforeMoves,
+			List<? extends M> moves,
+			int decrementalDepth,
+			Timer timer,
+			SearchProgress<M> progress
+	) {
+		List<ForkJoinTask<Double>> tasks = new ArrayList<>(moves.size());
+		
+		for (M move : moves) {
+			tasks.add(ForkJoinTask.adapt(() -> minimax(role, gameBeforeMoves, move, decrementalDepth, timer, progress)));
+		}
+		
+		ForkJoinPool pool = getPlyPool();
+		
+		if (ForkJoinTask.getPool() == pool) {
+			// Joining workers help with the forked tasks, thus nested plies can not starve the pool
+			ForkJoinTask.invokeAll(tasks);
+		} else {
+			pool.invoke(ForkJoinTask.adapt(() -> {
+				ForkJoinTask.invokeAll(tasks);
+			}));
+		}
+		
+		double[] ratings = new double[tasks.size()];
+		
+		for (int i=0; i<ratings.length; i++) {
+			ratings[i] = tasks.get(i).join();
+		}
+		
+		return ratings;
+	}
+	
+	/**
+	 * @return The fork/join pool set by {@link #setExecutor} (unless it is the common pool) or the pool owned by this AI
+	 */
+	private synchronized ForkJoinPool getPlyPool() {
+		ExecutorService executor = getExecutor();
+		
+		if (executor instanceof ForkJoinPool && executor != ForkJoinPool.commonPool()) {
+			return (ForkJoinPool) executor;
+		} else if (plyPool == null) {
+			plyPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		}
+		
+		return plyPool;
+	}
+	
+	/**
+	 * Stops the worker threads of the pool owned by this AI
+	 * (which is created again by the next parallel rating).
+	 * Executors set by {@link #setExecutor} are not shut down.
+	 */
+	public synchronized void shutdown() {
+		if (plyPool != null) {
+			plyPool.shutdown();
+			plyPool = null;
+		}
+	}
+	
 	@Override
 	public void setLevel(int depth) {
 		this.depth = depth;
@@ -0,0 +1,43 @@
+package fwcd.fructose.game.ai;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import fwcd.fructose.Option;
+import fwcd.fructose.game.GameMove;
+
+/**
+ * The progress of a single move selection, which is shared
+ * between the searching threads and the thread waiting
+ * for the result. Searchers publish their best move so far,
+ * which is used if the search exceeds the hard time limit,
+ * and should stop as soon as the selection is cancelled.
+ */
+public final class SearchProgress<M extends GameMove> {
+	private final AtomicReference<M> bestSoFar = new AtomicReference<>();
+	private volatile boolean cancelled = false;
+	
+	/**
+	 * Publishes the currently best move.
+	 */
+	public void publish(M move) {
+		bestSoFar.set(move);
+	}
+	
+	/**
+	 * @return The last published move
+	 */
+	public Option<M> getBestSoFar() {
+		return Option.ofNullable(bestSoFar.get());
+	}
+	
+	/**
+	 * @return Whether the result of this search is no longer needed
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+	
+	void cancel() {
+		cancelled = true;
+	}
+}
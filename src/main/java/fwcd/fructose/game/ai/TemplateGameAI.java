@@ -1,8 +1,9 @@
 package fwcd.fructose.game.ai;
 
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.FutureTask;
-import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -12,12 +13,22 @@ import fwcd.fructose.game.GameState;
 import fwcd.fructose.game.MoveChooser;
 import fwcd.fructose.game.RandomMoveChooser;
 
+/**
+ * A game AI that selects its moves on a worker thread,
+ * thus the hard time limit is enforced even if the search
+ * does not return in time. In this case the best move
+ * the search has published so far (see {@link #getProgress()})
+ * or, if there is none, the move of the timeout move chooser is used.
+ */
 public abstract class TemplateGameAI<M extends GameMove, R extends GameRole> implements GamePlayer<M, R> {
+	private static final ThreadLocal<SearchProgress<?>> PROGRESS = new ThreadLocal<>();
+	
 	private long softMaxTime = Long.MAX_VALUE;
 	private long hardMaxTime = Long.MAX_VALUE;
 	
 	private MoveChooser<M, R> timeoutMoveChooser = new RandomMoveChooser<>();
 	private long hardMaxBuffer = 50; // A small buffer time in which the timeoutMoveChooser is expected to run
+	private ExecutorService searchExecutor = null;
 	
 	@Override
 	public void setSoftMaxTime(long ms) {
@@ -33,10 +44,10 @@ public abstract class TemplateGameAI<M extends GameMove, R extends GameRole> imp
 	 * Sets the move chooser that should be used when
 	 * the hard time limit has passed. This chooser is
 	 * expected to return very quickly.<br><br>
-	 * 
+	 *
 	 * Furthermore a maximum time is provided that <b>should never</b> be
 	 * exceeded by the chooser in any usual environment.
-	 * 
+	 *
 	 * @param chooser - The hard timeout move chooser
 	 * @param maxMs - The MAXIMUM time in ms that this chooser will require
 	 */
@@ -45,23 +56,70 @@ public abstract class TemplateGameAI<M extends GameMove, R extends GameRole> imp
 		hardMaxBuffer = maxMs;
 	}
 	
+	private synchronized ExecutorService getSearchExecutor() {
+		if (searchExecutor == null) {
+			// Cancelled searches may take a moment to notice, thus threads are not reused exclusively
+			searchExecutor = Executors.newCachedThreadPool(task -> {
+				Thread thread = new Thread(task, "Game AI search");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		
+		return searchExecutor;
+	}
+	
 	@Override
 	public M chooseMove(GameState<M, R> game) {
-		RunnableFuture<M> result = new FutureTask<>(() -> selectMove(game, softMaxTime));
+		SearchProgress<M> progress = new SearchProgress<>();
+		// The caller may change its game as soon as a move has been chosen
+		GameState<M, R> searchedGame = game.copy();
+		Future<M> result = getSearchExecutor().submit(() -> {
+			PROGRESS.set(progress);
+			try {
+				return selectMove(searchedGame, softMaxTime);
+			} finally {
+				PROGRESS.remove();
+			}
+		});
 		M move;
 		
 		try {
-			result.run();
-			move = result.get(hardMaxTime - hardMaxBuffer, TimeUnit.MILLISECONDS);
+			if (hardMaxTime == Long.MAX_VALUE) {
+				move = result.get();
+			} else {
+				move = result.get(Math.max(0, hardMaxTime - hardMaxBuffer), TimeUnit.MILLISECONDS);
+			}
 		} catch (TimeoutException e) {
-			move = timeoutMoveChooser.chooseMove(game);
-		} catch (InterruptedException | ExecutionException e) {
+			move = progress.getBestSoFar().orElseGet(() -> timeoutMoveChooser.chooseMove(game));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			move = progress.getBestSoFar().orElseGet(() -> timeoutMoveChooser.chooseMove(game));
+		} catch (ExecutionException e) {
 			e.printStackTrace();
 			move = timeoutMoveChooser.chooseMove(game);
+		} finally {
+			progress.cancel();
+			result.cancel(true);
 		}
 		
 		return move;
 	}
 	
+	/**
+	 * Fetches the progress of the move selection running on
+	 * the current thread. Searches should capture it at the beginning
+	 * of {@link #selectMove(GameState, long)} (before handing work to
+	 * other threads), publish their best move regularly and stop
+	 * once it has been cancelled.
+	 *
+	 * @return The progress or an unobserved progress if {@link #selectMove(GameState, long)} has been called directly
+	 */
+	@SuppressWarnings("unchecked")
+	protected SearchProgress<M> getProgress() {
+		SearchProgress<M> progress = (SearchProgress<M>) PROGRESS.get();
+		return (progress == null) ? new SearchProgress<>() : progress;
+	}
+	
 	protected abstract M selectMove(GameState<M, R> game, long softMaxTime);
 }
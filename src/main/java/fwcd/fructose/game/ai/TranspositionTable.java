@@ -0,0 +1,189 @@
+package fwcd.fructose.game.ai;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size hash table of previously searched positions,
+ * which may be shared by concurrent searches without locking.
+ *
+ * <p>Every entry consists of three longs: A check word, the
+ * score and the packed information (depth, bound, best move
+ * and generation). The check word is the xor of the key and
+ * the other two words, thus entries that have been torn
+ * by concurrent writes fail verification and are treated as
+ * misses ("lockless hashing").</p>
+ */
+public class TranspositionTable {
+	/** Denotes that an entry holds no best move. */
+	public static final int NO_MOVE = -1;
+	/** The depth of entries whose subtree has been searched until the end of the game. */
+	public static final int COMPLETE_DEPTH = 0xFFFF;
+	
+	/**
+	 * Describes how a stored score relates to the actual score.
+	 */
+	public enum Bound {
+		/** The stored score is exact. */
+		EXACT,
+		/** The actual score is at least the stored score. */
+		LOWER,
+		/** The actual score is at most the stored score. */
+		UPPER
+	}
+	
+	private static final int WORDS = 3;
+	private static final long VALID = 1L << 63;
+	private static final int BOUND_SHIFT = 16;
+	private static final int MOVE_SHIFT = 18;
+	private static final int GENERATION_SHIFT = 34;
+	private static final Bound[] BOUNDS = Bound.values();
+	
+	private final AtomicLongArray entries;
+	private final int indexBits;
+	private volatile int generation = 0;
+	
+	/**
+	 * A reusable holder for the result of a lookup.
+	 */
+	public static final class Entry {
+		private int depth;
+		private Bound bound;
+		private double score;
+		private int moveIndex;
+		
+		/**
+		 * @return The remaining search depth of the entry or {@link TranspositionTable#COMPLETE_DEPTH}
+		 */
+		public int getDepth() {
+			return depth;
+		}
+		
+		public Bound getBound() {
+			return bound;
+		}
+		
+		public double getScore() {
+			return score;
+		}
+		
+		/**
+		 * @return The index of the best move in the legal moves or {@link TranspositionTable#NO_MOVE}
+		 */
+		public int getMoveIndex() {
+			return moveIndex;
+		}
+	}
+	
+	/**
+	 * Creates a new table.
+	 *
+	 * @param capacity - The amount of entries (rounded up to a power of two)
+	 */
+	public TranspositionTable(int capacity) {
+		if (capacity < 1 || capacity > (1 << 28)) {
+			throw new IllegalArgumentException("Invalid capacity: " + Integer.toString(capacity));
+		}
+		
+		int bits = 32 - Integer.numberOfLeadingZeros(capacity - 1);
+		indexBits = bits;
+		entries = new AtomicLongArray(WORDS << bits);
+	}
+	
+	/**
+	 * @return The amount of entries
+	 */
+	public int capacity() {
+		return entries.length() / WORDS;
+	}
+	
+	/**
+	 * Marks all existing entries as stale, which makes
+	 * them preferred for replacement. Should be called
+	 * before every new search.
+	 */
+	public void nextGeneration() {
+		generation = (generation + 1) & 0xFF;
+	}
+	
+	public void clear() {
+		for (int i=0; i<entries.length(); i++) {
+			entries.set(i, 0);
+		}
+	}
+	
+	private int slotOf(long key) {
+		if (indexBits == 0) {
+			return 0;
+		}
+		
+		long mixed = key * 0x9E3779B97F4A7C15L;
+		return WORDS * (int) (mixed >>> (64 - indexBits));
+	}
+	
+	/**
+	 * Looks up the given key.
+	 *
+	 * @param key - The key of the position
+	 * @param result - The holder that receives the entry
+	 * @return Whether the key has been found
+	 */
+	public boolean probe(long key, Entry result) {
+		int slot = slotOf(key);
+		long info = entries.get(slot + 2);
+		long score = entries.get(slot + 1);
+		long check = entries.get(slot);
+		
+		if ((info & VALID) == 0 || (check ^ score ^ info) != key) {
+			return false;
+		}
+		
+		result.depth = (int) (info & 0xFFFF);
+		result.bound = BOUNDS[(int) ((info >>> BOUND_SHIFT) & 0x3)];
+		result.moveIndex = (int) ((info >>> MOVE_SHIFT) & 0xFFFF) - 1;
+		result.score = Double.longBitsToDouble(score);
+		return true;
+	}
+	
+	/**
+	 * Stores a search result. Deeper results replace shallower ones
+	 * of the current generation, results of older generations are
+	 * always replaced.
+	 *
+	 * @param key - The key of the position
+	 * @param depth - The remaining depth the position has been searched to
+	 * @param bound - How the score relates to the actual score
+	 * @param score - The score
+	 * @param moveIndex - The index of the best move or {@link #NO_MOVE}
+	 */
+	public void store(long key, int depth, Bound bound, double score, int moveIndex) {
+		int slot = slotOf(key);
+		long oldInfo = entries.get(slot + 2);
+		long oldKey = entries.get(slot) ^ entries.get(slot + 1) ^ oldInfo;
+		int currentGeneration = generation;
+		int clampedDepth = Math.min(Math.max(depth, 0), COMPLETE_DEPTH);
+		int move = (moveIndex >= 0 && moveIndex < 0xFFFF) ? moveIndex + 1 : 0;
+		
+		if ((oldInfo & VALID) != 0) {
+			boolean sameKey = oldKey == key;
+			boolean current = ((oldInfo >>> GENERATION_SHIFT) & 0xFF) == currentGeneration;
+			
+			if (!sameKey && current && clampedDepth < (oldInfo & 0xFFFF)) {
+				return;
+			} else if (sameKey && move == 0) {
+				// Keep the previously found best move
+				move = (int) ((oldInfo >>> MOVE_SHIFT) & 0xFFFF);
+			}
+		}
+		
+		long info = VALID
+				| clampedDepth
+				| ((long) bound.ordinal() << BOUND_SHIFT)
+				| ((long) move << MOVE_SHIFT)
+				| ((long) currentGeneration << GENERATION_SHIFT);
+		long scoreBits = Double.doubleToRawLongBits(score);
+		
+		entries.set(slot + 2, info);
+		entries.set(slot + 1, scoreBits);
+		entries.set(slot, key ^ scoreBits ^ info);
+	}
+}
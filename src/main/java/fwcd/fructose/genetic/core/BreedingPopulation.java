@@ -1,22 +1,22 @@
 package fwcd.fructose.genetic.core;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Random;
 import java.util.Set;
-import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Supplier;
 
-import fwcd.fructose.Distribution;
 import fwcd.fructose.function.ToFloatFunction;
 import fwcd.fructose.genetic.operators.Crossover;
 import fwcd.fructose.genetic.operators.Decoder;
 import fwcd.fructose.genetic.operators.Encoder;
 import fwcd.fructose.genetic.operators.FitnessFunction;
 import fwcd.fructose.genetic.operators.Mutator;
+import fwcd.fructose.genetic.operators.Selection;
+import fwcd.fructose.genetic.operators.SelectionStrategy;
+import fwcd.fructose.genetic.operators.StochasticUniversalSampling;
 
 /**
  * A simple population implementation that uses
@@ -28,8 +28,10 @@ import fwcd.fructose.genetic.operators.Mutator;
  * @param <G> - The genotype
  */
 public class BreedingPopulation<G> extends TemplatePopulation<G> {
+	private static final int MAX_PARENT_RETRIES = 16;
 	private Crossover<G> crossover;
 	private Mutator<G> mutator;
+	private SelectionStrategy selectionStrategy = new StochasticUniversalSampling();
 	
 	public BreedingPopulation(
 			Crossover<G> crossover,
@@ -44,28 +46,11 @@ public class BreedingPopulation<G> extends TemplatePopulation<G> {
 		setAllGenes(individuals);
 	}
 	
-	/**
-	 * Selects an individual stochastically from the genotype using a
-	 * weighted distribution based of the fitness values.
-	 * 
-	 * @return The index of the individual in the genotype
-	 */
-	private int select() {
-		Distribution<G> dist = new Distribution<>();
-		
-		for (G individual : getAllGenes()) {
-			System.out.println(Arrays.toString((float[]) individual));
-			dist.add(individual, Math.max(getFitness(individual), 0));
-		}
-		
-		return dist.pickIndexStochastically();
-	}
-	
 	/**
 	 * Mutates every individual with the given chance (mutationChance).
 	 */
 	private void mutate() {
-		final Random random = ThreadLocalRandom.current();
+		final Random random = getRandom();
 		final List<G> individuals = getAllGenes();
 		final float mutationChance = getMutationChance();
 		
@@ -73,7 +58,7 @@ public class BreedingPopulation<G> extends TemplatePopulation<G> {
 		for (int i=0; i<individualsCount; i++) {
 			if (random.nextFloat() < mutationChance) {
 				G mutation = mutator.mutate(individuals.get(i));
-				individuals.set(i, mutation);
+				setGenes(i, mutation);
 			}
 		}
 	}
@@ -84,13 +69,28 @@ public class BreedingPopulation<G> extends TemplatePopulation<G> {
 	 */
 	@Override
 	public void evolve() {
-		int parentA = select();
-		int parentB;
+		if (size() < 2) {
+			throw new IllegalStateException("Breeding requires at least two individuals");
+		}
 		
+		Random random = getRandom();
+		Selection selection = selectionStrategy.prepare(evaluateFitnesses(), size());
+		int[] parents = new int[2];
+		int retries = 0;
+		
+		// Require two distinct parents
 		do {
-			parentB = select();
-		} while (parentA == parentB); // Require two distinct parents
+			selection.select(parents, random);
+			retries++;
+		} while (parents[0] == parents[1] && retries < MAX_PARENT_RETRIES);
+		
+		if (parents[0] == parents[1]) {
+			// A single individual dominates the selection
+			parents[1] = (parents[0] + 1 + random.nextInt(size() - 1)) % size();
+		}
 		
+		int parentA = parents[0];
+		int parentB = parents[1];
 		
 		G childA = crossover.crossover(getGenes(parentA), getGenes(parentB));
 		G childB = crossover.crossover(getGenes(parentA), getGenes(parentB));
@@ -102,17 +102,25 @@ public class BreedingPopulation<G> extends TemplatePopulation<G> {
 		incrementGeneration();
 	}
 	
+	/**
+	 * Sets how the parents are selected, which is
+	 * fitness-proportionate ({@link StochasticUniversalSampling}) by default.
+	 */
+	public void setSelectionStrategy(SelectionStrategy selectionStrategy) {
+		this.selectionStrategy = selectionStrategy;
+	}
+	
 	@Override
 	public G selectBestGenes() {
+		List<G> individuals = getAllGenes();
+		float[] fitnesses = evaluateFitnesses();
 		G bestGenes = null;
 		float maxFitness = Float.NEGATIVE_INFINITY;
 		
-		for (G genes : getAllGenes()) {
-			float fitness = getFitness(genes);
-			
-			if (fitness > maxFitness) {
-				maxFitness = fitness;
-				bestGenes = genes;
+		for (int i=0; i<individuals.size(); i++) {
+			if (fitnesses[i] > maxFitness) {
+				maxFitness = fitnesses[i];
+				bestGenes = individuals.get(i);
 			}
 		}
 		
@@ -128,6 +136,7 @@ public class BreedingPopulation<G> extends TemplatePopulation<G> {
 		private Mutator<G> mutator = null;
 		private FitnessFunction<G> fitnessFunc = null;
 		private float mutationChance = 0.1F;
+		private SelectionStrategy selectionStrategy = null;
 		private Set<G> genes = new HashSet<>();
 		
 		public Builder<G> crossoverFunc(Crossover<G> crossoverFunc) {
@@ -150,6 +159,11 @@ public class BreedingPopulation<G> extends TemplatePopulation<G> {
 			return this;
 		}
 		
+		public Builder<G> selectionStrategy(SelectionStrategy selectionStrategy) {
+			this.selectionStrategy = selectionStrategy;
+			return this;
+		}
+		
 		public Builder<G> mutationChance(float chance) {
 			this.mutationChance = chance;
 			return this;
@@ -171,7 +185,11 @@ public class BreedingPopulation<G> extends TemplatePopulation<G> {
 				throw new IllegalStateException("Missing mutator function.");
 			}
 			
-			return new BreedingPopulation<>(crossoverFunc, fitnessFunc, mutator, new ArrayList<>(genes), mutationChance);
+			BreedingPopulation<G> population = new BreedingPopulation<>(crossoverFunc, fitnessFunc, mutator, new ArrayList<>(genes), mutationChance);
+			if (selectionStrategy != null) {
+				population.setSelectionStrategy(selectionStrategy);
+			}
+			return population;
 		}
 	}
 }
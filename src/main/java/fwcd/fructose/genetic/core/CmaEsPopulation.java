@@ -0,0 +1,509 @@
+package fwcd.fructose.genetic.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+
+import fwcd.fructose.exception.Rethrow;
+import fwcd.fructose.exception.SizeMismatchException;
+import fwcd.fructose.genetic.operators.FitnessFunction;
+
+/**
+ * A covariance matrix adaptation evolution strategy (CMA-ES)
+ * that maximizes the fitness over float vectors.
+ *
+ * <p>The individuals of this population are the candidates
+ * sampled from the current search distribution N(m, sigma^2 C).
+ * Evolving evaluates them as a batch (in parallel if an executor
+ * has been set), moves the mean towards the fittest half,
+ * adapts the covariance matrix and the step size and samples
+ * the next candidates. Additional candidates may be injected
+ * using {@link #addGenes(float[])}.</p>
+ *
+ * <p>Samples are drawn using the Cholesky factor A of the covariance
+ * matrix (C = A A^T), which is also used instead of C^(-1/2)
+ * when updating the step size path.</p>
+ */
+public class CmaEsPopulation implements Population<float[]>, Seedable {
+	private final FitnessFunction<float[]> fitnessFunc;
+	private final int dimensions;
+	private ExecutorService fitnessExecutor = null;
+	private Random random = null;
+	private int sampleSize;
+	private int generation = 0;
+	
+	// The search distribution
+	private double[] mean;
+	private double sigma;
+	private double[][] covariance;
+	private double[][] cholesky;
+	private double[] covariancePath;
+	private double[] sigmaPath;
+	
+	private List<float[]> candidates = new ArrayList<>();
+	private float[] fitnesses = new float[0];
+	private int evaluatedCount = 0;
+	private float[] bestGenes = null;
+	private float bestFitness = Float.NEGATIVE_INFINITY;
+	
+	/**
+	 * Creates a new CMA-ES population and samples the first candidates.
+	 *
+	 * @param fitnessFunc - The fitness function to maximize
+	 * @param initialMean - The center of the initial search distribution
+	 * @param initialSigma - The initial step size (about a quarter of the search range per dimension)
+	 */
+	public CmaEsPopulation(FitnessFunction<float[]> fitnessFunc, float[] initialMean, double initialSigma) {
+		if (initialSigma <= 0) {
+			throw new IllegalArgumentException("The step size has to be positive: " + Double.toString(initialSigma));
+		}
+		
+		this.fitnessFunc = fitnessFunc;
+		dimensions = initialMean.length;
+		sampleSize = 4 + (int) (3 * Math.log(dimensions));
+		mean = new double[dimensions];
+		sigma = initialSigma;
+		
+		for (int i=0; i<dimensions; i++) {
+			mean[i] = initialMean[i];
+		}
+		
+		resetCovariance();
+		sample();
+	}
+	
+	private void resetCovariance() {
+		covariance = new double[dimensions][dimensions];
+		covariancePath = new double[dimensions];
+		sigmaPath = new double[dimensions];
+		
+		for (int i=0; i<dimensions; i++) {
+			covariance[i][i] = 1;
+		}
+		
+		cholesky = decompose(covariance);
+	}
+	
+	/**
+	 * Replaces the current candidates by a new
+	 * sample of the given size (lambda).
+	 */
+	public void setSampleSize(int sampleSize) {
+		if (sampleSize < 2) {
+			throw new IllegalArgumentException("CMA-ES requires at least two candidates per generation: " + Integer.toString(sampleSize));
+		}
+		
+		this.sampleSize = sampleSize;
+		sample();
+	}
+	
+	/**
+	 * Evaluates the candidates in parallel using the
+	 * given executor. The fitness function has to be
+	 * thread-safe in this case.
+	 *
+	 * @param fitnessExecutor - The executor or null to evaluate on the calling thread
+	 */
+	public void setFitnessExecutor(ExecutorService fitnessExecutor) {
+		this.fitnessExecutor = fitnessExecutor;
+	}
+	
+	/**
+	 * Replaces the current candidates by a new sample
+	 * drawn using the given generator.
+	 */
+	@Override
+	public void setRandom(Random random) {
+		this.random = random;
+		sample();
+	}
+	
+	private Random getRandom() {
+		return (random == null) ? ThreadLocalRandom.current() : random;
+	}
+	
+	/**
+	 * CMA-ES adapts its step size by itself, thus
+	 * the mutation chance has no effect.
+	 */
+	@Override
+	public void setMutationChance(float chance) {}
+	
+	public float[] getMean() {
+		float[] result = new float[dimensions];
+		
+		for (int i=0; i<dimensions; i++) {
+			result[i] = (float) mean[i];
+		}
+		
+		return result;
+	}
+	
+	public double getSigma() {
+		return sigma;
+	}
+	
+	@Override
+	public int size() {
+		return candidates.size();
+	}
+	
+	@Override
+	public int getGeneration() {
+		return generation;
+	}
+	
+	private float[] evaluateFitnesses() {
+		int count = candidates.size();
+		
+		if (evaluatedCount < count) {
+			fitnesses = Arrays.copyOf(fitnesses, count);
+			FitnessBatches.evaluate(fitnessFunc, candidates.toArray(new float[count][]), evaluatedCount, count, fitnesses, fitnessExecutor);
+			
+			for (int i=evaluatedCount; i<count; i++) {
+				if (fitnesses[i] > bestFitness) {
+					bestFitness = fitnesses[i];
+					bestGenes = candidates.get(i);
+				}
+			}
+			
+			evaluatedCount = count;
+		}
+		
+		return fitnesses;
+	}
+	
+	/**
+	 * @return The fitness of the given candidate
+	 */
+	public float getFitness(int index) {
+		return evaluateFitnesses()[index];
+	}
+	
+	@Override
+	public void evolve() {
+		int count = candidates.size();
+		
+		if (count < 2) {
+			throw new IllegalStateException("CMA-ES requires at least two candidates");
+		}
+		
+		float[] values = evaluateFitnesses();
+		Integer[] order = new Integer[count];
+		
+		for (int i=0; i<count; i++) {
+			order[i] = i;
+		}
+		
+		Arrays.sort(order, (a, b) -> Float.compare(values[b], values[a]));
+		
+		// Strategy parameters (see Hansen, "The CMA Evolution Strategy: A Tutorial")
+		int parents = count / 2;
+		double[] weights = new double[parents];
+		double weightSum = 0;
+		double squaredWeightSum = 0;
+		
+		for (int i=0; i<parents; i++) {
+			weights[i] = Math.log(parents + 0.5) - Math.log(i + 1);
+			weightSum += weights[i];
+		}
+		
+		for (int i=0; i<parents; i++) {
+			weights[i] /= weightSum;
+			squaredWeightSum += weights[i] * weights[i];
+		}
+		
+		double n = dimensions;
+		double effectiveParents = 1 / squaredWeightSum;
+		double cSigma = (effectiveParents + 2) / (n + effectiveParents + 5);
+		double dSigma = 1 + 2 * Math.max(0, Math.sqrt((effectiveParents - 1) / (n + 1)) - 1) + cSigma;
+		double cc = (4 + effectiveParents / n) / (n + 4 + 2 * effectiveParents / n);
+		double c1 = 2 / ((n + 1.3) * (n + 1.3) + effectiveParents);
+		double cMu = Math.min(1 - c1, 2 * (effectiveParents - 2 + 1 / effectiveParents) / ((n + 2) * (n + 2) + effectiveParents));
+		double expectedNorm = Math.sqrt(n) * (1 - 1 / (4 * n) + 1 / (21 * n * n));
+		
+		// The selected steps y = (x - m) / sigma and their whitened counterparts z = A^-1 y
+		double[][] steps = new double[parents][dimensions];
+		double[] meanStep = new double[dimensions];
+		double[] meanWhitened = new double[dimensions];
+		
+		for (int k=0; k<parents; k++) {
+			float[] candidate = candidates.get(order[k]);
+			
+			for (int i=0; i<dimensions; i++) {
+				steps[k][i] = (candidate[i] - mean[i]) / sigma;
+				meanStep[i] += weights[k] * steps[k][i];
+			}
+			
+			double[] whitened = solveLower(cholesky, steps[k]);
+			
+			for (int i=0; i<dimensions; i++) {
+				meanWhitened[i] += weights[k] * whitened[i];
+			}
+		}
+		
+		for (int i=0; i<dimensions; i++) {
+			mean[i] += sigma * meanStep[i];
+		}
+		
+		double sigmaPathFactor = Math.sqrt(cSigma * (2 - cSigma) * effectiveParents);
+		double sigmaPathNorm = 0;
+		
+		for (int i=0; i<dimensions; i++) {
+			sigmaPath[i] = (1 - cSigma) * sigmaPath[i] + sigmaPathFactor * meanWhitened[i];
+			sigmaPathNorm += sigmaPath[i] * sigmaPath[i];
+		}
+		
+		sigmaPathNorm = Math.sqrt(sigmaPathNorm);
+		// Stalls the covariance path while the step size grows quickly
+		boolean stalled = sigmaPathNorm / Math.sqrt(1 - Math.pow(1 - cSigma, 2 * (generation + 1))) >= (1.4 + 2 / (n + 1)) * expectedNorm;
+		double covariancePathFactor = stalled ? 0 : Math.sqrt(cc * (2 - cc) * effectiveParents);
+		
+		for (int i=0; i<dimensions; i++) {
+			covariancePath[i] = (1 - cc) * covariancePath[i] + covariancePathFactor * meanStep[i];
+		}
+		
+		double decay = 1 - c1 - cMu + (stalled ? c1 * cc * (2 - cc) : 0);
+		
+		for (int i=0; i<dimensions; i++) {
+			for (int j=0; j<=i; j++) {
+				double rankMu = 0;
+				
+				for (int k=0; k<parents; k++) {
+					rankMu += weights[k] * steps[k][i] * steps[k][j];
+				}
+				
+				double value = decay * covariance[i][j] + c1 * covariancePath[i] * covariancePath[j] + cMu * rankMu;
+				covariance[i][j] = value;
+				covariance[j][i] = value;
+			}
+		}
+		
+		sigma *= Math.exp((cSigma / dSigma) * (sigmaPathNorm / expectedNorm - 1));
+		cholesky = decompose(covariance);
+		
+		if (cholesky == null || !Double.isFinite(sigma) || sigma <= 0) {
+			// The distribution has degenerated numerically
+			sigma = Double.isFinite(sigma) && sigma > 0 ? sigma : 1;
+			resetCovariance();
+		}
+		
+		generation++;
+		sample();
+	}
+	
+	/**
+	 * Computes the lower triangular Cholesky factor of
+	 * a symmetric matrix.
+	 *
+	 * @return The factor or null if the matrix is not positive-definite
+	 */
+	private static double[][] decompose(double[][] matrix) {
+		int n = matrix.length;
+		double[][] factor = new double[n][n];
+		
+		for (int j=0; j<n; j++) {
+			double diagonal = matrix[j][j];
+			
+			for (int k=0; k<j; k++) {
+				diagonal -= factor[j][k] * factor[j][k];
+			}
+			
+			if (!(diagonal > 0)) {
+				return null;
+			}
+			
+			factor[j][j] = Math.sqrt(diagonal);
+			
+			for (int i=j+1; i<n; i++) {
+				double value = matrix[i][j];
+				
+				for (int k=0; k<j; k++) {
+					value -= factor[i][k] * factor[j][k];
+				}
+				
+				factor[i][j] = value / factor[j][j];
+			}
+		}
+		
+		return factor;
+	}
+	
+	/**
+	 * Solves L x = b using forward substitution.
+	 */
+	private static double[] solveLower(double[][] lower, double[] b) {
+		int n = b.length;
+		double[] x = new double[n];
+		
+		for (int i=0; i<n; i++) {
+			double value = b[i];
+			
+			for (int k=0; k<i; k++) {
+				value -= lower[i][k] * x[k];
+			}
+			
+			x[i] = value / lower[i][i];
+		}
+		
+		return x;
+	}
+	
+	/**
+	 * Replaces the candidates by new samples x = m + sigma A z.
+	 */
+	private void sample() {
+		Random rand = getRandom();
+		double[] z = new double[dimensions];
+		candidates = new ArrayList<>(sampleSize);
+		evaluatedCount = 0;
+		
+		for (int s=0; s<sampleSize; s++) {
+			for (int i=0; i<dimensions; i++) {
+				z[i] = rand.nextGaussian();
+			}
+			
+			float[] candidate = new float[dimensions];
+			
+			for (int i=0; i<dimensions; i++) {
+				double value = 0;
+				
+				for (int k=0; k<=i; k++) {
+					value += cholesky[i][k] * z[k];
+				}
+				
+				candidate[i] = (float) (mean[i] + sigma * value);
+			}
+			
+			candidates.add(candidate);
+		}
+	}
+	
+	/**
+	 * Returns the fittest candidate that has been
+	 * evaluated so far.
+	 */
+	@Override
+	public float[] selectBestGenes() {
+		evaluateFitnesses();
+		
+		if (bestGenes == null) {
+			throw new IllegalStateException("Can't fetch the best genes on an empty population");
+		}
+		
+		return bestGenes;
+	}
+	
+	/**
+	 * @return The fitness of {@link #selectBestGenes()}
+	 */
+	public float getBestFitness() {
+		selectBestGenes();
+		return bestFitness;
+	}
+	
+	@Override
+	public float[] getGenes(int index) {
+		return candidates.get(index);
+	}
+	
+	@Override
+	public void clear() {
+		candidates = new ArrayList<>();
+		evaluatedCount = 0;
+	}
+	
+	/**
+	 * Injects a candidate, which is taken into
+	 * account by the next distribution update.
+	 */
+	@Override
+	public void addGenes(float[] genes) {
+		if (genes.length != dimensions) {
+			throw new SizeMismatchException("genes length", genes.length, "dimensions", dimensions);
+		}
+		
+		candidates.add(genes);
+	}
+	
+	/**
+	 * Replaces the current candidates without
+	 * changing the search distribution.
+	 */
+	@Override
+	public void setAllGenes(List<float[]> individuals) {
+		List<float[]> genes = new ArrayList<>(individuals);
+		clear();
+		
+		for (float[] individual : genes) {
+			addGenes(individual);
+		}
+	}
+	
+	/**
+	 * @return The current candidates (read-only)
+	 */
+	@Override
+	public List<float[]> getAllGenes() {
+		return Collections.unmodifiableList(candidates);
+	}
+	
+	/**
+	 * Saves the search distribution and the current candidates.
+	 */
+	@Override
+	public void saveTo(OutputStream out) {
+		try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+			oos.writeInt(generation);
+			oos.writeDouble(sigma);
+			oos.writeObject(mean);
+			oos.writeObject(covariance);
+			oos.writeObject(covariancePath);
+			oos.writeObject(sigmaPath);
+			oos.writeObject(new ArrayList<>(candidates));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Override
+	public void loadFrom(InputStream in) {
+		try (ObjectInputStream ois = new ObjectInputStream(in)) {
+			int loadedGeneration = ois.readInt();
+			double loadedSigma = ois.readDouble();
+			double[] loadedMean = (double[]) ois.readObject();
+			
+			if (loadedMean.length != dimensions) {
+				throw new SizeMismatchException("saved dimensions", loadedMean.length, "dimensions", dimensions);
+			}
+			
+			generation = loadedGeneration;
+			sigma = loadedSigma;
+			mean = loadedMean;
+			covariance = (double[][]) ois.readObject();
+			covariancePath = (double[]) ois.readObject();
+			sigmaPath = (double[]) ois.readObject();
+			cholesky = decompose(covariance);
+			setAllGenes((List<float[]>) ois.readObject());
+			
+			if (cholesky == null) {
+				resetCovariance();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (ClassNotFoundException e) {
+			throw new Rethrow(e);
+		}
+	}
+}
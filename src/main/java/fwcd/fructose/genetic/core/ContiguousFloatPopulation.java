@@ -0,0 +1,376 @@
+package fwcd.fructose.genetic.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+import fwcd.fructose.exception.SizeMismatchException;
+import fwcd.fructose.genetic.operators.FitnessFunction;
+import fwcd.fructose.genetic.operators.FloatRangeCrossover;
+import fwcd.fructose.genetic.operators.FloatRangeMutator;
+import fwcd.fructose.genetic.operators.GaussianFloatMutator;
+import fwcd.fructose.genetic.operators.Selection;
+import fwcd.fructose.genetic.operators.SelectionStrategy;
+import fwcd.fructose.genetic.operators.StochasticUniversalSampling;
+import fwcd.fructose.genetic.operators.UniformFloatCrossover;
+
+/**
+ * A generational float[] population that keeps all genomes
+ * in two {@link FloatGenomeStore}s (the current and the next
+ * generation), which are swapped after every generation.
+ * Offspring are bred directly into the next store using
+ * in-place operators, thus evolving does not allocate any genomes.
+ *
+ * <p>The genes returned by {@link #getGenes(int)} and
+ * similar methods are copies. The fitness function is invoked
+ * with a reused buffer that must not be retained.</p>
+ */
+public class ContiguousFloatPopulation implements Population<float[]>, Seedable {
+	private final int genomeLength;
+	private FloatGenomeStore current;
+	private FloatGenomeStore next;
+	private FitnessFunction<float[]> fitnessFunc;
+	private FloatRangeCrossover crossover = new UniformFloatCrossover();
+	private FloatRangeMutator mutator = new GaussianFloatMutator();
+	private SelectionStrategy selectionStrategy = new StochasticUniversalSampling();
+	private float mutationChance = 0.1F;
+	private int eliteCount = 1;
+	private int generation = 0;
+	private Random random = null;
+	
+	// The fitness cache is aligned with the current store
+	private float[] fitnesses = new float[0];
+	private boolean[] evaluated = new boolean[0];
+	private final float[] buffer;
+	
+	public ContiguousFloatPopulation(int genomeLength, FitnessFunction<float[]> fitnessFunc) {
+		this.genomeLength = genomeLength;
+		this.fitnessFunc = fitnessFunc;
+		current = new FloatGenomeStore(genomeLength);
+		next = new FloatGenomeStore(genomeLength);
+		buffer = new float[genomeLength];
+	}
+	
+	public void setFitnessFunction(FitnessFunction<float[]> fitnessFunc) {
+		this.fitnessFunc = fitnessFunc;
+		invalidateFitness();
+	}
+	
+	public void setCrossover(FloatRangeCrossover crossover) {
+		this.crossover = crossover;
+	}
+	
+	public void setMutator(FloatRangeMutator mutator) {
+		this.mutator = mutator;
+	}
+	
+	public void setSelectionStrategy(SelectionStrategy selectionStrategy) {
+		this.selectionStrategy = selectionStrategy;
+	}
+	
+	/**
+	 * @param eliteCount - The amount of the fittest individuals that are copied unchanged into the next generation
+	 */
+	public void setEliteCount(int eliteCount) {
+		if (eliteCount < 0) {
+			throw new IllegalArgumentException("Elite count can't be negative: " + Integer.toString(eliteCount));
+		}
+		
+		this.eliteCount = eliteCount;
+	}
+	
+	/**
+	 * @param random - The generator for all stochastic decisions or null to use {@link ThreadLocalRandom}
+	 */
+	@Override
+	public void setRandom(Random random) {
+		this.random = random;
+	}
+	
+	private Random getRandom() {
+		return (random == null) ? ThreadLocalRandom.current() : random;
+	}
+	
+	/**
+	 * @return The store holding the current generation
+	 */
+	public FloatGenomeStore getStore() {
+		return current;
+	}
+	
+	@Override
+	public void setMutationChance(float chance) {
+		mutationChance = chance;
+	}
+	
+	@Override
+	public int size() {
+		return current.size();
+	}
+	
+	@Override
+	public int getGeneration() {
+		return generation;
+	}
+	
+	public int getGenomeLength() {
+		return genomeLength;
+	}
+	
+	/**
+	 * Fetches the fitness of an individual, which is only
+	 * evaluated once per generation.
+	 */
+	public float getFitness(int index) {
+		alignFitnessCache();
+		
+		if (!evaluated[index]) {
+			current.get(index, buffer);
+			fitnesses[index] = fitnessFunc.getFitness(buffer);
+			evaluated[index] = true;
+		}
+		
+		return fitnesses[index];
+	}
+	
+	private float[] evaluateFitnesses() {
+		if (fitnessFunc == null) {
+			throw new IllegalStateException("No fitness function provided.");
+		}
+		
+		for (int i=0; i<size(); i++) {
+			getFitness(i);
+		}
+		
+		return fitnesses;
+	}
+	
+	/**
+	 * Returns the cached fitness values, only the changed
+	 * individuals are evaluated. The given function is only
+	 * used if no fitness function has been set.
+	 */
+	@Override
+	public float[] getFitnesses(FitnessFunction<? super float[]> fallback) {
+		if (fitnessFunc == null) {
+			return Population.super.getFitnesses(fallback);
+		} else {
+			return Arrays.copyOf(evaluateFitnesses(), size());
+		}
+	}
+	
+	private void alignFitnessCache() {
+		int count = size();
+		
+		if (fitnesses.length < count) {
+			int capacity = Math.max(count, fitnesses.length * 2);
+			fitnesses = Arrays.copyOf(fitnesses, capacity);
+			evaluated = Arrays.copyOf(evaluated, capacity);
+		}
+	}
+	
+	private void invalidateFitness() {
+		Arrays.fill(evaluated, false);
+	}
+	
+	@Override
+	public void evolve() {
+		int count = size();
+		
+		if (count < 2) {
+			throw new IllegalStateException("Breeding requires at least two individuals");
+		}
+		
+		Random rand = getRandom();
+		float[] values = evaluateFitnesses();
+		int[] elites = fittest(values, count, Math.min(eliteCount, count));
+		Selection selection = selectionStrategy.prepare(values, count);
+		int[] parents = new int[2 * (count - elites.length)];
+		selection.select(parents, rand);
+		// Selection strategies may return the parents grouped (for example
+		// stochastic universal sampling), which would mostly pair identical parents
+		shuffle(parents, rand);
+		
+		next.resize(count);
+		float[] nextValues = new float[fitnesses.length];
+		boolean[] nextEvaluated = new boolean[fitnesses.length];
+		
+		for (int i=0; i<elites.length; i++) {
+			next.copy(current, elites[i], i);
+			nextValues[i] = values[elites[i]];
+			nextEvaluated[i] = true;
+		}
+		
+		float[] src = current.getData();
+		float[] dest = next.getData();
+		
+		for (int i=elites.length; i<count; i++) {
+			int p = 2 * (i - elites.length);
+			int offset = next.offsetOf(i);
+			crossover.crossover(src, current.offsetOf(parents[p]), src, current.offsetOf(parents[p + 1]), dest, offset, genomeLength, rand);
+			
+			if (rand.nextFloat() < mutationChance) {
+				mutator.mutate(dest, offset, genomeLength, rand);
+			}
+		}
+		
+		FloatGenomeStore previous = current;
+		current = next;
+		next = previous;
+		fitnesses = nextValues;
+		evaluated = nextEvaluated;
+		generation++;
+	}
+	
+	private static void shuffle(int[] indices, Random rand) {
+		// Fisher-Yates shuffle
+		for (int i=indices.length-1; i>0; i--) {
+			int j = rand.nextInt(i + 1);
+			int tmp = indices[i];
+			indices[i] = indices[j];
+			indices[j] = tmp;
+		}
+	}
+	
+	/**
+	 * @return The indices of the fittest individuals (fittest first)
+	 */
+	private static int[] fittest(float[] values, int count, int amount) {
+		int[] result = new int[amount];
+		int found = 0;
+		
+		if (amount == 0) {
+			return result;
+		}
+		
+		for (int i=0; i<count; i++) {
+			if (found < amount || values[i] > values[result[found - 1]]) {
+				int j = (found < amount) ? found++ : found - 1;
+				
+				while (j > 0 && values[result[j - 1]] < values[i]) {
+					result[j] = result[j - 1];
+					j--;
+				}
+				
+				result[j] = i;
+			}
+		}
+		
+		return result;
+	}
+	
+	@Override
+	public float[] selectBestGenes() {
+		if (size() == 0) {
+			throw new IllegalStateException("Can't fetch the best genes on an empty population");
+		}
+		
+		return current.toArray(fittest(evaluateFitnesses(), size(), 1)[0]);
+	}
+	
+	/**
+	 * @return A copy of the genes
+	 */
+	@Override
+	public float[] getGenes(int index) {
+		return current.toArray(index);
+	}
+	
+	@Override
+	public void clear() {
+		current.clear();
+		invalidateFitness();
+	}
+	
+	@Override
+	public void addGenes(float[] genes) {
+		int index = current.add(genes);
+		alignFitnessCache();
+		evaluated[index] = false;
+	}
+	
+	@Override
+	public void setGenes(int index, float[] genes) {
+		current.set(index, genes);
+		alignFitnessCache();
+		evaluated[index] = false;
+	}
+	
+	@Override
+	public void setAllGenes(List<float[]> individuals) {
+		clear();
+		
+		for (float[] genes : individuals) {
+			current.add(genes);
+		}
+	}
+	
+	/**
+	 * @return Copies of all genes
+	 */
+	@Override
+	public List<float[]> getAllGenes() {
+		List<float[]> genes = new ArrayList<>(size());
+		
+		for (int i=0; i<size(); i++) {
+			genes.add(current.toArray(i));
+		}
+		
+		return genes;
+	}
+	
+	/**
+	 * Saves the genomes in a binary format (the genome
+	 * count and length followed by the genes).
+	 */
+	@Override
+	public void saveTo(OutputStream out) {
+		try (DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(out))) {
+			int values = size() * genomeLength;
+			float[] data = current.getData();
+			
+			dos.writeInt(size());
+			dos.writeInt(genomeLength);
+			
+			for (int i=0; i<values; i++) {
+				dos.writeFloat(data[i]);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	@Override
+	public void loadFrom(InputStream in) {
+		try (DataInputStream dis = new DataInputStream(new BufferedInputStream(in))) {
+			int count = dis.readInt();
+			int length = dis.readInt();
+			
+			if (length != genomeLength) {
+				throw new SizeMismatchException("saved genome length", length, "genome length", genomeLength);
+			}
+			
+			current.resize(count);
+			float[] data = current.getData();
+			int values = count * genomeLength;
+			
+			for (int i=0; i<values; i++) {
+				data[i] = dis.readFloat();
+			}
+			
+			invalidateFitness();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
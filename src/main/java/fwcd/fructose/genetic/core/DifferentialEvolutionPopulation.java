@@ -0,0 +1,285 @@
+package fwcd.fructose.genetic.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+
+import fwcd.fructose.exception.Rethrow;
+import fwcd.fructose.exception.SizeMismatchException;
+import fwcd.fructose.genetic.operators.FitnessFunction;
+
+/**
+ * A differential evolution population for continuous problems.
+ * Every generation creates one trial vector per individual
+ * by adding a scaled difference of other individuals to a base
+ * vector and crossing it binomially with the individual. The trial
+ * replaces the individual if it is at least as fit.
+ *
+ * <p>All trial vectors of a generation are evaluated as a batch
+ * (in parallel if an executor has been set), thus every
+ * candidate is evaluated exactly once.</p>
+ */
+public class DifferentialEvolutionPopulation implements Population<float[]>, Seedable {
+	/**
+	 * Chooses the base vector of the trials.
+	 */
+	public enum Strategy {
+		/** A random individual (DE/rand/1/bin), which explores more. */
+		RAND_1_BIN,
+		/** The fittest individual (DE/best/1/bin), which converges faster. */
+		BEST_1_BIN
+	}
+	
+	private final FitnessFunction<float[]> fitnessFunc;
+	private List<float[]> individuals = new ArrayList<>();
+	private Strategy strategy = Strategy.RAND_1_BIN;
+	private float differentialWeight = 0.5F;
+	private float crossoverRate = 0.9F;
+	private ExecutorService fitnessExecutor = null;
+	private Random random = null;
+	private int generation = 0;
+	
+	// Valid as long as no individual has been added or replaced externally
+	private float[] fitnesses = new float[0];
+	private boolean evaluated = false;
+	
+	public DifferentialEvolutionPopulation(FitnessFunction<float[]> fitnessFunc) {
+		this.fitnessFunc = fitnessFunc;
+	}
+	
+	public void setStrategy(Strategy strategy) {
+		this.strategy = strategy;
+	}
+	
+	/**
+	 * @param differentialWeight - The factor F that scales the difference vectors (usually in [0.4, 1])
+	 */
+	public void setDifferentialWeight(float differentialWeight) {
+		this.differentialWeight = differentialWeight;
+	}
+	
+	/**
+	 * @param crossoverRate - The probability CR that a gene is taken from the mutant vector
+	 */
+	public void setCrossoverRate(float crossoverRate) {
+		this.crossoverRate = crossoverRate;
+	}
+	
+	/**
+	 * Differential evolution has no separate mutation
+	 * step, thus this sets the crossover rate.
+	 */
+	@Override
+	public void setMutationChance(float chance) {
+		setCrossoverRate(chance);
+	}
+	
+	/**
+	 * Evaluates the trial vectors in parallel using the
+	 * given executor. The fitness function has to be
+	 * thread-safe in this case.
+	 *
+	 * @param fitnessExecutor - The executor or null to evaluate on the calling thread
+	 */
+	public void setFitnessExecutor(ExecutorService fitnessExecutor) {
+		this.fitnessExecutor = fitnessExecutor;
+	}
+	
+	@Override
+	public void setRandom(Random random) {
+		this.random = random;
+	}
+	
+	private Random getRandom() {
+		return (random == null) ? ThreadLocalRandom.current() : random;
+	}
+	
+	@Override
+	public int size() {
+		return individuals.size();
+	}
+	
+	@Override
+	public int getGeneration() {
+		return generation;
+	}
+	
+	private float[] evaluateFitnesses() {
+		if (!evaluated) {
+			int count = individuals.size();
+			fitnesses = new float[count];
+			FitnessBatches.evaluate(fitnessFunc, individuals.toArray(new float[count][]), 0, count, fitnesses, fitnessExecutor);
+			evaluated = true;
+		}
+		
+		return fitnesses;
+	}
+	
+	/**
+	 * @return The fitness of the given individual
+	 */
+	public float getFitness(int index) {
+		return evaluateFitnesses()[index];
+	}
+	
+	@Override
+	public void evolve() {
+		int count = individuals.size();
+		
+		if (count < 4) {
+			throw new IllegalStateException("Differential evolution requires at least four individuals");
+		}
+		
+		Random rand = getRandom();
+		float[] values = evaluateFitnesses();
+		int best = fittestIndex(values);
+		int dimensions = individuals.get(0).length;
+		float[][] trials = new float[count][];
+		
+		for (int i=0; i<count; i++) {
+			int r1 = pickOther(rand, count, i, -1, -1);
+			int r2 = pickOther(rand, count, i, r1, -1);
+			float[] base;
+			float[] plus;
+			float[] minus;
+			
+			if (strategy == Strategy.BEST_1_BIN) {
+				base = individuals.get(best);
+				plus = individuals.get(r1);
+				minus = individuals.get(r2);
+			} else {
+				int r3 = pickOther(rand, count, i, r1, r2);
+				base = individuals.get(r1);
+				plus = individuals.get(r2);
+				minus = individuals.get(r3);
+			}
+			
+			float[] target = individuals.get(i);
+			float[] trial = new float[dimensions];
+			// At least one gene is always taken from the mutant
+			int forced = rand.nextInt(dimensions);
+			
+			for (int j=0; j<dimensions; j++) {
+				if (j == forced || rand.nextFloat() < crossoverRate) {
+					trial[j] = base[j] + differentialWeight * (plus[j] - minus[j]);
+				} else {
+					trial[j] = target[j];
+				}
+			}
+			
+			trials[i] = trial;
+		}
+		
+		float[] trialValues = new float[count];
+		FitnessBatches.evaluate(fitnessFunc, trials, 0, count, trialValues, fitnessExecutor);
+		
+		for (int i=0; i<count; i++) {
+			if (trialValues[i] >= values[i]) {
+				individuals.set(i, trials[i]);
+				values[i] = trialValues[i];
+			}
+		}
+		
+		generation++;
+	}
+	
+	private static int pickOther(Random random, int count, int a, int b, int c) {
+		int index;
+		
+		do {
+			index = random.nextInt(count);
+		} while (index == a || index == b || index == c);
+		
+		return index;
+	}
+	
+	private static int fittestIndex(float[] values) {
+		int best = 0;
+		
+		for (int i=1; i<values.length; i++) {
+			if (values[i] > values[best]) {
+				best = i;
+			}
+		}
+		
+		return best;
+	}
+	
+	@Override
+	public float[] selectBestGenes() {
+		if (individuals.isEmpty()) {
+			throw new IllegalStateException("Can't fetch the best genes on an empty population");
+		}
+		
+		return individuals.get(fittestIndex(evaluateFitnesses()));
+	}
+	
+	@Override
+	public float[] getGenes(int index) {
+		return individuals.get(index);
+	}
+	
+	@Override
+	public void clear() {
+		individuals.clear();
+		evaluated = false;
+	}
+	
+	@Override
+	public void addGenes(float[] genes) {
+		if (!individuals.isEmpty() && genes.length != individuals.get(0).length) {
+			throw new SizeMismatchException("genes length", genes.length, "dimensions", individuals.get(0).length);
+		}
+		
+		individuals.add(genes);
+		evaluated = false;
+	}
+	
+	@Override
+	public void setAllGenes(List<float[]> individuals) {
+		List<float[]> genes = new ArrayList<>(individuals);
+		clear();
+		
+		for (float[] individual : genes) {
+			addGenes(individual);
+		}
+	}
+	
+	/**
+	 * @return The individuals (read-only)
+	 */
+	@Override
+	public List<float[]> getAllGenes() {
+		return Collections.unmodifiableList(individuals);
+	}
+	
+	@Override
+	public void saveTo(OutputStream out) {
+		try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+			oos.writeObject(new ArrayList<>(individuals));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Override
+	public void loadFrom(InputStream in) {
+		try (ObjectInputStream ois = new ObjectInputStream(in)) {
+			setAllGenes((List<float[]>) ois.readObject());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (ClassNotFoundException e) {
+			throw new Rethrow(e);
+		}
+	}
+}
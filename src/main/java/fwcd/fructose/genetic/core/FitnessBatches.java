@@ -0,0 +1,65 @@
+package fwcd.fructose.genetic.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import fwcd.fructose.exception.Rethrow;
+import fwcd.fructose.genetic.operators.FitnessFunction;
+
+/**
+ * Evaluates candidate solutions in contiguous batches,
+ * which keeps the scheduling overhead low when
+ * individual evaluations are cheap.
+ */
+final class FitnessBatches {
+	private static final int BATCHES_PER_THREAD = 4;
+	
+	private FitnessBatches() {}
+	
+	/**
+	 * Evaluates the candidates in the given range.
+	 * 
+	 * @param from - The index of the first candidate (inclusive)
+	 * @param to - The index of the last candidate (exclusive)
+	 * @param executor - The executor to run the batches on or null to evaluate on the calling thread
+	 */
+	static void evaluate(FitnessFunction<float[]> fitnessFunc, float[][] candidates, int from, int to, float[] dest, ExecutorService executor) {
+		int count = to - from;
+		
+		if (executor == null || count < 2) {
+			for (int i=from; i<to; i++) {
+				dest[i] = fitnessFunc.getFitness(candidates[i]);
+			}
+			return;
+		}
+		
+		int batches = Math.min(count, Runtime.getRuntime().availableProcessors() * BATCHES_PER_THREAD);
+		int batchSize = (count + batches - 1) / batches;
+		List<Future<?>> futures = new ArrayList<>();
+		
+		for (int start=from; start<to; start+=batchSize) {
+			int batchStart = start;
+			int batchEnd = Math.min(to, start + batchSize);
+			
+			futures.add(executor.submit(() -> {
+				for (int i=batchStart; i<batchEnd; i++) {
+					dest[i] = fitnessFunc.getFitness(candidates[i]);
+				}
+			}));
+		}
+		
+		try {
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while evaluating the fitness", e);
+		} catch (ExecutionException e) {
+			throw new Rethrow(e.getCause());
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package fwcd.fructose.genetic.core;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import fwcd.fructose.exception.SizeMismatchException;
+
+/**
+ * Stores equally long float genomes contiguously (row after row)
+ * in a single array, which avoids one object per individual
+ * and keeps neighbouring genomes close in memory.
+ *
+ * <p>Operators should work on the backing array directly
+ * using {@link #offsetOf(int)} and {@link #getGenomeLength()}.</p>
+ */
+public class FloatGenomeStore {
+	private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+	private final int genomeLength;
+	private float[] data;
+	private int size = 0;
+	
+	public FloatGenomeStore(int genomeLength) {
+		this(genomeLength, 16);
+	}
+	
+	public FloatGenomeStore(int genomeLength, int initialCapacity) {
+		if (genomeLength < 1) {
+			throw new IllegalArgumentException("Genome length has to be positive: " + Integer.toString(genomeLength));
+		}
+		
+		this.genomeLength = genomeLength;
+		data = new float[checkedLength(initialCapacity)];
+	}
+	
+	private int checkedLength(long genomes) {
+		long length = genomes * genomeLength;
+		
+		if (length > MAX_ARRAY_SIZE) {
+			throw new IllegalStateException("A genome store can hold at most " + Integer.toString(MAX_ARRAY_SIZE / genomeLength) + " genomes of this length");
+		}
+		
+		return (int) length;
+	}
+	
+	private void ensureCapacity(int genomes) {
+		if (genomes * (long) genomeLength > data.length) {
+			long capacity = Math.max(genomes, (data.length / genomeLength) * 2L);
+			capacity = Math.min(capacity, MAX_ARRAY_SIZE / genomeLength);
+			data = Arrays.copyOf(data, checkedLength(Math.max(capacity, genomes)));
+		}
+	}
+	
+	/**
+	 * @return The amount of genomes
+	 */
+	public int size() {
+		return size;
+	}
+	
+	public int getGenomeLength() {
+		return genomeLength;
+	}
+	
+	/**
+	 * Fetches the backing array, which is replaced
+	 * when the store has to grow.
+	 *
+	 * @return The genomes, one after another
+	 */
+	public float[] getData() {
+		return data;
+	}
+	
+	/**
+	 * @return The index of the first gene of the given genome in {@link #getData()}
+	 */
+	public int offsetOf(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + Integer.toString(index) + ", size: " + Integer.toString(size));
+		}
+		
+		return index * genomeLength;
+	}
+	
+	/**
+	 * Changes the amount of genomes. New genomes
+	 * have unspecified contents.
+	 */
+	public void resize(int size) {
+		ensureCapacity(size);
+		this.size = size;
+	}
+	
+	public void clear() {
+		size = 0;
+	}
+	
+	/**
+	 * Appends a copy of the given genes.
+	 *
+	 * @return The index of the new genome
+	 */
+	public int add(float[] genes) {
+		checkLength(genes);
+		resize(size + 1);
+		System.arraycopy(genes, 0, data, (size - 1) * genomeLength, genomeLength);
+		return size - 1;
+	}
+	
+	/**
+	 * Overwrites a genome with a copy of the given genes.
+	 */
+	public void set(int index, float[] genes) {
+		checkLength(genes);
+		System.arraycopy(genes, 0, data, offsetOf(index), genomeLength);
+	}
+	
+	/**
+	 * Copies a genome into the given array.
+	 */
+	public void get(int index, float[] dest) {
+		checkLength(dest);
+		System.arraycopy(data, offsetOf(index), dest, 0, genomeLength);
+	}
+	
+	/**
+	 * @return A copy of the given genome
+	 */
+	public float[] toArray(int index) {
+		int offset = offsetOf(index);
+		return Arrays.copyOfRange(data, offset, offset + genomeLength);
+	}
+	
+	/**
+	 * Copies a genome from another store (or this one).
+	 */
+	public void copy(FloatGenomeStore source, int sourceIndex, int index) {
+		if (source.genomeLength != genomeLength) {
+			throw new SizeMismatchException("source genome length", source.genomeLength, "genome length", genomeLength);
+		}
+		
+		System.arraycopy(source.data, source.offsetOf(sourceIndex), data, offsetOf(index), genomeLength);
+	}
+	
+	/**
+	 * Creates a view of a genome that writes through
+	 * to this store (until it grows).
+	 */
+	public FloatBuffer view(int index) {
+		return FloatBuffer.wrap(data, offsetOf(index), genomeLength).slice();
+	}
+	
+	private void checkLength(float[] genes) {
+		if (genes.length != genomeLength) {
+			throw new SizeMismatchException("genes length", genes.length, "genome length", genomeLength);
+		}
+	}
+}
@@ -0,0 +1,542 @@
+package fwcd.fructose.genetic.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntConsumer;
+import java.util.function.UnaryOperator;
+
+import fwcd.fructose.concurrent.ClosingExecutor;
+import fwcd.fructose.exception.Rethrow;
+import fwcd.fructose.exception.SizeMismatchException;
+import fwcd.fructose.genetic.operators.FitnessFunction;
+
+/**
+ * An island model that evolves several subpopulations
+ * in parallel (one task per island) and periodically
+ * sends copies of the fittest individuals of every island
+ * to its neighbours, where they replace the least fit ones.
+ *
+ * <p>Emigrants are exchanged through lock-free mailboxes that
+ * hold one slot per sending island. By default the islands
+ * run freely and pick up whatever has arrived at their
+ * migration points. After {@link #setSeed(long)} the islands
+ * run in lockstep between migrations instead and receive the
+ * emigrants in the order of the sending islands, which makes
+ * the evolution reproducible.</p>
+ *
+ * <p>The islands must not be shared with other island populations.
+ * Indices passed to {@link #getGenes(int)} refer to the
+ * concatenation of all islands.</p>
+ *
+ * @param <G> - The genotype
+ */
+public class IslandPopulation<G> implements Population<G> {
+	private final List<Population<G>> islands;
+	private final List<AtomicReferenceArray<List<G>>> mailboxes = new ArrayList<>();
+	private final FitnessFunction<G> fitnessFunc;
+	private final AtomicReference<Champion<G>> best = new AtomicReference<>();
+	
+	private MigrationTopology topology = MigrationTopology.RING;
+	private UnaryOperator<G> copier = UnaryOperator.identity();
+	private ExecutorService executor = null;
+	private int migrationInterval = 10;
+	private int migrantCount = 2;
+	private boolean lockstep = false;
+	private int generation = 0;
+	private int nextIsland = 0;
+	
+	/**
+	 * Creates a new island model.
+	 *
+	 * @param fitnessFunc - Ranks the individuals of islands without a fitness function of their own (has to be thread-safe)
+	 * @param islands - The subpopulations
+	 */
+	public IslandPopulation(FitnessFunction<G> fitnessFunc, List<? extends Population<G>> islands) {
+		if (islands.isEmpty()) {
+			throw new IllegalArgumentException("An island population requires at least one island");
+		}
+		
+		this.fitnessFunc = fitnessFunc;
+		this.islands = new ArrayList<>(islands);
+		
+		for (int i=0; i<islands.size(); i++) {
+			mailboxes.add(new AtomicReferenceArray<>(islands.size()));
+		}
+	}
+	
+	/**
+	 * Seeds the islands (if they are {@link Seedable}) and
+	 * evolves them in lockstep. The evolution is reproducible
+	 * if the genetic operators are deterministic too.
+	 */
+	public void setSeed(long seed) {
+		Random seeds = new Random(seed);
+		
+		for (Population<G> island : islands) {
+			long islandSeed = seeds.nextLong();
+			
+			if (island instanceof Seedable) {
+				((Seedable) island).setRandom(new Random(islandSeed));
+			}
+		}
+		
+		lockstep = true;
+	}
+	
+	public void setTopology(MigrationTopology topology) {
+		this.topology = topology;
+	}
+	
+	/**
+	 * @param migrationInterval - Migrate every n-th generation
+	 */
+	public void setMigrationInterval(int migrationInterval) {
+		if (migrationInterval < 1) {
+			throw new IllegalArgumentException("Migration interval has to be positive: " + Integer.toString(migrationInterval));
+		}
+		
+		this.migrationInterval = migrationInterval;
+	}
+	
+	/**
+	 * @param migrantCount - The amount of individuals each island sends to its neighbours
+	 */
+	public void setMigrantCount(int migrantCount) {
+		if (migrantCount < 0) {
+			throw new IllegalArgumentException("Migrant count can't be negative: " + Integer.toString(migrantCount));
+		}
+		
+		this.migrantCount = migrantCount;
+	}
+	
+	/**
+	 * Sets how emigrants are copied. Every receiving island
+	 * gets its own copies, which is required if the
+	 * islands modify genes in place (like {@link ManualPopulation}).
+	 *
+	 * @param copier - Copies genes (the identity by default)
+	 */
+	public void setMigrantCopier(UnaryOperator<G> copier) {
+		this.copier = copier;
+	}
+	
+	/**
+	 * @param executor - The executor to run the islands on or null to use one thread per island
+	 */
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+	
+	public int getIslandCount() {
+		return islands.size();
+	}
+	
+	public Population<G> getIsland(int index) {
+		return islands.get(index);
+	}
+	
+	@Override
+	public void evolve() {
+		evolve(1);
+	}
+	
+	@Override
+	public void evolve(int generations) {
+		if (generations < 1) {
+			return;
+		}
+		
+		ExecutorService islandExecutor = (executor == null) ? new ClosingExecutor(islands.size()) : executor;
+		
+		try {
+			if (lockstep) {
+				evolveInLockstep(islandExecutor, generations);
+			} else {
+				evolveFreely(islandExecutor, generations);
+			}
+		} finally {
+			if (executor == null) {
+				islandExecutor.shutdown();
+			}
+		}
+		
+		generation += generations;
+	}
+	
+	private void evolveFreely(ExecutorService islandExecutor, int generations) {
+		forEachIsland(islandExecutor, i -> {
+			Population<G> island = islands.get(i);
+			int done = 0;
+			
+			while (done < generations) {
+				int chunk = chunkLength(generation + done, generations - done);
+				island.evolve(chunk);
+				done += chunk;
+				
+				float[] scores = score(i, generation + done);
+				
+				if (isMigrationPoint(generation + done)) {
+					emigrate(i, scores);
+					immigrate(i, scores);
+				}
+			}
+		});
+	}
+	
+	private void evolveInLockstep(ExecutorService islandExecutor, int generations) {
+		float[][] scores = new float[islands.size()][];
+		int done = 0;
+		
+		while (done < generations) {
+			int chunk = chunkLength(generation + done, generations - done);
+			int reached = generation + done + chunk;
+			boolean migrating = isMigrationPoint(reached);
+			
+			forEachIsland(islandExecutor, i -> {
+				islands.get(i).evolve(chunk);
+				scores[i] = score(i, reached);
+				
+				if (migrating) {
+					emigrate(i, scores[i]);
+				}
+			});
+			
+			if (migrating) {
+				// Every island has posted its emigrants at this point
+				forEachIsland(islandExecutor, i -> immigrate(i, scores[i]));
+			}
+			
+			done += chunk;
+		}
+	}
+	
+	private int chunkLength(int startGeneration, int remaining) {
+		return Math.min(remaining, migrationInterval - (startGeneration % migrationInterval));
+	}
+	
+	private boolean isMigrationPoint(int generation) {
+		return (generation % migrationInterval) == 0;
+	}
+	
+	private void forEachIsland(ExecutorService islandExecutor, IntConsumer task) {
+		List<Future<?>> futures = new ArrayList<>();
+		
+		for (int i=0; i<islands.size(); i++) {
+			int index = i;
+			futures.add(islandExecutor.submit(() -> task.accept(index)));
+		}
+		
+		try {
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while evolving the islands", e);
+		} catch (ExecutionException e) {
+			throw new Rethrow(e.getCause());
+		}
+	}
+	
+	/**
+	 * Fetches the fitness of the individuals of an island (which
+	 * islands that cache their fitness do not evaluate again)
+	 * and offers its fittest one as the global best.
+	 */
+	private float[] score(int island, int atGeneration) {
+		Population<G> population = islands.get(island);
+		float[] scores = population.getFitnesses(fitnessFunc);
+		int fittest = -1;
+		
+		for (int i=0; i<scores.length; i++) {
+			if (fittest < 0 || scores[i] > scores[fittest]) {
+				fittest = i;
+			}
+		}
+		
+		if (fittest >= 0) {
+			Champion<G> candidate = new Champion<>(copier.apply(population.getGenes(fittest)), scores[fittest], atGeneration, island);
+			best.accumulateAndGet(candidate, Champion::fitter);
+		}
+		
+		return scores;
+	}
+	
+	private void emigrate(int island, float[] scores) {
+		Population<G> population = islands.get(island);
+		Integer[] order = rank(scores);
+		int count = Math.min(migrantCount, order.length);
+		
+		if (count == 0) {
+			return;
+		}
+		
+		for (int target : topology.getTargets(island, islands.size())) {
+			List<G> migrants = new ArrayList<>(count);
+			
+			for (int i=0; i<count; i++) {
+				migrants.add(copier.apply(population.getGenes(order[order.length - 1 - i])));
+			}
+			
+			// Replaces emigrants that have not been picked up yet
+			mailboxes.get(target).set(island, migrants);
+		}
+	}
+	
+	private void immigrate(int island, float[] scores) {
+		AtomicReferenceArray<List<G>> mailbox = mailboxes.get(island);
+		List<G> immigrants = new ArrayList<>();
+		
+		for (int source=0; source<mailbox.length(); source++) {
+			List<G> migrants = mailbox.getAndSet(source, null);
+			
+			if (migrants != null) {
+				immigrants.addAll(migrants);
+			}
+		}
+		
+		Population<G> target = islands.get(island);
+		// The fittest individual of the island always survives
+		int count = Math.min(immigrants.size(), target.size() - 1);
+		
+		if (count <= 0) {
+			return;
+		}
+		
+		Integer[] order = rank(scores);
+		
+		// Only the fitness of the replaced individuals is invalidated
+		for (int i=0; i<count; i++) {
+			target.setGenes(order[i], immigrants.get(i));
+		}
+	}
+	
+	/**
+	 * @return The indices sorted by ascending score (stable)
+	 */
+	private static Integer[] rank(float[] scores) {
+		Integer[] order = new Integer[scores.length];
+		
+		for (int i=0; i<scores.length; i++) {
+			order[i] = i;
+		}
+		
+		Arrays.sort(order, (a, b) -> Float.compare(scores[a], scores[b]));
+		return order;
+	}
+	
+	/**
+	 * Returns the fittest individual found on any island since
+	 * the individuals have last been replaced (which is not
+	 * necessarily still alive).
+	 */
+	@Override
+	public G selectBestGenes() {
+		return getChampion().genes;
+	}
+	
+	/**
+	 * @return The fitness of {@link #selectBestGenes()}
+	 */
+	public float getBestFitness() {
+		return getChampion().fitness;
+	}
+	
+	private Champion<G> getChampion() {
+		if (best.get() == null) {
+			if (size() == 0) {
+				throw new IllegalStateException("Can't fetch the best genes on an empty population");
+			}
+			
+			for (int i=0; i<islands.size(); i++) {
+				score(i, generation);
+			}
+		}
+		
+		return best.get();
+	}
+	
+	@Override
+	public void setMutationChance(float chance) {
+		for (Population<G> island : islands) {
+			island.setMutationChance(chance);
+		}
+	}
+	
+	@Override
+	public int size() {
+		int size = 0;
+		
+		for (Population<G> island : islands) {
+			size += island.size();
+		}
+		
+		return size;
+	}
+	
+	@Override
+	public int getGeneration() {
+		return generation;
+	}
+	
+	@Override
+	public G getGenes(int index) {
+		int offset = index;
+		
+		for (Population<G> island : islands) {
+			if (offset < island.size()) {
+				return island.getGenes(offset);
+			}
+			
+			offset -= island.size();
+		}
+		
+		throw new IndexOutOfBoundsException("Index: " + Integer.toString(index) + ", size: " + Integer.toString(size()));
+	}
+	
+	/**
+	 * Replaces an individual on the island it lives on.
+	 */
+	@Override
+	public void setGenes(int index, G genes) {
+		int offset = index;
+		
+		for (Population<G> island : islands) {
+			if (offset < island.size()) {
+				island.setGenes(offset, genes);
+				return;
+			}
+			
+			offset -= island.size();
+		}
+		
+		throw new IndexOutOfBoundsException("Index: " + Integer.toString(index) + ", size: " + Integer.toString(size()));
+	}
+	
+	@Override
+	public void clear() {
+		for (Population<G> island : islands) {
+			island.clear();
+		}
+		
+		best.set(null);
+		nextIsland = 0;
+	}
+	
+	/**
+	 * Adds the genes to the islands in a round-robin fashion.
+	 */
+	@Override
+	public void addGenes(G genes) {
+		islands.get(nextIsland).addGenes(genes);
+		nextIsland = (nextIsland + 1) % islands.size();
+	}
+	
+	/**
+	 * Distributes the given individuals evenly across the islands.
+	 */
+	@Override
+	public void setAllGenes(List<G> individuals) {
+		clear();
+		
+		for (G genes : individuals) {
+			addGenes(genes);
+		}
+	}
+	
+	/**
+	 * @return A snapshot of the individuals of all islands
+	 */
+	@Override
+	public List<G> getAllGenes() {
+		List<G> genes = new ArrayList<>(size());
+		
+		for (Population<G> island : islands) {
+			genes.addAll(island.getAllGenes());
+		}
+		
+		return Collections.unmodifiableList(genes);
+	}
+	
+	@Override
+	public void saveTo(OutputStream out) {
+		List<List<G>> individuals = new ArrayList<>();
+		
+		for (Population<G> island : islands) {
+			individuals.add(new ArrayList<>(island.getAllGenes()));
+		}
+		
+		try (ObjectOutputStream oos = new ObjectOutputStream(out)) {
+			oos.writeObject(individuals);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	@Override
+	public void loadFrom(InputStream in) {
+		try (ObjectInputStream ois = new ObjectInputStream(in)) {
+			List<List<G>> individuals = (List<List<G>>) ois.readObject();
+			
+			if (individuals.size() != islands.size()) {
+				throw new SizeMismatchException("saved island count", individuals.size(), "island count", islands.size());
+			}
+			
+			for (int i=0; i<islands.size(); i++) {
+				islands.get(i).setAllGenes(individuals.get(i));
+			}
+			
+			best.set(null);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (ClassNotFoundException e) {
+			throw new Rethrow(e);
+		}
+	}
+	
+	/**
+	 * The fittest individual found so far. Ties are broken by
+	 * generation and island index, thus the result does not
+	 * depend on the order in which the islands report.
+	 */
+	private static class Champion<G> {
+		private final G genes;
+		private final float fitness;
+		private final int generation;
+		private final int island;
+		
+		public Champion(G genes, float fitness, int generation, int island) {
+			this.genes = genes;
+			this.fitness = fitness;
+			this.generation = generation;
+			this.island = island;
+		}
+		
+		public static <G> Champion<G> fitter(Champion<G> a, Champion<G> b) {
+			if (a == null) {
+				return b;
+			} else if (a.fitness != b.fitness) {
+				return (a.fitness > b.fitness) ? a : b;
+			} else if (a.generation != b.generation) {
+				return (a.generation < b.generation) ? a : b;
+			} else {
+				return (a.island <= b.island) ? a : b;
+			}
+		}
+	}
+}
@@ -9,12 +9,10 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
-import java.util.concurrent.ThreadLocalRandom;
 
 import fwcd.fructose.genetic.operators.Encoder;
 import fwcd.fructose.genetic.operators.GaussianFloatMutator;
@@ -55,16 +53,18 @@ public class ManualPopulation extends TemplatePopulation<float[]> {
 	
 	public void setFitness(float[] genes, float value) {
 		fitnesses.put(genes, value);
+		invalidateFitness();
 	}
 	
 	public <P> void setFitness(P phenes, float value, Encoder<float[], P> encoder) {
 		fitnesses.put(encoder.encode(phenes), value);
+		invalidateFitness();
 	}
 
 	@Override
 	public void evolve() {
 		List<float[]> genes = getAllGenes();
-		sortByFitnessDescending(genes);
+		sortByFitnessDescending();
 		
 		int geneCount = genes.size();
 		mutate(genes, survivorsPerGeneration, geneCount);
@@ -78,20 +78,17 @@ public class ManualPopulation extends TemplatePopulation<float[]> {
 	 * @param endIndex - The end index (exclusive)
 	 */
 	private void mutate(List<float[]> genes, int startIndex, int endIndex) {
-		Random r = ThreadLocalRandom.current();
+		Random r = getRandom();
 		float mutationChance = getMutationChance();
 		
 		for (int i=startIndex; i<endIndex; i++) {
 			if (r.nextFloat() < mutationChance) {
 				mutator.mutateInPlace(genes.get(i));
+				invalidateFitness(i);
 			}
 		}
 	}
 
-	private void sortByFitnessDescending(List<float[]> genes) {
-		genes.sort((a, b) -> Float.compare(getFitness(b), getFitness(a)));
-	}
-
 	public void saveIndividualsTo(File folder, String namePrefix) {
 		if (!folder.exists() || !folder.isDirectory()) {
 			throw new IllegalArgumentException(folder.toString() + " is not a directory.");
@@ -153,14 +150,23 @@ public class ManualPopulation extends TemplatePopulation<float[]> {
 
 	@Override
 	public float[] selectBestGenes() {
-		Random random = ThreadLocalRandom.current();
+		Random random = getRandom();
 		List<float[]> allGenes = getAllGenes();
 		
 		// Use epsilon-greedy strategy to select genes
 		if (random.nextFloat() < selectorEpsilon) {
 			return allGenes.get(random.nextInt(allGenes.size()));
 		} else {
-			return Collections.max(allGenes, (a, b) -> Float.compare(getFitness(a), getFitness(b)));
+			float[] values = evaluateFitnesses();
+			int best = 0;
+			
+			for (int i=1; i<allGenes.size(); i++) {
+				if (values[i] > values[best]) {
+					best = i;
+				}
+			}
+			
+			return allGenes.get(best);
 		}
 	}
 }
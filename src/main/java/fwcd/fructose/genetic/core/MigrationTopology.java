@@ -0,0 +1,42 @@
+package fwcd.fructose.genetic.core;
+
+/**
+ * Describes which islands of an {@link IslandPopulation}
+ * receive the emigrants of an island.
+ */
+public enum MigrationTopology {
+	/**
+	 * Every island sends its emigrants to its successor.
+	 */
+	RING {
+		@Override
+		public int[] getTargets(int island, int islandCount) {
+			return (islandCount < 2) ? new int[0] : new int[] {(island + 1) % islandCount};
+		}
+	},
+	/**
+	 * Every island sends its emigrants to all other islands.
+	 */
+	FULLY_CONNECTED {
+		@Override
+		public int[] getTargets(int island, int islandCount) {
+			int[] targets = new int[Math.max(islandCount - 1, 0)];
+			int j = 0;
+			
+			for (int i=0; i<islandCount; i++) {
+				if (i != island) {
+					targets[j++] = i;
+				}
+			}
+			
+			return targets;
+		}
+	};
+	
+	/**
+	 * @param island - The index of the sending island
+	 * @param islandCount - The total amount of islands
+	 * @return The indices of the receiving islands
+	 */
+	public abstract int[] getTargets(int island, int islandCount);
+}
@@ -2,11 +2,13 @@ package fwcd.fructose.genetic.core;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 import fwcd.fructose.genetic.operators.Decoder;
+import fwcd.fructose.genetic.operators.FitnessFunction;
 
 /**
  * A mutable collection of individuals.
@@ -53,6 +55,34 @@ public interface Population<G> {
 	
 	void loadFrom(InputStream in);
 	
+	/**
+	 * Replaces a single individual. Populations that cache
+	 * their fitness only invalidate the fitness of this individual.
+	 */
+	default void setGenes(int index, G genes) {
+		List<G> individuals = new ArrayList<>(getAllGenes());
+		individuals.set(index, genes);
+		setAllGenes(individuals);
+	}
+	
+	/**
+	 * Fetches the fitness of every individual. Populations that
+	 * cache their fitness use their own fitness function and
+	 * only evaluate the individuals that have changed.
+	 * 
+	 * @param fitnessFunc - Evaluates the individuals if this population has no fitness function of its own
+	 * @return The fitness values, aligned with the individuals
+	 */
+	default float[] getFitnesses(FitnessFunction<? super G> fitnessFunc) {
+		float[] fitnesses = new float[size()];
+		
+		for (int i=0; i<fitnesses.length; i++) {
+			fitnesses[i] = fitnessFunc.getFitness(getGenes(i));
+		}
+		
+		return fitnesses;
+	}
+	
 	default void spawn(int individuals, Supplier<G> spawner) {
 		for (int i=0; i<individuals; i++) {
 			addGenes(spawner.get());
@@ -0,0 +1,14 @@
+package fwcd.fructose.genetic.core;
+
+import java.util.Random;
+
+/**
+ * A population whose stochastic decisions can be
+ * made reproducible by supplying a seeded generator.
+ */
+public interface Seedable {
+	/**
+	 * @param random - The generator to use or null to use {@link java.util.concurrent.ThreadLocalRandom}
+	 */
+	void setRandom(Random random);
+}
@@ -7,30 +7,61 @@ import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
 
+import fwcd.fructose.Copyable;
+import fwcd.fructose.Option;
 import fwcd.fructose.exception.Rethrow;
 import fwcd.fructose.genetic.operators.FitnessFunction;
+import fwcd.fructose.io.CheckpointService;
 import fwcd.fructose.text.StringUtils;
 
-public abstract class TemplatePopulation<G> implements Population<G> {
+public abstract class TemplatePopulation<G> implements Population<G>, Seedable {
 	private FitnessFunction<G> fitnessFunc;
 	private List<G> individuals = new ArrayList<>();
 	private float mutationChance = 0.1F;
 	private int generation = 0;
+	private CheckpointService checkpoints = null;
+	private int checkpointInterval = 0;
+	private Random random = null;
+	
+	// The fitness cache is aligned with the individuals
+	private ExecutorService fitnessExecutor = null;
+	private float[] fitnesses = new float[0];
+	private boolean[] evaluated = new boolean[0];
 	
 	public void setFitnessFunction(FitnessFunction<G> fitnessFunc) {
 		this.fitnessFunc = fitnessFunc;
+		invalidateFitness();
+	}
+	
+	/**
+	 * Evaluates the fitness of the individuals in parallel
+	 * using the given executor. The fitness function has
+	 * to be thread-safe in this case.
+	 * 
+	 * @param fitnessExecutor - The executor or null to evaluate on the calling thread
+	 */
+	public void setFitnessExecutor(ExecutorService fitnessExecutor) {
+		this.fitnessExecutor = fitnessExecutor;
 	}
 	
 	@Override
 	public void addGenes(G genes) {
 		individuals.add(genes);
+		invalidateFitness(individuals.size() - 1);
 	}
 	
 	@Override
 	public void clear() {
 		individuals.clear();
+		invalidateFitness();
 	}
 	
 	@Override
@@ -41,6 +72,23 @@ public abstract class TemplatePopulation<G> implements Population<G> {
 	protected float getMutationChance() {
 		return mutationChance;
 	}
+	
+	/**
+	 * Uses the given generator for the stochastic decisions of this
+	 * population (selection and mutation chances), which makes
+	 * the evolution reproducible as long as the genetic operators
+	 * are deterministic too.
+	 * 
+	 * @param random - The generator or null to use {@link ThreadLocalRandom}
+	 */
+	@Override
+	public void setRandom(Random random) {
+		this.random = random;
+	}
+	
+	protected Random getRandom() {
+		return (random == null) ? ThreadLocalRandom.current() : random;
+	}
 
 	@Override
 	public int size() {
@@ -51,6 +99,10 @@ public abstract class TemplatePopulation<G> implements Population<G> {
 		this.generation = generation;
 	}
 	
+	/**
+	 * Evaluates an individual using the fitness function. Prefer
+	 * {@link #getFitness(int)}, which caches the result.
+	 */
 	protected float getFitness(G genes) {
 		if (fitnessFunc == null) {
 			throw new IllegalStateException("No fitness function provided.");
@@ -59,8 +111,233 @@ public abstract class TemplatePopulation<G> implements Population<G> {
 		}
 	}
 	
+	/**
+	 * Fetches the fitness of an individual, which is only
+	 * evaluated once unless its genes change. Individuals that
+	 * survive a generation unchanged keep their cached fitness.
+	 * 
+	 * @param index - The index of the individual
+	 * @return The fitness
+	 */
+	protected float getFitness(int index) {
+		alignFitnessCache();
+		
+		if (!evaluated[index]) {
+			fitnesses[index] = getFitness(individuals.get(index));
+			evaluated[index] = true;
+		}
+		
+		return fitnesses[index];
+	}
+	
+	/**
+	 * Evaluates all individuals whose fitness is not cached yet
+	 * (in parallel if an executor has been set).
+	 * 
+	 * @return The fitness values, aligned with the individuals (must not be modified)
+	 */
+	protected float[] evaluateFitnesses() {
+		alignFitnessCache();
+		int count = individuals.size();
+		
+		if (fitnessExecutor == null) {
+			for (int i=0; i<count; i++) {
+				getFitness(i);
+			}
+		} else {
+			List<Future<?>> futures = new ArrayList<>();
+			
+			for (int i=0; i<count; i++) {
+				if (!evaluated[i]) {
+					int index = i;
+					G genes = individuals.get(i);
+					futures.add(fitnessExecutor.submit(() -> {
+						fitnesses[index] = getFitness(genes);
+					}));
+				}
+			}
+			
+			try {
+				for (Future<?> future : futures) {
+					future.get();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while evaluating the fitness", e);
+			} catch (ExecutionException e) {
+				throw new Rethrow(e.getCause());
+			}
+			
+			// Future.get() guarantees the visibility of the written fitness values
+			Arrays.fill(evaluated, 0, count, true);
+		}
+		
+		return fitnesses;
+	}
+	
+	/**
+	 * Returns the cached fitness values, only the changed
+	 * individuals are evaluated. The given function is only
+	 * used if no fitness function has been set.
+	 */
+	@Override
+	public float[] getFitnesses(FitnessFunction<? super G> fallback) {
+		if (fitnessFunc == null) {
+			return Population.super.getFitnesses(fallback);
+		} else {
+			return Arrays.copyOf(evaluateFitnesses(), individuals.size());
+		}
+	}
+	
+	private void alignFitnessCache() {
+		int count = individuals.size();
+		
+		if (fitnesses.length < count) {
+			int capacity = Math.max(count, fitnesses.length * 2);
+			fitnesses = Arrays.copyOf(fitnesses, capacity);
+			evaluated = Arrays.copyOf(evaluated, capacity);
+		}
+	}
+	
+	/**
+	 * Marks the cached fitness of an individual as outdated,
+	 * which has to be called when its genes are modified in place.
+	 */
+	protected void invalidateFitness(int index) {
+		if (index < evaluated.length) {
+			evaluated[index] = false;
+		}
+	}
+	
+	/**
+	 * Marks all cached fitness values as outdated, which has
+	 * to be called after modifying the list returned by
+	 * {@link #getAllGenes()} directly.
+	 */
+	public void invalidateFitness() {
+		Arrays.fill(evaluated, false);
+	}
+	
+	/**
+	 * Sorts the individuals by their fitness (highest first),
+	 * evaluating every individual at most once.
+	 */
+	protected void sortByFitnessDescending() {
+		float[] values = evaluateFitnesses();
+		int count = individuals.size();
+		Integer[] order = new Integer[count];
+		
+		for (int i=0; i<count; i++) {
+			order[i] = i;
+		}
+		
+		Arrays.sort(order, (a, b) -> Float.compare(values[b], values[a]));
+		
+		List<G> sorted = new ArrayList<>(count);
+		float[] sortedFitnesses = new float[fitnesses.length];
+		
+		for (int i=0; i<count; i++) {
+			sorted.add(individuals.get(order[i]));
+			sortedFitnesses[i] = values[order[i]];
+		}
+		
+		for (int i=0; i<count; i++) {
+			individuals.set(i, sorted.get(i));
+		}
+		
+		fitnesses = sortedFitnesses;
+		Arrays.fill(evaluated, 0, count, true);
+	}
+	
 	protected void incrementGeneration() {
 		generation++;
+		
+		if (checkpoints != null && (generation % checkpointInterval) == 0) {
+			checkpoints.save(generation, captureIndividuals());
+		}
+	}
+	
+	/**
+	 * Captures the individuals for a checkpoint. Primitive arrays
+	 * and {@link Copyable} genes are copied and serialized on the
+	 * writer thread. Other genes are serialized on the evolving
+	 * thread, since they may be modified in place.
+	 */
+	private CheckpointService.Snapshot captureIndividuals() {
+		List<Object> copies = new ArrayList<>(individuals.size());
+		
+		for (G genes : individuals) {
+			Object copy = copyOf(genes);
+			
+			if (copy == null) {
+				return CheckpointService.serialized(new ArrayList<>(individuals));
+			}
+			
+			copies.add(copy);
+		}
+		
+		return CheckpointService.serializedLater(copies);
+	}
+	
+	/**
+	 * @return A copy of the genes or null if they are not copyable
+	 */
+	private static Object copyOf(Object genes) {
+		if (genes instanceof float[]) {
+			float[] array = (float[]) genes;
+			return Arrays.copyOf(array, array.length);
+		} else if (genes instanceof double[]) {
+			double[] array = (double[]) genes;
+			return Arrays.copyOf(array, array.length);
+		} else if (genes instanceof int[]) {
+			int[] array = (int[]) genes;
+			return Arrays.copyOf(array, array.length);
+		} else if (genes instanceof boolean[]) {
+			boolean[] array = (boolean[]) genes;
+			return Arrays.copyOf(array, array.length);
+		} else if (genes instanceof Copyable) {
+			return ((Copyable<?>) genes).copy();
+		} else {
+			return null;
+		}
+	}
+	
+	/**
+	 * Periodically saves the individuals while evolving. Genes that
+	 * are primitive arrays or {@link Copyable} are copied on the evolving
+	 * thread and serialized in the background, other genes are
+	 * serialized on the evolving thread (since genes may be modified
+	 * in place). The checkpoints use the format of {@link #saveTo}.
+	 * 
+	 * @param checkpoints - The checkpoint service or null to disable checkpoints
+	 * @param interval - Save the individuals every n-th generation
+	 */
+	public void setCheckpoints(CheckpointService checkpoints, int interval) {
+		if (checkpoints != null && interval < 1) {
+			throw new IllegalArgumentException("Checkpoint interval has to be positive: " + Integer.toString(interval));
+		}
+		
+		this.checkpoints = checkpoints;
+		checkpointInterval = interval;
+	}
+	
+	/**
+	 * Loads the individuals and the generation from the newest checkpoint.
+	 * 
+	 * @return Whether a checkpoint has been found
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean resumeFromLatest(CheckpointService checkpoints) {
+		Option<Long> index = checkpoints.getLatestIndex();
+		
+		if (index.isPresent()) {
+			individuals = checkpoints.read(index.unwrap(), in -> (List<G>) new ObjectInputStream(in).readObject());
+			invalidateFitness();
+			generation = index.unwrap().intValue();
+			return true;
+		} else {
+			return false;
+		}
 	}
 	
 	@Override
@@ -68,8 +345,10 @@ public abstract class TemplatePopulation<G> implements Population<G> {
 		return generation;
 	}
 
-	protected void setGenes(int index, G genes) {
+	@Override
+	public void setGenes(int index, G genes) {
 		individuals.set(index, genes);
+		invalidateFitness(index);
 	}
 	
 	@Override
@@ -80,6 +359,7 @@ public abstract class TemplatePopulation<G> implements Population<G> {
 	@Override
 	public void setAllGenes(List<G> individuals) {
 		this.individuals = individuals;
+		invalidateFitness();
 	}
 
 	@Override
@@ -93,14 +373,14 @@ public abstract class TemplatePopulation<G> implements Population<G> {
 			throw new IllegalStateException("Can't fetch the best genes on an empty population");
 		}
 		
+		float[] values = evaluateFitnesses();
 		float maxFitness = Float.NEGATIVE_INFINITY;
 		G fittestGenes = null;
 		
-		for (G individual : individuals) {
-			float fitness = getFitness(individual);
-			if (fitness > maxFitness) {
-				maxFitness = fitness;
-				fittestGenes = individual;
+		for (int i=0; i<individuals.size(); i++) {
+			if (values[i] > maxFitness) {
+				maxFitness = values[i];
+				fittestGenes = individuals.get(i);
 			}
 		}
 		
@@ -125,6 +405,7 @@ public abstract class TemplatePopulation<G> implements Population<G> {
 	public void loadFrom(InputStream in) {
 		try (ObjectInputStream ois = new ObjectInputStream(in)) {
 			individuals = (List<G>) ois.readObject();
+			invalidateFitness();
 		} catch (IOException e) {
 			throw new UncheckedIOException(e);
 		} catch (ClassNotFoundException e) {
@@ -0,0 +1,31 @@
+package fwcd.fructose.genetic.operators;
+
+import java.util.Arrays;
+
+final class FitnessRanking {
+	private FitnessRanking() {}
+	
+	/**
+	 * @return The indices of the individuals, ordered from the lowest to the highest fitness
+	 */
+	static int[] ascending(float[] fitnesses, int count) {
+		Integer[] order = new Integer[count];
+		for (int i=0; i<count; i++) {
+			order[i] = i;
+		}
+		
+		Arrays.sort(order, (a, b) -> Float.compare(fitnesses[a], fitnesses[b]));
+		
+		int[] result = new int[count];
+		for (int i=0; i<count; i++) {
+			result[i] = order[i];
+		}
+		return result;
+	}
+	
+	static void checkNotEmpty(int count) {
+		if (count < 1) {
+			throw new IllegalStateException("Can not select from an empty population");
+		}
+	}
+}
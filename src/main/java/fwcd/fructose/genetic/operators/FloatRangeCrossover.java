@@ -0,0 +1,28 @@
+package fwcd.fructose.genetic.operators;
+
+import java.io.Serializable;
+import java.util.Random;
+
+/**
+ * A genetic operator that combines two float genomes
+ * into a preallocated destination without creating
+ * any intermediate arrays. The genomes may be stored
+ * as ranges inside larger arrays.
+ */
+@FunctionalInterface
+public interface FloatRangeCrossover extends Serializable {
+	/**
+	 * Writes the offspring of two genomes into the destination
+	 * range, which must not overlap the parents.
+	 * 
+	 * @param genesA - The array containing the first parent
+	 * @param offsetA - The index of the first parent's first gene
+	 * @param genesB - The array containing the second parent
+	 * @param offsetB - The index of the second parent's first gene
+	 * @param dest - The array to write the offspring to
+	 * @param destOffset - The index of the offspring's first gene
+	 * @param length - The amount of genes
+	 * @param random - The random number generator to use
+	 */
+	void crossover(float[] genesA, int offsetA, float[] genesB, int offsetB, float[] dest, int destOffset, int length, Random random);
+}
@@ -0,0 +1,22 @@
+package fwcd.fructose.genetic.operators;
+
+import java.io.Serializable;
+import java.util.Random;
+
+/**
+ * A genetic operator that mutates a float genome
+ * in place, which may be stored as a range
+ * inside a larger array.
+ */
+@FunctionalInterface
+public interface FloatRangeMutator extends Serializable {
+	/**
+	 * Mutates the genes in the given range.
+	 * 
+	 * @param data - The array containing the genome
+	 * @param offset - The index of the first gene
+	 * @param length - The amount of genes
+	 * @param random - The random number generator to use
+	 */
+	void mutate(float[] data, int offset, int length, Random random);
+}
@@ -4,7 +4,13 @@ import java.util.Arrays;
 import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 
-public class GaussianFloatMutator implements Mutator<float[]> {
+/**
+ * Mutates every gene with a probability of 1 / genome length
+ * by scaling it with a gaussian. The mutated positions are found
+ * using geometric skip sampling, thus the random number generator
+ * is only invoked for genes that are actually mutated.
+ */
+public class GaussianFloatMutator implements Mutator<float[]>, FloatRangeMutator {
 	private static final long serialVersionUID = 23465873645873645L;
 	
 	private final float upperBound;
@@ -26,8 +32,8 @@ public class GaussianFloatMutator implements Mutator<float[]> {
 		this.bias = bias;
 	}
 	
-	private float probability(float[] genes) {
-		return 1F / genes.length;
+	private double probability(int length) {
+		return 1D / length;
 	}
 	
 	@Override
@@ -39,19 +45,51 @@ public class GaussianFloatMutator implements Mutator<float[]> {
 
 	@Override
 	public void mutateInPlace(float[] genes) {
-		Random random = ThreadLocalRandom.current();
-		float probability = probability(genes);
-
-		for (int i=0; i<genes.length; i++) {
-			if (random.nextFloat() < probability) {
-				genes[i] = (genes[i] * (float) random.nextGaussian() * multiplier) + bias;
-				
-				if (genes[i] < lowerBound) {
-					genes[i] = lowerBound;
-				} else if (genes[i] > upperBound) {
-					genes[i] = upperBound;
-				}
+		mutate(genes, 0, genes.length, ThreadLocalRandom.current());
+	}
+	
+	@Override
+	public void mutate(float[] data, int offset, int length, Random random) {
+		if (length == 0) {
+			return;
+		}
+		
+		double probability = probability(length);
+		long end = (long) offset + length;
+		
+		if (probability >= 1) {
+			for (int i=offset; i<end; i++) {
+				mutateGene(data, i, random);
+			}
+		} else {
+			double logComplement = Math.log1p(-probability);
+			long i = offset + skip(random, logComplement);
+			
+			while (i < end) {
+				mutateGene(data, (int) i, random);
+				i += 1 + skip(random, logComplement);
 			}
 		}
 	}
+	
+	/**
+	 * Samples the amount of genes that are not mutated
+	 * before the next mutated one (geometrically distributed).
+	 */
+	private static long skip(Random random, double logComplement) {
+		// 1 - nextDouble() lies in (0, 1], thus the logarithm is finite
+		return (long) (Math.log(1 - random.nextDouble()) / logComplement);
+	}
+	
+	private void mutateGene(float[] data, int i, Random random) {
+		float value = (data[i] * (float) random.nextGaussian() * multiplier) + bias;
+		
+		if (value < lowerBound) {
+			value = lowerBound;
+		} else if (value > upperBound) {
+			value = upperBound;
+		}
+		
+		data[i] = value;
+	}
 }
@@ -0,0 +1,42 @@
+package fwcd.fructose.genetic.operators;
+
+import fwcd.fructose.AliasDistribution;
+
+/**
+ * Selects individuals with a probability that depends
+ * linearly on their rank instead of their fitness, which
+ * is robust against outliers and negative fitness values.
+ */
+public class LinearRankSelection implements SelectionStrategy {
+	private static final long serialVersionUID = -5981233725476232787L;
+	private final double pressure;
+	
+	public LinearRankSelection() {
+		this(1.5);
+	}
+	
+	/**
+	 * @param pressure - The expected amount of selections of the fittest individual per generation, in [1, 2]
+	 */
+	public LinearRankSelection(double pressure) {
+		if (pressure < 1 || pressure > 2) {
+			throw new IllegalArgumentException("Selection pressure has to be in [1, 2]: " + Double.toString(pressure));
+		}
+		this.pressure = pressure;
+	}
+	
+	@Override
+	public Selection prepare(float[] fitnesses, int count) {
+		FitnessRanking.checkNotEmpty(count);
+		int[] order = FitnessRanking.ascending(fitnesses, count);
+		double[] weights = new double[count];
+		
+		for (int rank=0; rank<count; rank++) {
+			double relativeRank = (count == 1) ? 1 : rank / (double) (count - 1);
+			weights[rank] = (2 - pressure) + (2 * (pressure - 1) * relativeRank);
+		}
+		
+		AliasDistribution ranks = new AliasDistribution(weights);
+		return random -> order[ranks.sample(random)];
+	}
+}
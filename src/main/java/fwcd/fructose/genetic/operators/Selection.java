@@ -0,0 +1,21 @@
+package fwcd.fructose.genetic.operators;
+
+import java.util.Random;
+
+/**
+ * Picks individuals by their index, as prepared
+ * by a {@link SelectionStrategy}.
+ */
+@FunctionalInterface
+public interface Selection {
+	int select(Random random);
+	
+	/**
+	 * Fills the given array with selected indices.
+	 */
+	default void select(int[] dest, Random random) {
+		for (int i=0; i<dest.length; i++) {
+			dest[i] = select(random);
+		}
+	}
+}
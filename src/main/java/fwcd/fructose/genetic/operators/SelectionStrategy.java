@@ -0,0 +1,23 @@
+package fwcd.fructose.genetic.operators;
+
+import java.io.Serializable;
+
+/**
+ * A genetic operator that decides which individuals
+ * are selected for reproduction based on their fitness.
+ * 
+ * <p>The (comparatively expensive) preparation runs once per
+ * generation, after which every pick costs constant or
+ * logarithmic time.</p>
+ */
+@FunctionalInterface
+public interface SelectionStrategy extends Serializable {
+	/**
+	 * Prepares the selection for a generation.
+	 * 
+	 * @param fitnesses - The fitness values of the individuals (not modified)
+	 * @param count - The amount of individuals, i.e. the used length of fitnesses
+	 * @return A selection over the indices of the individuals
+	 */
+	Selection prepare(float[] fitnesses, int count);
+}
@@ -1,8 +1,9 @@
 package fwcd.fructose.genetic.operators;
 
+import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 
-public class SinglePointFloatCrossover implements Crossover<float[]> {
+public class SinglePointFloatCrossover implements Crossover<float[]>, FloatRangeCrossover {
 	private static final long serialVersionUID = 5698219405477450864L;
 	
 	private float fixedOffsetPercent = 0.5F;
@@ -15,24 +16,24 @@ public class SinglePointFloatCrossover implements Crossover<float[]> {
 			throw new IllegalArgumentException("Both gene sequences should be of the same length!");
 		}
 		
-		ThreadLocalRandom random = ThreadLocalRandom.current();
-		
+		float[] result = new float[genesA.length];
+		crossover(genesA, 0, genesB, 0, result, 0, genesA.length, ThreadLocalRandom.current());
+		return result;
+	}
+	
+	@Override
+	public void crossover(float[] genesA, int offsetA, float[] genesB, int offsetB, float[] dest, int destOffset, int length, Random random) {
 		boolean swapParents = randomlySwapParents ? random.nextBoolean() : false;
 		float offsetPercent = randomlyChooseOffset ? random.nextFloat() : fixedOffsetPercent;
+		int split = (int) (length * offsetPercent);
 		
-		int length = genesA.length;
-		int offset = (int) (length * offsetPercent);
-		float[] result = new float[length];
-		
-		for (int i=0; i<length; i++) {
-			if ((i < offset) ^ swapParents) {
-				result[i] = genesA[i];
-			} else {
-				result[i] = genesB[i];
-			}
-		}
+		float[] head = swapParents ? genesB : genesA;
+		int headOffset = swapParents ? offsetB : offsetA;
+		float[] tail = swapParents ? genesA : genesB;
+		int tailOffset = swapParents ? offsetA : offsetB;
 		
-		return result;
+		System.arraycopy(head, headOffset, dest, destOffset, split);
+		System.arraycopy(tail, tailOffset + split, dest, destOffset + split, length - split);
 	}
 
 	public void setFixedOffsetPercent(float fixedOffsetPercent) {
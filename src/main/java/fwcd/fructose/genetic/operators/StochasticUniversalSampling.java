@@ -0,0 +1,65 @@
+package fwcd.fructose.genetic.operators;
+
+import java.util.Random;
+
+import fwcd.fructose.AliasDistribution;
+
+/**
+ * Fitness-proportionate selection. Single picks are drawn
+ * from an alias table, while multiple picks use a single
+ * random offset and equally spaced pointers, which has
+ * minimal spread compared to independent roulette wheel picks.
+ * 
+ * <p>Negative fitness values are treated as zero, if no
+ * individual has a positive fitness, all are selected
+ * uniformly.</p>
+ */
+public class StochasticUniversalSampling implements SelectionStrategy {
+	private static final long serialVersionUID = -1190367512808593024L;
+	
+	@Override
+	public Selection prepare(float[] fitnesses, int count) {
+		FitnessRanking.checkNotEmpty(count);
+		double[] weights = new double[count];
+		double total = 0;
+		
+		for (int i=0; i<count; i++) {
+			weights[i] = Math.max(fitnesses[i], 0);
+			total += weights[i];
+		}
+		
+		if (total <= 0) {
+			for (int i=0; i<count; i++) {
+				weights[i] = 1;
+			}
+			total = count;
+		}
+		
+		AliasDistribution roulette = new AliasDistribution(weights);
+		double sum = total;
+		
+		return new Selection() {
+			@Override
+			public int select(Random random) {
+				return roulette.sample(random);
+			}
+			
+			@Override
+			public void select(int[] dest, Random random) {
+				double spacing = sum / dest.length;
+				double pointer = random.nextDouble() * spacing;
+				double cumulative = weights[0];
+				int index = 0;
+				
+				for (int i=0; i<dest.length; i++) {
+					while (cumulative <= pointer && index < weights.length - 1) {
+						index++;
+						cumulative += weights[index];
+					}
+					dest[i] = index;
+					pointer += spacing;
+				}
+			}
+		};
+	}
+}
@@ -0,0 +1,42 @@
+package fwcd.fructose.genetic.operators;
+
+/**
+ * Selects the fittest of k uniformly drawn individuals.
+ * Larger tournaments increase the selection pressure.
+ */
+public class TournamentSelection implements SelectionStrategy {
+	private static final long serialVersionUID = 4125187235066474305L;
+	private final int size;
+	
+	public TournamentSelection() {
+		this(2);
+	}
+	
+	/**
+	 * @param size - The amount of individuals per tournament
+	 */
+	public TournamentSelection(int size) {
+		if (size < 1) {
+			throw new IllegalArgumentException("Tournament size has to be positive: " + Integer.toString(size));
+		}
+		this.size = size;
+	}
+	
+	@Override
+	public Selection prepare(float[] fitnesses, int count) {
+		FitnessRanking.checkNotEmpty(count);
+		
+		return random -> {
+			int best = random.nextInt(count);
+			
+			for (int i=1; i<size; i++) {
+				int contender = random.nextInt(count);
+				if (fitnesses[contender] > fitnesses[best]) {
+					best = contender;
+				}
+			}
+			
+			return best;
+		};
+	}
+}
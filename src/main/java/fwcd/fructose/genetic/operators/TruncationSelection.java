@@ -0,0 +1,34 @@
+package fwcd.fructose.genetic.operators;
+
+/**
+ * Selects uniformly among the fittest fraction
+ * of the population.
+ */
+public class TruncationSelection implements SelectionStrategy {
+	private static final long serialVersionUID = 1880946264934757521L;
+	private final double fraction;
+	
+	public TruncationSelection() {
+		this(0.5);
+	}
+	
+	/**
+	 * @param fraction - The fraction of the population that may be selected, in (0, 1]
+	 */
+	public TruncationSelection(double fraction) {
+		if (fraction <= 0 || fraction > 1) {
+			throw new IllegalArgumentException("Truncation fraction has to be in (0, 1]: " + Double.toString(fraction));
+		}
+		this.fraction = fraction;
+	}
+	
+	@Override
+	public Selection prepare(float[] fitnesses, int count) {
+		FitnessRanking.checkNotEmpty(count);
+		int[] order = FitnessRanking.ascending(fitnesses, count);
+		int survivors = Math.max(1, (int) Math.round(count * fraction));
+		int offset = count - survivors;
+		
+		return random -> order[offset + random.nextInt(survivors)];
+	}
+}
@@ -3,25 +3,41 @@ package fwcd.fructose.genetic.operators;
 import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 
-public class UniformFloatCrossover implements Crossover<float[]> {
+public class UniformFloatCrossover implements Crossover<float[]>, FloatRangeCrossover {
 	private static final long serialVersionUID = -3045467067945622581L;
 	
 	private float mixingRatio = 0.5F;
 	
 	@Override
 	public float[] crossover(float[] genesA, float[] genesB) {
-		Random random = ThreadLocalRandom.current();
 		int length = Math.min(genesA.length, genesB.length);
 		float[] result = new float[length];
-		
-		for (int i=0; i<length; i++) {
-			if (random.nextFloat() < mixingRatio) {
-				result[i] = genesA[i];
-			} else {
-				result[i] = genesB[i];
+		crossover(genesA, 0, genesB, 0, result, 0, length, ThreadLocalRandom.current());
+		return result;
+	}
+	
+	@Override
+	public void crossover(float[] genesA, int offsetA, float[] genesB, int offsetB, float[] dest, int destOffset, int length, Random random) {
+		if (mixingRatio == 0.5F) {
+			// Draw the choices for 64 genes at once
+			long bits = 0;
+			
+			for (int i=0; i<length; i++) {
+				if ((i & 63) == 0) {
+					bits = random.nextLong();
+				}
+				
+				dest[destOffset + i] = ((bits & 1) != 0) ? genesA[offsetA + i] : genesB[offsetB + i];
+				bits >>>= 1;
+			}
+		} else {
+			for (int i=0; i<length; i++) {
+				if (random.nextFloat() < mixingRatio) {
+					dest[destOffset + i] = genesA[offsetA + i];
+				} else {
+					dest[destOffset + i] = genesB[offsetB + i];
+				}
 			}
 		}
-		
-		return result;
 	}
 }
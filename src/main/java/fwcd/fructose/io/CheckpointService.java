@@ -0,0 +1,342 @@
+package fwcd.fructose.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import fwcd.fructose.Option;
+import fwcd.fructose.exception.Rethrow;
+
+/**
+ * Writes numbered checkpoints to a directory on a background
+ * thread. The caller captures a {@link Snapshot} of its state
+ * and continues while the snapshot is written to a temporary file,
+ * flushed to the disk and atomically renamed. Only the newest
+ * checkpoints are kept.
+ * 
+ * <p>Capturing the snapshot is the caller's cost, thus callers
+ * should only copy their state (for example their primitive arrays
+ * using {@link fwcd.fructose.Copyable}) and encode the copy in
+ * {@link Snapshot#writeTo(OutputStream)}, which runs on the writer
+ * thread (see {@link #serializedLater(Object)}). {@link #serialized(Object)}
+ * takes a full serialization on the calling thread instead.</p>
+ * 
+ * <p>At most one snapshot waits for the writer. A snapshot that is
+ * saved while another one is still waiting replaces it, thus a
+ * slow disk skips checkpoints instead of accumulating snapshots.</p>
+ * 
+ * <p>Checkpoints are named {@code <name>-<index>.ckpt}, where
+ * the index is chosen by the caller (for example the generation)
+ * and should increase monotonically.</p>
+ */
+public class CheckpointService implements AutoCloseable, Closeable {
+	private static final String EXTENSION = ".ckpt";
+	private static final String TEMP_EXTENSION = ".tmp";
+	
+	private final File directory;
+	private final String name;
+	private final int keep;
+	private final Pattern filePattern;
+	private final ExecutorService writer;
+	private Future<File> lastWrite = null;
+	private PendingWrite queued = null;
+	private Exception failure = null;
+	
+	/**
+	 * A captured state that can be written at a later point.
+	 */
+	@FunctionalInterface
+	public static interface Snapshot {
+		void writeTo(OutputStream out) throws IOException;
+	}
+	
+	/**
+	 * A snapshot that has been submitted to the writer.
+	 */
+	private static class PendingWrite {
+		private long index;
+		private Snapshot snapshot;
+		private Future<File> future;
+		
+		public PendingWrite(long index, Snapshot snapshot) {
+			this.index = index;
+			this.snapshot = snapshot;
+		}
+	}
+	
+	/**
+	 * Reads a checkpoint.
+	 */
+	@FunctionalInterface
+	public static interface Reader<T> {
+		T read(InputStream in) throws IOException, ClassNotFoundException;
+	}
+	
+	/**
+	 * Creates a new checkpoint service.
+	 * 
+	 * @param directory - The directory containing the checkpoints (created if absent)
+	 * @param name - The file name prefix of the checkpoints
+	 * @param keep - The amount of checkpoints that are kept
+	 */
+	public CheckpointService(File directory, String name, int keep) {
+		if (keep < 1) {
+			throw new IllegalArgumentException("At least one checkpoint has to be kept: " + Integer.toString(keep));
+		}
+		
+		this.directory = directory;
+		this.name = name;
+		this.keep = keep;
+		filePattern = Pattern.compile(Pattern.quote(name) + "-(\\d+)" + Pattern.quote(EXTENSION));
+		writer = Executors.newSingleThreadExecutor(task -> {
+			Thread thread = new Thread(task, "Checkpoint writer " + name);
+			thread.setDaemon(true);
+			return thread;
+		});
+		
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new UncheckedIOException(new IOException("Could not create checkpoint directory " + directory));
+		}
+	}
+	
+	/**
+	 * Captures an object by serializing it into memory
+	 * on the calling thread, which takes as long as
+	 * serializing the object into a file would.
+	 */
+	public static Snapshot serialized(Object obj) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		
+		try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+			oos.writeObject(obj);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		
+		return bytes::writeTo;
+	}
+	
+	/**
+	 * Captures a copy of the caller's state, which is serialized
+	 * on the writer thread. The copy must not be shared with
+	 * the caller, since it is accessed after this method returns.
+	 */
+	public static Snapshot serializedLater(Object copy) {
+		return out -> {
+			// The stream is not closed, the service still has to sync the file
+			ObjectOutputStream oos = new ObjectOutputStream(out);
+			oos.writeObject(copy);
+			oos.flush();
+		};
+	}
+	
+	/**
+	 * Writes a snapshot asynchronously. Snapshots are written
+	 * in the order in which they are submitted, a snapshot that
+	 * still waits for the writer is replaced by this one.
+	 * 
+	 * @param index - The index of the checkpoint
+	 * @param snapshot - The captured state
+	 * @return The future checkpoint file (of a newer checkpoint if this one has been replaced)
+	 */
+	public synchronized Future<File> save(long index, Snapshot snapshot) {
+		if (index < 0) {
+			throw new IllegalArgumentException("Checkpoint index has to be non-negative: " + Long.toString(index));
+		}
+		
+		if (queued != null) {
+			queued.index = index;
+			queued.snapshot = snapshot;
+			return queued.future;
+		}
+		
+		PendingWrite write = new PendingWrite(index, snapshot);
+		write.future = writer.submit(() -> {
+			long writtenIndex;
+			Snapshot writtenSnapshot;
+			
+			// Blocks until save() has returned, thus the write is queued
+			synchronized (this) {
+				if (queued == write) {
+					queued = null;
+				}
+				writtenIndex = write.index;
+				writtenSnapshot = write.snapshot;
+				write.snapshot = null;
+			}
+			
+			try {
+				return write(writtenIndex, writtenSnapshot);
+			} catch (Exception e) {
+				recordFailure(e);
+				throw e;
+			}
+		});
+		queued = write;
+		lastWrite = write.future;
+		return lastWrite;
+	}
+	
+	private synchronized void recordFailure(Exception e) {
+		if (failure == null) {
+			failure = e;
+		} else {
+			failure.addSuppressed(e);
+		}
+	}
+	
+	private File write(long index, Snapshot snapshot) throws IOException {
+		File target = fileOf(index);
+		File temp = new File(directory, target.getName() + TEMP_EXTENSION);
+		boolean moved = false;
+		
+		try {
+			try (FileOutputStream out = new FileOutputStream(temp)) {
+				snapshot.writeTo(out);
+				out.flush();
+				out.getFD().sync();
+			}
+			
+			Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			moved = true;
+		} finally {
+			if (!moved) {
+				// Does not throw, thus the original exception is preserved
+				temp.delete();
+			}
+		}
+		
+		prune();
+		return target;
+	}
+	
+	private void prune() throws IOException {
+		List<File> checkpoints = getCheckpoints();
+		
+		for (int i=0; i<checkpoints.size()-keep; i++) {
+			Files.deleteIfExists(checkpoints.get(i).toPath());
+		}
+	}
+	
+	/**
+	 * Blocks until all submitted snapshots are written. Failed
+	 * writes are reported once, the first failure since the
+	 * last call is thrown (with later failures as suppressed exceptions).
+	 * 
+	 * @throws UncheckedIOException if a write failed
+	 */
+	public void awaitPending() {
+		Future<File> write;
+		synchronized (this) {
+			write = lastWrite;
+		}
+		
+		if (write != null) {
+			// Snapshots are written in order, thus all earlier writes are done too
+			try {
+				write.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for a checkpoint", e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof Error) {
+					throw (Error) e.getCause();
+				}
+				// Other failures have been recorded
+			}
+		}
+		
+		Exception cause;
+		synchronized (this) {
+			cause = failure;
+			failure = null;
+		}
+		
+		if (cause instanceof IOException) {
+			throw new UncheckedIOException((IOException) cause);
+		} else if (cause != null) {
+			throw new Rethrow(cause);
+		}
+	}
+	
+	private File fileOf(long index) {
+		return new File(directory, name + "-" + Long.toString(index) + EXTENSION);
+	}
+	
+	private long indexOf(File file) {
+		Matcher matcher = filePattern.matcher(file.getName());
+		return matcher.matches() ? Long.parseLong(matcher.group(1)) : -1;
+	}
+	
+	/**
+	 * @return The completely written checkpoints, ordered from the oldest to the newest
+	 */
+	public List<File> getCheckpoints() {
+		File[] files = directory.listFiles(file -> file.isFile() && indexOf(file) >= 0);
+		List<File> checkpoints = (files == null) ? new ArrayList<>() : new ArrayList<>(Arrays.asList(files));
+		checkpoints.sort(Comparator.comparingLong(this::indexOf));
+		return checkpoints;
+	}
+	
+	/**
+	 * @return The index of the newest checkpoint, if any
+	 */
+	public Option<Long> getLatestIndex() {
+		List<File> checkpoints = getCheckpoints();
+		return checkpoints.isEmpty() ? Option.empty() : Option.of(indexOf(checkpoints.get(checkpoints.size() - 1)));
+	}
+	
+	/**
+	 * Reads the newest checkpoint, which is used to resume training.
+	 * 
+	 * @param reader - Decodes the checkpoint
+	 * @return The decoded checkpoint, if any
+	 */
+	public <T> Option<T> readLatest(Reader<? extends T> reader) {
+		return getLatestIndex().map(index -> read(index, reader));
+	}
+	
+	/**
+	 * Reads the checkpoint with the given index.
+	 * 
+	 * @param index - The checkpoint index
+	 * @param reader - Decodes the checkpoint
+	 * @return The decoded checkpoint
+	 */
+	public <T> T read(long index, Reader<? extends T> reader) {
+		try (InputStream in = Files.newInputStream(fileOf(index).toPath())) {
+			return reader.read(in);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (ClassNotFoundException e) {
+			throw new Rethrow(e);
+		}
+	}
+	
+	/**
+	 * Waits for the pending writes and stops the writer thread.
+	 */
+	@Override
+	public void close() {
+		writer.shutdown();
+		awaitPending();
+	}
+}
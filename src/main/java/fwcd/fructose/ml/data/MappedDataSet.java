@@ -0,0 +1,434 @@
+package fwcd.fructose.ml.data;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+import fwcd.fructose.exception.SizeMismatchException;
+import fwcd.fructose.ml.math.NNVector;
+
+/**
+ * <p>A read-only data set of fixed-width float feature
+ * and label records that is backed by a memory-mapped file.
+ * Thus it does not need to fit on the heap and can be streamed
+ * through {@link MiniBatchIterator}s.</p>
+ * 
+ * <p>The file is stored column by column, i.e. all
+ * features are followed by all labels (little-endian):</p>
+ * 
+ * <pre>
+ * int   magic ("FRDS")
+ * int   version
+ * int   featureWidth
+ * int   labelWidth
+ * long  recordCount
+ * float features[recordCount][featureWidth]
+ * float labels[recordCount][labelWidth]
+ * </pre>
+ * 
+ * <p>Files can be created using a {@link MappedDataSet.Writer}.</p>
+ */
+public class MappedDataSet implements DataSet<NNVector> {
+	private static final long serialVersionUID = 2462781934093212860L;
+	private static final int MAGIC = 0x46524453;
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 24;
+	/** The maximum size of a single mapping (a mapping is limited to 2 GB). */
+	private static final long MAX_CHUNK_BYTES = 1L << 30;
+	
+	private final File file;
+	private transient int featureWidth;
+	private transient int labelWidth;
+	private transient int recordCount;
+	private transient FloatColumn features;
+	private transient FloatColumn labels;
+	
+	/**
+	 * Opens and maps an existing data set file.
+	 * 
+	 * @param file - The file
+	 */
+	public MappedDataSet(File file) {
+		this.file = file;
+		map();
+	}
+	
+	private void map() {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			while (header.hasRemaining()) {
+				if (channel.read(header, header.position()) < 0) {
+					throw new IOException("Unexpected end of file while reading the header of " + file);
+				}
+			}
+			header.flip();
+			
+			if (header.getInt() != MAGIC) {
+				throw new IOException(file + " is not a data set file");
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported data set version: " + version);
+			}
+			
+			featureWidth = header.getInt();
+			labelWidth = header.getInt();
+			long records = header.getLong();
+			
+			if (records > Integer.MAX_VALUE) {
+				throw new IOException("Too many records: " + records);
+			}
+			recordCount = (int) records;
+			
+			long featureBytes = records * featureWidth * Float.BYTES;
+			long labelBytes = records * labelWidth * Float.BYTES;
+			
+			if (channel.size() < HEADER_BYTES + featureBytes + labelBytes) {
+				throw new IOException(file + " is truncated");
+			}
+			
+			features = new FloatColumn(channel, HEADER_BYTES, recordCount, featureWidth);
+			labels = new FloatColumn(channel, HEADER_BYTES + featureBytes, recordCount, labelWidth);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		map();
+	}
+	
+	/**
+	 * @return The amount of records
+	 */
+	public int size() {
+		return recordCount;
+	}
+	
+	public int getFeatureWidth() {
+		return featureWidth;
+	}
+	
+	public int getLabelWidth() {
+		return labelWidth;
+	}
+	
+	public File getFile() {
+		return file;
+	}
+	
+	public void readFeatures(int record, float[] dest, int offset) {
+		features.read(record, dest, offset);
+	}
+	
+	public void readLabels(int record, float[] dest, int offset) {
+		labels.read(record, dest, offset);
+	}
+	
+	/**
+	 * Reads a contiguous range of records, which is faster
+	 * than reading them one by one.
+	 */
+	void readRange(int firstRecord, int count, float[] featureDest, float[] labelDest) {
+		features.readRange(firstRecord, count, featureDest);
+		labels.readRange(firstRecord, count, labelDest);
+	}
+	
+	public NNVector getFeatures(int record) {
+		float[] result = new float[featureWidth];
+		readFeatures(record, result, 0);
+		return new NNVector(result);
+	}
+	
+	public NNVector getLabels(int record) {
+		float[] result = new float[labelWidth];
+		readLabels(record, result, 0);
+		return new NNVector(result);
+	}
+	
+	/**
+	 * Creates an iterator over sequential mini-batches that
+	 * prefetches the next batch on a background thread.
+	 * 
+	 * @param batchSize - The (maximum) amount of records per batch
+	 * @return The iterator, which should be closed after use
+	 */
+	public MiniBatchIterator batches(int batchSize) {
+		return new MiniBatchIterator(this, null, batchSize, true);
+	}
+	
+	/**
+	 * Creates an iterator over shuffled mini-batches that
+	 * prefetches the next batch on a background thread.
+	 * 
+	 * @param batchSize - The (maximum) amount of records per batch
+	 * @param random - The random number generator used to shuffle the records
+	 * @return The iterator, which should be closed after use
+	 */
+	public MiniBatchIterator shuffledBatches(int batchSize, Random random) {
+		return new MiniBatchIterator(this, shuffledOrder(random), batchSize, true);
+	}
+	
+	/**
+	 * Creates an iterator over mini-batches.
+	 * 
+	 * @param batchSize - The (maximum) amount of records per batch
+	 * @param random - The random number generator used to shuffle the records or null if the records should be read sequentially
+	 * @param prefetch - Whether the next batch should be loaded on a background thread
+	 * @return The iterator, which should be closed after use
+	 */
+	public MiniBatchIterator batches(int batchSize, Random random, boolean prefetch) {
+		return new MiniBatchIterator(this, random == null ? null : shuffledOrder(random), batchSize, prefetch);
+	}
+	
+	private int[] shuffledOrder(Random random) {
+		int[] order = new int[recordCount];
+		
+		for (int i=0; i<order.length; i++) {
+			order[i] = i;
+		}
+		
+		// Fisher-Yates shuffle
+		for (int i=order.length-1; i>0; i--) {
+			int j = random.nextInt(i + 1);
+			int tmp = order[i];
+			order[i] = order[j];
+			order[j] = tmp;
+		}
+		
+		return order;
+	}
+	
+	/**
+	 * Loads all feature vectors onto the heap. Since this
+	 * defeats the purpose of memory-mapping, this method should
+	 * only be used for small data sets. Note that duplicate
+	 * feature vectors are only contained once.
+	 */
+	@Override
+	public Set<NNVector> getInputs() {
+		Set<NNVector> inputs = new LinkedHashSet<>();
+		for (int i=0; i<recordCount; i++) {
+			inputs.add(getFeatures(i));
+		}
+		return inputs;
+	}
+	
+	/**
+	 * Loads all records onto the heap.
+	 * 
+	 * @see #getInputs()
+	 */
+	public LabelledData<NNVector, NNVector> toLabelledData() {
+		LabelledData<NNVector, NNVector> data = new LabelledData<>();
+		for (int i=0; i<recordCount; i++) {
+			data.add(getFeatures(i), getLabels(i));
+		}
+		return data;
+	}
+	
+	/**
+	 * Writes all records of the given data to a new data set file.
+	 * 
+	 * @param file - The destination
+	 * @param data - The records
+	 * @return The mapped data set
+	 */
+	public static MappedDataSet write(File file, LabelledData<NNVector, NNVector> data) {
+		int featureWidth = -1;
+		int labelWidth = -1;
+		
+		try (Writer writer = new Writer(file)) {
+			for (NNVector input : data.getInputs()) {
+				NNVector output = data.getOutput(input);
+				if (featureWidth < 0) {
+					featureWidth = input.size();
+					labelWidth = output.size();
+					writer.begin(featureWidth, labelWidth);
+				}
+				writer.add(input.asArray(), output.asArray());
+			}
+			if (featureWidth < 0) {
+				writer.begin(0, 0);
+			}
+		}
+		
+		return new MappedDataSet(file);
+	}
+	
+	/**
+	 * A column of fixed-width float records that is
+	 * split into multiple mappings if necessary.
+	 */
+	private static class FloatColumn {
+		private final FloatBuffer[] chunks;
+		private final int recordsPerChunk;
+		private final int width;
+		
+		FloatColumn(FileChannel channel, long offset, int records, int width) throws IOException {
+			this.width = width;
+			long recordBytes = (long) width * Float.BYTES;
+			recordsPerChunk = (int) Math.max(1, Math.min(records, MAX_CHUNK_BYTES / Math.max(recordBytes, 1)));
+			int chunkCount = (int) (((long) records + recordsPerChunk - 1) / recordsPerChunk);
+			chunks = new FloatBuffer[chunkCount];
+			
+			for (int i=0; i<chunkCount; i++) {
+				long firstRecord = (long) i * recordsPerChunk;
+				long chunkRecords = Math.min(recordsPerChunk, records - firstRecord);
+				long position = offset + (firstRecord * recordBytes);
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, chunkRecords * recordBytes)
+						.order(ByteOrder.LITTLE_ENDIAN)
+						.asFloatBuffer();
+			}
+		}
+		
+		void read(int record, float[] dest, int offset) {
+			FloatBuffer chunk = chunks[record / recordsPerChunk];
+			int index = (record % recordsPerChunk) * width;
+			
+			for (int i=0; i<width; i++) {
+				dest[offset + i] = chunk.get(index + i);
+			}
+		}
+		
+		void readRange(int firstRecord, int count, float[] dest) {
+			int record = firstRecord;
+			int offset = 0;
+			
+			while (offset < count * width) {
+				int chunkIndex = record / recordsPerChunk;
+				int inChunk = record % recordsPerChunk;
+				int records = Math.min(count - (offset / width), recordsPerChunk - inChunk);
+				FloatBuffer view = chunks[chunkIndex].duplicate();
+				view.position(inChunk * width);
+				view.get(dest, offset, records * width);
+				offset += records * width;
+				record += records;
+			}
+		}
+	}
+	
+	/**
+	 * Sequentially writes records to a new data set file.
+	 */
+	public static class Writer implements AutoCloseable {
+		private final File file;
+		private final File labelFile;
+		private OutputStream featureOut;
+		private OutputStream labelOut;
+		private ByteBuffer featureBuffer;
+		private ByteBuffer labelBuffer;
+		private int featureWidth = -1;
+		private int labelWidth = -1;
+		private long recordCount = 0;
+		
+		public Writer(File file) {
+			this.file = file;
+			labelFile = new File(file.getAbsolutePath() + ".labels.tmp");
+		}
+		
+		public Writer(File file, int featureWidth, int labelWidth) {
+			this(file);
+			begin(featureWidth, labelWidth);
+		}
+		
+		private void begin(int featureWidth, int labelWidth) {
+			if (this.featureWidth >= 0) {
+				throw new IllegalStateException("Writer has already been started");
+			}
+			
+			this.featureWidth = featureWidth;
+			this.labelWidth = labelWidth;
+			featureBuffer = ByteBuffer.allocate(featureWidth * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			labelBuffer = ByteBuffer.allocate(labelWidth * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			
+			try {
+				featureOut = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+				featureOut.write(new byte[HEADER_BYTES]); // Placeholder, the header is written when closing
+				labelOut = new BufferedOutputStream(new FileOutputStream(labelFile), 1 << 16);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		public void add(float[] features, float[] labels) {
+			if (features.length != featureWidth) {
+				throw new SizeMismatchException("feature vector size", features.length, "feature width", featureWidth);
+			} else if (labels.length != labelWidth) {
+				throw new SizeMismatchException("label vector size", labels.length, "label width", labelWidth);
+			}
+			
+			try {
+				write(features, featureBuffer, featureOut);
+				write(labels, labelBuffer, labelOut);
+				recordCount++;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		private void write(float[] values, ByteBuffer buffer, OutputStream out) throws IOException {
+			buffer.clear();
+			buffer.asFloatBuffer().put(values);
+			out.write(buffer.array(), 0, values.length * Float.BYTES);
+		}
+		
+		@Override
+		public void close() {
+			if (featureWidth < 0) {
+				throw new IllegalStateException("No records have been written and the record widths are unknown");
+			}
+			
+			try {
+				featureOut.close();
+				labelOut.close();
+				
+				try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+					try (FileChannel labelChannel = FileChannel.open(labelFile.toPath(), StandardOpenOption.READ)) {
+						long position = channel.size();
+						long size = labelChannel.size();
+						long transferred = 0;
+						while (transferred < size) {
+							transferred += labelChannel.transferTo(transferred, size - transferred, channel.position(position + transferred));
+						}
+					}
+					
+					ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+					header.putInt(MAGIC).putInt(VERSION).putInt(featureWidth).putInt(labelWidth).putLong(recordCount);
+					header.flip();
+					while (header.hasRemaining()) {
+						channel.write(header, header.position());
+					}
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			} finally {
+				try {
+					Files.deleteIfExists(labelFile.toPath());
+				} catch (IOException e) {
+					// Ignore, the temporary file is not needed anymore
+				}
+			}
+		}
+		
+		@Override
+		public String toString() {
+			return "MappedDataSet.Writer [" + file + ", " + recordCount + " records]";
+		}
+	}
+}
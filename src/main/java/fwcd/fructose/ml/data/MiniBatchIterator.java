@@ -0,0 +1,215 @@
+package fwcd.fructose.ml.data;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * <p>Iterates over the mini-batches of a {@link MappedDataSet}
+ * by filling reusable feature and label buffers. Optionally,
+ * the next batch is loaded on a background thread while
+ * the current one is processed (double buffering).</p>
+ *
+ * <pre>
+ * try (MiniBatchIterator batches = dataSet.batches(32)) {
+ *     while (batches.next()) {
+ *         float[] features = batches.getFeatures(); // [size][featureWidth]
+ *         float[] labels = batches.getLabels(); // [size][labelWidth]
+ *         ...
+ *     }
+ * }
+ * </pre>
+ *
+ * <p>The buffers returned by {@link #getFeatures()} and
+ * {@link #getLabels()} are only valid until the next call
+ * to {@link #next()}.</p>
+ */
+public class MiniBatchIterator implements AutoCloseable {
+	private static final Batch END = new Batch(0, 0);
+	
+	private final MappedDataSet dataSet;
+	private final int[] order;
+	private final int batchSize;
+	private final int batchCount;
+	
+	private final Thread prefetcher;
+	private final BlockingQueue<Batch> free;
+	private final BlockingQueue<Batch> full;
+	private volatile RuntimeException prefetchError = null;
+	
+	private Batch current = null;
+	private int nextBatchIndex = 0;
+	private boolean ended = false;
+	
+	/**
+	 * Creates a new mini-batch iterator.
+	 *
+	 * @param dataSet - The data set
+	 * @param order - The order in which the records are visited or null if they should be read sequentially
+	 * @param batchSize - The maximum amount of records per batch
+	 * @param prefetch - Whether batches should be loaded on a background thread
+	 */
+	MiniBatchIterator(MappedDataSet dataSet, int[] order, int batchSize, boolean prefetch) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size has to be positive: " + Integer.toString(batchSize));
+		}
+		
+		this.dataSet = dataSet;
+		this.order = order;
+		this.batchSize = batchSize;
+		batchCount = (dataSet.size() + batchSize - 1) / batchSize;
+		
+		if (prefetch) {
+			free = new ArrayBlockingQueue<>(2);
+			full = new ArrayBlockingQueue<>(2);
+			free.add(newBatch());
+			free.add(newBatch());
+			
+			prefetcher = new Thread(this::prefetch, "MiniBatchIterator-Prefetch");
+			prefetcher.setDaemon(true);
+			prefetcher.start();
+		} else {
+			free = null;
+			full = null;
+			prefetcher = null;
+			current = newBatch();
+		}
+	}
+	
+	private Batch newBatch() {
+		return new Batch(batchSize * dataSet.getFeatureWidth(), batchSize * dataSet.getLabelWidth());
+	}
+	
+	private void prefetch() {
+		try {
+			for (int i=0; i<batchCount; i++) {
+				Batch batch = free.take();
+				fill(batch, i);
+				full.put(batch);
+			}
+			full.put(END);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (RuntimeException e) {
+			prefetchError = e;
+			full.offer(END);
+		}
+	}
+	
+	private void fill(Batch batch, int batchIndex) {
+		int first = batchIndex * batchSize;
+		int size = Math.min(batchSize, dataSet.size() - first);
+		
+		if (order == null) {
+			dataSet.readRange(first, size, batch.features, batch.labels);
+		} else {
+			int featureWidth = dataSet.getFeatureWidth();
+			int labelWidth = dataSet.getLabelWidth();
+			
+			for (int i=0; i<size; i++) {
+				int record = order[first + i];
+				dataSet.readFeatures(record, batch.features, i * featureWidth);
+				dataSet.readLabels(record, batch.labels, i * labelWidth);
+			}
+		}
+		
+		batch.size = size;
+	}
+	
+	/**
+	 * Advances to the next batch.
+	 *
+	 * @return Whether there was another batch
+	 */
+	public boolean next() {
+		if (ended) {
+			return false;
+		}
+		
+		if (prefetcher == null) {
+			if (nextBatchIndex >= batchCount) {
+				ended = true;
+				return false;
+			}
+			fill(current, nextBatchIndex++);
+			return true;
+		}
+		
+		try {
+			if (current != null) {
+				free.put(current);
+			}
+			
+			current = full.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the next batch", e);
+		}
+		
+		if (current == END) {
+			current = null;
+			ended = true;
+			
+			if (prefetchError != null) {
+				throw prefetchError;
+			}
+			return false;
+		}
+		
+		nextBatchIndex++;
+		return true;
+	}
+	
+	private Batch current() {
+		if (current == null || ended) {
+			throw new IllegalStateException("No current batch, call next() first");
+		}
+		return current;
+	}
+	
+	/**
+	 * @return The features of the current batch, stored row by row
+	 */
+	public float[] getFeatures() {
+		return current().features;
+	}
+	
+	/**
+	 * @return The labels of the current batch, stored row by row
+	 */
+	public float[] getLabels() {
+		return current().labels;
+	}
+	
+	/**
+	 * @return The amount of records in the current batch (may be less than the batch size for the last batch)
+	 */
+	public int size() {
+		return current().size;
+	}
+	
+	public int getBatchCount() {
+		return batchCount;
+	}
+	
+	/**
+	 * Stops the prefetching thread (if present).
+	 */
+	@Override
+	public void close() {
+		ended = true;
+		if (prefetcher != null) {
+			prefetcher.interrupt();
+		}
+	}
+	
+	private static class Batch {
+		final float[] features;
+		final float[] labels;
+		int size = 0;
+		
+		Batch(int featureCount, int labelCount) {
+			features = new float[featureCount];
+			labels = new float[labelCount];
+		}
+	}
+}
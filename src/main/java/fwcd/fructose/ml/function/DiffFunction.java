@@ -32,4 +32,43 @@ public interface DiffFunction extends Serializable {
 	default boolean canComputeDfUsingF() {
 		return false;
 	}
+	
+	/**
+	 * Applies f to a range of values. The input
+	 * and output array may be the same.
+	 * 
+	 * @param in - The input values
+	 * @param out - The destination
+	 * @param from - The first index (inclusive)
+	 * @param to - The last index (exclusive)
+	 */
+	default void apply(float[] in, float[] out, int from, int to) {
+		for (int i=from; i<to; i++) {
+			out[i] = f(in[i]);
+		}
+	}
+	
+	/**
+	 * Applies df to a range of values. The input
+	 * and output array may be the same.
+	 * 
+	 * @see #apply(float[], float[], int, int)
+	 */
+	default void applyDerivative(float[] in, float[] out, int from, int to) {
+		for (int i=from; i<to; i++) {
+			out[i] = df(in[i]);
+		}
+	}
+	
+	/**
+	 * Applies dfUsingF to a range of pre-computed
+	 * values of f. The input and output array may be the same.
+	 * 
+	 * @see #apply(float[], float[], int, int)
+	 */
+	default void applyDerivativeUsingF(float[] activated, float[] out, int from, int to) {
+		for (int i=from; i<to; i++) {
+			out[i] = dfUsingF(activated[i]);
+		}
+	}
 }
@@ -1,7 +1,12 @@
 package fwcd.fructose.ml.function;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import fwcd.fructose.exception.SizeMismatchException;
+
 /**
  * A function that can be taught by showing it
  * examples of input-output-combinations. The exact
@@ -33,4 +38,45 @@ public interface LearningFunction<I, O> {
 	 * @param examples - The example mappings
 	 */
 	void teach(Map<I, O> examples);
+	
+	/**
+	 * Teaches this function the given examples, which may
+	 * contain equal inputs multiple times. Unlike
+	 * {@link #teach(Map)} every example keeps its weight. The
+	 * default implementation teaches the examples in as few
+	 * maps (each containing every input at most once) as possible.
+	 * 
+	 * @param inputs - The example inputs
+	 * @param outputs - The example outputs, aligned with the inputs
+	 */
+	default void teach(List<? extends I> inputs, List<? extends O> outputs) {
+		if (inputs.size() != outputs.size()) {
+			throw new SizeMismatchException("outputs", outputs.size(), "inputs", inputs.size());
+		}
+		
+		List<Map<I, O>> batches = new ArrayList<>();
+		
+		for (int i=0; i<inputs.size(); i++) {
+			I input = inputs.get(i);
+			Map<I, O> batch = null;
+			
+			for (Map<I, O> candidate : batches) {
+				if (!candidate.containsKey(input)) {
+					batch = candidate;
+					break;
+				}
+			}
+			
+			if (batch == null) {
+				batch = new HashMap<>();
+				batches.add(batch);
+			}
+			
+			batch.put(input, outputs.get(i));
+		}
+		
+		for (Map<I, O> batch : batches) {
+			teach(batch);
+		}
+	}
 }
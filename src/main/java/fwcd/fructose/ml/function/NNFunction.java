@@ -1,10 +1,16 @@
 package fwcd.fructose.ml.function;
 
 import fwcd.fructose.function.FloatUnaryOperator;
+import fwcd.fructose.ml.math.FloatMath;
 
 /**
  * Common functions used in machine learning.
  * 
+ * <p>Every constant implements the bulk methods using
+ * a specialized loop. The FAST_ variants approximate
+ * the exponential functions with a bounded error
+ * (see {@link FloatMath}).</p>
+ * 
  * @author Fredrik
  *
  */
@@ -13,22 +19,128 @@ public enum NNFunction implements DiffFunction {
 			x -> 1 / (1 + (float) Math.exp(-x)),
 			out -> out * (1 - out),
 			true
-	),
+	) {
+		@Override
+		public void apply(float[] in, float[] out, int from, int to) {
+			for (int i=from; i<to; i++) {
+				out[i] = 1 / (1 + (float) Math.exp(-in[i]));
+			}
+		}
+		
+		@Override
+		public void applyDerivativeUsingF(float[] activated, float[] out, int from, int to) {
+			sigmoidDerivative(activated, out, from, to);
+		}
+	},
 	RELU(
 			x -> Math.max(0, x),
 			out -> out <= 0 ? 0 : 1,
 			true
-	),
+	) {
+		@Override
+		public void apply(float[] in, float[] out, int from, int to) {
+			for (int i=from; i<to; i++) {
+				out[i] = Math.max(0, in[i]);
+			}
+		}
+		
+		@Override
+		public void applyDerivativeUsingF(float[] activated, float[] out, int from, int to) {
+			for (int i=from; i<to; i++) {
+				out[i] = activated[i] <= 0 ? 0 : 1;
+			}
+		}
+	},
 	TANH(
 			x -> (float) Math.tanh(x),
 			out -> 1 - (out * out),
 			true
-	),
+	) {
+		@Override
+		public void apply(float[] in, float[] out, int from, int to) {
+			for (int i=from; i<to; i++) {
+				out[i] = (float) Math.tanh(in[i]);
+			}
+		}
+		
+		@Override
+		public void applyDerivativeUsingF(float[] activated, float[] out, int from, int to) {
+			tanhDerivative(activated, out, from, to);
+		}
+	},
 	LEAKY_RELU(
 			x -> Math.max(0.1F * x, x),
 			out -> out <= 0 ? 0.1F : 1,
 			true
-	);
+	) {
+		@Override
+		public void apply(float[] in, float[] out, int from, int to) {
+			for (int i=from; i<to; i++) {
+				float x = in[i];
+				out[i] = Math.max(0.1F * x, x);
+			}
+		}
+		
+		@Override
+		public void applyDerivativeUsingF(float[] activated, float[] out, int from, int to) {
+			for (int i=from; i<to; i++) {
+				out[i] = activated[i] <= 0 ? 0.1F : 1;
+			}
+		}
+	},
+	IDENTITY(
+			x -> x,
+			out -> 1,
+			true
+	) {
+		@Override
+		public void apply(float[] in, float[] out, int from, int to) {
+			if (in != out) {
+				System.arraycopy(in, from, out, from, to - from);
+			}
+		}
+		
+		@Override
+		public void applyDerivativeUsingF(float[] activated, float[] out, int from, int to) {
+			for (int i=from; i<to; i++) {
+				out[i] = 1;
+			}
+		}
+	},
+	FAST_SIGMOID(
+			FloatMath::fastSigmoid,
+			out -> out * (1 - out),
+			true
+	) {
+		@Override
+		public void apply(float[] in, float[] out, int from, int to) {
+			for (int i=from; i<to; i++) {
+				out[i] = FloatMath.fastSigmoid(in[i]);
+			}
+		}
+		
+		@Override
+		public void applyDerivativeUsingF(float[] activated, float[] out, int from, int to) {
+			sigmoidDerivative(activated, out, from, to);
+		}
+	},
+	FAST_TANH(
+			FloatMath::fastTanh,
+			out -> 1 - (out * out),
+			true
+	) {
+		@Override
+		public void apply(float[] in, float[] out, int from, int to) {
+			for (int i=from; i<to; i++) {
+				out[i] = FloatMath.fastTanh(in[i]);
+			}
+		}
+		
+		@Override
+		public void applyDerivativeUsingF(float[] activated, float[] out, int from, int to) {
+			tanhDerivative(activated, out, from, to);
+		}
+	};
 	
 	private final FloatUnaryOperator func;
 	private final FloatUnaryOperator deriv;
@@ -39,6 +151,20 @@ public enum NNFunction implements DiffFunction {
 		this.deriv = deriv;
 		this.derivativeUsesCachedF = derivativeUsesCachedF;
 	}
+	
+	private static void sigmoidDerivative(float[] activated, float[] out, int from, int to) {
+		for (int i=from; i<to; i++) {
+			float y = activated[i];
+			out[i] = y * (1 - y);
+		}
+	}
+	
+	private static void tanhDerivative(float[] activated, float[] out, int from, int to) {
+		for (int i=from; i<to; i++) {
+			float y = activated[i];
+			out[i] = 1 - (y * y);
+		}
+	}
 
 	@Override
 	public float f(float x) {
@@ -67,4 +193,14 @@ public enum NNFunction implements DiffFunction {
 	public boolean canComputeDfUsingF() {
 		return derivativeUsesCachedF;
 	}
+	
+	@Override
+	public void applyDerivative(float[] in, float[] out, int from, int to) {
+		if (derivativeUsesCachedF) {
+			apply(in, out, from, to);
+			applyDerivativeUsingF(out, out, from, to);
+		} else {
+			DiffFunction.super.applyDerivative(in, out, from, to);
+		}
+	}
 }
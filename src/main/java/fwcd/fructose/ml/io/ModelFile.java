@@ -0,0 +1,262 @@
+package fwcd.fructose.ml.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import fwcd.fructose.exception.SerializationException;
+import fwcd.fructose.ml.function.DiffFunction;
+import fwcd.fructose.ml.function.NNFunction;
+
+/**
+ * <p>A memory-mapped, versioned binary model file. All
+ * values are stored little-endian:</p>
+ * 
+ * <pre>
+ * int  magic ("FRMD")
+ * int  version
+ * int  model type
+ * int  data type
+ * int  activation (ordinal of {@link NNFunction} or -1)
+ * int  layer count
+ * long payload size in bytes
+ * long CRC32 of the payload
+ * int  layer sizes[layer count]
+ * (padding to a multiple of 8 bytes)
+ * payload (contiguous value blocks)
+ * </pre>
+ * 
+ * <p>The payload is read sequentially, either by copying
+ * into arrays or through zero-copy buffer views of the mapping.
+ * Files are created using a {@link ModelFileWriter}.</p>
+ */
+public class ModelFile {
+	static final int MAGIC = 0x444D5246;
+	static final int VERSION = 1;
+	static final int FIXED_HEADER_BYTES = 40;
+	
+	private final Type type;
+	private final DataType dataType;
+	private final int activation;
+	private final int[] layerSizes;
+	private final ByteBuffer payload;
+	
+	private ModelFile(Type type, DataType dataType, int activation, int[] layerSizes, ByteBuffer payload) {
+		this.type = type;
+		this.dataType = dataType;
+		this.activation = activation;
+		this.layerSizes = layerSizes;
+		this.payload = payload;
+	}
+	
+	/**
+	 * Maps a model file and verifies its header and checksum.
+	 * 
+	 * @param file - The model file
+	 * @param expectedType - The expected model type
+	 * @return The opened model file
+	 * @throws SerializationException if the file could not be read or is malformed
+	 */
+	public static ModelFile open(File file, Type expectedType) {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new SerializationException("Model files larger than 2 GB are not supported: " + file);
+			} else if (size < FIXED_HEADER_BYTES) {
+				throw new SerializationException(file + " is too short to be a model file");
+			}
+			
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).order(ByteOrder.LITTLE_ENDIAN);
+			
+			if (buffer.getInt() != MAGIC) {
+				throw new SerializationException(file + " is not a model file");
+			}
+			int version = buffer.getInt();
+			if (version != VERSION) {
+				throw new SerializationException("Unsupported model file version: " + Integer.toString(version));
+			}
+			
+			Type type = Type.of(buffer.getInt());
+			if (type != expectedType) {
+				throw new SerializationException("Expected a " + expectedType + " model, but " + file + " contains a " + type + " model");
+			}
+			
+			DataType dataType = DataType.of(buffer.getInt());
+			int activation = buffer.getInt();
+			int layerCount = buffer.getInt();
+			long payloadBytes = buffer.getLong();
+			long checksum = buffer.getLong();
+			
+			if (layerCount < 0 || FIXED_HEADER_BYTES + (layerCount * (long) Integer.BYTES) > size) {
+				throw new SerializationException("Invalid layer count: " + Integer.toString(layerCount));
+			}
+			
+			int[] layerSizes = new int[layerCount];
+			buffer.asIntBuffer().get(layerSizes);
+			
+			int payloadOffset = headerBytes(layerCount);
+			if (payloadOffset + payloadBytes != size) {
+				throw new SerializationException(file + " is truncated or has trailing data");
+			}
+			
+			buffer.position(payloadOffset);
+			ByteBuffer payload = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+			
+			CRC32 crc = new CRC32();
+			crc.update(payload.duplicate());
+			if (crc.getValue() != checksum) {
+				throw new SerializationException("Checksum mismatch, " + file + " is corrupted");
+			}
+			
+			return new ModelFile(type, dataType, activation, layerSizes, payload);
+		} catch (IOException e) {
+			throw new SerializationException(e);
+		}
+	}
+	
+	static int headerBytes(int layerCount) {
+		int unpadded = FIXED_HEADER_BYTES + (layerCount * Integer.BYTES);
+		return (unpadded + 7) & ~7;
+	}
+	
+	public Type getType() {
+		return type;
+	}
+	
+	public DataType getDataType() {
+		return dataType;
+	}
+	
+	public int[] getLayerSizes() {
+		return layerSizes.clone();
+	}
+	
+	/**
+	 * @return The stored activation function or null if the model used a custom one
+	 */
+	public NNFunction getActivation() {
+		NNFunction[] functions = NNFunction.values();
+		return (activation >= 0 && activation < functions.length) ? functions[activation] : null;
+	}
+	
+	/**
+	 * @return The activation code that is stored for the given function
+	 */
+	static int activationCode(DiffFunction function) {
+		return (function instanceof NNFunction) ? ((NNFunction) function).ordinal() : -1;
+	}
+	
+	/**
+	 * @return The amount of payload bytes that have not been read yet
+	 */
+	public int remaining() {
+		return payload.remaining();
+	}
+	
+	private void require(int count, int bytes) {
+		if (count < 0 || (long) count * bytes > payload.remaining()) {
+			throw new SerializationException("Model file payload is too short");
+		}
+	}
+	
+	/**
+	 * Returns a read-only view of the next float values
+	 * without copying them.
+	 */
+	public FloatBuffer floatView(int count) {
+		require(count, Float.BYTES);
+		ByteBuffer view = payload.slice().order(ByteOrder.LITTLE_ENDIAN);
+		view.limit(count * Float.BYTES);
+		payload.position(payload.position() + (count * Float.BYTES));
+		return view.asFloatBuffer();
+	}
+	
+	public void readFloats(float[] dest, int offset, int length) {
+		floatView(length).get(dest, offset, length);
+	}
+	
+	public void readInts(int[] dest, int offset, int length) {
+		require(length, Integer.BYTES);
+		IntBuffer view = payload.asIntBuffer();
+		view.get(dest, offset, length);
+		payload.position(payload.position() + (length * Integer.BYTES));
+	}
+	
+	public void readLongs(long[] dest, int offset, int length) {
+		require(length, Long.BYTES);
+		LongBuffer view = payload.asLongBuffer();
+		view.get(dest, offset, length);
+		payload.position(payload.position() + (length * Long.BYTES));
+	}
+	
+	public void readDoubles(double[] dest, int offset, int length) {
+		require(length, Double.BYTES);
+		DoubleBuffer view = payload.asDoubleBuffer();
+		view.get(dest, offset, length);
+		payload.position(payload.position() + (length * Double.BYTES));
+	}
+	
+	/**
+	 * The kind of model stored in a file.
+	 */
+	public static enum Type {
+		SIMPLE_PERCEPTRON(1),
+		PERCEPTRON(2),
+		Q_TABLE(3),
+		PRIMITIVE_Q_TABLE(4);
+		
+		private final int code;
+		
+		private Type(int code) {
+			this.code = code;
+		}
+		
+		int getCode() {
+			return code;
+		}
+		
+		static Type of(int code) {
+			for (Type type : values()) {
+				if (type.code == code) {
+					return type;
+				}
+			}
+			throw new SerializationException("Unknown model type: " + Integer.toString(code));
+		}
+	}
+	
+	/**
+	 * The primary element type of the payload.
+	 */
+	public static enum DataType {
+		FLOAT32(1),
+		FLOAT64(2);
+		
+		private final int code;
+		
+		private DataType(int code) {
+			this.code = code;
+		}
+		
+		int getCode() {
+			return code;
+		}
+		
+		static DataType of(int code) {
+			for (DataType type : values()) {
+				if (type.code == code) {
+					return type;
+				}
+			}
+			throw new SerializationException("Unknown data type: " + Integer.toString(code));
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package fwcd.fructose.ml.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import fwcd.fructose.exception.SerializationException;
+import fwcd.fructose.ml.function.DiffFunction;
+
+/**
+ * Sequentially writes the payload of a {@link ModelFile}
+ * through a reusable buffer. The header (including the
+ * checksum) is written when the writer is closed.
+ */
+public class ModelFileWriter implements AutoCloseable {
+	private static final int BUFFER_BYTES = 1 << 16;
+	
+	private final ModelFile.Type type;
+	private final ModelFile.DataType dataType;
+	private final int activation;
+	private final int[] layerSizes;
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+	private final CRC32 crc = new CRC32();
+	private long payloadBytes = 0;
+	
+	/**
+	 * Creates (or overwrites) a model file.
+	 * 
+	 * @param file - The destination
+	 * @param type - The model type
+	 * @param dataType - The primary element type of the payload
+	 * @param activation - The activation function or null if the model has none
+	 * @param layerSizes - The layer sizes (may be empty)
+	 */
+	public ModelFileWriter(File file, ModelFile.Type type, ModelFile.DataType dataType, DiffFunction activation, int... layerSizes) {
+		this.type = type;
+		this.dataType = dataType;
+		this.activation = (activation == null) ? -1 : ModelFile.activationCode(activation);
+		this.layerSizes = layerSizes.clone();
+		
+		try {
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			channel.position(ModelFile.headerBytes(layerSizes.length));
+		} catch (IOException e) {
+			throw new SerializationException(e);
+		}
+	}
+	
+	public void writeFloats(float[] values, int offset, int length) {
+		int i = 0;
+		while (i < length) {
+			ensureCapacity(Float.BYTES);
+			int n = Math.min(length - i, buffer.remaining() / Float.BYTES);
+			buffer.asFloatBuffer().put(values, offset + i, n);
+			buffer.position(buffer.position() + (n * Float.BYTES));
+			i += n;
+		}
+	}
+	
+	public void writeInts(int[] values, int offset, int length) {
+		int i = 0;
+		while (i < length) {
+			ensureCapacity(Integer.BYTES);
+			int n = Math.min(length - i, buffer.remaining() / Integer.BYTES);
+			buffer.asIntBuffer().put(values, offset + i, n);
+			buffer.position(buffer.position() + (n * Integer.BYTES));
+			i += n;
+		}
+	}
+	
+	public void writeLongs(long[] values, int offset, int length) {
+		int i = 0;
+		while (i < length) {
+			ensureCapacity(Long.BYTES);
+			int n = Math.min(length - i, buffer.remaining() / Long.BYTES);
+			buffer.asLongBuffer().put(values, offset + i, n);
+			buffer.position(buffer.position() + (n * Long.BYTES));
+			i += n;
+		}
+	}
+	
+	public void writeDoubles(double[] values, int offset, int length) {
+		int i = 0;
+		while (i < length) {
+			ensureCapacity(Double.BYTES);
+			int n = Math.min(length - i, buffer.remaining() / Double.BYTES);
+			buffer.asDoubleBuffer().put(values, offset + i, n);
+			buffer.position(buffer.position() + (n * Double.BYTES));
+			i += n;
+		}
+	}
+	
+	private void ensureCapacity(int bytes) {
+		if (buffer.remaining() < bytes) {
+			flush();
+		}
+	}
+	
+	private void flush() {
+		buffer.flip();
+		crc.update(buffer.duplicate());
+		payloadBytes += buffer.remaining();
+		
+		try {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} catch (IOException e) {
+			throw new SerializationException(e);
+		}
+		
+		buffer.clear();
+	}
+	
+	@Override
+	public void close() {
+		try {
+			flush();
+			
+			ByteBuffer header = ByteBuffer.allocate(ModelFile.headerBytes(layerSizes.length)).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(ModelFile.MAGIC)
+				.putInt(ModelFile.VERSION)
+				.putInt(type.getCode())
+				.putInt(dataType.getCode())
+				.putInt(activation)
+				.putInt(layerSizes.length)
+				.putLong(payloadBytes)
+				.putLong(crc.getValue());
+			for (int size : layerSizes) {
+				header.putInt(size);
+			}
+			header.clear();
+			
+			while (header.hasRemaining()) {
+				channel.write(header, header.position());
+			}
+		} catch (IOException e) {
+			throw new SerializationException(e);
+		} finally {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				throw new SerializationException(e);
+			}
+		}
+	}
+}
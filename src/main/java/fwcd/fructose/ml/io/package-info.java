@@ -0,0 +1,4 @@
+/**
+ * Compact binary storage of trained models.
+ */
+package fwcd.fructose.ml.io;
@@ -0,0 +1,87 @@
+package fwcd.fructose.ml.math;
+
+/**
+ * Conversions between floats and IEEE 754 half-precision
+ * values that are stored in the bits of a short.
+ */
+public final class Float16 {
+	/** Maps every half-precision bit pattern to its float value. */
+	private static final float[] TO_FLOAT = new float[1 << 16];
+	
+	static {
+		for (int i=0; i<TO_FLOAT.length; i++) {
+			TO_FLOAT[i] = decode(i);
+		}
+	}
+	
+	private Float16() {}
+	
+	/**
+	 * Converts a float to the nearest half-precision value
+	 * (rounding ties to even).
+	 */
+	public static short fromFloat(float value) {
+		int bits = Float.floatToRawIntBits(value);
+		int sign = (bits >>> 16) & 0x8000;
+		int exponent = (bits >>> 23) & 0xFF;
+		int mantissa = bits & 0x7FFFFF;
+		
+		if (exponent == 0xFF) {
+			// Infinity or NaN
+			return (short) (sign | 0x7C00 | ((mantissa != 0) ? 0x200 : 0));
+		}
+		
+		int halfExponent = exponent - 127 + 15;
+		
+		if (halfExponent >= 0x1F) {
+			// Overflow
+			return (short) (sign | 0x7C00);
+		} else if (halfExponent <= 0) {
+			// Subnormal or zero
+			if (halfExponent < -10) {
+				return (short) sign;
+			}
+			
+			int significand = mantissa | 0x800000;
+			int shift = 14 - halfExponent;
+			return (short) (sign | roundShift(significand, shift));
+		} else {
+			// A carry out of the mantissa correctly increments the exponent
+			return (short) (sign | roundShift((halfExponent << 23) | mantissa, 13));
+		}
+	}
+	
+	private static int roundShift(int value, int shift) {
+		int result = value >> shift;
+		int remainder = value & ((1 << shift) - 1);
+		int halfway = 1 << (shift - 1);
+		
+		if (remainder > halfway || (remainder == halfway && (result & 1) != 0)) {
+			result++;
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Converts a half-precision value to a float (exactly).
+	 */
+	public static float toFloat(short half) {
+		return TO_FLOAT[half & 0xFFFF];
+	}
+	
+	private static float decode(int half) {
+		int sign = (half & 0x8000) << 16;
+		int exponent = (half >>> 10) & 0x1F;
+		int mantissa = half & 0x3FF;
+		
+		if (exponent == 0x1F) {
+			return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+		} else if (exponent == 0) {
+			float value = mantissa * 0x1p-24F;
+			return (sign != 0) ? -value : value;
+		} else {
+			return Float.intBitsToFloat(sign | ((exponent - 15 + 127) << 23) | (mantissa << 13));
+		}
+	}
+}
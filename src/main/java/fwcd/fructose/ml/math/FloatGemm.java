@@ -0,0 +1,104 @@
+package fwcd.fructose.ml.math;
+
+/**
+ * General matrix multiplication on flat, row-major
+ * float arrays. The loop orders are chosen so that the
+ * innermost loop always walks contiguous memory.
+ */
+public final class FloatGemm {
+	private FloatGemm() {}
+	
+	/**
+	 * Computes {@code C = op(A) * op(B)} (or {@code C += op(A) * op(B)}
+	 * if accumulating) where {@code op(X)} is either {@code X} or its
+	 * transpose.
+	 * 
+	 * @param transposeA - Whether A is stored as a k x m matrix
+	 * @param transposeB - Whether B is stored as a n x k matrix
+	 * @param m - The height of op(A) and C
+	 * @param n - The width of op(B) and C
+	 * @param k - The width of op(A) and the height of op(B)
+	 * @param a - The left factor
+	 * @param aOffset - The index of the first component of A
+	 * @param b - The right factor
+	 * @param bOffset - The index of the first component of B
+	 * @param c - The result
+	 * @param cOffset - The index of the first component of C
+	 * @param accumulate - Whether the product should be added to C instead of overwriting it
+	 */
+	public static void multiply(
+			boolean transposeA,
+			boolean transposeB,
+			int m,
+			int n,
+			int k,
+			float[] a,
+			int aOffset,
+			float[] b,
+			int bOffset,
+			float[] c,
+			int cOffset,
+			boolean accumulate
+	) {
+		if (!accumulate) {
+			for (int i=0; i<m*n; i++) {
+				c[cOffset + i] = 0;
+			}
+		}
+		
+		if (!transposeA && !transposeB) {
+			for (int i=0; i<m; i++) {
+				int cRow = cOffset + (i * n);
+				int aRow = aOffset + (i * k);
+				for (int p=0; p<k; p++) {
+					float aValue = a[aRow + p];
+					if (aValue != 0) {
+						int bRow = bOffset + (p * n);
+						for (int j=0; j<n; j++) {
+							c[cRow + j] += aValue * b[bRow + j];
+						}
+					}
+				}
+			}
+		} else if (!transposeA) {
+			for (int i=0; i<m; i++) {
+				int cRow = cOffset + (i * n);
+				int aRow = aOffset + (i * k);
+				for (int j=0; j<n; j++) {
+					int bRow = bOffset + (j * k);
+					float dot = 0;
+					for (int p=0; p<k; p++) {
+						dot += a[aRow + p] * b[bRow + p];
+					}
+					c[cRow + j] += dot;
+				}
+			}
+		} else if (!transposeB) {
+			for (int p=0; p<k; p++) {
+				int aRow = aOffset + (p * m);
+				int bRow = bOffset + (p * n);
+				for (int i=0; i<m; i++) {
+					float aValue = a[aRow + i];
+					if (aValue != 0) {
+						int cRow = cOffset + (i * n);
+						for (int j=0; j<n; j++) {
+							c[cRow + j] += aValue * b[bRow + j];
+						}
+					}
+				}
+			}
+		} else {
+			for (int i=0; i<m; i++) {
+				int cRow = cOffset + (i * n);
+				for (int j=0; j<n; j++) {
+					int bRow = bOffset + (j * k);
+					float dot = 0;
+					for (int p=0; p<k; p++) {
+						dot += a[aOffset + (p * m) + i] * b[bRow + p];
+					}
+					c[cRow + j] += dot;
+				}
+			}
+		}
+	}
+}
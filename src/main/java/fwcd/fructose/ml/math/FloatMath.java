@@ -0,0 +1,94 @@
+package fwcd.fructose.ml.math;
+
+/**
+ * Float math routines for neural networks, including
+ * fast approximations of exponential functions.
+ */
+public final class FloatMath {
+	private static final float LOG2_E = 1.442695041F;
+	// ln(2) split into an exactly representable high part and a low part
+	private static final float LN_2_HI = 0.693145751953125F;
+	private static final float LN_2_LO = 1.4286068203e-6F;
+	private static final float EXP_MIN = -87.3F;
+	private static final float EXP_MAX = 88.7F;
+	/** Adding 1.5 * 2^23 rounds a small float to an integer, which ends up in the low mantissa bits. */
+	private static final float ROUNDING_SHIFTER = 12582912F;
+	private static final int ROUNDING_SHIFTER_BITS = Float.floatToRawIntBits(ROUNDING_SHIFTER);
+	
+	private FloatMath() {}
+	
+	/**
+	 * Approximates e^x with a relative error below 1e-6 by
+	 * splitting x into a power of two and a polynomial
+	 * of the remaining fraction.
+	 */
+	public static float fastExp(float x) {
+		if (x < EXP_MIN) {
+			return 0;
+		} else if (x > EXP_MAX) {
+			return Float.POSITIVE_INFINITY;
+		}
+		
+		float shifted = (x * LOG2_E) + ROUNDING_SHIFTER;
+		int n = Float.floatToRawIntBits(shifted) - ROUNDING_SHIFTER_BITS;
+		float nf = shifted - ROUNDING_SHIFTER;
+		float f = (x - (nf * LN_2_HI)) - (nf * LN_2_LO); // in [-ln(2)/2, ln(2)/2]
+		
+		// Taylor series of e^f
+		float p = 1 + f * (1 + f * (0.5F + f * (0.16666667F + f * (0.041666668F + f * (0.008333334F + f * 0.0013888889F)))));
+		
+		if (n > 127) {
+			// 2^n itself is not representable
+			return Float.intBitsToFloat((n + 126) << 23) * p * 2;
+		}
+		
+		return Float.intBitsToFloat((n + 127) << 23) * p;
+	}
+	
+	/**
+	 * Approximates the logistic function with an absolute error below 1e-6.
+	 */
+	public static float fastSigmoid(float x) {
+		return 1 / (1 + fastExp(-x));
+	}
+	
+	/**
+	 * Approximates tanh with an absolute error below 1e-6.
+	 */
+	public static float fastTanh(float x) {
+		return 1 - (2 / (1 + fastExp(2 * x)));
+	}
+	
+	/**
+	 * Computes the softmax of a range of values in a numerically
+	 * stable way (by subtracting the maximum) using one pass
+	 * for the maximum, one for the exponentials and their sum
+	 * and one for the normalization. The input and output array may be the same.
+	 * 
+	 * @param in - The input values
+	 * @param out - The destination
+	 * @param from - The first index (inclusive)
+	 * @param to - The last index (exclusive)
+	 */
+	public static void softmax(float[] in, float[] out, int from, int to) {
+		float max = Float.NEGATIVE_INFINITY;
+		
+		for (int i=from; i<to; i++) {
+			max = Math.max(max, in[i]);
+		}
+		
+		float sum = 0;
+		
+		for (int i=from; i<to; i++) {
+			float value = (float) Math.exp(in[i] - max);
+			out[i] = value;
+			sum += value;
+		}
+		
+		float inverseSum = 1 / sum;
+		
+		for (int i=from; i<to; i++) {
+			out[i] *= inverseSum;
+		}
+	}
+}
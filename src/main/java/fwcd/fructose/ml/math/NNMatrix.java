@@ -214,11 +214,32 @@ public class NNMatrix implements Iterable<float[]>, Serializable {
 		return data[y][x];
 	}
 	
+	public NNMatrix copy() {
+		float[][] copied = new float[data.length][];
+		
+		for (int y=0; y<data.length; y++) {
+			copied[y] = Arrays.copyOf(data[y], data[y].length);
+		}
+		
+		return new NNMatrix(copied);
+	}
+	
 	public float[] getRow(int y) {
 		float[] row = data[y];
 		return Arrays.copyOf(row, row.length);
 	}
 	
+	/**
+	 * Fetches the backing array of a row. Mutations
+	 * will be reflected in this matrix.
+	 * 
+	 * @param y - The row index
+	 * @return The row, <b>not copied</b>
+	 */
+	public float[] getMutableRow(int y) {
+		return data[y];
+	}
+	
 	public float[] getCol(int x) {
 		float[] col = new float[height()];
 		
@@ -0,0 +1,225 @@
+package fwcd.fructose.ml.math;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import fwcd.fructose.exception.SizeMismatchException;
+import fwcd.fructose.function.FloatUnaryOperator;
+
+/**
+ * <p>A mutable, n-dimensional float array specifically designed
+ * for neural networks with performance in mind. The components
+ * are stored in a single flat array.</p>
+ * 
+ * <p>Analogous to {@link fwcd.fructose.math.DoubleTensor}, the
+ * dimensions are ordered from the innermost to the outermost:</p>
+ * 
+ * <p>[width, height, depth/channels, ...]</p>
+ * 
+ * <p>Layers in a {@link fwcd.fructose.ml.neural.LayeredNetwork}
+ * treat the outermost dimension as the batch dimension, thus
+ * a batch of 32 RGB images of size 28x28 would have the dimensions
+ * [28, 28, 3, 32] and a batch of 32 feature vectors of
+ * length 10 would have the dimensions [10, 32].</p>
+ */
+public class NNTensor implements Serializable {
+	private static final long serialVersionUID = -3360893012598873154L;
+	private final float[] data;
+	private final int[] dimensions;
+	
+	/**
+	 * Creates a new tensor of the given dimensions
+	 * and fills it with zeroes.
+	 * 
+	 * @param dimensions - The dimensions, innermost first
+	 */
+	public NNTensor(int... dimensions) {
+		this.dimensions = dimensions;
+		data = new float[product(dimensions)];
+	}
+	
+	/**
+	 * Wraps the given data <b>without copying it</b>.
+	 * 
+	 * @param data - The flat components
+	 * @param dimensions - The dimensions, innermost first
+	 */
+	public NNTensor(float[] data, int... dimensions) {
+		if (data.length != product(dimensions)) {
+			throw new SizeMismatchException("data length", data.length, "tensor size", Arrays.toString(dimensions));
+		}
+		
+		this.data = data;
+		this.dimensions = dimensions;
+	}
+	
+	/**
+	 * Wraps the given vector as a batch of size 1.
+	 * 
+	 * @param vector - The vector
+	 * @return A tensor of the dimensions [vector size, 1]
+	 */
+	public static NNTensor ofVector(NNVector vector) {
+		float[] values = vector.asArray();
+		return new NNTensor(Arrays.copyOf(values, values.length), values.length, 1);
+	}
+	
+	/**
+	 * Stacks the given samples of equal dimensions
+	 * along a new, outermost batch dimension.
+	 * 
+	 * @param samples - The samples
+	 * @return The batch
+	 */
+	public static NNTensor stack(NNTensor... samples) {
+		if (samples.length == 0) {
+			throw new IllegalArgumentException("Can't stack zero tensors");
+		}
+		
+		int[] sampleDims = samples[0].dimensions;
+		int sampleSize = samples[0].data.length;
+		int[] batchDims = Arrays.copyOf(sampleDims, sampleDims.length + 1);
+		batchDims[sampleDims.length] = samples.length;
+		float[] result = new float[sampleSize * samples.length];
+		
+		for (int i=0; i<samples.length; i++) {
+			if (!Arrays.equals(sampleDims, samples[i].dimensions)) {
+				throw new SizeMismatchException("sample size", Arrays.toString(samples[i].dimensions), "first sample size", Arrays.toString(sampleDims));
+			}
+			System.arraycopy(samples[i].data, 0, result, i * sampleSize, sampleSize);
+		}
+		
+		return new NNTensor(result, batchDims);
+	}
+	
+	private static int product(int[] dimensions) {
+		int product = 1;
+		for (int dim : dimensions) {
+			product *= dim;
+		}
+		return product;
+	}
+	
+	/**
+	 * Creates a view of this tensor with different dimensions
+	 * that shares the underlying data.
+	 * 
+	 * @param newDimensions - The new dimensions, which have to contain the same amount of components
+	 * @return The reshaped tensor
+	 */
+	public NNTensor reshape(int... newDimensions) {
+		return new NNTensor(data, newDimensions);
+	}
+	
+	/**
+	 * Copies a single sample out of the (outermost) batch dimension.
+	 * 
+	 * @param index - The batch index
+	 * @return The sample, which has one dimension less than this tensor
+	 */
+	public NNTensor getSample(int index) {
+		int[] sampleDims = Arrays.copyOf(dimensions, dimensions.length - 1);
+		int sampleSize = product(sampleDims);
+		return new NNTensor(Arrays.copyOfRange(data, index * sampleSize, (index + 1) * sampleSize), sampleDims);
+	}
+	
+	/**
+	 * @return The size of the outermost dimension
+	 */
+	public int batchSize() {
+		return dimensions.length == 0 ? 1 : dimensions[dimensions.length - 1];
+	}
+	
+	public int getRank() {
+		return dimensions.length;
+	}
+	
+	public int getDimension(int index) {
+		return dimensions[index];
+	}
+	
+	public int[] getDimensions() {
+		return Arrays.copyOf(dimensions, dimensions.length);
+	}
+	
+	/**
+	 * @return The total amount of components
+	 */
+	public int size() {
+		return data.length;
+	}
+	
+	public float get(int i) {
+		return data[i];
+	}
+	
+	public void set(int i, float value) {
+		data[i] = value;
+	}
+	
+	public void mapInPlace(FloatUnaryOperator func) {
+		for (int i=0; i<data.length; i++) {
+			data[i] = func.applyAsFloat(data[i]);
+		}
+	}
+	
+	public NNTensor sub(NNTensor other) {
+		if (data.length != other.data.length) {
+			throw new SizeMismatchException("tensor size", Arrays.toString(dimensions), "other tensor size", Arrays.toString(other.dimensions));
+		}
+		
+		float[] result = new float[data.length];
+		
+		for (int i=0; i<data.length; i++) {
+			result[i] = data[i] - other.data[i];
+		}
+		
+		return new NNTensor(result, dimensions);
+	}
+	
+	public NNTensor copy() {
+		return new NNTensor(Arrays.copyOf(data, data.length), dimensions);
+	}
+	
+	/**
+	 * @return The flat components, <b>not copied</b>
+	 */
+	public float[] asArray() {
+		return data;
+	}
+	
+	@Override
+	public String toString() {
+		return "[NNTensor " + Arrays.toString(dimensions) + "] " + Arrays.toString(data);
+	}
+	
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + Arrays.hashCode(data);
+		result = prime * result + Arrays.hashCode(dimensions);
+		return result;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (obj == null) {
+			return false;
+		}
+		if (getClass() != obj.getClass()) {
+			return false;
+		}
+		NNTensor other = (NNTensor) obj;
+		if (!Arrays.equals(dimensions, other.dimensions)) {
+			return false;
+		}
+		if (!Arrays.equals(data, other.data)) {
+			return false;
+		}
+		return true;
+	}
+}
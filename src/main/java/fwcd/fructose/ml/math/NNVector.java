@@ -111,20 +111,8 @@ public class NNVector implements Iterable<Float>, Serializable {
 	}
 	
 	public NNVector softmax() {
-		float denom = 0;
-		
-		for (float value : data) {
-			denom += Math.exp(value);
-		}
-		
 		NNVector result = new NNVector(size());
-		
-		int i = 0;
-		for (float value : data) {
-			result.data[i] = (float) (Math.exp(value) / denom);
-			i++;
-		}
-		
+		FloatMath.softmax(data, result.data, 0, data.length);
 		return result;
 	}
 	
@@ -1,13 +1,25 @@
 package fwcd.fructose.ml.neural;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
-import fwcd.fructose.annotation.WIP;
+import fwcd.fructose.exception.SizeMismatchException;
 import fwcd.fructose.function.AnyBuilder;
 import fwcd.fructose.ml.data.LabelledData;
+import fwcd.fructose.ml.math.NNTensor;
+import fwcd.fructose.ml.math.NNVector;
+import fwcd.fructose.ml.neural.layers.BackpropResult;
+import fwcd.fructose.ml.neural.layers.LayerGradient;
 import fwcd.fructose.ml.neural.layers.NNLayer;
+import fwcd.fructose.ml.neural.layers.ParameterizedLayer;
+import fwcd.fructose.ml.optimizer.LearningRateSchedule;
+import fwcd.fructose.ml.optimizer.Optimizer;
+import fwcd.fructose.ml.optimizer.SGDOptimizer;
+import fwcd.fructose.ml.telemetry.TrainingMonitor;
 
 /**
  * <p>A layered neural network that generalizes common
@@ -21,18 +33,35 @@ import fwcd.fructose.ml.neural.layers.NNLayer;
  * 
  * <p>{@code new LayeredNetwork.Builder()}</p>
  * 
+ * <p>The layers in {@link fwcd.fructose.ml.neural.layers} operate on
+ * batches of {@link fwcd.fructose.ml.math.NNTensor}s, thus a single
+ * forward or backward pass may process an entire mini-batch
+ * (see {@link #backpropBatch}). A small convolutional network
+ * could look like this:</p>
+ * 
+ * <pre>
+ * new LayeredNetwork.Builder()
+ *     .optimizer(new AdamOptimizer())
+ *     .inLayer(new Conv2DLayer(1, 8, 3))
+ *     .layer(new MaxPoolLayer(2))
+ *     .layer(new FlattenLayer())
+ *     .outLayer(new DenseLayer(8 * 13 * 13, 10))
+ *     .build();
+ * </pre>
+ * 
  * @author Fredrik
  *
  * @param <I> - The input data type
  * @param <O> - The output data type
  */
-@WIP(usable = false)
 public class LayeredNetwork<I, O> implements SupervisedNN<I, O> {
 	private static final long serialVersionUID = -5634042575520289180L;
 	private final NNParameters hyperparameters;
 	private final NNLayer<I, ?, ?> inLayer;
 	private final List<NNLayer<?, ?, ?>> hiddenLayers;
 	private final NNLayer<?, O, ?> outLayer;
+	private final List<NNLayer<?, ?, ?>> layers;
+	private transient TrainingMonitor monitor = new TrainingMonitor();
 	
 	private LayeredNetwork(
 			NNLayer<I, ?, ?> inLayer,
@@ -44,25 +73,215 @@ public class LayeredNetwork<I, O> implements SupervisedNN<I, O> {
 		this.hiddenLayers = hiddenLayers;
 		this.outLayer = outLayer;
 		this.hyperparameters = hyperparameters;
+		
+		List<NNLayer<?, ?, ?>> allLayers = new ArrayList<>();
+		allLayers.add(inLayer);
+		allLayers.addAll(hiddenLayers);
+		allLayers.add(outLayer);
+		layers = Collections.unmodifiableList(allLayers);
+	}
+	
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		monitor = new TrainingMonitor();
 	}
 	
 	@SuppressWarnings("unchecked")
 	@Override
 	public O compute(I input) {
-		Object lastOut = inLayer.forwardprop(input);
-		for (NNLayer<?, ?, ?> layer : hiddenLayers) {
-			((NNLayer<Object, Object, ?>) layer).forwardprop(lastOut);
+		Object lastOut = input;
+		for (NNLayer<?, ?, ?> layer : layers) {
+			lastOut = ((NNLayer<Object, Object, ?>) layer).forwardprop(lastOut);
 		}
 		return (O) lastOut;
 	}
 
+	/**
+	 * Performs a single gradient descent step using
+	 * the averaged gradient of all examples.
+	 */
 	@Override
 	public void backprop(LabelledData<I, O> data) {
-		// TODO
+		List<I> inputs = new ArrayList<>(data.getInputs());
+		List<O> outputs = new ArrayList<>(inputs.size());
+		
+		for (I input : inputs) {
+			outputs.add(data.getOutput(input));
+		}
+		
+		teach(inputs, outputs);
+	}
+	
+	/**
+	 * Performs a single gradient descent step using the
+	 * averaged gradient of all examples (including
+	 * duplicate inputs).
+	 */
+	@Override
+	public void teach(List<? extends I> inputs, List<? extends O> outputs) {
+		if (inputs.size() != outputs.size()) {
+			throw new SizeMismatchException("outputs", outputs.size(), "inputs", inputs.size());
+		}
+		
+		LayerGradient<?>[] gradients = new LayerGradient<?>[layers.size()];
+		boolean measuring = monitor.isActive();
+		double loss = 0;
+		int samples = 0;
+		
+		if (measuring) {
+			monitor.beginBatch(layers.size());
+		}
+		
+		for (int i=0; i<inputs.size(); i++) {
+			loss += accumulateGradients(inputs.get(i), outputs.get(i), gradients, measuring);
+			samples++;
+		}
+		
+		applyGradients(gradients);
+		
+		if (measuring) {
+			endBatch(gradients, samples, loss);
+		}
+	}
+	
+	/**
+	 * Performs a single gradient descent step on a whole
+	 * mini-batch using only one forward and one backward pass.
+	 * 
+	 * @param inputBatch - The inputs (e.g. stacked along the batch dimension of a tensor)
+	 * @param expectedBatch - The expected outputs, in the same order
+	 */
+	public void backpropBatch(I inputBatch, O expectedBatch) {
+		LayerGradient<?>[] gradients = new LayerGradient<?>[layers.size()];
+		boolean measuring = monitor.isActive();
+		
+		if (measuring) {
+			monitor.beginBatch(layers.size());
+		}
+		
+		double loss = accumulateGradients(inputBatch, expectedBatch, gradients, measuring);
+		applyGradients(gradients);
+		
+		if (measuring) {
+			int samples = (inputBatch instanceof NNTensor) ? ((NNTensor) inputBatch).batchSize() : 1;
+			endBatch(gradients, samples, loss);
+		}
+	}
+	
+	private void endBatch(LayerGradient<?>[] gradients, int samples, double loss) {
+		if (monitor.isSamplingNorms()) {
+			for (int i=0; i<gradients.length; i++) {
+				NNLayer<?, ?, ?> layer = layers.get(i);
+				double weightNorm = Double.NaN;
+				
+				if (layer instanceof ParameterizedLayer) {
+					ParameterizedLayer<?> parameterized = (ParameterizedLayer<?>) layer;
+					weightNorm = TrainingMonitor.norm(parameterized.getWeights(), parameterized.getBiases());
+				}
+				
+				monitor.setNorms(i, weightNorm, (gradients[i] == null) ? Double.NaN : gradients[i].norm());
+			}
+		}
+		
+		monitor.endBatch(samples, (samples == 0) ? Double.NaN : loss / samples);
+	}
+	
+	/**
+	 * Forward- and backpropagates the input and adds
+	 * the resulting gradients to the given array.
+	 * 
+	 * @return The summed squared error if measuring (and the output type supports it), otherwise 0
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private double accumulateGradients(I input, O expected, LayerGradient<?>[] gradients, boolean measuring) {
+		int layerCount = layers.size();
+		Object[] activations = new Object[layerCount + 1];
+		activations[0] = input;
+		
+		for (int i=0; i<layerCount; i++) {
+			long start = measuring ? System.nanoTime() : 0;
+			activations[i + 1] = ((NNLayer<Object, Object, ?>) layers.get(i)).forwardprop(activations[i]);
+			if (measuring) {
+				monitor.addForwardNanos(i, System.nanoTime() - start);
+			}
+		}
+		
+		Object error = null;
+		
+		for (int i=layerCount-1; i>=0; i--) {
+			long start = measuring ? System.nanoTime() : 0;
+			NNLayer<Object, Object, ?> layer = (NNLayer<Object, Object, ?>) layers.get(i);
+			BackpropResult<Object, ?> result;
+			
+			if (i == layerCount - 1) {
+				result = layer.backpropOutput(activations[i], activations[i + 1], expected, hyperparameters);
+			} else {
+				result = layer.backprop(activations[i], activations[i + 1], error, hyperparameters);
+			}
+			
+			if (gradients[i] == null) {
+				gradients[i] = result.getGradient();
+			} else {
+				((LayerGradient) gradients[i]).addInPlace(result.getGradient());
+			}
+			
+			error = result.getPreviousLayerError();
+			
+			if (measuring) {
+				monitor.addBackwardNanos(i, System.nanoTime() - start);
+			}
+		}
+		
+		return measuring ? squaredError(activations[layerCount], expected) : 0;
+	}
+	
+	private static double squaredError(Object output, Object expected) {
+		float[] out;
+		float[] exp;
+		
+		if (output instanceof NNTensor && expected instanceof NNTensor) {
+			out = ((NNTensor) output).asArray();
+			exp = ((NNTensor) expected).asArray();
+		} else if (output instanceof NNVector && expected instanceof NNVector) {
+			out = ((NNVector) output).asArray();
+			exp = ((NNVector) expected).asArray();
+		} else {
+			return Double.NaN;
+		}
+		
+		double sum = 0;
+		for (int i=0; i<out.length; i++) {
+			double delta = out[i] - exp[i];
+			sum += delta * delta;
+		}
+		return sum;
+	}
+	
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private void applyGradients(LayerGradient<?>[] gradients) {
+		for (int i=0; i<gradients.length; i++) {
+			if (gradients[i] != null) {
+				((LayerGradient) gradients[i]).apply(layers.get(i));
+			}
+		}
+	}
+	
+	/**
+	 * @return All layers, including the in and out layer
+	 */
+	public List<NNLayer<?, ?, ?>> getLayers() {
+		return layers;
+	}
+	
+	/**
+	 * @return The monitor that reports metrics to registered training listeners
+	 */
+	public TrainingMonitor getTrainingMonitor() {
+		return monitor;
 	}
 	
-	private void backprop(int index, NNLayer<?, ?, ?> layer) {
-		// TODO
+	public NNParameters getHyperparameters() {
+		return hyperparameters;
 	}
 	
 	public NNLayer<I, ?, ?> getInLayer() {
@@ -86,13 +305,25 @@ public class LayeredNetwork<I, O> implements SupervisedNN<I, O> {
 	 */
 	public static class Builder {
 		private double learningRate = 0.1D;
+		private Optimizer optimizer = new SGDOptimizer();
+		private LearningRateSchedule learningRateSchedule = LearningRateSchedule.constant();
 		
 		public Builder learningRate(double learningRate) {
 			this.learningRate = learningRate;
 			return this;
 		}
 		
-		public <I> LayerStackBuilder<I, I> inLayer(NNLayer<I, ?, ?> inLayer) {
+		public Builder optimizer(Optimizer optimizer) {
+			this.optimizer = optimizer;
+			return this;
+		}
+		
+		public Builder learningRateSchedule(LearningRateSchedule learningRateSchedule) {
+			this.learningRateSchedule = learningRateSchedule;
+			return this;
+		}
+		
+		public <I, N> LayerStackBuilder<I, N> inLayer(NNLayer<I, N, ?> inLayer) {
 			return new LayerStackBuilder<>(this, Objects.requireNonNull(inLayer));
 		}
 	}
@@ -149,7 +380,9 @@ public class LayeredNetwork<I, O> implements SupervisedNN<I, O> {
 		
 		private NNParameters compileHyperparameters() {
 			return new NNParameters(
-					firstBuilder.learningRate
+					firstBuilder.learningRate,
+					firstBuilder.optimizer,
+					firstBuilder.learningRateSchedule
 			);
 		}
 		
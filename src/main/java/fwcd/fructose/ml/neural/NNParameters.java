@@ -1,15 +1,50 @@
 package fwcd.fructose.ml.neural;
 
-public class NNParameters {
+import java.io.Serializable;
+
+import fwcd.fructose.ml.optimizer.LearningRateSchedule;
+import fwcd.fructose.ml.optimizer.Optimizer;
+import fwcd.fructose.ml.optimizer.SGDOptimizer;
+
+public class NNParameters implements Serializable {
+	private static final long serialVersionUID = 2797186934532086410L;
 	private final double learningRate;
+	private final Optimizer optimizer;
+	private final LearningRateSchedule learningRateSchedule;
 	
 	public NNParameters(
 			double learningRate
+	) {
+		this(learningRate, new SGDOptimizer(), LearningRateSchedule.constant());
+	}
+	
+	public NNParameters(
+			double learningRate,
+			Optimizer optimizer,
+			LearningRateSchedule learningRateSchedule
 	) {
 		this.learningRate = learningRate;
+		this.optimizer = optimizer;
+		this.learningRateSchedule = learningRateSchedule;
 	}
 
 	public double getLearningRate() {
 		return learningRate;
 	}
+	
+	/**
+	 * @param step - The (1-based) optimization step
+	 * @return The scheduled learning rate for the given step
+	 */
+	public float getLearningRate(long step) {
+		return learningRateSchedule.getLearningRate((float) learningRate, step);
+	}
+	
+	public Optimizer getOptimizer() {
+		return optimizer;
+	}
+	
+	public LearningRateSchedule getLearningRateSchedule() {
+		return learningRateSchedule;
+	}
 }
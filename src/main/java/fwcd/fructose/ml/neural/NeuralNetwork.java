@@ -1,6 +1,8 @@
 package fwcd.fructose.ml.neural;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * An artifical neural network/general function approximator
@@ -13,4 +15,19 @@ import java.io.Serializable;
  */
 public interface NeuralNetwork<I, O> extends Serializable {
 	O compute(I input);
+	
+	/**
+	 * Computes the outputs of multiple inputs, which
+	 * implementations may process as a single batch.
+	 * 
+	 * @param inputs - The inputs
+	 * @return The outputs in the same order
+	 */
+	default List<O> computeAll(List<? extends I> inputs) {
+		List<O> outputs = new ArrayList<>(inputs.size());
+		for (I input : inputs) {
+			outputs.add(compute(input));
+		}
+		return outputs;
+	}
 }
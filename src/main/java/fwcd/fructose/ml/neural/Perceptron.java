@@ -1,9 +1,15 @@
 package fwcd.fructose.ml.neural;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.NoSuchElementException;
 
+import fwcd.fructose.Copyable;
+import fwcd.fructose.exception.SerializationException;
 import fwcd.fructose.exception.SizeMismatchException;
 import fwcd.fructose.function.AnyBuilder;
 import fwcd.fructose.function.FloatSupplier;
@@ -12,8 +18,15 @@ import fwcd.fructose.ml.function.DiffFunction;
 import fwcd.fructose.ml.function.NNFunction;
 import fwcd.fructose.ml.function.NNWeightInit;
 import fwcd.fructose.ml.function.WeightInit;
+import fwcd.fructose.ml.io.ModelFile;
+import fwcd.fructose.ml.io.ModelFileWriter;
 import fwcd.fructose.ml.math.NNMatrix;
 import fwcd.fructose.ml.math.NNVector;
+import fwcd.fructose.ml.optimizer.LearningRateSchedule;
+import fwcd.fructose.ml.optimizer.Optimizer;
+import fwcd.fructose.ml.optimizer.OptimizerState;
+import fwcd.fructose.ml.optimizer.SGDOptimizer;
+import fwcd.fructose.ml.telemetry.TrainingMonitor;
 
 /**
  * A simple (but flexible), multi-layer feed-forward perceptron.
@@ -22,7 +35,7 @@ import fwcd.fructose.ml.math.NNVector;
  * @author Fredrik
  *
  */
-public class Perceptron implements SupervisedNN<NNVector, NNVector> {
+public class Perceptron implements SupervisedNN<NNVector, NNVector>, Copyable<Perceptron> {
 	private static final long serialVersionUID = 8421330699640634886L;
 	private final int[] layerSizes;
 	private final NNMatrix[] allWeights;
@@ -30,23 +43,73 @@ public class Perceptron implements SupervisedNN<NNVector, NNVector> {
 	private final DiffFunction activationFunction;
 	private final WeightInit weightInit;
 	private final float learnFactor;
+	// Not final, since models saved before optimizers existed lack these fields
+	private Optimizer optimizer;
+	private LearningRateSchedule learningRateSchedule;
+	private OptimizerState optimizerState;
+	private transient TrainingMonitor monitor = new TrainingMonitor();
 	
 	protected Perceptron(
 			DiffFunction activationFunction,
 			WeightInit weightInit,
 			int[] layerSizes,
 			float learnFactor
+	) {
+		this(activationFunction, weightInit, layerSizes, learnFactor, new SGDOptimizer(), LearningRateSchedule.constant());
+	}
+	
+	protected Perceptron(
+			DiffFunction activationFunction,
+			WeightInit weightInit,
+			int[] layerSizes,
+			float learnFactor,
+			Optimizer optimizer,
+			LearningRateSchedule learningRateSchedule
 	) {
 		this.weightInit = weightInit;
 		this.activationFunction = activationFunction;
 		this.layerSizes = layerSizes;
 		this.learnFactor = learnFactor;
+		this.optimizer = optimizer;
+		this.learningRateSchedule = learningRateSchedule;
 		
 		allWeights = new NNMatrix[layerSizes.length];
 		allBiases = new NNVector[layerSizes.length];
 		
 		reInitWeights();
 	}
+	
+	private Perceptron(Perceptron source) {
+		weightInit = source.weightInit;
+		activationFunction = source.activationFunction;
+		layerSizes = source.layerSizes;
+		learnFactor = source.learnFactor;
+		optimizer = source.optimizer;
+		learningRateSchedule = source.learningRateSchedule;
+		optimizerState = source.optimizerState.copy();
+		allWeights = new NNMatrix[layerSizes.length];
+		allBiases = new NNVector[layerSizes.length];
+		
+		for (int i=1; i<layerSizes.length; i++) {
+			allWeights[i] = source.allWeights[i].copy();
+			allBiases[i] = source.allBiases[i].copy();
+		}
+	}
+	
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		monitor = new TrainingMonitor();
+		
+		if (optimizer == null) {
+			optimizer = new SGDOptimizer();
+		}
+		if (learningRateSchedule == null) {
+			learningRateSchedule = LearningRateSchedule.constant();
+		}
+		if (optimizerState == null) {
+			optimizerState = optimizer.createState(parameterCount());
+		}
+	}
 
 	public void reInitWeights() {
 		// First layer does not have any input neurons,
@@ -68,6 +131,21 @@ public class Perceptron implements SupervisedNN<NNVector, NNVector> {
 			biases.fill(generator);
 			allBiases[i] = biases;
 		}
+		
+		optimizerState = optimizer.createState(parameterCount());
+	}
+	
+	/**
+	 * @return The total amount of weights and biases
+	 */
+	public int parameterCount() {
+		int count = 0;
+		
+		for (int i=1; i<layerSizes.length; i++) {
+			count += (layerSizes[i - 1] + 1) * layerSizes[i];
+		}
+		
+		return count;
 	}
 	
 	public float cost(LabelledData<NNVector, NNVector> data) {
@@ -124,20 +202,79 @@ public class Perceptron implements SupervisedNN<NNVector, NNVector> {
 		return result;
 	}
 
+	/**
+	 * Feeds all inputs through one layer at a time, thus every
+	 * weight row is only loaded once per layer for the entire batch.
+	 */
+	@Override
+	public List<NNVector> computeAll(List<? extends NNVector> inputs) {
+		final int layerCount = layerCount();
+		final int batchSize = inputs.size();
+		float[][] layer = new float[batchSize][];
+		
+		for (int s=0; s<batchSize; s++) {
+			NNVector in = inputs.get(s);
+			if (in.size() != layerSizes[0]) {
+				throw new SizeMismatchException("input vector size", in.size(), "first layer neurons", layerSizes[0]);
+			}
+			layer[s] = in.asArray();
+		}
+		
+		for (int l=1; l<layerCount; l++) {
+			NNMatrix layerWeights = getWeights(l);
+			float[] layerBiases = getBiases(l).asArray();
+			int out = layerWeights.height();
+			float[][] next = new float[batchSize][out];
+			
+			for (int row=0; row<out; row++) {
+				float[] weightRow = layerWeights.getMutableRow(row);
+				
+				for (int s=0; s<batchSize; s++) {
+					float[] in = layer[s];
+					float dot = 0;
+					
+					for (int i=0; i<weightRow.length; i++) {
+						dot += weightRow[i] * in[i];
+					}
+					
+					next[s][row] = dot + layerBiases[row];
+				}
+			}
+			
+			for (int s=0; s<batchSize; s++) {
+				activationFunction.apply(next[s], next[s], 0, out);
+			}
+			
+			layer = next;
+		}
+		
+		List<NNVector> outputs = new ArrayList<>(batchSize);
+		for (float[] output : layer) {
+			outputs.add(new NNVector(output));
+		}
+		return outputs;
+	}
+	
 	private NNVector weightedSum(int targetLayer, NNVector in) {
 		return getWeights(targetLayer).multiply(in).add(getBiases(targetLayer));
 	}
 	
 	private NNVector feedBackward(NNVector activatedLayer, NNVector nonActivatedLayer) {
+		float[] result = new float[activatedLayer.size()];
+		
 		if (activationFunction.canComputeDfUsingF()) {
-			return activatedLayer.map(activationFunction::dfUsingF);
+			activationFunction.applyDerivativeUsingF(activatedLayer.asArray(), result, 0, result.length);
 		} else {
-			return nonActivatedLayer.map(activationFunction::df);
+			activationFunction.applyDerivative(nonActivatedLayer.asArray(), result, 0, result.length);
 		}
+		
+		return new NNVector(result);
 	}
 	
 	private NNVector feedForward(NNVector nonActivatedLayer, int targetLayer, NNVector in) {
-		return nonActivatedLayer.map(activationFunction::f);
+		float[] result = new float[nonActivatedLayer.size()];
+		activationFunction.apply(nonActivatedLayer.asArray(), result, 0, result.length);
+		return new NNVector(result);
 	}
 	
 	private NNVector feedForward(int targetLayer, NNVector in) {
@@ -146,6 +283,27 @@ public class Perceptron implements SupervisedNN<NNVector, NNVector> {
 
 	@Override
 	public void backprop(LabelledData<NNVector, NNVector> data) {
+		List<NNVector> inputs = new ArrayList<>(data.getInputs());
+		List<NNVector> outputs = new ArrayList<>(inputs.size());
+		
+		for (NNVector input : inputs) {
+			outputs.add(data.getOutput(input));
+		}
+		
+		teach(inputs, outputs);
+	}
+	
+	/**
+	 * Performs a single gradient descent step using the
+	 * averaged gradient of all examples (including
+	 * duplicate inputs).
+	 */
+	@Override
+	public void teach(List<? extends NNVector> inputs, List<? extends NNVector> outputs) {
+		if (inputs.size() != outputs.size()) {
+			throw new SizeMismatchException("outputs", outputs.size(), "inputs", inputs.size());
+		}
+		
 		final int layerCount = layerCount();
 		int samples = 0;
 		NNMatrix[] sumWeightNudges = new NNMatrix[layerCount];
@@ -154,9 +312,16 @@ public class Perceptron implements SupervisedNN<NNVector, NNVector> {
 		NNVector[] currentBiasNudges = new NNVector[layerCount];
 		NNVector[] activatedLayers = new NNVector[layerCount];
 		NNVector[] nonActivatedLayers = new NNVector[layerCount];
+		boolean measuring = monitor.isActive();
+		double loss = 0;
+		
+		if (measuring) {
+			monitor.beginBatch(layerCount);
+		}
 		
-		for (NNVector input : data.getInputs()) {
-			NNVector targetOutput = data.getOutput(input);
+		for (int example=0; example<inputs.size(); example++) {
+			NNVector input = inputs.get(example);
+			NNVector targetOutput = outputs.get(example);
 			
 			// Forwardpass
 			
@@ -166,11 +331,21 @@ public class Perceptron implements SupervisedNN<NNVector, NNVector> {
 			activatedLayers[0] = input;
 			
 			for (int i=1; i<layerCount; i++) {
+				long start = measuring ? System.nanoTime() : 0;
 				NNVector nonActivated = weightedSum(i, result);
 				nonActivatedLayers[i] = nonActivated;
 				
 				result = feedForward(nonActivated, i, result);
 				activatedLayers[i] = result;
+				
+				if (measuring) {
+					monitor.addForwardNanos(i, System.nanoTime() - start);
+				}
+			}
+			
+			if (measuring) {
+				NNVector delta = result.sub(targetOutput);
+				loss += delta.dot(delta);
 			}
 			
 			// Backwardpass
@@ -182,6 +357,7 @@ public class Perceptron implements SupervisedNN<NNVector, NNVector> {
 					lastLayerIndex,
 					currentWeightNudges,
 					currentBiasNudges,
+					measuring,
 					result.sub(targetOutput)
 							.hadamardProduct(
 									feedBackward(
@@ -208,24 +384,73 @@ public class Perceptron implements SupervisedNN<NNVector, NNVector> {
 			samples++;
 		}
 
-		// Apply averaged nudges to current weights and biases
+		if (samples > 0) {
+			applyGradients(sumWeightNudges, sumBiasNudges, 1F / samples);
+		}
 		
-		int wLayerIndex = 0;
-		for (NNMatrix sumWeightsDelta : sumWeightNudges) {
-			if (sumWeightsDelta != null) {
-				NNMatrix weights = allWeights[wLayerIndex];
-				weights.addInPlace(sumWeightsDelta.multiply(1F / samples));
+		if (measuring) {
+			if (samples > 0 && monitor.isSamplingNorms()) {
+				for (int i=1; i<layerCount; i++) {
+					monitor.setNorms(i, norm(allWeights[i], allBiases[i]), norm(sumWeightNudges[i], sumBiasNudges[i]) / samples);
+				}
 			}
-			wLayerIndex++;
+			
+			monitor.endBatch(samples, (samples == 0) ? Double.NaN : loss / samples);
 		}
+	}
+	
+	private static double norm(NNMatrix weights, NNVector biases) {
+		double sum = 0;
 		
-		int bLayerIndex = 0;
-		for (NNVector sumBiasDelta : sumBiasNudges) {
-			if (sumBiasDelta != null) {
-				NNVector biases = allBiases[bLayerIndex];
-				biases.addInPlace(sumBiasDelta.multiply(1F / samples));
+		for (float[] row : weights) {
+			double rowNorm = TrainingMonitor.norm(row);
+			sum += rowNorm * rowNorm;
+		}
+		
+		double biasNorm = TrainingMonitor.norm(biases.asArray());
+		return Math.sqrt(sum + (biasNorm * biasNorm));
+	}
+	
+	/**
+	 * Applies the summed gradients to the current weights and
+	 * biases using the optimizer. The optimizer state is laid out
+	 * layer by layer, each layer storing its weight rows followed
+	 * by its biases.
+	 */
+	private void applyGradients(NNMatrix[] weightGradients, NNVector[] biasGradients, float gradientScale) {
+		long step = optimizerState.nextStep();
+		float learningRate = learningRateSchedule.getLearningRate(learnFactor, step);
+		int stateOffset = 0;
+		
+		for (int i=1; i<layerSizes.length; i++) {
+			NNMatrix weights = allWeights[i];
+			NNMatrix weightGradient = weightGradients[i];
+			int width = weights.width();
+			int height = weights.height();
+			
+			for (int y=0; y<height; y++) {
+				optimizer.update(
+						optimizerState,
+						stateOffset,
+						weights.getMutableRow(y),
+						weightGradient.getMutableRow(y),
+						width,
+						gradientScale,
+						learningRate
+				);
+				stateOffset += width;
 			}
-			bLayerIndex++;
+			
+			optimizer.update(
+					optimizerState,
+					stateOffset,
+					allBiases[i].asArray(),
+					biasGradients[i].asArray(),
+					height,
+					gradientScale,
+					learningRate
+			);
+			stateOffset += height;
 		}
 	}
 	
@@ -244,6 +469,7 @@ public class Perceptron implements SupervisedNN<NNVector, NNVector> {
 	 * @param layer - The layer index
 	 * @param weightNudges - The weight gradient (this argument is mutated while recursing, but not swapped)
 	 * @param biasNudges - The bias gradient (this argument is mutated while recursing, but not swapped)
+	 * @param measuring - Whether the time spent per layer should be reported to the training monitor
 	 * @param error - The error vector (del cost / del activatedLayer), also called "kronecker delta"
 	 */
 	private void backprop(
@@ -252,28 +478,40 @@ public class Perceptron implements SupervisedNN<NNVector, NNVector> {
 			int layer,
 			NNMatrix[] weightNudges,
 			NNVector[] biasNudges,
+			boolean measuring,
 			NNVector error
 	) {
+		long start = measuring ? System.nanoTime() : 0;
+		
+		// The nudges contain the raw gradient, the step
+		// direction and size are up to the optimizer
 		weightNudges[layer] = error
-				.multiply(-learnFactor) // TODO: Stochastic gradient descent and/or momentum
 				.multiply(activatedLayers[layer - 1].transpose());
-		biasNudges[layer] = error
-				.multiply(-learnFactor);
+		biasNudges[layer] = error.copy();
 		
 		if (layer > 1) {
+			NNVector previousError = allWeights[layer]
+					.transpose()
+					.multiply(error)
+					.hadamardProduct(
+							feedBackward(activatedLayers[layer - 1], nonActivatedLayers[layer - 1])
+					);
+			
+			if (measuring) {
+				monitor.addBackwardNanos(layer, System.nanoTime() - start);
+			}
+			
 			backprop(
 					activatedLayers,
 					nonActivatedLayers,
 					layer - 1,
 					weightNudges,
 					biasNudges,
-					allWeights[layer]
-							.transpose()
-							.multiply(error)
-							.hadamardProduct(
-									feedBackward(activatedLayers[layer - 1], nonActivatedLayers[layer - 1])
-							)
+					measuring,
+					previousError
 			);
+		} else if (measuring) {
+			monitor.addBackwardNanos(layer, System.nanoTime() - start);
 		}
 	}
 	
@@ -281,11 +519,117 @@ public class Perceptron implements SupervisedNN<NNVector, NNVector> {
 		return layerSizes.length;
 	}
 	
+	public Optimizer getOptimizer() {
+		return optimizer;
+	}
+	
+	/**
+	 * @return The monitor that reports metrics to registered training listeners
+	 */
+	public TrainingMonitor getTrainingMonitor() {
+		return monitor;
+	}
+	
+	public DiffFunction getActivationFunction() {
+		return activationFunction;
+	}
+	
+	/**
+	 * Copies the weights, the biases and the optimizer state,
+	 * which is much cheaper than serializing this perceptron.
+	 * The copy has its own training monitor.
+	 */
+	@Override
+	public Perceptron copy() {
+		return new Perceptron(this);
+	}
+	
+	/**
+	 * Creates an immutable, quantized copy of this
+	 * perceptron for inference.
+	 */
+	public QuantizedPerceptron quantize(QuantizationMode mode) {
+		return QuantizedPerceptron.of(this, mode);
+	}
+	
+	/**
+	 * Writes the weights and biases to a binary {@link ModelFile}.
+	 * Each layer is stored as its weight rows followed by its biases.
+	 * 
+	 * @param file - The destination
+	 */
+	public void saveBinary(File file) {
+		try (ModelFileWriter writer = new ModelFileWriter(file, ModelFile.Type.PERCEPTRON, ModelFile.DataType.FLOAT32, activationFunction, layerSizes)) {
+			for (int i=1; i<layerSizes.length; i++) {
+				NNMatrix weights = allWeights[i];
+				for (int y=0; y<weights.height(); y++) {
+					writer.writeFloats(weights.getMutableRow(y), 0, weights.width());
+				}
+				writer.writeFloats(allBiases[i].asArray(), 0, allBiases[i].size());
+			}
+		}
+	}
+	
+	/**
+	 * Loads the weights and biases from a binary {@link ModelFile}
+	 * with matching layer sizes. This resets the optimizer state.
+	 * 
+	 * @param file - The model file
+	 */
+	public void loadBinary(File file) {
+		loadBinary(ModelFile.open(file, ModelFile.Type.PERCEPTRON));
+	}
+	
+	private void loadBinary(ModelFile model) {
+		if (!Arrays.equals(model.getLayerSizes(), layerSizes)) {
+			throw new SerializationException("Stored layer sizes " + Arrays.toString(model.getLayerSizes()) + " do not match " + Arrays.toString(layerSizes));
+		} else if (model.getActivation() != null && model.getActivation() != activationFunction) {
+			throw new SerializationException("Stored activation function " + model.getActivation() + " does not match " + activationFunction);
+		}
+		
+		for (int i=1; i<layerSizes.length; i++) {
+			NNMatrix weights = allWeights[i];
+			for (int y=0; y<weights.height(); y++) {
+				model.readFloats(weights.getMutableRow(y), 0, weights.width());
+			}
+			model.readFloats(allBiases[i].asArray(), 0, allBiases[i].size());
+		}
+		
+		optimizerState.reset();
+	}
+	
+	/**
+	 * Creates a perceptron from a binary {@link ModelFile}. The
+	 * training hyperparameters are not stored and thus default
+	 * to those of {@link Perceptron.Builder}.
+	 * 
+	 * @param file - The model file
+	 * @return The loaded perceptron
+	 */
+	public static Perceptron readBinary(File file) {
+		ModelFile model = ModelFile.open(file, ModelFile.Type.PERCEPTRON);
+		
+		if (model.getActivation() == null) {
+			throw new SerializationException(file + " uses a custom activation function that can not be restored");
+		}
+		
+		Builder builder = new Builder().activationFunc(model.getActivation());
+		for (int size : model.getLayerSizes()) {
+			builder.layer(size);
+		}
+		
+		Perceptron perceptron = builder.build();
+		perceptron.loadBinary(model);
+		return perceptron;
+	}
+	
 	public static class Builder implements AnyBuilder<Perceptron> {
 		private final List<Integer> layers = new ArrayList<>();
 		private DiffFunction activationFunction = NNFunction.LEAKY_RELU;
 		private WeightInit weightInit = NNWeightInit.XAVIER;
 		private float learnFactor = 0.1F;
+		private Optimizer optimizer = new SGDOptimizer();
+		private LearningRateSchedule learningRateSchedule = LearningRateSchedule.constant();
 		
 		public Builder layer(int size) {
 			layers.add(size);
@@ -307,13 +651,33 @@ public class Perceptron implements SupervisedNN<NNVector, NNVector> {
 			return this;
 		}
 		
+		/**
+		 * Sets the optimizer used to apply the gradients.
+		 * Defaults to plain gradient descent.
+		 */
+		public Builder optimizer(Optimizer optimizer) {
+			this.optimizer = optimizer;
+			return this;
+		}
+		
+		/**
+		 * Sets the schedule that derives the learning rate
+		 * of each step from the learn factor.
+		 */
+		public Builder learningRateSchedule(LearningRateSchedule learningRateSchedule) {
+			this.learningRateSchedule = learningRateSchedule;
+			return this;
+		}
+		
 		@Override
 		public Perceptron build() {
 			return new Perceptron(
 					activationFunction,
 					weightInit,
 					layers.stream().mapToInt(Integer::valueOf).toArray(),
-					learnFactor
+					learnFactor,
+					optimizer,
+					learningRateSchedule
 			);
 		}
 	}
@@ -0,0 +1,27 @@
+package fwcd.fructose.ml.neural;
+
+/**
+ * The weight storage used by a {@link QuantizedPerceptron}.
+ */
+public enum QuantizationMode {
+	/**
+	 * Signed 8-bit weights with a float scale per row. Inputs are
+	 * quantized per layer too, so that the dot products can be
+	 * accumulated using 32-bit integers.
+	 */
+	INT8(Byte.BYTES),
+	/**
+	 * Half-precision weights, the computation uses floats.
+	 */
+	FLOAT16(Short.BYTES);
+	
+	private final int bytesPerWeight;
+	
+	private QuantizationMode(int bytesPerWeight) {
+		this.bytesPerWeight = bytesPerWeight;
+	}
+	
+	public int getBytesPerWeight() {
+		return bytesPerWeight;
+	}
+}
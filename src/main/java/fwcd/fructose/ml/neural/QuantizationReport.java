@@ -0,0 +1,79 @@
+package fwcd.fructose.ml.neural;
+
+/**
+ * Compares the outputs of a {@link QuantizedPerceptron}
+ * with those of the original float network.
+ */
+public class QuantizationReport {
+	private final int samples;
+	private final double maxAbsError;
+	private final double meanAbsError;
+	private final double rmsError;
+	private final double argmaxAgreement;
+	private final long floatBytes;
+	private final long quantizedBytes;
+	
+	public QuantizationReport(
+			int samples,
+			double maxAbsError,
+			double meanAbsError,
+			double rmsError,
+			double argmaxAgreement,
+			long floatBytes,
+			long quantizedBytes
+	) {
+		this.samples = samples;
+		this.maxAbsError = maxAbsError;
+		this.meanAbsError = meanAbsError;
+		this.rmsError = rmsError;
+		this.argmaxAgreement = argmaxAgreement;
+		this.floatBytes = floatBytes;
+		this.quantizedBytes = quantizedBytes;
+	}
+	
+	public int getSamples() {
+		return samples;
+	}
+	
+	/**
+	 * @return The largest absolute difference of a single output value
+	 */
+	public double getMaxAbsError() {
+		return maxAbsError;
+	}
+	
+	public double getMeanAbsError() {
+		return meanAbsError;
+	}
+	
+	public double getRmsError() {
+		return rmsError;
+	}
+	
+	/**
+	 * @return The fraction of samples where both networks pick the same highest output
+	 */
+	public double getArgmaxAgreement() {
+		return argmaxAgreement;
+	}
+	
+	public long getFloatBytes() {
+		return floatBytes;
+	}
+	
+	public long getQuantizedBytes() {
+		return quantizedBytes;
+	}
+	
+	public double getCompressionRatio() {
+		return floatBytes / (double) quantizedBytes;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format(
+				"QuantizationReport [samples=%d, maxAbsError=%.6f, meanAbsError=%.6f, rmsError=%.6f, argmaxAgreement=%.4f, bytes=%d -> %d (%.2fx)]",
+				samples, maxAbsError, meanAbsError, rmsError, argmaxAgreement, floatBytes, quantizedBytes, getCompressionRatio()
+		);
+	}
+}
@@ -0,0 +1,331 @@
+package fwcd.fructose.ml.neural;
+
+import java.util.function.Function;
+
+import fwcd.fructose.exception.SizeMismatchException;
+import fwcd.fructose.ml.function.DiffFunction;
+import fwcd.fructose.ml.math.Float16;
+import fwcd.fructose.ml.math.NNMatrix;
+import fwcd.fructose.ml.math.NNVector;
+
+/**
+ * An immutable, inference-only multi-layer perceptron
+ * with quantized weights, which is created from a trained
+ * {@link SimplePerceptron} or {@link Perceptron}.
+ *
+ * <p>In {@link QuantizationMode#INT8} mode every weight row
+ * is scaled to [-127, 127] and every layer input is quantized
+ * the same way before the dot products are accumulated
+ * as ints. Biases are kept as floats.</p>
+ */
+public class QuantizedPerceptron implements NeuralNetwork<float[], float[]> {
+	private static final long serialVersionUID = -3818291648260413296L;
+	private static final int INT8_MAX = 127;
+	
+	private final QuantizationMode mode;
+	private final int[] layerSizes;
+	private final DiffFunction activation;
+	// The following arrays are indexed by target layer - 1,
+	// the weights are stored row-major (one row per output neuron)
+	private final byte[][] int8Weights;
+	private final short[][] halfWeights;
+	private final float[][] rowScales;
+	private final float[][] biases;
+	
+	private QuantizedPerceptron(QuantizationMode mode, int[] layerSizes, DiffFunction activation, float[][] weights, float[][] biases) {
+		this.mode = mode;
+		this.layerSizes = layerSizes.clone();
+		this.activation = activation;
+		this.biases = biases;
+		
+		int transitions = layerSizes.length - 1;
+		
+		if (mode == QuantizationMode.INT8) {
+			int8Weights = new byte[transitions][];
+			rowScales = new float[transitions][];
+			halfWeights = null;
+			
+			for (int l=0; l<transitions; l++) {
+				int in = layerSizes[l];
+				int out = layerSizes[l + 1];
+				int8Weights[l] = new byte[in * out];
+				rowScales[l] = new float[out];
+				
+				for (int row=0; row<out; row++) {
+					rowScales[l][row] = quantize(weights[l], row * in, in, int8Weights[l]);
+				}
+			}
+		} else {
+			halfWeights = new short[transitions][];
+			int8Weights = null;
+			rowScales = null;
+			
+			for (int l=0; l<transitions; l++) {
+				float[] layerWeights = weights[l];
+				short[] halves = new short[layerWeights.length];
+				
+				for (int i=0; i<halves.length; i++) {
+					halves[i] = Float16.fromFloat(layerWeights[i]);
+				}
+				
+				halfWeights[l] = halves;
+			}
+		}
+	}
+	
+	/**
+	 * Quantizes the given float values symmetrically to
+	 * signed bytes (using the same offset in source and destination).
+	 *
+	 * @return The scale that maps the quantized values back to floats
+	 */
+	private static float quantize(float[] src, int offset, int length, byte[] dest) {
+		float maxAbs = 0;
+		
+		for (int i=offset; i<offset+length; i++) {
+			maxAbs = Math.max(maxAbs, Math.abs(src[i]));
+		}
+		
+		if (maxAbs == 0) {
+			for (int i=offset; i<offset+length; i++) {
+				dest[i] = 0;
+			}
+			return 0;
+		}
+		
+		float inverseScale = INT8_MAX / maxAbs;
+		
+		for (int i=offset; i<offset+length; i++) {
+			dest[i] = (byte) Math.round(src[i] * inverseScale);
+		}
+		
+		return maxAbs / INT8_MAX;
+	}
+	
+	/**
+	 * Quantizes a trained {@link SimplePerceptron}.
+	 */
+	public static QuantizedPerceptron of(SimplePerceptron perceptron, QuantizationMode mode) {
+		int[] layerSizes = perceptron.getLayerSizes();
+		float[] flat = perceptron.getWeights();
+		int transitions = layerSizes.length - 1;
+		float[][] weights = new float[transitions][];
+		float[][] biases = new float[transitions][];
+		int index = 0;
+		
+		// SimplePerceptron stores the incoming weights of
+		// each neuron followed by its bias
+		for (int l=0; l<transitions; l++) {
+			int in = layerSizes[l];
+			int out = layerSizes[l + 1];
+			weights[l] = new float[in * out];
+			biases[l] = new float[out];
+			
+			for (int row=0; row<out; row++) {
+				System.arraycopy(flat, index, weights[l], row * in, in);
+				index += in;
+				biases[l][row] = flat[index++];
+			}
+		}
+		
+		return new QuantizedPerceptron(mode, layerSizes, SimplePerceptron.ACTIVATION, weights, biases);
+	}
+	
+	/**
+	 * Quantizes a trained {@link Perceptron}.
+	 */
+	public static QuantizedPerceptron of(Perceptron perceptron, QuantizationMode mode) {
+		int layerCount = perceptron.layerCount();
+		int[] layerSizes = new int[layerCount];
+		float[][] weights = new float[layerCount - 1][];
+		float[][] biases = new float[layerCount - 1][];
+		
+		layerSizes[0] = perceptron.getWeights(1).width();
+		
+		for (int l=1; l<layerCount; l++) {
+			NNMatrix layerWeights = perceptron.getWeights(l);
+			int in = layerWeights.width();
+			int out = layerWeights.height();
+			layerSizes[l] = out;
+			weights[l - 1] = new float[in * out];
+			
+			for (int row=0; row<out; row++) {
+				System.arraycopy(layerWeights.getMutableRow(row), 0, weights[l - 1], row * in, in);
+			}
+			
+			biases[l - 1] = perceptron.getBiases(l).asArray().clone();
+		}
+		
+		return new QuantizedPerceptron(mode, layerSizes, perceptron.getActivationFunction(), weights, biases);
+	}
+	
+	@Override
+	public float[] compute(float[] input) {
+		if (input.length != layerSizes[0]) {
+			throw new SizeMismatchException("input vector length", input.length, "first layer size", layerSizes[0]);
+		}
+		
+		float[] layer = input;
+		
+		for (int l=0; l<layerSizes.length-1; l++) {
+			if (mode == QuantizationMode.INT8) {
+				layer = feedForwardInt8(l, layer);
+			} else {
+				layer = feedForwardFloat16(l, layer);
+			}
+		}
+		
+		return layer;
+	}
+	
+	public NNVector compute(NNVector input) {
+		return new NNVector(compute(input.asArray()));
+	}
+	
+	private float[] feedForwardInt8(int l, float[] layer) {
+		int in = layerSizes[l];
+		int out = layerSizes[l + 1];
+		byte[] quantizedInput = new byte[in];
+		float inputScale = quantize(layer, 0, in, quantizedInput);
+		byte[] weights = int8Weights[l];
+		float[] scales = rowScales[l];
+		float[] layerBiases = biases[l];
+		float[] result = new float[out];
+		
+		for (int row=0; row<out; row++) {
+			int offset = row * in;
+			int dot = 0;
+			
+			for (int i=0; i<in; i++) {
+				dot += quantizedInput[i] * weights[offset + i];
+			}
+			
+			result[row] = (dot * scales[row] * inputScale) + layerBiases[row];
+		}
+		
+		activation.apply(result, result, 0, out);
+		
+		return result;
+	}
+	
+	private float[] feedForwardFloat16(int l, float[] layer) {
+		int in = layerSizes[l];
+		int out = layerSizes[l + 1];
+		short[] weights = halfWeights[l];
+		float[] layerBiases = biases[l];
+		float[] result = new float[out];
+		
+		for (int row=0; row<out; row++) {
+			int offset = row * in;
+			float dot = 0;
+			
+			for (int i=0; i<in; i++) {
+				dot += layer[i] * Float16.toFloat(weights[offset + i]);
+			}
+			
+			result[row] = dot + layerBiases[row];
+		}
+		
+		activation.apply(result, result, 0, out);
+		
+		return result;
+	}
+	
+	/**
+	 * @return The total amount of weights and biases
+	 */
+	public long parameterCount() {
+		long count = 0;
+		
+		for (int l=1; l<layerSizes.length; l++) {
+			count += (layerSizes[l - 1] + 1L) * layerSizes[l];
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * @return The approximate memory used by the parameters
+	 */
+	public long sizeInBytes() {
+		long bytes = 0;
+		
+		for (int l=1; l<layerSizes.length; l++) {
+			long out = layerSizes[l];
+			bytes += layerSizes[l - 1] * out * mode.getBytesPerWeight();
+			bytes += out * Float.BYTES; // Biases
+			
+			if (mode == QuantizationMode.INT8) {
+				bytes += out * Float.BYTES; // Scales
+			}
+		}
+		
+		return bytes;
+	}
+	
+	/**
+	 * Compares the outputs of this network with those of
+	 * the float network it was created from.
+	 *
+	 * @param reference - The compute function of the original network
+	 * @param inputs - Representative inputs
+	 * @return The accuracy report
+	 */
+	public QuantizationReport evaluate(Function<float[], float[]> reference, Iterable<float[]> inputs) {
+		int samples = 0;
+		long values = 0;
+		double maxAbsError = 0;
+		double absErrorSum = 0;
+		double squaredErrorSum = 0;
+		int argmaxMatches = 0;
+		
+		for (float[] input : inputs) {
+			float[] expected = reference.apply(input);
+			float[] actual = compute(input);
+			
+			for (int i=0; i<expected.length; i++) {
+				double error = Math.abs(expected[i] - actual[i]);
+				maxAbsError = Math.max(maxAbsError, error);
+				absErrorSum += error;
+				squaredErrorSum += error * error;
+			}
+			
+			if (argmax(expected) == argmax(actual)) {
+				argmaxMatches++;
+			}
+			
+			values += expected.length;
+			samples++;
+		}
+		
+		return new QuantizationReport(
+				samples,
+				maxAbsError,
+				(values == 0) ? 0 : absErrorSum / values,
+				(values == 0) ? 0 : Math.sqrt(squaredErrorSum / values),
+				(samples == 0) ? 1 : argmaxMatches / (double) samples,
+				parameterCount() * Float.BYTES,
+				sizeInBytes()
+		);
+	}
+	
+	private static int argmax(float[] values) {
+		int best = 0;
+		
+		for (int i=1; i<values.length; i++) {
+			if (values[i] > values[best]) {
+				best = i;
+			}
+		}
+		
+		return best;
+	}
+	
+	public QuantizationMode getMode() {
+		return mode;
+	}
+	
+	public int[] getLayerSizes() {
+		return layerSizes.clone();
+	}
+}
@@ -2,14 +2,21 @@ package fwcd.fructose.ml.neural;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 
 import fwcd.fructose.exception.SerializationException;
 import fwcd.fructose.exception.SizeMismatchException;
+import fwcd.fructose.ml.function.DiffFunction;
+import fwcd.fructose.ml.function.NNFunction;
+import fwcd.fructose.ml.io.ModelFile;
+import fwcd.fructose.ml.io.ModelFileWriter;
 
 /**
  * A basic multi-layer perceptron that
@@ -22,26 +29,35 @@ import fwcd.fructose.exception.SizeMismatchException;
  */
 public class SimplePerceptron implements NeuralNetwork<float[], float[]> {
 	private static final long serialVersionUID = 2034199368901910617L;
+	static final DiffFunction ACTIVATION = NNFunction.RELU;
 	
 	private final int[] layerSizes; // Contains amount of neurons in each layer
 	private float[] weights; // Contains weight matrices
 	
 	public SimplePerceptron(int... layerSizes) {
 		this.layerSizes = layerSizes;
+		weights = new float[weightsCount(layerSizes)];
 		
+		Random r = ThreadLocalRandom.current();
+		for (int i=0; i<weights.length; i++) {
+			// Gaussian weight initialization
+			weights[i] = (float) r.nextGaussian();
+		}
+	}
+	
+	private SimplePerceptron(int[] layerSizes, float[] weights) {
+		this.layerSizes = layerSizes;
+		this.weights = weights;
+	}
+	
+	private static int weightsCount(int[] layerSizes) {
 		int weightsCount = 0;
 		
 		for (int i=1; i<layerSizes.length; i++) {
 			weightsCount += (layerSizes[i - 1] + 1) * layerSizes[i];
 		}
 		
-		weights = new float[weightsCount];
-		
-		Random r = ThreadLocalRandom.current();
-		for (int i=0; i<weights.length; i++) {
-			// Gaussian weight initialization
-			weights[i] = (float) r.nextGaussian();
-		}
+		return weightsCount;
 	}
 	
 	@Override
@@ -77,6 +93,18 @@ public class SimplePerceptron implements NeuralNetwork<float[], float[]> {
 		return x >= 0 ? x : 0;
 	}
 	
+	public int[] getLayerSizes() {
+		return layerSizes.clone();
+	}
+	
+	/**
+	 * Creates an immutable, quantized copy of this
+	 * perceptron for inference.
+	 */
+	public QuantizedPerceptron quantize(QuantizationMode mode) {
+		return QuantizedPerceptron.of(this, mode);
+	}
+	
 	public float[] getWeights() {
 		return weights;
 	}
@@ -85,32 +113,84 @@ public class SimplePerceptron implements NeuralNetwork<float[], float[]> {
 		this.weights = weights;
 	}
 	
+	/**
+	 * Writes the weights in the legacy big-endian format. Prefer
+	 * {@link #saveBinary(File)} which is considerably faster to load.
+	 */
 	public void saveWeights(OutputStream out) {
 		try (DataOutputStream dos = new DataOutputStream(out)) {
 			// First serialize array length
 			dos.writeInt(weights.length);
 			
 			// Then serialize values
-			for (float weight : weights) {
-				dos.writeFloat(weight);
-			}
+			ByteBuffer buffer = ByteBuffer.allocate(weights.length * Float.BYTES);
+			buffer.asFloatBuffer().put(weights);
+			dos.write(buffer.array());
 		} catch (IOException e) {
 			throw new SerializationException(e);
 		}
 	}
 	
+	/**
+	 * Reads weights written by {@link #saveWeights(OutputStream)}.
+	 */
 	public void loadWeights(InputStream in) {
 		try (DataInputStream dis = new DataInputStream(in)) {
 			// First read array length
-			weights = new float[dis.readInt()];
+			int length = dis.readInt();
 			
 			// Then deserialize values
-			int i = 0;
-			while (dis.available() > 0) {
-				weights[i++] = dis.readFloat();
-			}
+			byte[] bytes = new byte[length * Float.BYTES];
+			dis.readFully(bytes);
+			
+			float[] loaded = new float[length];
+			ByteBuffer.wrap(bytes).asFloatBuffer().get(loaded);
+			weights = loaded;
 		} catch (IOException e) {
 			throw new SerializationException(e);
 		}
 	}
+	
+	/**
+	 * Writes this perceptron to a binary {@link ModelFile}.
+	 * 
+	 * @param file - The destination
+	 */
+	public void saveBinary(File file) {
+		try (ModelFileWriter writer = new ModelFileWriter(file, ModelFile.Type.SIMPLE_PERCEPTRON, ModelFile.DataType.FLOAT32, ACTIVATION, layerSizes)) {
+			writer.writeFloats(weights, 0, weights.length);
+		}
+	}
+	
+	/**
+	 * Loads the weights from a binary {@link ModelFile}
+	 * with matching layer sizes.
+	 * 
+	 * @param file - The model file
+	 */
+	public void loadBinary(File file) {
+		ModelFile model = ModelFile.open(file, ModelFile.Type.SIMPLE_PERCEPTRON);
+		
+		if (!Arrays.equals(model.getLayerSizes(), layerSizes)) {
+			throw new SerializationException("Stored layer sizes " + Arrays.toString(model.getLayerSizes()) + " do not match " + Arrays.toString(layerSizes));
+		}
+		
+		float[] loaded = new float[weights.length];
+		model.readFloats(loaded, 0, loaded.length);
+		weights = loaded;
+	}
+	
+	/**
+	 * Creates a perceptron from a binary {@link ModelFile}.
+	 * 
+	 * @param file - The model file
+	 * @return The loaded perceptron
+	 */
+	public static SimplePerceptron readBinary(File file) {
+		ModelFile model = ModelFile.open(file, ModelFile.Type.SIMPLE_PERCEPTRON);
+		int[] layerSizes = model.getLayerSizes();
+		float[] weights = new float[weightsCount(layerSizes)];
+		model.readFloats(weights, 0, weights.length);
+		return new SimplePerceptron(layerSizes, weights);
+	}
 }
@@ -0,0 +1,233 @@
+package fwcd.fructose.ml.neural.layers;
+
+import fwcd.fructose.exception.SizeMismatchException;
+import fwcd.fructose.ml.function.DiffFunction;
+import fwcd.fructose.ml.function.NNFunction;
+import fwcd.fructose.ml.function.NNWeightInit;
+import fwcd.fructose.ml.function.WeightInit;
+import fwcd.fructose.ml.math.FloatGemm;
+import fwcd.fructose.ml.math.NNTensor;
+import fwcd.fructose.ml.neural.NNParameters;
+
+/**
+ * <p>A two-dimensional convolutional layer with square kernels.
+ * It takes batches of the dimensions [width, height, inChannels, batch]
+ * and outputs [outWidth, outHeight, outChannels, batch].</p>
+ * 
+ * <p>The convolution is implemented by unrolling every input patch
+ * into a column of a matrix ("im2col"), which turns the convolution
+ * into a single matrix multiplication with the
+ * outChannels x (inChannels * kernelSize * kernelSize) kernel matrix.</p>
+ */
+public class Conv2DLayer extends ParameterizedLayer<Conv2DLayer> {
+	private static final long serialVersionUID = 3404869171356120711L;
+	private final int inChannels;
+	private final int outChannels;
+	private final int kernelSize;
+	private final int stride;
+	private final int padding;
+	
+	public Conv2DLayer(int inChannels, int outChannels, int kernelSize) {
+		this(inChannels, outChannels, kernelSize, 1, 0, NNFunction.LEAKY_RELU, NNWeightInit.XAVIER);
+	}
+	
+	public Conv2DLayer(
+			int inChannels,
+			int outChannels,
+			int kernelSize,
+			int stride,
+			int padding,
+			DiffFunction activation,
+			WeightInit weightInit
+	) {
+		super(outChannels * inChannels * kernelSize * kernelSize, outChannels, activation);
+		
+		if (stride < 1) {
+			throw new IllegalArgumentException("Stride has to be positive: " + Integer.toString(stride));
+		}
+		
+		this.inChannels = inChannels;
+		this.outChannels = outChannels;
+		this.kernelSize = kernelSize;
+		this.stride = stride;
+		this.padding = padding;
+		initWeights(weightInit, inChannels * kernelSize * kernelSize, outChannels * kernelSize * kernelSize);
+	}
+	
+	private int patchSize() {
+		return inChannels * kernelSize * kernelSize;
+	}
+	
+	private int outputLength(int inputLength) {
+		int length = ((inputLength + (2 * padding) - kernelSize) / stride) + 1;
+		if (length <= 0) {
+			throw new IllegalArgumentException("Input (" + inputLength + ") is too small for the kernel (" + kernelSize + ")");
+		}
+		return length;
+	}
+	
+	private void checkInput(NNTensor input) {
+		if (input.getRank() < 3 || input.getDimension(2) != inChannels) {
+			throw new SizeMismatchException("input channels", input.getRank() < 3 ? 1 : input.getDimension(2), "layer input channels", inChannels);
+		}
+	}
+	
+	/**
+	 * Unrolls the patches of a single sample into a
+	 * patchSize x (outWidth * outHeight) matrix.
+	 */
+	private void im2col(float[] input, int inputOffset, int width, int height, int outWidth, int outHeight, float[] columns) {
+		int positions = outWidth * outHeight;
+		int row = 0;
+		
+		for (int c=0; c<inChannels; c++) {
+			int channelOffset = inputOffset + (c * width * height);
+			for (int ky=0; ky<kernelSize; ky++) {
+				for (int kx=0; kx<kernelSize; kx++) {
+					int rowOffset = row * positions;
+					for (int oy=0; oy<outHeight; oy++) {
+						int y = (oy * stride) + ky - padding;
+						int colOffset = rowOffset + (oy * outWidth);
+						
+						if (y < 0 || y >= height) {
+							for (int ox=0; ox<outWidth; ox++) {
+								columns[colOffset + ox] = 0;
+							}
+						} else {
+							int inputRow = channelOffset + (y * width);
+							for (int ox=0; ox<outWidth; ox++) {
+								int x = (ox * stride) + kx - padding;
+								columns[colOffset + ox] = (x < 0 || x >= width) ? 0 : input[inputRow + x];
+							}
+						}
+					}
+					row++;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * The inverse of im2col, which sums the column
+	 * gradients back into the input gradient of a single sample.
+	 */
+	private void col2im(float[] columns, int width, int height, int outWidth, int outHeight, float[] inputError, int inputOffset) {
+		int positions = outWidth * outHeight;
+		int row = 0;
+		
+		for (int c=0; c<inChannels; c++) {
+			int channelOffset = inputOffset + (c * width * height);
+			for (int ky=0; ky<kernelSize; ky++) {
+				for (int kx=0; kx<kernelSize; kx++) {
+					int rowOffset = row * positions;
+					for (int oy=0; oy<outHeight; oy++) {
+						int y = (oy * stride) + ky - padding;
+						if (y >= 0 && y < height) {
+							int inputRow = channelOffset + (y * width);
+							int colOffset = rowOffset + (oy * outWidth);
+							for (int ox=0; ox<outWidth; ox++) {
+								int x = (ox * stride) + kx - padding;
+								if (x >= 0 && x < width) {
+									inputError[inputRow + x] += columns[colOffset + ox];
+								}
+							}
+						}
+					}
+					row++;
+				}
+			}
+		}
+	}
+	
+	@Override
+	public NNTensor forwardprop(NNTensor input) {
+		checkInput(input);
+		int width = input.getDimension(0);
+		int height = input.getDimension(1);
+		int outWidth = outputLength(width);
+		int outHeight = outputLength(height);
+		int positions = outWidth * outHeight;
+		int inputSampleSize = width * height * inChannels;
+		int outputSampleSize = positions * outChannels;
+		int batch = batchSize(input, inputSampleSize);
+		
+		float[] in = input.asArray();
+		float[] columns = new float[patchSize() * positions];
+		float[] output = new float[batch * outputSampleSize];
+		
+		for (int b=0; b<batch; b++) {
+			int outputOffset = b * outputSampleSize;
+			im2col(in, b * inputSampleSize, width, height, outWidth, outHeight, columns);
+			FloatGemm.multiply(false, false, outChannels, positions, patchSize(), weights, 0, columns, 0, output, outputOffset, false);
+			
+			for (int oc=0; oc<outChannels; oc++) {
+				int channelOffset = outputOffset + (oc * positions);
+				float bias = biases[oc];
+				for (int p=0; p<positions; p++) {
+					output[channelOffset + p] += bias;
+				}
+			}
+		}
+		
+		activate(output);
+		return new NNTensor(output, outWidth, outHeight, outChannels, batch);
+	}
+	
+	@Override
+	public BackpropResult<NNTensor, Conv2DLayer> backprop(NNTensor input, NNTensor output, NNTensor error, NNParameters hyp) {
+		checkInput(input);
+		int width = input.getDimension(0);
+		int height = input.getDimension(1);
+		int outWidth = outputLength(width);
+		int outHeight = outputLength(height);
+		int positions = outWidth * outHeight;
+		int inputSampleSize = width * height * inChannels;
+		int outputSampleSize = positions * outChannels;
+		int batch = batchSize(input, inputSampleSize);
+		
+		float[] in = input.asArray();
+		float[] delta = activationDelta(output.asArray(), error.asArray());
+		float[] columns = new float[patchSize() * positions];
+		float[] columnError = new float[columns.length];
+		float[] weightGradient = new float[weights.length];
+		float[] biasGradient = new float[outChannels];
+		float[] inputError = new float[in.length];
+		
+		for (int b=0; b<batch; b++) {
+			int deltaOffset = b * outputSampleSize;
+			im2col(in, b * inputSampleSize, width, height, outWidth, outHeight, columns);
+			
+			// dW += delta * columns^T
+			FloatGemm.multiply(false, true, outChannels, patchSize(), positions, delta, deltaOffset, columns, 0, weightGradient, 0, true);
+			// dColumns = W^T * delta
+			FloatGemm.multiply(true, false, patchSize(), positions, outChannels, weights, 0, delta, deltaOffset, columnError, 0, false);
+			col2im(columnError, width, height, outWidth, outHeight, inputError, b * inputSampleSize);
+			
+			for (int oc=0; oc<outChannels; oc++) {
+				int channelOffset = deltaOffset + (oc * positions);
+				float sum = 0;
+				for (int p=0; p<positions; p++) {
+					sum += delta[channelOffset + p];
+				}
+				biasGradient[oc] += sum;
+			}
+		}
+		
+		return new BackpropResult<NNTensor, Conv2DLayer>(
+				new ParameterGradient<>(weightGradient, biasGradient, batch, hyp),
+				new NNTensor(inputError, input.getDimensions())
+		);
+	}
+	
+	public int getInChannels() {
+		return inChannels;
+	}
+	
+	public int getOutChannels() {
+		return outChannels;
+	}
+	
+	public int getKernelSize() {
+		return kernelSize;
+	}
+}
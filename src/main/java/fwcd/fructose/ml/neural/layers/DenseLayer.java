@@ -0,0 +1,82 @@
+package fwcd.fructose.ml.neural.layers;
+
+import fwcd.fructose.ml.function.DiffFunction;
+import fwcd.fructose.ml.function.NNFunction;
+import fwcd.fructose.ml.function.NNWeightInit;
+import fwcd.fructose.ml.function.WeightInit;
+import fwcd.fructose.ml.math.FloatGemm;
+import fwcd.fructose.ml.math.NNTensor;
+import fwcd.fructose.ml.neural.NNParameters;
+
+/**
+ * A fully connected layer, as used in a perceptron. It takes
+ * batches of the dimensions [inputSize, batch] and outputs
+ * [outputSize, batch]. The weights are stored as a row-major
+ * outputSize x inputSize matrix.
+ */
+public class DenseLayer extends ParameterizedLayer<DenseLayer> {
+	private static final long serialVersionUID = -4503307622914440437L;
+	private final int inputSize;
+	private final int outputSize;
+	
+	public DenseLayer(int inputSize, int outputSize) {
+		this(inputSize, outputSize, NNFunction.LEAKY_RELU, NNWeightInit.XAVIER);
+	}
+	
+	public DenseLayer(int inputSize, int outputSize, DiffFunction activation, WeightInit weightInit) {
+		super(inputSize * outputSize, outputSize, activation);
+		this.inputSize = inputSize;
+		this.outputSize = outputSize;
+		initWeights(weightInit, inputSize, outputSize);
+	}
+	
+	@Override
+	public NNTensor forwardprop(NNTensor input) {
+		int batch = batchSize(input, inputSize);
+		float[] output = new float[batch * outputSize];
+		
+		FloatGemm.multiply(false, true, batch, outputSize, inputSize, input.asArray(), 0, weights, 0, output, 0, false);
+		
+		for (int b=0; b<batch; b++) {
+			int row = b * outputSize;
+			for (int o=0; o<outputSize; o++) {
+				output[row + o] += biases[o];
+			}
+		}
+		
+		activate(output);
+		return new NNTensor(output, outputSize, batch);
+	}
+	
+	@Override
+	public BackpropResult<NNTensor, DenseLayer> backprop(NNTensor input, NNTensor output, NNTensor error, NNParameters hyp) {
+		int batch = batchSize(input, inputSize);
+		float[] delta = activationDelta(output.asArray(), error.asArray());
+		float[] weightGradient = new float[weights.length];
+		float[] biasGradient = new float[outputSize];
+		float[] inputError = new float[batch * inputSize];
+		
+		FloatGemm.multiply(true, false, outputSize, inputSize, batch, delta, 0, input.asArray(), 0, weightGradient, 0, false);
+		FloatGemm.multiply(false, false, batch, inputSize, outputSize, delta, 0, weights, 0, inputError, 0, false);
+		
+		for (int b=0; b<batch; b++) {
+			int row = b * outputSize;
+			for (int o=0; o<outputSize; o++) {
+				biasGradient[o] += delta[row + o];
+			}
+		}
+		
+		return new BackpropResult<NNTensor, DenseLayer>(
+				new ParameterGradient<>(weightGradient, biasGradient, batch, hyp),
+				new NNTensor(inputError, input.getDimensions())
+		);
+	}
+	
+	public int getInputSize() {
+		return inputSize;
+	}
+	
+	public int getOutputSize() {
+		return outputSize;
+	}
+}
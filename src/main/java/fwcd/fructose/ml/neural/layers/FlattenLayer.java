@@ -0,0 +1,26 @@
+package fwcd.fructose.ml.neural.layers;
+
+import fwcd.fructose.ml.math.NNTensor;
+import fwcd.fructose.ml.neural.NNParameters;
+
+/**
+ * Flattens every sample of a batch into a vector, thus
+ * connecting convolutional layers with dense layers. A
+ * tensor of the dimensions [width, height, channels, batch]
+ * is reshaped to [width * height * channels, batch]
+ * without copying the data.
+ */
+public class FlattenLayer extends TensorLayer<FlattenLayer> {
+	private static final long serialVersionUID = 7925069432431700612L;
+	
+	@Override
+	public NNTensor forwardprop(NNTensor input) {
+		int batch = input.batchSize();
+		return input.reshape(input.size() / batch, batch);
+	}
+	
+	@Override
+	public BackpropResult<NNTensor, FlattenLayer> backprop(NNTensor input, NNTensor output, NNTensor error, NNParameters hyp) {
+		return new BackpropResult<>(LayerGradient.none(), error.reshape(input.getDimensions()));
+	}
+}
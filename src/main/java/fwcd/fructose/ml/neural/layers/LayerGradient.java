@@ -1,18 +1,50 @@
 package fwcd.fructose.ml.neural.layers;
 
-import fwcd.fructose.annotation.WIP;
-
 /**
  * Contains the "gradient" of a layer (in case of a
  * dense layer (as in a perceptron) this would contain the
  * nudges to the weights and biases).
  * 
+ * <p>Gradients are summed over all samples they have
+ * been computed from and averaged when applied.</p>
+ * 
  * @author Fredrik
  *
  * @param <L> - The layer type
  */
-@FunctionalInterface
-@WIP(usable = false)
 public interface LayerGradient<L extends NNLayer<?, ?, ?>> {
+	/**
+	 * Applies this (averaged) gradient to the layer's parameters.
+	 * 
+	 * @param layer - The layer this gradient has been computed for
+	 */
 	void apply(L layer);
+	
+	/**
+	 * Accumulates another gradient of the same layer
+	 * into this one (e.g. to sum up a batch).
+	 * 
+	 * @param other - The other gradient
+	 */
+	void addInPlace(LayerGradient<L> other);
+	
+	/**
+	 * @return The L2 norm of the averaged gradient or NaN if unknown
+	 */
+	default double norm() {
+		return Double.NaN;
+	}
+	
+	/**
+	 * @return A gradient for layers without any trainable parameters
+	 */
+	static <L extends NNLayer<?, ?, ?>> LayerGradient<L> none() {
+		return new LayerGradient<L>() {
+			@Override
+			public void apply(L layer) {}
+			
+			@Override
+			public void addInPlace(LayerGradient<L> other) {}
+		};
+	}
 }
@@ -0,0 +1,107 @@
+package fwcd.fructose.ml.neural.layers;
+
+import fwcd.fructose.ml.math.NNTensor;
+import fwcd.fructose.ml.neural.NNParameters;
+
+/**
+ * A two-dimensional max-pooling layer, which takes the
+ * maximum of every (non-padded) window in each channel.
+ * It takes batches of the dimensions [width, height, channels, batch].
+ */
+public class MaxPoolLayer extends TensorLayer<MaxPoolLayer> {
+	private static final long serialVersionUID = -1299624367108853128L;
+	private final int poolSize;
+	private final int stride;
+	
+	public MaxPoolLayer(int poolSize) {
+		this(poolSize, poolSize);
+	}
+	
+	public MaxPoolLayer(int poolSize, int stride) {
+		if (poolSize < 1 || stride < 1) {
+			throw new IllegalArgumentException("Pool size and stride have to be positive");
+		}
+		
+		this.poolSize = poolSize;
+		this.stride = stride;
+	}
+	
+	private int outputLength(int inputLength) {
+		int length = ((inputLength - poolSize) / stride) + 1;
+		if (length <= 0) {
+			throw new IllegalArgumentException("Input (" + inputLength + ") is too small for the pool size (" + poolSize + ")");
+		}
+		return length;
+	}
+	
+	/**
+	 * Finds the index of the maximum in a window.
+	 * Ties are resolved in favor of the first index.
+	 */
+	private int argMax(float[] in, int planeOffset, int width, int ox, int oy) {
+		int maxIndex = -1;
+		float max = Float.NEGATIVE_INFINITY;
+		
+		for (int ky=0; ky<poolSize; ky++) {
+			int row = planeOffset + (((oy * stride) + ky) * width) + (ox * stride);
+			for (int kx=0; kx<poolSize; kx++) {
+				if (maxIndex < 0 || in[row + kx] > max) {
+					max = in[row + kx];
+					maxIndex = row + kx;
+				}
+			}
+		}
+		
+		return maxIndex;
+	}
+	
+	@Override
+	public NNTensor forwardprop(NNTensor input) {
+		int width = input.getDimension(0);
+		int height = input.getDimension(1);
+		int outWidth = outputLength(width);
+		int outHeight = outputLength(height);
+		int planes = input.size() / (width * height);
+		float[] in = input.asArray();
+		float[] output = new float[planes * outWidth * outHeight];
+		
+		int i = 0;
+		for (int plane=0; plane<planes; plane++) {
+			int planeOffset = plane * width * height;
+			for (int oy=0; oy<outHeight; oy++) {
+				for (int ox=0; ox<outWidth; ox++) {
+					output[i++] = in[argMax(in, planeOffset, width, ox, oy)];
+				}
+			}
+		}
+		
+		int[] dims = input.getDimensions();
+		dims[0] = outWidth;
+		dims[1] = outHeight;
+		return new NNTensor(output, dims);
+	}
+	
+	@Override
+	public BackpropResult<NNTensor, MaxPoolLayer> backprop(NNTensor input, NNTensor output, NNTensor error, NNParameters hyp) {
+		int width = input.getDimension(0);
+		int height = input.getDimension(1);
+		int outWidth = outputLength(width);
+		int outHeight = outputLength(height);
+		int planes = input.size() / (width * height);
+		float[] in = input.asArray();
+		float[] err = error.asArray();
+		float[] inputError = new float[in.length];
+		
+		int i = 0;
+		for (int plane=0; plane<planes; plane++) {
+			int planeOffset = plane * width * height;
+			for (int oy=0; oy<outHeight; oy++) {
+				for (int ox=0; ox<outWidth; ox++) {
+					inputError[argMax(in, planeOffset, width, ox, oy)] += err[i++];
+				}
+			}
+		}
+		
+		return new BackpropResult<>(LayerGradient.none(), new NNTensor(inputError, input.getDimensions()));
+	}
+}
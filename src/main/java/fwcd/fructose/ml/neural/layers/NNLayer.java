@@ -1,6 +1,5 @@
 package fwcd.fructose.ml.neural.layers;
 
-import fwcd.fructose.annotation.WIP;
 import fwcd.fructose.ml.neural.LayeredNetwork;
 import fwcd.fructose.ml.neural.NNParameters;
 
@@ -13,7 +12,6 @@ import fwcd.fructose.ml.neural.NNParameters;
  * @param <O> - The output data type
  * @param <S> - The subtype/implementation type
  */
-@WIP(usable = false)
 public interface NNLayer<I, O, S extends NNLayer<I, O, S>> {
 	/**
 	 * Forwardpropagates the input through this layer.
@@ -28,7 +26,7 @@ public interface NNLayer<I, O, S extends NNLayer<I, O, S>> {
 	 * 
 	 * @param input - The input
 	 * @param output - The output
-	 * @param error - Null (if this is the out layer) or the partial derivative with respect to this layer
+	 * @param error - The partial derivative of the cost with respect to this layer's output
 	 * @param hyp - The hyperparameters to be used (e.g. including the learning rate)
 	 * @return The gradient of this layer and the previous' layer's error parameter
 	 */
@@ -40,10 +38,11 @@ public interface NNLayer<I, O, S extends NNLayer<I, O, S>> {
 	 * 
 	 * @param input - The input
 	 * @param output - The output
+	 * @param expectedOutput - The expected/target output
 	 * @param hyp - The hyperparameters to be used
 	 * @return The gradient of this layer and the previous' layer's error parameter
 	 */
-	default BackpropResult<I, S> backpropOutput(I input, O output, NNParameters hyp) {
+	default BackpropResult<I, S> backpropOutput(I input, O output, O expectedOutput, NNParameters hyp) {
 		throw new UnsupportedOperationException(
 				getClass().getSimpleName()
 				+ " can't be used as an output layer!"
@@ -0,0 +1,54 @@
+package fwcd.fructose.ml.neural.layers;
+
+import fwcd.fructose.exception.SizeMismatchException;
+import fwcd.fructose.ml.neural.NNParameters;
+import fwcd.fructose.ml.telemetry.TrainingMonitor;
+
+/**
+ * The summed weight and bias gradient of a {@link ParameterizedLayer}.
+ *
+ * @param <L> - The layer type
+ */
+public class ParameterGradient<L extends ParameterizedLayer<L>> implements LayerGradient<L> {
+	private final float[] weightGradient;
+	private final float[] biasGradient;
+	private final NNParameters hyp;
+	private int samples;
+	
+	public ParameterGradient(float[] weightGradient, float[] biasGradient, int samples, NNParameters hyp) {
+		this.weightGradient = weightGradient;
+		this.biasGradient = biasGradient;
+		this.samples = samples;
+		this.hyp = hyp;
+	}
+	
+	@Override
+	public void apply(L layer) {
+		layer.applyGradient(weightGradient, biasGradient, samples, hyp);
+	}
+	
+	@Override
+	public void addInPlace(LayerGradient<L> other) {
+		ParameterGradient<L> delta = (ParameterGradient<L>) other;
+		
+		if (delta.weightGradient.length != weightGradient.length) {
+			throw new SizeMismatchException("weight gradient size", delta.weightGradient.length, "weight gradient size", weightGradient.length);
+		} else if (delta.biasGradient.length != biasGradient.length) {
+			throw new SizeMismatchException("bias gradient size", delta.biasGradient.length, "bias gradient size", biasGradient.length);
+		}
+		
+		for (int i=0; i<weightGradient.length; i++) {
+			weightGradient[i] += delta.weightGradient[i];
+		}
+		for (int i=0; i<biasGradient.length; i++) {
+			biasGradient[i] += delta.biasGradient[i];
+		}
+		
+		samples += delta.samples;
+	}
+	
+	@Override
+	public double norm() {
+		return TrainingMonitor.norm(weightGradient, biasGradient) / Math.max(samples, 1);
+	}
+}
@@ -0,0 +1,93 @@
+package fwcd.fructose.ml.neural.layers;
+
+import fwcd.fructose.ml.function.DiffFunction;
+import fwcd.fructose.ml.function.WeightInit;
+import fwcd.fructose.ml.neural.NNParameters;
+import fwcd.fructose.ml.optimizer.OptimizerState;
+
+/**
+ * A tensor layer with trainable weights and biases that
+ * applies an activation function to its output. The
+ * parameters are stored in flat arrays which are updated
+ * in place by the network's optimizer.
+ *
+ * @param <S> - The implementation type
+ */
+public abstract class ParameterizedLayer<S extends ParameterizedLayer<S>> extends TensorLayer<S> {
+	private static final long serialVersionUID = -2830113939413216592L;
+	protected final float[] weights;
+	protected final float[] biases;
+	protected final DiffFunction activation;
+	private OptimizerState optimizerState = null;
+	
+	protected ParameterizedLayer(int weightCount, int biasCount, DiffFunction activation) {
+		if (!activation.canComputeDfUsingF()) {
+			throw new IllegalArgumentException("The activation function has to be able to compute its derivative using its output");
+		}
+		
+		weights = new float[weightCount];
+		biases = new float[biasCount];
+		this.activation = activation;
+	}
+	
+	protected void initWeights(WeightInit weightInit, int fanIn, int fanOut) {
+		for (int i=0; i<weights.length; i++) {
+			weights[i] = weightInit.getWeight(fanIn, fanOut);
+		}
+		for (int i=0; i<biases.length; i++) {
+			biases[i] = weightInit.getWeight(fanIn, fanOut);
+		}
+	}
+	
+	/**
+	 * Multiplies the error with the derivative of the
+	 * activation function.
+	 * 
+	 * @param output - The activated output
+	 * @param error - The error with respect to the activated output
+	 * @return The error with respect to the raw weighted sums
+	 */
+	protected float[] activationDelta(float[] output, float[] error) {
+		float[] delta = new float[error.length];
+		activation.applyDerivativeUsingF(output, delta, 0, delta.length);
+		for (int i=0; i<delta.length; i++) {
+			delta[i] *= error[i];
+		}
+		return delta;
+	}
+	
+	protected void activate(float[] values) {
+		activation.apply(values, values, 0, values.length);
+	}
+	
+	/**
+	 * Applies a summed gradient using the optimizer
+	 * of the given hyperparameters.
+	 */
+	void applyGradient(float[] weightGradient, float[] biasGradient, int samples, NNParameters hyp) {
+		if (optimizerState == null) {
+			optimizerState = hyp.getOptimizer().createState(weights.length + biases.length);
+		}
+		
+		long step = optimizerState.nextStep();
+		float learningRate = hyp.getLearningRate(step);
+		float scale = 1F / samples;
+		
+		hyp.getOptimizer().update(optimizerState, 0, weights, weightGradient, weights.length, scale, learningRate);
+		hyp.getOptimizer().update(optimizerState, weights.length, biases, biasGradient, biases.length, scale, learningRate);
+	}
+	
+	/**
+	 * @return The flat weights, <b>not copied</b>
+	 */
+	public float[] getWeights() {
+		return weights;
+	}
+	
+	/**
+	 * @return The biases, <b>not copied</b>
+	 */
+	public float[] getBiases() {
+		return biases;
+	}
+}
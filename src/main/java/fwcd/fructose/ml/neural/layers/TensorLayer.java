@@ -0,0 +1,41 @@
+package fwcd.fructose.ml.neural.layers;
+
+import java.io.Serializable;
+
+import fwcd.fructose.ml.math.NNTensor;
+import fwcd.fructose.ml.neural.NNParameters;
+
+/**
+ * A layer operating on batches of {@link NNTensor}s, whose
+ * outermost dimension is the batch dimension. Tensor layers
+ * use the squared error as their cost when placed at the output
+ * of a network.
+ *
+ * @param <S> - The implementation type
+ */
+public abstract class TensorLayer<S extends TensorLayer<S>> implements NNLayer<NNTensor, NNTensor, S>, Serializable {
+	private static final long serialVersionUID = 6015346208733619041L;
+	
+	@Override
+	public BackpropResult<NNTensor, S> backpropOutput(NNTensor input, NNTensor output, NNTensor expectedOutput, NNParameters hyp) {
+		NNTensor error = output.sub(expectedOutput);
+		error.mapInPlace(x -> 2 * x); // Because the derivative of x^2 requires the factor 2
+		return backprop(input, output, error, hyp);
+	}
+	
+	/**
+	 * Computes the batch size of an input tensor.
+	 * 
+	 * @param input - The input tensor
+	 * @param sampleSize - The amount of components per sample
+	 * @return The amount of samples in the tensor
+	 */
+	protected int batchSize(NNTensor input, int sampleSize) {
+		if (sampleSize == 0 || input.size() % sampleSize != 0) {
+			throw new IllegalArgumentException(
+					"Input size (" + input.size() + ") is not a multiple of the sample size (" + sampleSize + ")"
+			);
+		}
+		return input.size() / sampleSize;
+	}
+}
@@ -0,0 +1,68 @@
+package fwcd.fructose.ml.optimizer;
+
+/**
+ * Adam ("adaptive moment estimation") as described by
+ * <a href="https://arxiv.org/abs/1412.6980">Kingma and Ba</a>,
+ * including the bias correction of both moments.
+ */
+public class AdamOptimizer implements Optimizer {
+	private static final long serialVersionUID = 7733105392658834810L;
+	private final float beta1;
+	private final float beta2;
+	private final float epsilon;
+	
+	public AdamOptimizer() {
+		this(0.9F, 0.999F, 1e-8F);
+	}
+	
+	public AdamOptimizer(float beta1, float beta2, float epsilon) {
+		if (beta1 < 0 || beta1 >= 1) {
+			throw new IllegalArgumentException("Beta1 has to be in [0, 1): " + Float.toString(beta1));
+		} else if (beta2 < 0 || beta2 >= 1) {
+			throw new IllegalArgumentException("Beta2 has to be in [0, 1): " + Float.toString(beta2));
+		}
+		
+		this.beta1 = beta1;
+		this.beta2 = beta2;
+		this.epsilon = epsilon;
+	}
+	
+	@Override
+	public OptimizerState createState(int parameterCount) {
+		return new OptimizerState(parameterCount, parameterCount);
+	}
+	
+	@Override
+	public void update(
+			OptimizerState state,
+			int stateOffset,
+			float[] params,
+			float[] gradient,
+			int length,
+			float gradientScale,
+			float learningRate
+	) {
+		float[] means = state.getFirstMoments();
+		float[] variances = state.getSecondMoments();
+		long step = Math.max(state.getStep(), 1);
+		
+		// Fold the bias corrections into the step size
+		// so that the inner loop stays branch-free
+		float meanCorrection = 1 - (float) Math.pow(beta1, step);
+		float varianceCorrection = 1 - (float) Math.pow(beta2, step);
+		float stepSize = learningRate * (float) Math.sqrt(varianceCorrection) / meanCorrection;
+		float correctedEpsilon = epsilon * (float) Math.sqrt(varianceCorrection);
+		float remainder1 = 1 - beta1;
+		float remainder2 = 1 - beta2;
+		
+		for (int i=0; i<length; i++) {
+			int s = stateOffset + i;
+			float g = gradient[i] * gradientScale;
+			float mean = (beta1 * means[s]) + (remainder1 * g);
+			float variance = (beta2 * variances[s]) + (remainder2 * g * g);
+			means[s] = mean;
+			variances[s] = variance;
+			params[i] -= stepSize * mean / ((float) Math.sqrt(variance) + correctedEpsilon);
+		}
+	}
+}
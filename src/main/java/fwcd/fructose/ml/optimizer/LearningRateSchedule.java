@@ -0,0 +1,61 @@
+package fwcd.fructose.ml.optimizer;
+
+import java.io.Serializable;
+
+/**
+ * Derives the effective learning rate of an
+ * optimization step from a base learning rate.
+ */
+@FunctionalInterface
+public interface LearningRateSchedule extends Serializable {
+	/**
+	 * @param baseRate - The initial learning rate
+	 * @param step - The (1-based) optimization step
+	 * @return The learning rate to be used in the given step
+	 */
+	float getLearningRate(float baseRate, long step);
+	
+	/**
+	 * @return A schedule that always uses the base rate
+	 */
+	static LearningRateSchedule constant() {
+		return (rate, step) -> rate;
+	}
+	
+	/**
+	 * @param factor - The factor that the rate is multiplied with after every interval
+	 * @param interval - The amount of steps between two decays
+	 * @return A schedule that decays the rate in discrete steps
+	 */
+	static LearningRateSchedule stepDecay(float factor, long interval) {
+		return (rate, step) -> rate * (float) Math.pow(factor, (step - 1) / interval);
+	}
+	
+	/**
+	 * @param decayRate - The decay per step
+	 * @return A schedule that computes {@code rate * e^(-decayRate * step)}
+	 */
+	static LearningRateSchedule exponentialDecay(float decayRate) {
+		return (rate, step) -> rate * (float) Math.exp(-decayRate * (step - 1));
+	}
+	
+	/**
+	 * @param decayRate - The decay per step
+	 * @return A schedule that computes {@code rate / (1 + decayRate * step)}
+	 */
+	static LearningRateSchedule inverseTimeDecay(float decayRate) {
+		return (rate, step) -> rate / (1 + (decayRate * (step - 1)));
+	}
+	
+	/**
+	 * @param period - The amount of steps after which the schedule restarts
+	 * @param minRate - The lowest learning rate
+	 * @return A cosine annealing schedule with warm restarts
+	 */
+	static LearningRateSchedule cosineAnnealing(long period, float minRate) {
+		return (rate, step) -> {
+			double progress = ((step - 1) % period) / (double) period;
+			return minRate + (rate - minRate) * (float) (0.5 * (1 + Math.cos(Math.PI * progress)));
+		};
+	}
+}
@@ -0,0 +1,45 @@
+package fwcd.fructose.ml.optimizer;
+
+import java.io.Serializable;
+
+/**
+ * A gradient-based optimization strategy that
+ * updates parameters in place. All per-parameter
+ * state (e.g. velocities or moving averages) lives
+ * in an {@link OptimizerState}, whose flat arrays are
+ * aligned with the parameters of the network.
+ */
+public interface Optimizer extends Serializable {
+	/**
+	 * Allocates the state required to optimize
+	 * the given number of parameters.
+	 * 
+	 * @param parameterCount - The total amount of parameters
+	 * @return A fresh optimizer state
+	 */
+	OptimizerState createState(int parameterCount);
+	
+	/**
+	 * Performs a single, fused update step on a contiguous
+	 * block of parameters. The parameter at {@code params[i]}
+	 * uses the gradient at {@code gradient[i]} and the state
+	 * at {@code stateOffset + i} for {@code 0 <= i < length}.
+	 * 
+	 * @param state - The optimizer state
+	 * @param stateOffset - The index of the first parameter in the state arrays
+	 * @param params - The parameters (mutated in place)
+	 * @param gradient - The (summed) gradient of the cost function
+	 * @param length - The amount of parameters to update
+	 * @param gradientScale - A factor that the gradient is multiplied with (e.g. to average it)
+	 * @param learningRate - The current learning rate
+	 */
+	void update(
+			OptimizerState state,
+			int stateOffset,
+			float[] params,
+			float[] gradient,
+			int length,
+			float gradientScale,
+			float learningRate
+	);
+}
@@ -0,0 +1,73 @@
+package fwcd.fructose.ml.optimizer;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * The mutable per-parameter state of an {@link Optimizer}.
+ * Both moment arrays are flat and indexed like the
+ * parameters they belong to, unused ones are empty.
+ */
+public class OptimizerState implements Serializable {
+	private static final long serialVersionUID = -1604867723358734160L;
+	private static final float[] EMPTY = new float[0];
+	private final float[] firstMoments;
+	private final float[] secondMoments;
+	private long step = 0;
+	
+	public OptimizerState(int firstMomentCount, int secondMomentCount) {
+		firstMoments = firstMomentCount > 0 ? new float[firstMomentCount] : EMPTY;
+		secondMoments = secondMomentCount > 0 ? new float[secondMomentCount] : EMPTY;
+	}
+	
+	private OptimizerState(OptimizerState source) {
+		firstMoments = Arrays.copyOf(source.firstMoments, source.firstMoments.length);
+		secondMoments = Arrays.copyOf(source.secondMoments, source.secondMoments.length);
+		step = source.step;
+	}
+	
+	/**
+	 * @return An independent copy of the moments and the step counter
+	 */
+	public OptimizerState copy() {
+		return new OptimizerState(this);
+	}
+	
+	/**
+	 * Advances the step counter. This should be
+	 * called exactly once per optimization step,
+	 * before any parameters are updated.
+	 * 
+	 * @return The new (1-based) step
+	 */
+	public long nextStep() {
+		return ++step;
+	}
+	
+	/**
+	 * @return The current (1-based) step or 0 if no step has been performed yet
+	 */
+	public long getStep() {
+		return step;
+	}
+	
+	/**
+	 * @return The first moments (e.g. velocities), <b>not copied</b>
+	 */
+	public float[] getFirstMoments() {
+		return firstMoments;
+	}
+	
+	/**
+	 * @return The second moments (e.g. squared gradient averages), <b>not copied</b>
+	 */
+	public float[] getSecondMoments() {
+		return secondMoments;
+	}
+	
+	public void reset() {
+		Arrays.fill(firstMoments, 0);
+		Arrays.fill(secondMoments, 0);
+		step = 0;
+	}
+}
@@ -0,0 +1,51 @@
+package fwcd.fructose.ml.optimizer;
+
+/**
+ * RMSProp, which divides the learning rate by a
+ * moving average of the squared gradient magnitudes.
+ */
+public class RMSPropOptimizer implements Optimizer {
+	private static final long serialVersionUID = -2261987023418471163L;
+	private final float decay;
+	private final float epsilon;
+	
+	public RMSPropOptimizer() {
+		this(0.9F, 1e-8F);
+	}
+	
+	public RMSPropOptimizer(float decay, float epsilon) {
+		if (decay < 0 || decay >= 1) {
+			throw new IllegalArgumentException("Decay has to be in [0, 1): " + Float.toString(decay));
+		}
+		
+		this.decay = decay;
+		this.epsilon = epsilon;
+	}
+	
+	@Override
+	public OptimizerState createState(int parameterCount) {
+		return new OptimizerState(0, parameterCount);
+	}
+	
+	@Override
+	public void update(
+			OptimizerState state,
+			int stateOffset,
+			float[] params,
+			float[] gradient,
+			int length,
+			float gradientScale,
+			float learningRate
+	) {
+		float[] squares = state.getSecondMoments();
+		float remainder = 1 - decay;
+		
+		for (int i=0; i<length; i++) {
+			int s = stateOffset + i;
+			float g = gradient[i] * gradientScale;
+			float square = (decay * squares[s]) + (remainder * g * g);
+			squares[s] = square;
+			params[i] -= learningRate * g / ((float) Math.sqrt(square) + epsilon);
+		}
+	}
+}
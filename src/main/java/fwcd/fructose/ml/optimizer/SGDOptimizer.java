@@ -0,0 +1,85 @@
+package fwcd.fructose.ml.optimizer;
+
+/**
+ * Stochastic gradient descent with optional
+ * (classical or Nesterov) momentum. Without momentum
+ * this performs plain {@code p -= lr * g} steps.
+ */
+public class SGDOptimizer implements Optimizer {
+	private static final long serialVersionUID = 4718296873425119563L;
+	private final float momentum;
+	private final boolean nesterov;
+	
+	/**
+	 * Creates a plain gradient descent optimizer without momentum.
+	 */
+	public SGDOptimizer() {
+		this(0, false);
+	}
+	
+	/**
+	 * Creates a gradient descent optimizer with classical momentum.
+	 * 
+	 * @param momentum - The momentum factor, usually 0.9
+	 */
+	public SGDOptimizer(float momentum) {
+		this(momentum, false);
+	}
+	
+	public SGDOptimizer(float momentum, boolean nesterov) {
+		if (momentum < 0 || momentum >= 1) {
+			throw new IllegalArgumentException("Momentum has to be in [0, 1): " + Float.toString(momentum));
+		}
+		
+		this.momentum = momentum;
+		this.nesterov = nesterov;
+	}
+	
+	@Override
+	public OptimizerState createState(int parameterCount) {
+		return new OptimizerState(momentum > 0 ? parameterCount : 0, 0);
+	}
+	
+	@Override
+	public void update(
+			OptimizerState state,
+			int stateOffset,
+			float[] params,
+			float[] gradient,
+			int length,
+			float gradientScale,
+			float learningRate
+	) {
+		if (momentum == 0) {
+			float factor = learningRate * gradientScale;
+			for (int i=0; i<length; i++) {
+				params[i] -= factor * gradient[i];
+			}
+		} else {
+			float[] velocities = state.getFirstMoments();
+			
+			for (int i=0; i<length; i++) {
+				int s = stateOffset + i;
+				float g = gradient[i] * gradientScale;
+				float previous = velocities[s];
+				float velocity = (momentum * previous) - (learningRate * g);
+				velocities[s] = velocity;
+				
+				if (nesterov) {
+					// Look-ahead formulation that only requires the current parameters
+					params[i] += (-momentum * previous) + ((1 + momentum) * velocity);
+				} else {
+					params[i] += velocity;
+				}
+			}
+		}
+	}
+	
+	public float getMomentum() {
+		return momentum;
+	}
+	
+	public boolean isNesterov() {
+		return nesterov;
+	}
+}
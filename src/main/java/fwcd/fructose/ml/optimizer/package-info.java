@@ -0,0 +1,5 @@
+/**
+ * Gradient-based optimizers and learning rate
+ * schedules used to train neural networks.
+ */
+package fwcd.fructose.ml.optimizer;
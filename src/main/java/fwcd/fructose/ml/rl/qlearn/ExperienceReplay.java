@@ -0,0 +1,238 @@
+package fwcd.fructose.ml.rl.qlearn;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import fwcd.fructose.exception.SerializationException;
+import fwcd.fructose.ml.function.LearningFunction;
+import fwcd.fructose.ml.math.NNVector;
+import fwcd.fructose.ml.rl.qlearn.core.QFunction;
+import fwcd.fructose.ml.rl.qlearn.core.QLearner;
+import fwcd.fructose.ml.rl.qlearn.core.QNeuralFunction;
+import fwcd.fructose.ml.rl.qlearn.env.QAction;
+import fwcd.fructose.ml.rl.qlearn.env.QState;
+import fwcd.fructose.ml.rl.qlearn.env.QStep;
+import fwcd.fructose.ml.rl.qlearn.env.QStepResult;
+import fwcd.fructose.ml.rl.qlearn.replay.PrioritizedReplayBuffer;
+import fwcd.fructose.ml.rl.qlearn.replay.ReplayBuffer;
+
+/**
+ * A training mode for agents with a {@link QNeuralFunction} that
+ * stores every transition in a {@link ReplayBuffer} and teaches the
+ * network mini-batches sampled from the buffer every few steps
+ * instead of a single example per step.
+ * 
+ * <p>Optionally the Bellman targets are computed using a frozen
+ * copy of the network (the "target network"), which is only
+ * refreshed periodically and thus keeps the targets stable. The
+ * copy is created using Java serialization.</p>
+ * 
+ * @see QTrainer#setExperienceReplay(ExperienceReplay)
+ */
+public class ExperienceReplay<S extends QState<S, A>, A extends QAction> {
+	private final ReplayBuffer buffer;
+	private final int batchSize;
+	private final int trainInterval;
+	private final Random random;
+	private int targetRefreshInterval = 0;
+	
+	private final int[] indices;
+	private final double[] errors;
+	private final double[] weights;
+	private final float[] scratch;
+	private LearningFunction<NNVector, NNVector> onlineNet = null;
+	private LearningFunction<NNVector, NNVector> targetNet = null;
+	private long steps = 0;
+	
+	public ExperienceReplay(ReplayBuffer buffer, int batchSize, int trainInterval) {
+		this(buffer, batchSize, trainInterval, new Random());
+	}
+	
+	/**
+	 * Creates a new experience replay training mode.
+	 * 
+	 * @param buffer - The replay memory
+	 * @param batchSize - The amount of transitions per mini-batch
+	 * @param trainInterval - Teach a mini-batch every n-th step
+	 * @param random - The random number generator used for sampling
+	 */
+	public ExperienceReplay(ReplayBuffer buffer, int batchSize, int trainInterval, Random random) {
+		if (batchSize < 1 || trainInterval < 1) {
+			throw new IllegalArgumentException("Batch size and train interval have to be positive: " + Integer.toString(batchSize) + ", " + Integer.toString(trainInterval));
+		}
+		
+		this.buffer = buffer;
+		this.batchSize = batchSize;
+		this.trainInterval = trainInterval;
+		this.random = random;
+		indices = new int[batchSize];
+		errors = new double[batchSize];
+		weights = new double[batchSize];
+		scratch = new float[buffer.getInputWidth()];
+	}
+	
+	/**
+	 * Enables the frozen target network.
+	 * 
+	 * @param targetRefreshInterval - Copy the network to the target network every n-th step (0 disables the target network)
+	 */
+	public void setTargetRefreshInterval(int targetRefreshInterval) {
+		this.targetRefreshInterval = targetRefreshInterval;
+		targetNet = null;
+	}
+	
+	/**
+	 * Plays an episode, storing every transition in the buffer.
+	 * The loss of the episode is the mean squared temporal difference
+	 * error of the mini-batches taught during the episode.
+	 */
+	QEpisode play(QLearner<S, A> agent, S initialState, int maxSteps, double discountFactor) {
+		LearningFunction<NNVector, NNVector> net = neuralNetOf(agent.getQFunction());
+		S state = initialState;
+		int i = 0;
+		int trainedSamples = 0;
+		double squaredErrorSum = 0;
+		
+		if (net != onlineNet) {
+			onlineNet = net;
+			targetNet = null;
+		}
+		
+		while (!state.isFinalState() && i < maxSteps) {
+			QStep<S, A> step = agent.pickStep(state, i);
+			QStepResult<S, A> stepRes = state.spawnChild(step);
+			S nextState = stepRes.getNextState();
+			List<NNVector> nextInputs;
+			
+			if (nextState.isFinalState()) {
+				nextInputs = Collections.emptyList();
+			} else {
+				List<? extends A> nextActions = nextState.getActions();
+				nextInputs = new ArrayList<>(nextActions.size());
+				for (A action : nextActions) {
+					nextInputs.add(nextState.toNeurons(action));
+				}
+			}
+			
+			buffer.add(state.toNeurons(step.getAction()), stepRes.getReward(), nextInputs);
+			steps++;
+			
+			if (targetRefreshInterval > 0 && (targetNet == null || (steps % targetRefreshInterval) == 0)) {
+				targetNet = copyOf(net);
+			}
+			
+			if ((steps % trainInterval) == 0 && buffer.size() >= batchSize) {
+				squaredErrorSum += trainBatch(net, discountFactor);
+				trainedSamples += batchSize;
+			}
+			
+			state = nextState;
+			i++;
+		}
+		
+		return new QEpisode(i, squaredErrorSum, trainedSamples);
+	}
+	
+	/**
+	 * Teaches a sampled mini-batch to the network.
+	 * 
+	 * @return The sum of the squared temporal difference errors
+	 */
+	private double trainBatch(LearningFunction<NNVector, NNVector> net, double discountFactor) {
+		LearningFunction<NNVector, NNVector> targetFunc = (targetNet == null) ? net : targetNet;
+		boolean prioritized = buffer instanceof PrioritizedReplayBuffer;
+		// Transitions may be sampled multiple times, thus the examples are not collected in a map
+		List<NNVector> inputs = new ArrayList<>(batchSize);
+		List<NNVector> targets = new ArrayList<>(batchSize);
+		double squaredErrorSum = 0;
+		
+		buffer.sample(indices, random);
+		if (prioritized) {
+			((PrioritizedReplayBuffer) buffer).getWeights(indices, weights);
+		}
+		
+		for (int i=0; i<batchSize; i++) {
+			int index = indices[i];
+			double learnedQ = buffer.getReward(index);
+			int nextActions = buffer.getNextActionCount(index);
+			
+			if (nextActions > 0) {
+				double maxQ = Double.NEGATIVE_INFINITY;
+				for (int action=0; action<nextActions; action++) {
+					buffer.readNextInput(index, action, scratch);
+					maxQ = Math.max(maxQ, targetFunc.compute(new NNVector(scratch)).get(0));
+				}
+				learnedQ += discountFactor * maxQ;
+			}
+			
+			float[] input = new float[scratch.length];
+			buffer.readInput(index, input);
+			NNVector inputVec = new NNVector(input);
+			double q = net.compute(inputVec).get(0);
+			double error = learnedQ - q;
+			
+			// Scaling the error by the importance sampling weight
+			// scales the (squared error) gradient by the same factor
+			double target = prioritized ? q + (weights[i] * error) : learnedQ;
+			
+			inputs.add(inputVec);
+			targets.add(new NNVector((float) target));
+			errors[i] = error;
+			squaredErrorSum += error * error;
+		}
+		
+		net.teach(inputs, targets);
+		
+		if (prioritized) {
+			((PrioritizedReplayBuffer) buffer).updatePriorities(indices, errors);
+		}
+		
+		return squaredErrorSum;
+	}
+	
+	private LearningFunction<NNVector, NNVector> neuralNetOf(QFunction<S, A> qFunction) {
+		if (qFunction instanceof QNeuralFunction) {
+			return ((QNeuralFunction<S, A>) qFunction).getNeuralNet();
+		} else {
+			throw new IllegalStateException("Experience replay requires a QNeuralFunction, not " + qFunction.getClass().getSimpleName());
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static LearningFunction<NNVector, NNVector> copyOf(LearningFunction<NNVector, NNVector> net) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+				oos.writeObject(net);
+			}
+			try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+				return (LearningFunction<NNVector, NNVector>) ois.readObject();
+			}
+		} catch (IOException | ClassNotFoundException e) {
+			throw new SerializationException(e);
+		}
+	}
+	
+	public ReplayBuffer getBuffer() {
+		return buffer;
+	}
+	
+	public int getBatchSize() {
+		return batchSize;
+	}
+	
+	public int getTrainInterval() {
+		return trainInterval;
+	}
+	
+	public int getTargetRefreshInterval() {
+		return targetRefreshInterval;
+	}
+}
@@ -0,0 +1,175 @@
+package fwcd.fructose.ml.rl.qlearn;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+import fwcd.fructose.concurrent.ClosingExecutor;
+import fwcd.fructose.ml.rl.qlearn.core.AsyncQNeuralFunction;
+import fwcd.fructose.ml.rl.qlearn.core.ConcurrentQTable;
+import fwcd.fructose.ml.rl.qlearn.core.QFunction;
+import fwcd.fructose.ml.rl.qlearn.core.QLearner;
+import fwcd.fructose.ml.rl.qlearn.env.QAction;
+import fwcd.fructose.ml.rl.qlearn.env.QState;
+import fwcd.fructose.ml.telemetry.TrainingMonitor;
+
+/**
+ * Trains {@link QLearner}-agents using Q-learning by playing
+ * episodes on multiple threads that all update the agent's
+ * Q-function concurrently.
+ * 
+ * <p>The Q-function (and action selector) of the agent thus
+ * has to be thread-safe, for example a {@link ConcurrentQTable}
+ * or an {@link AsyncQNeuralFunction}. Updates of a {@link ConcurrentQTable}
+ * are applied atomically, thus no update is lost. The Q-values of
+ * the next state (used for the maximum in the Bellman equation)
+ * are read without synchronizing with these updates though, thus
+ * a target may be based on slightly outdated values.</p>
+ *
+ * @param <S> - The state type
+ * @param <A> - The action type
+ */
+public class ParallelQTrainer<S extends QState<S, A>, A extends QAction> {
+	private final QLearner<S, A> agent;
+	private final int threadCount;
+	private volatile double learnFactor = 0.1D;
+	private volatile double discountFactor = 0.9D;
+	private final TrainingMonitor monitor = new TrainingMonitor();
+	
+	public ParallelQTrainer(QLearner<S, A> agent) {
+		this(agent, Runtime.getRuntime().availableProcessors());
+	}
+	
+	public ParallelQTrainer(QLearner<S, A> agent, int threadCount) {
+		if (threadCount < 1) {
+			throw new IllegalArgumentException("Thread count has to be positive: " + Integer.toString(threadCount));
+		}
+		
+		this.agent = agent;
+		this.threadCount = threadCount;
+	}
+	
+	public QTrainingStats train(S state, int episodes) {
+		return train(state, episodes, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Trains the agent for the given amount of episodes, which are
+	 * distributed dynamically among the worker threads. The call
+	 * is reported as a single batch and epoch to the listeners
+	 * of the training monitor.
+	 * 
+	 * @return The throughput of this run
+	 */
+	public QTrainingStats train(S state, int episodes, int maxSteps) {
+		boolean measuring = monitor.isActive();
+		AtomicInteger nextEpisode = new AtomicInteger();
+		LongAdder steps = new LongAdder();
+		DoubleAdder squaredErrorSum = new DoubleAdder();
+		double lf = learnFactor;
+		double df = discountFactor;
+		int workers = Math.max(1, Math.min(threadCount, episodes));
+		
+		if (measuring) {
+			monitor.beginBatch(0);
+		}
+		
+		long start = System.nanoTime();
+		
+		try (ClosingExecutor executor = new ClosingExecutor(workers)) {
+			List<Future<?>> futures = new ArrayList<>(workers);
+			
+			for (int i=0; i<workers; i++) {
+				futures.add(executor.submit(() -> {
+					while (nextEpisode.getAndIncrement() < episodes && !Thread.currentThread().isInterrupted()) {
+						QEpisode episode = QEpisode.play(agent, state, maxSteps, lf, df);
+						steps.add(episode.getSteps());
+						squaredErrorSum.add(episode.getSquaredErrorSum());
+					}
+				}));
+			}
+			
+			await(futures);
+		}
+		
+		QFunction<S, A> qFunction = agent.getQFunction();
+		if (qFunction instanceof AsyncQNeuralFunction) {
+			((AsyncQNeuralFunction<S, A>) qFunction).flush();
+		}
+		
+		QTrainingStats stats = new QTrainingStats(
+				Math.min(nextEpisode.get(), episodes),
+				steps.sum(),
+				squaredErrorSum.sum(),
+				System.nanoTime() - start
+		);
+		
+		if (measuring) {
+			monitor.endBatch(stats.getSteps(), stats.getMeanSquaredError());
+			monitor.endEpoch();
+		}
+		
+		return stats;
+	}
+	
+	private static void await(List<Future<?>> futures) {
+		try {
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			for (Future<?> future : futures) {
+				future.cancel(true);
+			}
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while training", e);
+		} catch (ExecutionException e) {
+			for (Future<?> future : futures) {
+				future.cancel(true);
+			}
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			} else {
+				throw new IllegalStateException(cause);
+			}
+		}
+	}
+	
+	/**
+	 * @return The monitor that reports metrics to registered training listeners
+	 */
+	public TrainingMonitor getTrainingMonitor() {
+		return monitor;
+	}
+	
+	public QLearner<S, A> getAgent() {
+		return agent;
+	}
+	
+	public int getThreadCount() {
+		return threadCount;
+	}
+	
+	public double getDiscountFactor() {
+		return discountFactor;
+	}
+	
+	public void setDiscountFactor(double discountFactor) {
+		this.discountFactor = discountFactor;
+	}
+	
+	public double getLearnFactor() {
+		return learnFactor;
+	}
+	
+	public void setLearnFactor(double learnFactor) {
+		this.learnFactor = learnFactor;
+	}
+}
@@ -0,0 +1,132 @@
+package fwcd.fructose.ml.rl.qlearn;
+
+import java.util.List;
+
+import fwcd.fructose.ml.rl.qlearn.core.ConcurrentQTable;
+import fwcd.fructose.ml.rl.qlearn.core.QFunction;
+import fwcd.fructose.ml.rl.qlearn.core.QLearner;
+import fwcd.fructose.ml.rl.qlearn.env.QAction;
+import fwcd.fructose.ml.rl.qlearn.env.QState;
+import fwcd.fructose.ml.rl.qlearn.env.QStep;
+import fwcd.fructose.ml.rl.qlearn.env.QStepResult;
+
+/**
+ * A single Q-learning episode, which is shared
+ * by the trainers in this package.
+ */
+final class QEpisode {
+	private final int steps;
+	private final double squaredErrorSum;
+	private final int errorCount;
+	
+	QEpisode(int steps, double squaredErrorSum) {
+		this(steps, squaredErrorSum, steps);
+	}
+	
+	/**
+	 * @param steps - The amount of steps taken
+	 * @param squaredErrorSum - The summed squared temporal difference errors
+	 * @param errorCount - The amount of errors in the sum (which differs from the steps if the agent is taught sampled batches)
+	 */
+	QEpisode(int steps, double squaredErrorSum, int errorCount) {
+		this.steps = steps;
+		this.squaredErrorSum = squaredErrorSum;
+		this.errorCount = errorCount;
+	}
+	
+	/**
+	 * Plays an episode and teaches the agent's Q-function
+	 * after every step using the Bellman equation.
+	 * 
+	 * <p>The Q-values of the next state, which are predicted
+	 * for the Bellman equation, are reused to pick the next
+	 * step, unless the state did not change.</p>
+	 * 
+	 * <p>Updates of a {@link ConcurrentQTable} are applied atomically,
+	 * thus concurrent episodes do not lose each other's updates.</p>
+	 */
+	static <S extends QState<S, A>, A extends QAction> QEpisode play(
+			QLearner<S, A> agent,
+			S initialState,
+			int maxSteps,
+			double learnFactor,
+			double discountFactor
+	) {
+		QFunction<S, A> qFunc = agent.getQFunction();
+		S state = initialState;
+		List<? extends A> actions = null;
+		double[] qValues = new double[0];
+		double[] nextQValues = new double[0];
+		boolean predicted = false;
+		int i = 0;
+		double squaredErrorSum = 0;
+		
+		while (!state.isFinalState() && i < maxSteps) {
+			if (!predicted) {
+				actions = state.getActions();
+				qValues = ensureLength(qValues, actions.size());
+				qFunc.predictAll(state, actions, qValues);
+			}
+			
+			QStep<S, A> step = agent.pickStep(state, actions, qValues, i);
+			QStepResult<S, A> stepRes = state.spawnChild(step);
+			S nextState = stepRes.getNextState();
+			List<? extends A> nextActions = null;
+			
+			// Bellman equation
+			double learnedQ;
+			
+			if (nextState.isFinalState()) {
+				learnedQ = stepRes.getReward();
+			} else {
+				nextActions = nextState.getActions();
+				nextQValues = ensureLength(nextQValues, nextActions.size());
+				qFunc.predictAll(nextState, nextActions, nextQValues);
+				learnedQ = stepRes.getReward() + (discountFactor * QLearner.max(nextQValues, nextActions.size()));
+			}
+			
+			double error = learnedQ - step.getQValue();
+			
+			if (qFunc instanceof ConcurrentQTable) {
+				// Blends into the current value atomically, since other episodes may have changed it since the prediction
+				ConcurrentQTable<S, A> table = (ConcurrentQTable<S, A>) qFunc;
+				table.update(state.stateKey(), step.getAction().actionIndex(), oldQ -> ((1D - learnFactor) * oldQ) + (learnFactor * learnedQ));
+			} else {
+				double newQ = ((1D - learnFactor) * step.getQValue()) + (learnFactor * learnedQ);
+				qFunc.teach(state, step.getAction(), newQ);
+			}
+			squaredErrorSum += error * error;
+			
+			// Swap the buffers
+			double[] tmp = qValues;
+			qValues = nextQValues;
+			nextQValues = tmp;
+			predicted = (nextActions != null) && !nextState.equals(state);
+			actions = nextActions;
+			
+			state = nextState;
+			i++;
+		}
+		
+		return new QEpisode(i, squaredErrorSum);
+	}
+	
+	private static double[] ensureLength(double[] array, int length) {
+		return (array.length < length) ? new double[length] : array;
+	}
+	
+	int getSteps() {
+		return steps;
+	}
+	
+	double getSquaredErrorSum() {
+		return squaredErrorSum;
+	}
+	
+	/**
+	 * @return The mean squared temporal difference error or NaN if no error has been measured
+	 */
+	double getMeanSquaredError() {
+		return (errorCount == 0) ? Double.NaN : squaredErrorSum / errorCount;
+	}
+}
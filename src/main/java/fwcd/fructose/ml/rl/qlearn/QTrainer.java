@@ -9,17 +9,22 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 
+import fwcd.fructose.Copyable;
+import fwcd.fructose.Option;
 import fwcd.fructose.exception.SerializationException;
+import fwcd.fructose.io.CheckpointService;
+import fwcd.fructose.ml.function.LearningFunction;
+import fwcd.fructose.ml.math.NNVector;
 import fwcd.fructose.ml.rl.qlearn.as.BoltzmannSelector;
 import fwcd.fructose.ml.rl.qlearn.as.QActionSelector;
 import fwcd.fructose.ml.rl.qlearn.core.CompositeLearner;
 import fwcd.fructose.ml.rl.qlearn.core.QFunction;
 import fwcd.fructose.ml.rl.qlearn.core.QLearner;
+import fwcd.fructose.ml.rl.qlearn.core.QNeuralFunction;
 import fwcd.fructose.ml.rl.qlearn.core.QTable;
 import fwcd.fructose.ml.rl.qlearn.env.QAction;
 import fwcd.fructose.ml.rl.qlearn.env.QState;
-import fwcd.fructose.ml.rl.qlearn.env.QStep;
-import fwcd.fructose.ml.rl.qlearn.env.QStepResult;
+import fwcd.fructose.ml.telemetry.TrainingMonitor;
 
 /**
  * Automatically trains {@link QLearner}-agents using Q-learning.
@@ -33,6 +38,11 @@ public class QTrainer<S extends QState<S, A>, A extends QAction> {
 	private QLearner<S, A> agent;
 	private double learnFactor = 0.1D;
 	private double discountFactor = 0.9D;
+	private final TrainingMonitor monitor = new TrainingMonitor();
+	private ExperienceReplay<S, A> replay = null;
+	private CheckpointService checkpoints = null;
+	private int checkpointInterval = 0;
+	private long episodeCount = 0;
 
 	public QTrainer() {
 		agent = new CompositeLearner<S, A>(new QTable<>(), new BoltzmannSelector<>()); // TODO: Do not use QTables here (rather a neural net maybe?)
@@ -54,44 +64,160 @@ public class QTrainer<S extends QState<S, A>, A extends QAction> {
 		train(state, episodes, Integer.MAX_VALUE);
 	}
 
+	/**
+	 * Trains the agent for the given amount of episodes. Every
+	 * episode is reported as a batch (with the steps as samples and
+	 * the mean squared temporal difference error as loss) and every call
+	 * as an epoch to the listeners of the training monitor.
+	 */
 	public void train(S state, int episodes, int maxSteps) {
 		for (int i=0; i<episodes; i++) {
 			trainEpisode(state, maxSteps);
+			episodeCount++;
+			
+			if (checkpoints != null && (episodeCount % checkpointInterval) == 0) {
+				checkpoints.save(episodeCount, captureAgent());
+			}
+		}
+		
+		if (monitor.isActive()) {
+			monitor.endEpoch();
 		}
 	}
 
-	private void trainEpisode(S initialState, int maxSteps) {
-		S state = initialState;
-		S nextState = state;
-		int i = 0;
-
-		while (!state.isFinalState() && i < maxSteps) {
-			state = nextState;
-			QFunction<S, A> qFunc = agent.getQFunction();
-			QStep<S, A> step = agent.pickStep(state, i);
-			QStepResult<S, A> stepRes = state.spawnChild(step);
-			nextState = stepRes.getNextState();
-
-			// Bellman equation
-			double learnedQ;
+	/**
+	 * Captures the agent for a checkpoint. Learners with a
+	 * {@link Copyable} Q-function (such as the Q-tables or a perceptron)
+	 * are copied and serialized on the writer thread. Other agents
+	 * are serialized on the training thread.
+	 */
+	private CheckpointService.Snapshot captureAgent() {
+		if (agent instanceof CompositeLearner) {
+			CompositeLearner<S, A> learner = (CompositeLearner<S, A>) agent;
+			QFunction<S, A> copy = copyOf(learner.getQFunction());
 			
-			if (nextState.isFinalState()) {
-				learnedQ = stepRes.getReward();
-			} else {
-				learnedQ = stepRes.getReward() + (discountFactor * agent.maxQ(stepRes.getNextState()));
+			if (copy != null) {
+				return CheckpointService.serializedLater(new CompositeLearner<>(copy, learner.getActionSelector()));
 			}
+		}
+		
+		return CheckpointService.serialized(agent);
+	}
+	
+	/**
+	 * @return A copy of the Q-function or null if it is not copyable
+	 */
+	@SuppressWarnings("unchecked")
+	private QFunction<S, A> copyOf(QFunction<S, A> qFunction) {
+		if (qFunction instanceof Copyable) {
+			return (QFunction<S, A>) ((Copyable<?>) qFunction).copy();
+		} else if (qFunction instanceof QNeuralFunction) {
+			LearningFunction<NNVector, NNVector> net = ((QNeuralFunction<S, A>) qFunction).getNeuralNet();
 			
-			double newQ = ((1D - learnFactor) * step.getQValue()) + (learnFactor * learnedQ);
-			
-			qFunc.teach(state, step.getAction(), newQ);
-			i++;
+			if (net instanceof Copyable) {
+				return new QNeuralFunction<>((LearningFunction<NNVector, NNVector>) ((Copyable<?>) net).copy());
+			}
+		}
+		
+		return null;
+	}
+	
+	private void trainEpisode(S initialState, int maxSteps) {
+		boolean measuring = monitor.isActive();
+		
+		if (measuring) {
+			monitor.beginBatch(0);
 		}
+		
+		QEpisode episode;
+		
+		if (replay == null) {
+			episode = QEpisode.play(agent, initialState, maxSteps, learnFactor, discountFactor);
+		} else {
+			episode = replay.play(agent, initialState, maxSteps, discountFactor);
+		}
+		
+		if (measuring) {
+			monitor.endBatch(episode.getSteps(), episode.getMeanSquaredError());
+		}
+	}
+	
+	/**
+	 * Enables the mini-batch training mode, in which the learn
+	 * factor is not used since the network is taught the Bellman
+	 * targets directly.
+	 * 
+	 * @param replay - The experience replay or null to teach the Q-function after every step
+	 */
+	public void setExperienceReplay(ExperienceReplay<S, A> replay) {
+		this.replay = replay;
+	}
+	
+	public ExperienceReplay<S, A> getExperienceReplay() {
+		return replay;
+	}
+	
+	/**
+	 * Periodically saves the agent while training. Copyable Q-functions
+	 * (the Q-tables and perceptrons) are copied on the training thread
+	 * and serialized in the background, other agents are serialized
+	 * on the training thread. Writing and syncing the checkpoint
+	 * file always happens in the background.
+	 * 
+	 * @param checkpoints - The checkpoint service or null to disable checkpoints
+	 * @param interval - Save the agent every n-th episode
+	 */
+	public void setCheckpoints(CheckpointService checkpoints, int interval) {
+		if (checkpoints != null && interval < 1) {
+			throw new IllegalArgumentException("Checkpoint interval has to be positive: " + Integer.toString(interval));
+		}
+		
+		this.checkpoints = checkpoints;
+		checkpointInterval = interval;
+	}
+	
+	/**
+	 * Loads the agent and the episode count from the newest checkpoint.
+	 * 
+	 * @return Whether a checkpoint has been found
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean resumeFromLatest(CheckpointService checkpoints) {
+		Option<Long> index = checkpoints.getLatestIndex();
+		
+		if (index.isPresent()) {
+			agent = checkpoints.read(index.unwrap(), in -> (QLearner<S, A>) new ObjectInputStream(in).readObject());
+			episodeCount = index.unwrap();
+			return true;
+		} else {
+			return false;
+		}
+	}
+	
+	/**
+	 * @return The total amount of episodes this trainer has trained
+	 */
+	public long getEpisodeCount() {
+		return episodeCount;
+	}
+	
+	/**
+	 * @return The monitor that reports metrics to registered training listeners
+	 */
+	public TrainingMonitor getTrainingMonitor() {
+		return monitor;
 	}
 
 	public QLearner<S, A> getAgent() {
 		return agent;
 	}
 
+	/**
+	 * Saves the agent using Java serialization. This is
+	 * kept for compatibility, models that need to be loaded quickly
+	 * should be stored in a binary format (for example using
+	 * {@link QTable#saveBinary}).
+	 */
 	public void saveAgent(File file) {
 		try (OutputStream out = new FileOutputStream(file); ObjectOutputStream oos = new ObjectOutputStream(out)) {
 			oos.writeObject(agent);
@@ -0,0 +1,59 @@
+package fwcd.fructose.ml.rl.qlearn;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable throughput statistics of a training run.
+ */
+public class QTrainingStats {
+	private final long episodes;
+	private final long steps;
+	private final double squaredErrorSum;
+	private final long nanos;
+	
+	public QTrainingStats(long episodes, long steps, double squaredErrorSum, long nanos) {
+		this.episodes = episodes;
+		this.steps = steps;
+		this.squaredErrorSum = squaredErrorSum;
+		this.nanos = nanos;
+	}
+	
+	public long getEpisodes() {
+		return episodes;
+	}
+	
+	public long getSteps() {
+		return steps;
+	}
+	
+	/**
+	 * @return The mean squared temporal difference error over all steps or NaN if no step has been taken
+	 */
+	public double getMeanSquaredError() {
+		return (steps == 0) ? Double.NaN : squaredErrorSum / steps;
+	}
+	
+	public long getNanos() {
+		return nanos;
+	}
+	
+	public double getEpisodesPerSecond() {
+		return perSecond(episodes);
+	}
+	
+	public double getStepsPerSecond() {
+		return perSecond(steps);
+	}
+	
+	private double perSecond(long count) {
+		return (nanos == 0) ? 0 : count * (double) TimeUnit.SECONDS.toNanos(1) / nanos;
+	}
+	
+	@Override
+	public String toString() {
+		return "QTrainingStats [episodes=" + episodes
+				+ ", steps=" + steps
+				+ ", episodes/s=" + String.format("%.1f", getEpisodesPerSecond())
+				+ ", steps/s=" + String.format("%.1f", getStepsPerSecond()) + "]";
+	}
+}
@@ -1,9 +1,7 @@
 package fwcd.fructose.ml.rl.qlearn.as;
 
-import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 
-import fwcd.fructose.Distribution;
-import fwcd.fructose.Distribution.Normalizer;
 import fwcd.fructose.ml.rl.qlearn.env.QAction;
 
 /**
@@ -12,6 +10,10 @@ import fwcd.fructose.ml.rl.qlearn.env.QAction;
  * over greedy approaches that it does not only consider
  * the maximum value.
  * 
+ * <p>The Q-values are scaled by their largest magnitude
+ * before applying the softmax, thus the selection does not
+ * depend on the scale of the rewards.</p>
+ * 
  * @author Fredrik
  *
  */
@@ -19,7 +21,34 @@ public class BoltzmannSelector<A extends QAction> implements QActionSelector<A>
 	private static final long serialVersionUID = 5372118272093913864L;
 
 	@Override
-	public A selectAction(Map<A, Double> actions) {
-		return new Distribution<>(actions, Normalizer.SCALED_SOFTMAX).pickStochastically();
+	public int select(double[] qValues, int count) {
+		double max = Double.NEGATIVE_INFINITY;
+		double maxAbs = 0;
+		
+		for (int i=0; i<count; i++) {
+			max = Math.max(max, qValues[i]);
+			maxAbs = Math.max(maxAbs, Math.abs(qValues[i]));
+		}
+		
+		double scale = (maxAbs == 0) ? 1 : 1 / maxAbs;
+		double[] weights = new double[count];
+		double total = 0;
+		
+		for (int i=0; i<count; i++) {
+			// Subtracting the maximum keeps the exponentials in range
+			weights[i] = Math.exp((qValues[i] - max) * scale);
+			total += weights[i];
+		}
+		
+		double random = ThreadLocalRandom.current().nextDouble() * total;
+		
+		for (int i=0; i<count-1; i++) {
+			random -= weights[i];
+			if (random < 0) {
+				return i;
+			}
+		}
+		
+		return count - 1;
 	}
 }
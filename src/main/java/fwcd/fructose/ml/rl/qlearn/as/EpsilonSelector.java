@@ -1,6 +1,5 @@
 package fwcd.fructose.ml.rl.qlearn.as;
 
-import java.util.Map;
 import java.util.concurrent.ThreadLocalRandom;
 
 import fwcd.fructose.ml.rl.qlearn.env.QAction;
@@ -38,11 +37,11 @@ public class EpsilonSelector<A extends QAction> implements QActionSelector<A> {
 	}
 	
 	@Override
-	public A selectAction(Map<A, Double> actions) {
+	public int select(double[] qValues, int count) {
 		if (ThreadLocalRandom.current().nextDouble() < epsilon) {
-			return randomSelector.selectAction(actions);
+			return randomSelector.select(qValues, count);
 		} else {
-			return defaultSelector.selectAction(actions);
+			return defaultSelector.select(qValues, count);
 		}
 	}
 }
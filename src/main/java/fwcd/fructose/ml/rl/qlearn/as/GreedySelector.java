@@ -1,7 +1,5 @@
 package fwcd.fructose.ml.rl.qlearn.as;
 
-import java.util.Map;
-
 import fwcd.fructose.ml.rl.qlearn.env.QAction;
 
 /**
@@ -17,18 +15,15 @@ public class GreedySelector<A extends QAction> implements QActionSelector<A> {
 	private static final long serialVersionUID = -4191217691081356570L;
 
 	@Override
-	public A selectAction(Map<A, Double> actions) {
-		A maxAction = null;
-		double maxQ = Double.NEGATIVE_INFINITY;
+	public int select(double[] qValues, int count) {
+		int maxIndex = 0;
 		
-		for (A action : actions.keySet()) {
-			double q = actions.get(action);
-			if (q > maxQ) {
-				maxQ = q;
-				maxAction = action;
+		for (int i=1; i<count; i++) {
+			if (qValues[i] > qValues[maxIndex]) {
+				maxIndex = i;
 			}
 		}
 		
-		return maxAction;
+		return maxIndex;
 	}
 }
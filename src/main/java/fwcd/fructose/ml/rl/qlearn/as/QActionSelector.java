@@ -1,10 +1,30 @@
 package fwcd.fructose.ml.rl.qlearn.as;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import fwcd.fructose.ml.rl.qlearn.env.QAction;
 
 public interface QActionSelector<A extends QAction> extends Serializable {
-	A selectAction(Map<A, Double> actions);
+	/**
+	 * Selects an action based on its Q-value.
+	 * 
+	 * @param qValues - The Q-values of the available actions
+	 * @param count - The amount of available actions (at least 1), only this many Q-values are used
+	 * @return The index of the selected action
+	 */
+	int select(double[] qValues, int count);
+	
+	default A selectAction(Map<A, Double> actions) {
+		List<A> keys = new ArrayList<>(actions.keySet());
+		double[] qValues = new double[keys.size()];
+		
+		for (int i=0; i<qValues.length; i++) {
+			qValues[i] = actions.get(keys.get(i));
+		}
+		
+		return keys.get(select(qValues, qValues.length));
+	}
 }
@@ -1,6 +1,5 @@
 package fwcd.fructose.ml.rl.qlearn.as;
 
-import java.util.Map;
 import java.util.concurrent.ThreadLocalRandom;
 
 import fwcd.fructose.ml.rl.qlearn.env.QAction;
@@ -18,17 +17,7 @@ public class RandomSelector<A extends QAction> implements QActionSelector<A> {
 	private static final long serialVersionUID = -8535745687847130018L;
 
 	@Override
-	public A selectAction(Map<A, Double> actions) {
-		int dest = ThreadLocalRandom.current().nextInt(actions.size());
-		int i = 0;
-		
-		for (A action : actions.keySet()) {
-			if (i == dest) {
-				return action;
-			}
-			i++;
-		}
-		
-		throw new IllegalStateException("Unreachable code: Destination index should always be bounded by the map size.");
+	public int select(double[] qValues, int count) {
+		return ThreadLocalRandom.current().nextInt(count);
 	}
 }
@@ -0,0 +1,151 @@
+package fwcd.fructose.ml.rl.qlearn.core;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import fwcd.fructose.ml.function.LearningFunction;
+import fwcd.fructose.ml.math.NNVector;
+import fwcd.fructose.ml.rl.qlearn.env.QAction;
+import fwcd.fructose.ml.rl.qlearn.env.QState;
+
+/**
+ * A thread-safe variant of {@link QNeuralFunction} that accumulates
+ * the examples taught by concurrent trainers and applies them
+ * in batches. Whichever thread completes a batch teaches it to the
+ * network, unless another thread is already doing so, in which case
+ * the examples simply remain queued. Predictions may thus lag
+ * behind by a few updates.
+ */
+public class AsyncQNeuralFunction<S extends QState<S, A>, A extends QAction> implements QFunction<S, A> {
+	private static final long serialVersionUID = 2967436093641857245L;
+	private final LearningFunction<NNVector, NNVector> neuralNet;
+	private final int batchSize;
+	private transient ReadWriteLock lock = new ReentrantReadWriteLock();
+	private transient Queue<Example> pending = new ConcurrentLinkedQueue<>();
+	private transient AtomicInteger pendingCount = new AtomicInteger();
+	
+	/**
+	 * Creates an asynchronous Q-function using the given function approximator.
+	 *
+	 * @param neuralNet - The function approximator, which takes exactly as many neurons as the QState supplies and outputs a single neuron
+	 * @param batchSize - The amount of examples that are taught at once
+	 */
+	public AsyncQNeuralFunction(LearningFunction<NNVector, NNVector> neuralNet, int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("Batch size has to be positive: " + Integer.toString(batchSize));
+		}
+		
+		this.neuralNet = neuralNet;
+		this.batchSize = batchSize;
+	}
+	
+	@Override
+	public double predict(S state, A action) {
+		NNVector input = state.toNeurons(action);
+		lock.readLock().lock();
+		try {
+			return neuralNet.compute(input).get(0);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	@Override
+	public void predictAll(S state, List<? extends A> actions, double[] out) {
+		List<NNVector> inputs = QNeuralFunction.inputsOf(state, actions);
+		List<NNVector> outputs;
+		lock.readLock().lock();
+		try {
+			outputs = QNeuralFunction.computeAll(neuralNet, inputs);
+		} finally {
+			lock.readLock().unlock();
+		}
+		
+		for (int i=0; i<outputs.size(); i++) {
+			out[i] = outputs.get(i).get(0);
+		}
+	}
+	
+	@Override
+	public void teach(S state, A action, double output) {
+		pending.add(new Example(state.toNeurons(action), new NNVector((float) output)));
+		
+		if (pendingCount.incrementAndGet() >= batchSize && lock.writeLock().tryLock()) {
+			try {
+				while (pendingCount.get() >= batchSize) {
+					teachPending(batchSize);
+				}
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+	}
+	
+	/**
+	 * Teaches all queued examples to the network.
+	 */
+	public void flush() {
+		lock.writeLock().lock();
+		try {
+			teachPending(Integer.MAX_VALUE);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Teaches up to the given amount of queued examples.
+	 * Requires the write lock to be held.
+	 */
+	private void teachPending(int maxExamples) {
+		// Concurrent trainers may teach the same input, thus every example is kept (instead of using a map)
+		List<NNVector> inputs = new ArrayList<>();
+		List<NNVector> outputs = new ArrayList<>();
+		Example example;
+		
+		while (inputs.size() < maxExamples && (example = pending.poll()) != null) {
+			pendingCount.decrementAndGet();
+			inputs.add(example.input);
+			outputs.add(example.output);
+		}
+		
+		if (!inputs.isEmpty()) {
+			neuralNet.teach(inputs, outputs);
+		}
+	}
+	
+	/**
+	 * @return The amount of examples that have not been taught yet
+	 */
+	public int getPendingCount() {
+		return pendingCount.get();
+	}
+	
+	public int getBatchSize() {
+		return batchSize;
+	}
+	
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		lock = new ReentrantReadWriteLock();
+		pending = new ConcurrentLinkedQueue<>();
+		pendingCount = new AtomicInteger();
+	}
+	
+	private static class Example {
+		private final NNVector input;
+		private final NNVector output;
+		
+		public Example(NNVector input, NNVector output) {
+			this.input = input;
+			this.output = output;
+		}
+	}
+}
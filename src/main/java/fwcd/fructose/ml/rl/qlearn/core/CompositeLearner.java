@@ -1,8 +1,6 @@
 package fwcd.fructose.ml.rl.qlearn.core;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import fwcd.fructose.ml.rl.qlearn.as.QActionSelector;
 import fwcd.fructose.ml.rl.qlearn.env.QAction;
@@ -24,25 +22,35 @@ public class CompositeLearner<S extends QState<S, A>, A extends QAction> impleme
 		return qFunction;
 	}
 	
+	public QActionSelector<A> getActionSelector() {
+		return actionSelector;
+	}
+	
 	@Override
 	public QStep<S, A> pickStep(S state, int index) {
 		List<? extends A> actions = state.getActions();
-		Map<A, Double> qValueMap = new HashMap<>();
+		double[] qValues = new double[actions.size()];
 		
-		for (A action : actions) {
-			qValueMap.put(action, qFunction.predict(state, action));
+		qFunction.predictAll(state, actions, qValues);
+		return pickStep(state, actions, qValues, index);
+	}
+	
+	@Override
+	public QStep<S, A> pickStep(S state, List<? extends A> actions, double[] qValues, int index) {
+		if (actions.isEmpty()) {
+			throw new IllegalStateException("State has no actions.");
 		}
 		
-		A selectedAction = actionSelector.selectAction(qValueMap);
-		return new QStep<>(selectedAction, qValueMap.get(selectedAction), index);
+		int selected = actionSelector.select(qValues, actions.size());
+		return new QStep<>(actions.get(selected), qValues[selected], index);
 	}
 
 	@Override
 	public double maxQ(S state) {
-		return state.getActions()
-				.stream()
-				.mapToDouble(action -> qFunction.predict(state, action))
-				.max()
-				.orElseThrow(() -> new IllegalStateException("State has no actions."));
+		List<? extends A> actions = state.getActions();
+		double[] qValues = new double[actions.size()];
+		
+		qFunction.predictAll(state, actions, qValues);
+		return QLearner.max(qValues, actions.size());
 	}
 }
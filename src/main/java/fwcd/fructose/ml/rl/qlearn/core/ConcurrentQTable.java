@@ -0,0 +1,165 @@
+package fwcd.fructose.ml.rl.qlearn.core;
+
+import java.util.List;
+import java.util.function.DoubleUnaryOperator;
+
+import fwcd.fructose.Copyable;
+import fwcd.fructose.ml.rl.qlearn.env.QAction;
+import fwcd.fructose.ml.rl.qlearn.env.QState;
+
+/**
+ * A thread-safe tabular Q-function that spreads its states
+ * over several {@link PrimitiveQTable}s ("stripes"), each of which
+ * is guarded by its own lock. Threads that update different
+ * states thus rarely contend.
+ *
+ * <p>Requires the states to support {@link QState#stateKey()}
+ * and the actions to support {@link QAction#actionIndex()}.</p>
+ */
+public class ConcurrentQTable<S extends QState<S, A>, A extends QAction> implements QFunction<S, A>, Copyable<ConcurrentQTable<S, A>> {
+	private static final long serialVersionUID = -1894066915498364377L;
+	private final int actionCount;
+	private final int stripeBits;
+	private final PrimitiveQTable<S, A>[] stripes;
+	
+	/**
+	 * Creates a concurrent Q-table using four stripes per available processor.
+	 *
+	 * @param actionCount - The amount of distinct actions
+	 */
+	public ConcurrentQTable(int actionCount) {
+		this(actionCount, Runtime.getRuntime().availableProcessors() * 4);
+	}
+	
+	/**
+	 * Creates a concurrent Q-table.
+	 *
+	 * @param actionCount - The amount of distinct actions
+	 * @param minStripes - The minimum amount of independently locked stripes (rounded up to a power of two)
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public ConcurrentQTable(int actionCount, int minStripes) {
+		if (minStripes < 1 || minStripes > (1 << 16)) {
+			throw new IllegalArgumentException("Stripe count has to be in [1, 65536]: " + Integer.toString(minStripes));
+		}
+		
+		this.actionCount = actionCount;
+		stripeBits = 32 - Integer.numberOfLeadingZeros(minStripes - 1);
+		stripes = new PrimitiveQTable[1 << stripeBits];
+		
+		for (int i=0; i<stripes.length; i++) {
+			stripes[i] = new PrimitiveQTable<>(actionCount);
+		}
+	}
+	
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private ConcurrentQTable(ConcurrentQTable<S, A> source) {
+		actionCount = source.actionCount;
+		stripeBits = source.stripeBits;
+		stripes = new PrimitiveQTable[source.stripes.length];
+		
+		for (int i=0; i<stripes.length; i++) {
+			PrimitiveQTable<S, A> stripe = source.stripes[i];
+			synchronized (stripe) {
+				stripes[i] = stripe.copy();
+			}
+		}
+	}
+	
+	private PrimitiveQTable<S, A> stripeOf(long stateKey) {
+		if (stripeBits == 0) {
+			return stripes[0];
+		}
+		// Fibonacci hashing, the top bits are well mixed
+		return stripes[(int) ((stateKey * 0x9E3779B97F4A7C15L) >>> (64 - stripeBits))];
+	}
+	
+	@Override
+	public double predict(S state, A action) {
+		return get(state.stateKey(), action.actionIndex());
+	}
+	
+	@Override
+	public void teach(S state, A action, double output) {
+		set(state.stateKey(), action.actionIndex(), output);
+	}
+	
+	@Override
+	public void predictAll(S state, List<? extends A> actions, double[] out) {
+		PrimitiveQTable<S, A> stripe = stripeOf(state.stateKey());
+		synchronized (stripe) {
+			stripe.predictAll(state, actions, out);
+		}
+	}
+	
+	public double get(long stateKey, int actionIndex) {
+		PrimitiveQTable<S, A> stripe = stripeOf(stateKey);
+		synchronized (stripe) {
+			return stripe.get(stateKey, actionIndex);
+		}
+	}
+	
+	public void getRow(long stateKey, double[] dest) {
+		PrimitiveQTable<S, A> stripe = stripeOf(stateKey);
+		synchronized (stripe) {
+			stripe.getRow(stateKey, dest);
+		}
+	}
+	
+	public void set(long stateKey, int actionIndex, double value) {
+		PrimitiveQTable<S, A> stripe = stripeOf(stateKey);
+		synchronized (stripe) {
+			stripe.set(stateKey, actionIndex, value);
+		}
+	}
+	
+	/**
+	 * Atomically replaces a Q-value by the result of the given function.
+	 *
+	 * @param stateKey - The state key
+	 * @param actionIndex - The action index
+	 * @param updater - Maps the old value (0 if absent) to the new value
+	 * @return The new value
+	 */
+	public double update(long stateKey, int actionIndex, DoubleUnaryOperator updater) {
+		PrimitiveQTable<S, A> stripe = stripeOf(stateKey);
+		synchronized (stripe) {
+			double value = updater.applyAsDouble(stripe.get(stateKey, actionIndex));
+			stripe.set(stateKey, actionIndex, value);
+			return value;
+		}
+	}
+	
+	/**
+	 * @return The amount of stored states
+	 */
+	public long size() {
+		long size = 0;
+		
+		for (PrimitiveQTable<S, A> stripe : stripes) {
+			synchronized (stripe) {
+				size += stripe.size();
+			}
+		}
+		
+		return size;
+	}
+	
+	public int getActionCount() {
+		return actionCount;
+	}
+	
+	public int getStripeCount() {
+		return stripes.length;
+	}
+	
+	/**
+	 * Copies the table stripe by stripe. Every stripe is copied
+	 * atomically, but updates of other threads to stripes that
+	 * have not been copied yet are still included.
+	 */
+	@Override
+	public ConcurrentQTable<S, A> copy() {
+		return new ConcurrentQTable<>(this);
+	}
+}
@@ -0,0 +1,481 @@
+package fwcd.fructose.ml.rl.qlearn.core;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+import fwcd.fructose.Copyable;
+import fwcd.fructose.exception.SerializationException;
+import fwcd.fructose.ml.io.ModelFile;
+import fwcd.fructose.ml.io.ModelFileWriter;
+import fwcd.fructose.ml.rl.qlearn.env.QAction;
+import fwcd.fructose.ml.rl.qlearn.env.QState;
+
+/**
+ * <p>A memory-efficient Q-table that is backed by an open-addressing
+ * hash table of primitive state keys (see {@link QState#stateKey()}).
+ * Every state owns a contiguous row of Q-values that is indexed
+ * by {@link QAction#actionIndex()}. Unknown Q-values are 0.</p>
+ *
+ * <p>Q-values are stored as doubles or, optionally, as floats
+ * to halve the memory usage. When the table grows, entries
+ * are migrated incrementally to the larger table during
+ * subsequent operations instead of rehashing all of them at once.</p>
+ *
+ * <p>This class is not thread-safe.</p>
+ *
+ * @param <S> - The state type
+ * @param <A> - The action type
+ */
+public class PrimitiveQTable<S extends QState<S, A>, A extends QAction> implements QFunction<S, A>, Copyable<PrimitiveQTable<S, A>> {
+	private static final long serialVersionUID = 6263781620719427853L;
+	private static final float LOAD_FACTOR = 0.75F;
+	/** The amount of old slots that are migrated per insertion while resizing. */
+	private static final int MIGRATION_STEP = 16;
+	
+	private final int actionCount;
+	private final boolean floatStorage;
+	private Slots table;
+	private Slots migrating = null;
+	private int migrationCursor = 0;
+	private long stateCount = 0;
+	
+	/**
+	 * Creates a Q-table storing doubles.
+	 *
+	 * @param actionCount - The amount of actions (action indices are in [0, actionCount))
+	 */
+	public PrimitiveQTable(int actionCount) {
+		this(actionCount, 16, false);
+	}
+	
+	/**
+	 * Creates a Q-table.
+	 *
+	 * @param actionCount - The amount of actions (action indices are in [0, actionCount))
+	 * @param expectedStates - The expected amount of states, used to pre-size the table
+	 * @param floatStorage - Whether the Q-values should be stored as floats
+	 */
+	public PrimitiveQTable(int actionCount, int expectedStates, boolean floatStorage) {
+		if (actionCount < 1) {
+			throw new IllegalArgumentException("Action count has to be positive: " + Integer.toString(actionCount));
+		}
+		
+		this.actionCount = actionCount;
+		this.floatStorage = floatStorage;
+		table = new Slots(capacityFor(expectedStates), actionCount, floatStorage);
+	}
+	
+	private PrimitiveQTable(PrimitiveQTable<S, A> source) {
+		actionCount = source.actionCount;
+		floatStorage = source.floatStorage;
+		table = new Slots(source.table);
+		migrating = (source.migrating == null) ? null : new Slots(source.migrating);
+		migrationCursor = source.migrationCursor;
+		stateCount = source.stateCount;
+	}
+	
+	private static int capacityFor(long states) {
+		long capacity = Long.highestOneBit(Math.max(16, (long) Math.ceil(states / LOAD_FACTOR)) * 2 - 1);
+		if (capacity > (1 << 30)) {
+			throw new IllegalStateException("Q-table can not hold " + states + " states");
+		}
+		return (int) capacity;
+	}
+	
+	@Override
+	public double predict(S state, A action) {
+		return get(state.stateKey(), action.actionIndex());
+	}
+	
+	@Override
+	public void teach(S state, A action, double output) {
+		set(state.stateKey(), action.actionIndex(), output);
+	}
+	
+	/**
+	 * Fetches a Q-value.
+	 *
+	 * @param stateKey - The state key
+	 * @param actionIndex - The action index
+	 * @return The Q-value or 0 if none has been stored yet
+	 */
+	public double get(long stateKey, int actionIndex) {
+		checkActionIndex(actionIndex);
+		Slots slots = table;
+		int row = slots.find(stateKey);
+		
+		if (row < 0 && migrating != null) {
+			slots = migrating;
+			row = slots.find(stateKey);
+		}
+		
+		return (row < 0) ? 0 : slots.get(row, actionIndex);
+	}
+	
+	/**
+	 * Looks the state up only once for all actions.
+	 */
+	@Override
+	public void predictAll(S state, List<? extends A> actions, double[] out) {
+		long stateKey = state.stateKey();
+		Slots slots = table;
+		int row = slots.find(stateKey);
+		
+		if (row < 0 && migrating != null) {
+			slots = migrating;
+			row = slots.find(stateKey);
+		}
+		
+		for (int i=0; i<actions.size(); i++) {
+			int actionIndex = actions.get(i).actionIndex();
+			checkActionIndex(actionIndex);
+			out[i] = (row < 0) ? 0 : slots.get(row, actionIndex);
+		}
+	}
+	
+	/**
+	 * Fetches all Q-values of a state.
+	 *
+	 * @param stateKey - The state key
+	 * @param dest - The destination with at least as many elements as there are actions
+	 */
+	public void getRow(long stateKey, double[] dest) {
+		Slots slots = table;
+		int row = slots.find(stateKey);
+		
+		if (row < 0 && migrating != null) {
+			slots = migrating;
+			row = slots.find(stateKey);
+		}
+		
+		if (row < 0) {
+			Arrays.fill(dest, 0, actionCount, 0);
+		} else {
+			slots.getRow(row, dest);
+		}
+	}
+	
+	/**
+	 * Stores a Q-value.
+	 *
+	 * @param stateKey - The state key
+	 * @param actionIndex - The action index
+	 * @param value - The Q-value
+	 */
+	public void set(long stateKey, int actionIndex, double value) {
+		checkActionIndex(actionIndex);
+		int row = table.find(stateKey);
+		
+		if (row < 0) {
+			row = insert(stateKey);
+		}
+		
+		table.set(row, actionIndex, value);
+	}
+	
+	private void checkActionIndex(int actionIndex) {
+		if (actionIndex < 0 || actionIndex >= actionCount) {
+			throw new IndexOutOfBoundsException("Action index " + Integer.toString(actionIndex) + " is not in [0, " + Integer.toString(actionCount) + ")");
+		}
+	}
+	
+	/**
+	 * Inserts a state that is not contained in the current table,
+	 * either by moving it from the old table or as a new row.
+	 */
+	private int insert(long stateKey) {
+		if (migrating == null && (table.size + 1) > (table.capacity * LOAD_FACTOR)) {
+			startResize();
+		}
+		
+		int row = table.insert(stateKey);
+		int oldRow = (migrating == null) ? -1 : migrating.find(stateKey);
+		
+		if (oldRow >= 0) {
+			table.copyRow(row, migrating, oldRow);
+		} else {
+			stateCount++;
+		}
+		
+		if (migrating != null) {
+			migrate(MIGRATION_STEP);
+		}
+		
+		return row;
+	}
+	
+	private void startResize() {
+		migrating = table;
+		migrationCursor = 0;
+		table = new Slots(table.capacity * 2, actionCount, floatStorage);
+	}
+	
+	/**
+	 * Moves up to the given amount of slots from the old table.
+	 * Entries that have already been moved are skipped (the
+	 * old table is never modified, the new one takes precedence).
+	 */
+	private void migrate(int slotCount) {
+		int end = (int) Math.min((long) migrationCursor + slotCount, migrating.capacity + 1L);
+		
+		for (int slot=migrationCursor; slot<end; slot++) {
+			if (migrating.isUsed(slot)) {
+				long key = migrating.keyAt(slot);
+				if (table.find(key) < 0) {
+					table.copyRow(table.insert(key), migrating, slot);
+				}
+			}
+		}
+		
+		migrationCursor = end;
+		
+		if (migrationCursor > migrating.capacity) {
+			migrating = null;
+		}
+	}
+	
+	/**
+	 * @return The amount of states in this table
+	 */
+	public long size() {
+		return stateCount;
+	}
+	
+	public int getActionCount() {
+		return actionCount;
+	}
+	
+	public boolean usesFloatStorage() {
+		return floatStorage;
+	}
+	
+	/**
+	 * Copies the table, which only copies the underlying
+	 * arrays and is thus much cheaper than serializing it.
+	 */
+	@Override
+	public PrimitiveQTable<S, A> copy() {
+		return new PrimitiveQTable<>(this);
+	}
+	
+	/**
+	 * Writes all Q-values to a binary {@link ModelFile}.
+	 *
+	 * @param file - The destination
+	 */
+	public void saveBinary(File file) {
+		if (migrating != null) {
+			migrate(Integer.MAX_VALUE);
+		}
+		
+		long[] keys = new long[table.size];
+		int[] rows = new int[table.size];
+		int count = 0;
+		
+		for (int slot=0; slot<=table.capacity; slot++) {
+			if (table.isUsed(slot)) {
+				keys[count] = table.keyAt(slot);
+				rows[count] = slot;
+				count++;
+			}
+		}
+		
+		ModelFile.DataType dataType = floatStorage ? ModelFile.DataType.FLOAT32 : ModelFile.DataType.FLOAT64;
+		
+		try (ModelFileWriter writer = new ModelFileWriter(file, ModelFile.Type.PRIMITIVE_Q_TABLE, dataType, null, actionCount)) {
+			writer.writeLongs(new long[] {count}, 0, 1);
+			writer.writeLongs(keys, 0, count);
+			
+			for (int i=0; i<count; i++) {
+				int offset = rows[i] * actionCount;
+				if (floatStorage) {
+					writer.writeFloats(table.floats, offset, actionCount);
+				} else {
+					writer.writeDoubles(table.doubles, offset, actionCount);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Restores a Q-table from a binary {@link ModelFile}.
+	 *
+	 * @param file - The model file
+	 * @return The loaded Q-table
+	 */
+	public static <S extends QState<S, A>, A extends QAction> PrimitiveQTable<S, A> readBinary(File file) {
+		ModelFile model = ModelFile.open(file, ModelFile.Type.PRIMITIVE_Q_TABLE);
+		int[] layerSizes = model.getLayerSizes();
+		
+		if (layerSizes.length != 1) {
+			throw new SerializationException("Invalid Q-table header");
+		}
+		
+		int actionCount = layerSizes[0];
+		boolean floatStorage = model.getDataType() == ModelFile.DataType.FLOAT32;
+		long[] count = new long[1];
+		model.readLongs(count, 0, 1);
+		
+		int stateCount = (int) count[0];
+		long[] keys = new long[stateCount];
+		model.readLongs(keys, 0, stateCount);
+		
+		PrimitiveQTable<S, A> qTable = new PrimitiveQTable<>(actionCount, stateCount, floatStorage);
+		Slots table = qTable.table;
+		
+		for (int i=0; i<stateCount; i++) {
+			int offset = table.insert(keys[i]) * actionCount;
+			if (floatStorage) {
+				model.readFloats(table.floats, offset, actionCount);
+			} else {
+				model.readDoubles(table.doubles, offset, actionCount);
+			}
+		}
+		
+		qTable.stateCount = stateCount;
+		return qTable;
+	}
+	
+	/**
+	 * A fixed-capacity linear probing hash table of state
+	 * keys and their Q-value rows. Since every long is a valid
+	 * key, the key {@link #EMPTY} is stored in an extra row
+	 * at index {@code capacity}.
+	 */
+	private static class Slots implements Serializable {
+		private static final long serialVersionUID = -2405419328745580133L;
+		private static final long EMPTY = Long.MIN_VALUE;
+		
+		private final int capacity;
+		private final int mask;
+		private final int rowSize;
+		private final long[] keys;
+		private final double[] doubles;
+		private final float[] floats;
+		private boolean hasEmptyKey = false;
+		private int size = 0;
+		
+		Slots(int capacity, int rowSize, boolean floatStorage) {
+			this.capacity = capacity;
+			this.rowSize = rowSize;
+			mask = capacity - 1;
+			keys = new long[capacity];
+			Arrays.fill(keys, EMPTY);
+			
+			long values = (capacity + 1L) * rowSize;
+			if (values > Integer.MAX_VALUE) {
+				throw new IllegalStateException("Q-table is too large: " + values + " values");
+			}
+			
+			doubles = floatStorage ? null : new double[(int) values];
+			floats = floatStorage ? new float[(int) values] : null;
+		}
+		
+		Slots(Slots source) {
+			capacity = source.capacity;
+			rowSize = source.rowSize;
+			mask = source.mask;
+			keys = Arrays.copyOf(source.keys, source.keys.length);
+			doubles = (source.doubles == null) ? null : Arrays.copyOf(source.doubles, source.doubles.length);
+			floats = (source.floats == null) ? null : Arrays.copyOf(source.floats, source.floats.length);
+			hasEmptyKey = source.hasEmptyKey;
+			size = source.size;
+		}
+		
+		private static int hash(long key) {
+			// The finalizer of MurmurHash3
+			long h = key;
+			h ^= h >>> 33;
+			h *= 0xff51afd7ed558ccdL;
+			h ^= h >>> 33;
+			h *= 0xc4ceb9fe1a85ec53L;
+			h ^= h >>> 33;
+			return (int) h;
+		}
+		
+		int find(long key) {
+			if (key == EMPTY) {
+				return hasEmptyKey ? capacity : -1;
+			}
+			
+			int slot = hash(key) & mask;
+			
+			while (true) {
+				long current = keys[slot];
+				if (current == key) {
+					return slot;
+				} else if (current == EMPTY) {
+					return -1;
+				}
+				slot = (slot + 1) & mask;
+			}
+		}
+		
+		/**
+		 * Inserts a key that is not contained yet.
+		 */
+		int insert(long key) {
+			size++;
+			
+			if (key == EMPTY) {
+				hasEmptyKey = true;
+				return capacity;
+			}
+			
+			int slot = hash(key) & mask;
+			while (keys[slot] != EMPTY) {
+				slot = (slot + 1) & mask;
+			}
+			
+			keys[slot] = key;
+			return slot;
+		}
+		
+		boolean isUsed(int slot) {
+			return (slot == capacity) ? hasEmptyKey : keys[slot] != EMPTY;
+		}
+		
+		long keyAt(int slot) {
+			return (slot == capacity) ? EMPTY : keys[slot];
+		}
+		
+		double get(int row, int column) {
+			int index = (row * rowSize) + column;
+			return (doubles == null) ? floats[index] : doubles[index];
+		}
+		
+		void set(int row, int column, double value) {
+			int index = (row * rowSize) + column;
+			if (doubles == null) {
+				floats[index] = (float) value;
+			} else {
+				doubles[index] = value;
+			}
+		}
+		
+		void getRow(int row, double[] dest) {
+			int offset = row * rowSize;
+			
+			if (doubles == null) {
+				for (int i=0; i<rowSize; i++) {
+					dest[i] = floats[offset + i];
+				}
+			} else {
+				System.arraycopy(doubles, offset, dest, 0, rowSize);
+			}
+		}
+		
+		void copyRow(int row, Slots source, int sourceRow) {
+			int offset = row * rowSize;
+			int sourceOffset = sourceRow * rowSize;
+			
+			if (doubles == null) {
+				System.arraycopy(source.floats, sourceOffset, floats, offset, rowSize);
+			} else {
+				System.arraycopy(source.doubles, sourceOffset, doubles, offset, rowSize);
+			}
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package fwcd.fructose.ml.rl.qlearn.core;
 
 import java.io.Serializable;
+import java.util.List;
 
 import fwcd.fructose.ml.rl.qlearn.env.QAction;
 import fwcd.fructose.ml.rl.qlearn.env.QState;
@@ -9,4 +10,18 @@ public interface QFunction<S extends QState<S, A>, A extends QAction> extends Se
 	double predict(S state, A action);
 	
 	void teach(S state, A action, double output);
+	
+	/**
+	 * Predicts the Q-values of multiple actions in the same
+	 * state, which implementations may do in a single pass.
+	 * 
+	 * @param state - The state
+	 * @param actions - The actions
+	 * @param out - The destination with at least as many elements as there are actions
+	 */
+	default void predictAll(S state, List<? extends A> actions, double[] out) {
+		for (int i=0; i<actions.size(); i++) {
+			out[i] = predict(state, actions.get(i));
+		}
+	}
 }
@@ -1,10 +1,43 @@
 package fwcd.fructose.ml.rl.qlearn.core;
 
+import java.util.List;
+
 import fwcd.fructose.ml.rl.qlearn.env.QAction;
 import fwcd.fructose.ml.rl.qlearn.env.QState;
+import fwcd.fructose.ml.rl.qlearn.env.QStep;
 
 public interface QLearner<S extends QState<S, A>, A extends QAction> extends QAgent<S, A> {
 	QFunction<S, A> getQFunction();
 
 	double maxQ(S state);
+	
+	/**
+	 * Picks a step using Q-values that have already been
+	 * predicted, which avoids predicting them twice. By default
+	 * the Q-values are ignored.
+	 * 
+	 * @param state - The current state
+	 * @param actions - The actions of the state
+	 * @param qValues - The Q-values of the actions
+	 * @param index - The step index
+	 * @return The picked step
+	 */
+	default QStep<S, A> pickStep(S state, List<? extends A> actions, double[] qValues, int index) {
+		return pickStep(state, index);
+	}
+	
+	/**
+	 * @return The maximum of the given Q-values
+	 */
+	static double max(double[] qValues, int count) {
+		if (count == 0) {
+			throw new IllegalStateException("State has no actions.");
+		}
+		
+		double max = qValues[0];
+		for (int i=1; i<count; i++) {
+			max = Math.max(max, qValues[i]);
+		}
+		return max;
+	}
 }
@@ -1,9 +1,12 @@
 package fwcd.fructose.ml.rl.qlearn.core;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 
 import fwcd.fructose.ml.function.LearningFunction;
 import fwcd.fructose.ml.math.NNVector;
+import fwcd.fructose.ml.neural.NeuralNetwork;
 import fwcd.fructose.ml.rl.qlearn.env.QAction;
 import fwcd.fructose.ml.rl.qlearn.env.QState;
 
@@ -33,8 +36,46 @@ public class QNeuralFunction<S extends QState<S, A>, A extends QAction> implemen
 		return neuralNet.compute(state.toNeurons(action)).get(0);
 	}
 
+	/**
+	 * Predicts all actions in a single batch if the
+	 * approximator is a {@link NeuralNetwork}.
+	 */
+	@Override
+	public void predictAll(S state, List<? extends A> actions, double[] out) {
+		List<NNVector> outputs = computeAll(neuralNet, inputsOf(state, actions));
+		
+		for (int i=0; i<outputs.size(); i++) {
+			out[i] = outputs.get(i).get(0);
+		}
+	}
+	
+	static <S extends QState<S, A>, A extends QAction> List<NNVector> inputsOf(S state, List<? extends A> actions) {
+		List<NNVector> inputs = new ArrayList<>(actions.size());
+		for (A action : actions) {
+			inputs.add(state.toNeurons(action));
+		}
+		return inputs;
+	}
+	
+	@SuppressWarnings("unchecked")
+	static List<NNVector> computeAll(LearningFunction<NNVector, NNVector> neuralNet, List<NNVector> inputs) {
+		if (neuralNet instanceof NeuralNetwork) {
+			return ((NeuralNetwork<NNVector, NNVector>) neuralNet).computeAll(inputs);
+		} else {
+			List<NNVector> outputs = new ArrayList<>(inputs.size());
+			for (NNVector input : inputs) {
+				outputs.add(neuralNet.compute(input));
+			}
+			return outputs;
+		}
+	}
+	
 	@Override
 	public void teach(S state, A action, double output) {
 		neuralNet.teach(Collections.singletonMap(state.toNeurons(action), new NNVector((float) output)));
 	}
+	
+	public LearningFunction<NNVector, NNVector> getNeuralNet() {
+		return neuralNet;
+	}
 }
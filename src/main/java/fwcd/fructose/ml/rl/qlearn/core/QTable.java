@@ -1,7 +1,17 @@
 package fwcd.fructose.ml.rl.qlearn.core;
 
+import java.io.File;
+import java.util.function.IntFunction;
+import java.util.function.LongFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+import fwcd.fructose.Copyable;
+import fwcd.fructose.ml.io.ModelFile;
+import fwcd.fructose.ml.io.ModelFileWriter;
 import fwcd.fructose.ml.rl.qlearn.env.QAction;
 import fwcd.fructose.ml.rl.qlearn.env.QState;
+import fwcd.fructose.structs.BiList;
 import fwcd.fructose.structs.MapTable;
 import fwcd.fructose.structs.Table;
 
@@ -14,7 +24,7 @@ import fwcd.fructose.structs.Table;
  * @param <S>
  * @param <A>
  */
-public class QTable<S extends QState<S, A>, A extends QAction> implements QFunction<S, A> {
+public class QTable<S extends QState<S, A>, A extends QAction> implements QFunction<S, A>, Copyable<QTable<S, A>> {
 	private static final long serialVersionUID = -4758437029018633686L;
 	private final Table<S, A, Double> data = new MapTable<>();
 	
@@ -27,4 +37,80 @@ public class QTable<S extends QState<S, A>, A extends QAction> implements QFunct
 	public void teach(S state, A action, double output) {
 		data.put(state, action, output);
 	}
+	
+	/**
+	 * Writes all entries to a binary {@link ModelFile}. Since states
+	 * and actions are arbitrary objects, they have to be encoded
+	 * as numeric keys.
+	 * 
+	 * @param file - The destination
+	 * @param stateKeys - Encodes a state as a unique key
+	 * @param actionKeys - Encodes an action as a unique key
+	 */
+	/**
+	 * Copies the entries of this table. The states and
+	 * actions are shared, since they are used as keys.
+	 */
+	@Override
+	public QTable<S, A> copy() {
+		QTable<S, A> result = new QTable<>();
+		BiList<S, A> keys = data.keySet();
+		
+		for (int i=0; i<keys.size(); i++) {
+			S state = keys.getLeft(i);
+			A action = keys.getRight(i);
+			result.data.put(state, action, data.get(state, action));
+		}
+		
+		return result;
+	}
+	
+	public void saveBinary(File file, ToLongFunction<? super S> stateKeys, ToIntFunction<? super A> actionKeys) {
+		BiList<S, A> keys = data.keySet();
+		int count = keys.size();
+		long[] states = new long[count];
+		double[] values = new double[count];
+		int[] actions = new int[count];
+		
+		for (int i=0; i<count; i++) {
+			S state = keys.getLeft(i);
+			A action = keys.getRight(i);
+			states[i] = stateKeys.applyAsLong(state);
+			values[i] = data.get(state, action);
+			actions[i] = actionKeys.applyAsInt(action);
+		}
+		
+		try (ModelFileWriter writer = new ModelFileWriter(file, ModelFile.Type.Q_TABLE, ModelFile.DataType.FLOAT64, null)) {
+			writer.writeLongs(new long[] {count}, 0, 1);
+			writer.writeLongs(states, 0, count);
+			writer.writeDoubles(values, 0, count);
+			writer.writeInts(actions, 0, count);
+		}
+	}
+	
+	/**
+	 * Adds all entries from a binary {@link ModelFile},
+	 * overwriting existing ones.
+	 * 
+	 * @param file - The model file
+	 * @param stateDecoder - Decodes a state key
+	 * @param actionDecoder - Decodes an action key
+	 */
+	public void loadBinary(File file, LongFunction<? extends S> stateDecoder, IntFunction<? extends A> actionDecoder) {
+		ModelFile model = ModelFile.open(file, ModelFile.Type.Q_TABLE);
+		long[] count = new long[1];
+		model.readLongs(count, 0, 1);
+		
+		int n = (int) count[0];
+		long[] states = new long[n];
+		double[] values = new double[n];
+		int[] actions = new int[n];
+		model.readLongs(states, 0, n);
+		model.readDoubles(values, 0, n);
+		model.readInts(actions, 0, n);
+		
+		for (int i=0; i<n; i++) {
+			data.put(stateDecoder.apply(states[i]), actionDecoder.apply(actions[i]), values[i]);
+		}
+	}
 }
@@ -1,5 +1,15 @@
 package fwcd.fructose.ml.rl.qlearn.env;
 
 public interface QAction {
-	
+	/**
+	 * Fetches a dense index of this action, i.e. an
+	 * integer in [0, actionCount) that is unique among
+	 * all actions of the environment. Required by
+	 * primitive Q-tables.
+	 * 
+	 * @return The action index
+	 */
+	default int actionIndex() {
+		throw new UnsupportedOperationException("QAction does not support action indices.");
+	}
 }
@@ -22,4 +22,16 @@ public interface QState<S extends QState<S, A>, A extends QAction> {
 	default NNVector toNeurons(A action) {
 		throw new UnsupportedOperationException("QState does not support neurons.");
 	}
+	
+	/**
+	 * Fetches a compact encoding of this state. Equal states
+	 * have to yield the same key and different states should
+	 * (ideally always) yield different keys. Required by
+	 * primitive Q-tables.
+	 * 
+	 * @return The state key
+	 */
+	default long stateKey() {
+		throw new UnsupportedOperationException("QState does not support state keys.");
+	}
 }
@@ -0,0 +1,157 @@
+package fwcd.fructose.ml.rl.qlearn.replay;
+
+import java.util.List;
+import java.util.Random;
+
+import fwcd.fructose.ml.math.NNVector;
+
+/**
+ * A replay buffer that samples transitions proportionally to
+ * their priority {@code (|tdError| + epsilon)^alpha}, which
+ * is looked up in a sum tree in logarithmic time. New transitions
+ * receive the highest priority seen so far, thus every transition
+ * is likely to be replayed at least once.
+ *
+ * <p>The bias introduced by the non-uniform sampling is corrected
+ * by the importance sampling weights {@code (size * P(i))^-beta},
+ * which are normalized by the largest weight in the batch.</p>
+ */
+public class PrioritizedReplayBuffer extends ReplayBuffer {
+	private static final double EPSILON = 1e-6;
+	
+	private final double alpha;
+	private double beta;
+	private final int leafOffset;
+	/** Implicit binary tree with the root at index 1 and the leaves at [leafOffset, 2 * leafOffset). */
+	private final double[] tree;
+	private double maxPriority = 1;
+	
+	/**
+	 * Creates a new prioritized replay buffer.
+	 * 
+	 * @param capacity - The maximum amount of stored transitions
+	 * @param inputWidth - The length of the network input vectors
+	 * @param maxNextActions - The maximum amount of actions a state can have
+	 * @param alpha - How strongly the priorities are used (0 is uniform sampling)
+	 * @param beta - The amount of importance sampling correction (1 fully compensates the bias)
+	 */
+	public PrioritizedReplayBuffer(int capacity, int inputWidth, int maxNextActions, double alpha, double beta) {
+		super(capacity, inputWidth, maxNextActions);
+		this.alpha = alpha;
+		this.beta = beta;
+		leafOffset = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+		tree = new double[2 * leafOffset];
+	}
+	
+	@Override
+	public int add(NNVector input, double reward, List<NNVector> nextInputs) {
+		int index = super.add(input, reward, nextInputs);
+		setPriority(index, maxPriority);
+		return index;
+	}
+	
+	private void setPriority(int index, double priority) {
+		int node = leafOffset + index;
+		double delta = priority - tree[node];
+		
+		while (node >= 1) {
+			tree[node] += delta;
+			node >>>= 1;
+		}
+	}
+	
+	/**
+	 * Fills the given array with transition indices that are
+	 * sampled proportionally to their priorities. The total
+	 * priority is split into equal segments from which one index
+	 * each is drawn (stratified sampling).
+	 */
+	@Override
+	public void sample(int[] dest, Random random) {
+		checkNotEmpty();
+		double segment = tree[1] / dest.length;
+		
+		for (int i=0; i<dest.length; i++) {
+			dest[i] = find((i + random.nextDouble()) * segment);
+		}
+	}
+	
+	/**
+	 * Finds the transition at the given prefix sum.
+	 */
+	private int find(double prefixSum) {
+		int node = 1;
+		double remaining = prefixSum;
+		
+		while (node < leafOffset) {
+			int left = node << 1;
+			if (remaining < tree[left] || tree[left + 1] <= 0) {
+				node = left;
+			} else {
+				remaining -= tree[left];
+				node = left + 1;
+			}
+		}
+		
+		// Guards against rounding errors near the total sum
+		return Math.min(node - leafOffset, size() - 1);
+	}
+	
+	/**
+	 * Computes the importance sampling weights of sampled transitions.
+	 * 
+	 * @param indices - The sampled transition indices
+	 * @param dest - The destination of the weights, which are in (0, 1]
+	 */
+	public void getWeights(int[] indices, double[] dest) {
+		double total = tree[1];
+		double maxWeight = 0;
+		
+		for (int i=0; i<indices.length; i++) {
+			double probability = tree[leafOffset + indices[i]] / total;
+			dest[i] = Math.pow(size() * probability, -beta);
+			maxWeight = Math.max(maxWeight, dest[i]);
+		}
+		
+		for (int i=0; i<indices.length; i++) {
+			dest[i] /= maxWeight;
+		}
+	}
+	
+	/**
+	 * Updates the priorities of replayed transitions.
+	 * 
+	 * @param indices - The replayed transition indices
+	 * @param tdErrors - The new temporal difference errors of the transitions
+	 */
+	public void updatePriorities(int[] indices, double[] tdErrors) {
+		for (int i=0; i<indices.length; i++) {
+			double priority = Math.pow(Math.abs(tdErrors[i]) + EPSILON, alpha);
+			maxPriority = Math.max(maxPriority, priority);
+			setPriority(indices[i], priority);
+		}
+	}
+	
+	/**
+	 * @return The sampling probability of the given transition
+	 */
+	public double getProbability(int index) {
+		return tree[leafOffset + index] / tree[1];
+	}
+	
+	public double getAlpha() {
+		return alpha;
+	}
+	
+	public double getBeta() {
+		return beta;
+	}
+	
+	/**
+	 * Sets the importance sampling correction, which is
+	 * commonly annealed towards 1 over the course of training.
+	 */
+	public void setBeta(double beta) {
+		this.beta = beta;
+	}
+}
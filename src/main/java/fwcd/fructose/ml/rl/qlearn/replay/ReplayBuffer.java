@@ -0,0 +1,160 @@
+package fwcd.fructose.ml.rl.qlearn.replay;
+
+import java.util.List;
+import java.util.Random;
+
+import fwcd.fructose.exception.SizeMismatchException;
+import fwcd.fructose.ml.math.NNVector;
+
+/**
+ * A fixed-capacity ring buffer of transitions that stores
+ * everything in flat primitive arrays. A transition consists
+ * of the network input of the taken state-action pair, the reward
+ * and the network inputs of all actions in the next state (none
+ * if the next state is final). Once the buffer is full, the
+ * oldest transitions are overwritten.
+ *
+ * <p>Sampling is uniform, see {@link PrioritizedReplayBuffer}
+ * for proportional sampling.</p>
+ */
+public class ReplayBuffer {
+	private final int capacity;
+	private final int inputWidth;
+	private final int maxNextActions;
+	private final float[] inputs;
+	private final double[] rewards;
+	private final int[] nextActionCounts;
+	private final float[] nextInputs;
+	private int size = 0;
+	private int cursor = 0;
+	
+	/**
+	 * Creates a new replay buffer.
+	 *
+	 * @param capacity - The maximum amount of stored transitions
+	 * @param inputWidth - The length of the network input vectors
+	 * @param maxNextActions - The maximum amount of actions a state can have
+	 */
+	public ReplayBuffer(int capacity, int inputWidth, int maxNextActions) {
+		if (capacity < 1 || inputWidth < 1 || maxNextActions < 1) {
+			throw new IllegalArgumentException("Capacity, input width and max next actions have to be positive: "
+					+ Integer.toString(capacity) + ", " + Integer.toString(inputWidth) + ", " + Integer.toString(maxNextActions));
+		}
+		
+		this.capacity = capacity;
+		this.inputWidth = inputWidth;
+		this.maxNextActions = maxNextActions;
+		inputs = new float[Math.multiplyExact(capacity, inputWidth)];
+		rewards = new double[capacity];
+		nextActionCounts = new int[capacity];
+		nextInputs = new float[Math.multiplyExact(Math.multiplyExact(capacity, maxNextActions), inputWidth)];
+	}
+	
+	/**
+	 * Stores a transition, possibly overwriting the oldest one.
+	 *
+	 * @param input - The network input of the taken state-action pair
+	 * @param reward - The received reward
+	 * @param nextInputs - The network inputs of all actions in the next state or an empty list if it is final
+	 * @return The index of the stored transition
+	 */
+	public int add(NNVector input, double reward, List<NNVector> nextInputs) {
+		if (nextInputs.size() > maxNextActions) {
+			throw new IllegalArgumentException("Too many next actions: " + Integer.toString(nextInputs.size()) + " > " + Integer.toString(maxNextActions));
+		}
+		
+		int index = cursor;
+		copyInput(input, inputs, index * inputWidth);
+		rewards[index] = reward;
+		nextActionCounts[index] = nextInputs.size();
+		
+		int offset = index * maxNextActions * inputWidth;
+		for (NNVector nextInput : nextInputs) {
+			copyInput(nextInput, this.nextInputs, offset);
+			offset += inputWidth;
+		}
+		
+		cursor = (cursor + 1) % capacity;
+		size = Math.min(size + 1, capacity);
+		
+		return index;
+	}
+	
+	private void copyInput(NNVector input, float[] dest, int offset) {
+		if (input.size() != inputWidth) {
+			throw new SizeMismatchException("input vector length", input.size(), "replay buffer input width", inputWidth);
+		}
+		
+		System.arraycopy(input.asArray(), 0, dest, offset, inputWidth);
+	}
+	
+	/**
+	 * Fills the given array with uniformly sampled transition indices.
+	 */
+	public void sample(int[] dest, Random random) {
+		checkNotEmpty();
+		
+		for (int i=0; i<dest.length; i++) {
+			dest[i] = random.nextInt(size);
+		}
+	}
+	
+	protected void checkNotEmpty() {
+		if (size == 0) {
+			throw new IllegalStateException("Can not sample from an empty replay buffer");
+		}
+	}
+	
+	public void readInput(int index, float[] dest) {
+		System.arraycopy(inputs, checkIndex(index) * inputWidth, dest, 0, inputWidth);
+	}
+	
+	public double getReward(int index) {
+		return rewards[checkIndex(index)];
+	}
+	
+	/**
+	 * @return The amount of actions in the next state, which is 0 if the next state is final
+	 */
+	public int getNextActionCount(int index) {
+		return nextActionCounts[checkIndex(index)];
+	}
+	
+	public boolean isFinal(int index) {
+		return getNextActionCount(index) == 0;
+	}
+	
+	public void readNextInput(int index, int action, float[] dest) {
+		if (action < 0 || action >= getNextActionCount(index)) {
+			throw new IndexOutOfBoundsException("Next action " + Integer.toString(action) + " is not in [0, " + Integer.toString(getNextActionCount(index)) + ")");
+		}
+		
+		System.arraycopy(nextInputs, ((index * maxNextActions) + action) * inputWidth, dest, 0, inputWidth);
+	}
+	
+	private int checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Transition " + Integer.toString(index) + " is not in [0, " + Integer.toString(size) + ")");
+		}
+		return index;
+	}
+	
+	/**
+	 * @return The amount of stored transitions
+	 */
+	public int size() {
+		return size;
+	}
+	
+	public int getCapacity() {
+		return capacity;
+	}
+	
+	public int getInputWidth() {
+		return inputWidth;
+	}
+	
+	public int getMaxNextActions() {
+		return maxNextActions;
+	}
+}
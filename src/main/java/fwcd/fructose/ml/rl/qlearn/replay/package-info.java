@@ -0,0 +1,4 @@
+/**
+ * Experience replay memories for Q-learning.
+ */
+package fwcd.fructose.ml.rl.qlearn.replay;
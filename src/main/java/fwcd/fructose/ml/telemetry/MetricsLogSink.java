@@ -0,0 +1,158 @@
+package fwcd.fructose.ml.telemetry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Writes metrics as CSV or JSON lines to a {@link Writer}.
+ * The output is flushed after every epoch.
+ */
+public class MetricsLogSink implements TrainingListener, AutoCloseable {
+	public static enum Format {
+		/**
+		 * Comma-separated values with a header row, the
+		 * per-layer values are separated by semicolons.
+		 */
+		CSV,
+		/**
+		 * One JSON object per line.
+		 */
+		JSON_LINES;
+	}
+	
+	private final Writer out;
+	private final Format format;
+	private final boolean logBatches;
+	private boolean headerWritten = false;
+	
+	public MetricsLogSink(Writer out, Format format) {
+		this(out, format, true);
+	}
+	
+	/**
+	 * Creates a new sink.
+	 * 
+	 * @param out - The destination
+	 * @param format - The output format
+	 * @param logBatches - Whether batch metrics should be logged too (instead of only epoch metrics)
+	 */
+	public MetricsLogSink(Writer out, Format format, boolean logBatches) {
+		this.out = out;
+		this.format = format;
+		this.logBatches = logBatches;
+	}
+	
+	@Override
+	public void onBatch(TrainingMetrics metrics) {
+		if (logBatches) {
+			write(metrics, false);
+		}
+	}
+	
+	@Override
+	public void onEpoch(TrainingMetrics metrics) {
+		write(metrics, true);
+	}
+	
+	private synchronized void write(TrainingMetrics metrics, boolean flush) {
+		try {
+			if (format == Format.CSV) {
+				if (!headerWritten) {
+					out.write("kind,epoch,batch,samples,loss,samplesPerSecond,nanos,forwardNanos,backwardNanos,weightNorms,gradientNorms\n");
+					headerWritten = true;
+				}
+				out.write(toCsv(metrics));
+			} else {
+				out.write(toJson(metrics));
+			}
+			out.write('\n');
+			
+			if (flush) {
+				out.flush();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	private String toCsv(TrainingMetrics m) {
+		return m.getKind()
+				+ "," + m.getEpoch()
+				+ "," + m.getBatch()
+				+ "," + m.getSamples()
+				+ "," + number(m.getLoss())
+				+ "," + number(m.getSamplesPerSecond())
+				+ "," + m.getNanos()
+				+ "," + join(m.forwardNanos(), ";")
+				+ "," + join(m.backwardNanos(), ";")
+				+ "," + join(m.weightNorms(), ";")
+				+ "," + join(m.gradientNorms(), ";");
+	}
+	
+	private String toJson(TrainingMetrics m) {
+		return "{\"kind\":\"" + m.getKind()
+				+ "\",\"epoch\":" + m.getEpoch()
+				+ ",\"batch\":" + m.getBatch()
+				+ ",\"samples\":" + m.getSamples()
+				+ ",\"loss\":" + jsonNumber(m.getLoss())
+				+ ",\"samplesPerSecond\":" + jsonNumber(m.getSamplesPerSecond())
+				+ ",\"nanos\":" + m.getNanos()
+				+ ",\"forwardNanos\":[" + join(m.forwardNanos(), ",")
+				+ "],\"backwardNanos\":[" + join(m.backwardNanos(), ",")
+				+ "],\"weightNorms\":[" + jsonJoin(m.weightNorms())
+				+ "],\"gradientNorms\":[" + jsonJoin(m.gradientNorms())
+				+ "]}";
+	}
+	
+	private static String number(double value) {
+		return String.format(Locale.ROOT, "%.6g", value);
+	}
+	
+	private static String jsonNumber(double value) {
+		return (Double.isNaN(value) || Double.isInfinite(value)) ? "null" : number(value);
+	}
+	
+	private static String join(long[] values, String separator) {
+		StringBuilder result = new StringBuilder();
+		for (int i=0; i<values.length; i++) {
+			if (i > 0) {
+				result.append(separator);
+			}
+			result.append(values[i]);
+		}
+		return result.toString();
+	}
+	
+	private static String join(double[] values, String separator) {
+		StringBuilder result = new StringBuilder();
+		for (int i=0; i<values.length; i++) {
+			if (i > 0) {
+				result.append(separator);
+			}
+			result.append(number(values[i]));
+		}
+		return result.toString();
+	}
+	
+	private static String jsonJoin(double[] values) {
+		StringBuilder result = new StringBuilder();
+		for (int i=0; i<values.length; i++) {
+			if (i > 0) {
+				result.append(',');
+			}
+			result.append(jsonNumber(values[i]));
+		}
+		return result.toString();
+	}
+	
+	@Override
+	public synchronized void close() {
+		try {
+			out.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
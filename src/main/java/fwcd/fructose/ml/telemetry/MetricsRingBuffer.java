@@ -0,0 +1,86 @@
+package fwcd.fructose.ml.telemetry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A fixed-capacity, thread-safe in-memory history of the
+ * most recent metrics, e.g. for polling by a dashboard.
+ */
+public class MetricsRingBuffer implements TrainingListener {
+	private final TrainingMetrics[] entries;
+	private int next = 0;
+	private int size = 0;
+	private final boolean recordBatches;
+	
+	/**
+	 * Creates a ring buffer that records batch and epoch metrics.
+	 * 
+	 * @param capacity - The maximum amount of stored metrics
+	 */
+	public MetricsRingBuffer(int capacity) {
+		this(capacity, true);
+	}
+	
+	/**
+	 * Creates a ring buffer.
+	 * 
+	 * @param capacity - The maximum amount of stored metrics
+	 * @param recordBatches - Whether batch metrics should be recorded too (instead of only epoch metrics)
+	 */
+	public MetricsRingBuffer(int capacity, boolean recordBatches) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity has to be positive: " + Integer.toString(capacity));
+		}
+		entries = new TrainingMetrics[capacity];
+		this.recordBatches = recordBatches;
+	}
+	
+	@Override
+	public void onBatch(TrainingMetrics metrics) {
+		if (recordBatches) {
+			add(metrics);
+		}
+	}
+	
+	@Override
+	public void onEpoch(TrainingMetrics metrics) {
+		add(metrics);
+	}
+	
+	private synchronized void add(TrainingMetrics metrics) {
+		entries[next] = metrics;
+		next = (next + 1) % entries.length;
+		size = Math.min(size + 1, entries.length);
+	}
+	
+	/**
+	 * @return The stored metrics, from oldest to newest
+	 */
+	public synchronized List<TrainingMetrics> snapshot() {
+		List<TrainingMetrics> result = new ArrayList<>(size);
+		int start = (next - size + entries.length) % entries.length;
+		
+		for (int i=0; i<size; i++) {
+			result.add(entries[(start + i) % entries.length]);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * @return The most recent metrics or null if none have been recorded
+	 */
+	public synchronized TrainingMetrics latest() {
+		return (size == 0) ? null : entries[(next - 1 + entries.length) % entries.length];
+	}
+	
+	public synchronized int size() {
+		return size;
+	}
+	
+	public synchronized void clear() {
+		next = 0;
+		size = 0;
+	}
+}
@@ -0,0 +1,19 @@
+package fwcd.fructose.ml.telemetry;
+
+/**
+ * Receives metrics from a {@link TrainingMonitor}. Listeners
+ * are invoked synchronously on the training thread and should
+ * thus return quickly.
+ */
+public interface TrainingListener {
+	/**
+	 * Invoked after every training step/mini-batch.
+	 */
+	default void onBatch(TrainingMetrics metrics) {}
+	
+	/**
+	 * Invoked when an epoch (or episode) has ended
+	 * with the metrics aggregated over all of its batches.
+	 */
+	default void onEpoch(TrainingMetrics metrics) {}
+}
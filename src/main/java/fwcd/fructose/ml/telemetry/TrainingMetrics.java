@@ -0,0 +1,140 @@
+package fwcd.fructose.ml.telemetry;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An immutable snapshot of training metrics for
+ * a single batch or an entire epoch.
+ * 
+ * <p>The per-layer arrays are indexed by layer and are empty
+ * if the trainer does not measure layers. Norms that have
+ * not been sampled are NaN.</p>
+ */
+public class TrainingMetrics {
+	public static enum Kind {
+		BATCH, EPOCH;
+	}
+	
+	private final Kind kind;
+	private final long epoch;
+	private final long batch;
+	private final long samples;
+	private final double loss;
+	private final long nanos;
+	private final long[] forwardNanos;
+	private final long[] backwardNanos;
+	private final double[] weightNorms;
+	private final double[] gradientNorms;
+	
+	public TrainingMetrics(
+			Kind kind,
+			long epoch,
+			long batch,
+			long samples,
+			double loss,
+			long nanos,
+			long[] forwardNanos,
+			long[] backwardNanos,
+			double[] weightNorms,
+			double[] gradientNorms
+	) {
+		this.kind = kind;
+		this.epoch = epoch;
+		this.batch = batch;
+		this.samples = samples;
+		this.loss = loss;
+		this.nanos = nanos;
+		this.forwardNanos = forwardNanos;
+		this.backwardNanos = backwardNanos;
+		this.weightNorms = weightNorms;
+		this.gradientNorms = gradientNorms;
+	}
+	
+	public Kind getKind() {
+		return kind;
+	}
+	
+	/**
+	 * @return The (zero-based) epoch index
+	 */
+	public long getEpoch() {
+		return epoch;
+	}
+	
+	/**
+	 * @return The (zero-based) index of the batch since training started
+	 * or the amount of batches in the epoch for epoch metrics
+	 */
+	public long getBatch() {
+		return batch;
+	}
+	
+	public long getSamples() {
+		return samples;
+	}
+	
+	/**
+	 * @return The mean loss per sample or NaN if unknown
+	 */
+	public double getLoss() {
+		return loss;
+	}
+	
+	/**
+	 * @return The wall-clock duration in nanoseconds
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+	
+	public double getSamplesPerSecond() {
+		return (nanos <= 0) ? 0 : samples / (nanos / (double) TimeUnit.SECONDS.toNanos(1));
+	}
+	
+	public int getLayerCount() {
+		return forwardNanos.length;
+	}
+	
+	public long getForwardNanos(int layer) {
+		return forwardNanos[layer];
+	}
+	
+	public long getBackwardNanos(int layer) {
+		return backwardNanos[layer];
+	}
+	
+	/**
+	 * @return The L2 norm of the layer's parameters
+	 */
+	public double getWeightNorm(int layer) {
+		return weightNorms[layer];
+	}
+	
+	/**
+	 * @return The L2 norm of the layer's averaged gradient
+	 */
+	public double getGradientNorm(int layer) {
+		return gradientNorms[layer];
+	}
+	
+	long[] forwardNanos() {
+		return forwardNanos;
+	}
+	
+	long[] backwardNanos() {
+		return backwardNanos;
+	}
+	
+	double[] weightNorms() {
+		return weightNorms;
+	}
+	
+	double[] gradientNorms() {
+		return gradientNorms;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("TrainingMetrics [%s, epoch=%d, batch=%d, samples=%d, loss=%.6f, samplesPerSecond=%.1f]", kind, epoch, batch, samples, loss, getSamplesPerSecond());
+	}
+}
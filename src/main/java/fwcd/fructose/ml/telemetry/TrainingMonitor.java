@@ -0,0 +1,205 @@
+package fwcd.fructose.ml.telemetry;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * <p>Collects metrics from a trainer and dispatches them to
+ * {@link TrainingListener}s. Trainers only measure anything
+ * while at least one listener is registered (see {@link #isActive()}),
+ * layer timings only cost two {@code System.nanoTime()} calls
+ * per layer and norms are only sampled every few batches.</p>
+ *
+ * <p>A trainer reports a batch as follows:</p>
+ *
+ * <pre>
+ * monitor.beginBatch(layerCount);
+ * monitor.addForwardNanos(layer, nanos);
+ * monitor.addBackwardNanos(layer, nanos);
+ * if (monitor.isSamplingNorms()) {
+ *     monitor.setNorms(layer, weightNorm, gradientNorm);
+ * }
+ * monitor.endBatch(samples, loss);
+ * </pre>
+ *
+ * <p>The recording methods are expected to be called
+ * from a single training thread.</p>
+ */
+public class TrainingMonitor {
+	private final List<TrainingListener> listeners = new CopyOnWriteArrayList<>();
+	private volatile int normInterval = 10;
+	
+	private long epoch = 0;
+	private long batch = 0;
+	private long batchStart;
+	private long[] forwardNanos = new long[0];
+	private long[] backwardNanos = new long[0];
+	private double[] weightNorms = new double[0];
+	private double[] gradientNorms = new double[0];
+	
+	private long epochStart = -1;
+	private long epochBatches = 0;
+	private long epochSamples = 0;
+	private double epochLossSum = 0;
+	private long epochLossSamples = 0;
+	private long[] epochForwardNanos = new long[0];
+	private long[] epochBackwardNanos = new long[0];
+	
+	public void addListener(TrainingListener listener) {
+		listeners.add(listener);
+	}
+	
+	public void removeListener(TrainingListener listener) {
+		listeners.remove(listener);
+	}
+	
+	/**
+	 * @return Whether any listener is registered and thus metrics should be recorded
+	 */
+	public boolean isActive() {
+		return !listeners.isEmpty();
+	}
+	
+	/**
+	 * Sets how often the (comparatively expensive) weight
+	 * and gradient norms are sampled.
+	 *
+	 * @param normInterval - Sample the norms every n-th batch (0 disables them)
+	 */
+	public void setNormInterval(int normInterval) {
+		this.normInterval = normInterval;
+	}
+	
+	public void beginBatch(int layerCount) {
+		if (forwardNanos.length != layerCount) {
+			forwardNanos = new long[layerCount];
+			backwardNanos = new long[layerCount];
+			weightNorms = new double[layerCount];
+			gradientNorms = new double[layerCount];
+			epochForwardNanos = new long[layerCount];
+			epochBackwardNanos = new long[layerCount];
+		} else {
+			Arrays.fill(forwardNanos, 0);
+			Arrays.fill(backwardNanos, 0);
+		}
+		
+		Arrays.fill(weightNorms, Double.NaN);
+		Arrays.fill(gradientNorms, Double.NaN);
+		
+		batchStart = System.nanoTime();
+		if (epochStart < 0) {
+			epochStart = batchStart;
+		}
+	}
+	
+	public void addForwardNanos(int layer, long nanos) {
+		forwardNanos[layer] += nanos;
+	}
+	
+	public void addBackwardNanos(int layer, long nanos) {
+		backwardNanos[layer] += nanos;
+	}
+	
+	/**
+	 * @return Whether the norms should be computed for the current batch
+	 */
+	public boolean isSamplingNorms() {
+		int interval = normInterval;
+		return interval > 0 && (batch % interval) == 0;
+	}
+	
+	public void setNorms(int layer, double weightNorm, double gradientNorm) {
+		weightNorms[layer] = weightNorm;
+		gradientNorms[layer] = gradientNorm;
+	}
+	
+	/**
+	 * Finishes the current batch and notifies the listeners.
+	 *
+	 * @param samples - The amount of samples in the batch
+	 * @param loss - The mean loss per sample or NaN if unknown
+	 */
+	public void endBatch(long samples, double loss) {
+		long nanos = System.nanoTime() - batchStart;
+		TrainingMetrics metrics = new TrainingMetrics(
+				TrainingMetrics.Kind.BATCH,
+				epoch,
+				batch,
+				samples,
+				loss,
+				nanos,
+				forwardNanos.clone(),
+				backwardNanos.clone(),
+				weightNorms.clone(),
+				gradientNorms.clone()
+		);
+		
+		for (int i=0; i<forwardNanos.length; i++) {
+			epochForwardNanos[i] += forwardNanos[i];
+			epochBackwardNanos[i] += backwardNanos[i];
+		}
+		
+		epochBatches++;
+		epochSamples += samples;
+		if (!Double.isNaN(loss)) {
+			epochLossSum += loss * samples;
+			epochLossSamples += samples;
+		}
+		batch++;
+		
+		for (TrainingListener listener : listeners) {
+			listener.onBatch(metrics);
+		}
+	}
+	
+	/**
+	 * Finishes the current epoch and notifies the listeners
+	 * with the aggregated metrics. The loss of the aggregate
+	 * only covers the batches with a known loss, the norms
+	 * are the ones of its last batch.
+	 */
+	public void endEpoch() {
+		long nanos = (epochStart < 0) ? 0 : System.nanoTime() - epochStart;
+		TrainingMetrics metrics = new TrainingMetrics(
+				TrainingMetrics.Kind.EPOCH,
+				epoch,
+				epochBatches,
+				epochSamples,
+				(epochLossSamples == 0) ? Double.NaN : epochLossSum / epochLossSamples,
+				nanos,
+				epochForwardNanos.clone(),
+				epochBackwardNanos.clone(),
+				weightNorms.clone(),
+				gradientNorms.clone()
+		);
+		
+		epoch++;
+		epochStart = -1;
+		epochBatches = 0;
+		epochSamples = 0;
+		epochLossSum = 0;
+		epochLossSamples = 0;
+		Arrays.fill(epochForwardNanos, 0);
+		Arrays.fill(epochBackwardNanos, 0);
+		
+		for (TrainingListener listener : listeners) {
+			listener.onEpoch(metrics);
+		}
+	}
+	
+	/**
+	 * @return The L2 norm of all given values combined
+	 */
+	public static double norm(float[]... blocks) {
+		double sum = 0;
+		
+		for (float[] block : blocks) {
+			for (float value : block) {
+				sum += value * value;
+			}
+		}
+		
+		return Math.sqrt(sum);
+	}
+}
@@ -0,0 +1,4 @@
+/**
+ * Metrics that are reported while training.
+ */
+package fwcd.fructose.ml.telemetry;
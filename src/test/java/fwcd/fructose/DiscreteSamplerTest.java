@@ -0,0 +1,96 @@
+package fwcd.fructose;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+public class DiscreteSamplerTest {
+	private static final int SAMPLES = 200000;
+	
+	@Test
+	public void testAlias() {
+		double[] weights = {1, 0, 3, 6, 0.5, 9.5};
+		AliasDistribution dist = new AliasDistribution(weights);
+		
+		assertEquals(0.3, dist.getProbability(3), 1e-12);
+		assertFrequencies(dist, weights);
+	}
+	
+	@Test
+	public void testFenwick() {
+		double[] weights = {2, 0, 0, 5, 1, 0, 0, 2};
+		FenwickDistribution dist = new FenwickDistribution(weights);
+		
+		assertEquals(10, dist.getTotal(), 1e-12);
+		assertEquals(7, dist.prefixSum(4), 1e-12);
+		assertFrequencies(dist, weights);
+		
+		weights[3] = 0;
+		weights[6] = 4;
+		dist.setWeight(3, 0);
+		dist.setWeight(6, 4);
+		
+		assertEquals(9, dist.getTotal(), 1e-12);
+		assertFrequencies(dist, weights);
+		
+		FenwickDistribution incremental = new FenwickDistribution(weights.length);
+		for (int i=0; i<weights.length; i++) {
+			incremental.setWeight(i, weights[i]);
+		}
+		for (int i=0; i<=weights.length; i++) {
+			assertEquals(dist.prefixSum(i), incremental.prefixSum(i), 1e-12);
+		}
+	}
+	
+	@Test
+	public void testReproducibleParallelSampling() {
+		AliasDistribution dist = new AliasDistribution(new double[] {4, 1, 2, 3});
+		int[] first = new int[100000];
+		int[] second = new int[100000];
+		
+		dist.sampleParallel(first, new SplittableRandom(42));
+		dist.sampleParallel(second, new SplittableRandom(42));
+		
+		assertArrayEquals(first, second);
+	}
+	
+	@Test
+	public void testDistribution() {
+		Distribution<String> dist = new Distribution<>();
+		dist.add("a", 1);
+		dist.add("b", 0);
+		dist.add("c", 3);
+		
+		assertEquals(3, dist.getProbability("c"), 0);
+		assertEquals(0.75, dist.getSampler().getProbability(2), 1e-12);
+		
+		for (int i=0; i<1000; i++) {
+			assertEquals(false, dist.pickStochastically().equals("b"));
+		}
+	}
+	
+	private static void assertFrequencies(DiscreteSampler dist, double[] weights) {
+		double total = 0;
+		for (double weight : weights) {
+			total += weight;
+		}
+		
+		int[] samples = new int[SAMPLES];
+		int[] counts = new int[weights.length];
+		dist.sample(samples, new SplittableRandom(7));
+		
+		for (int sample : samples) {
+			counts[sample]++;
+		}
+		
+		for (int i=0; i<weights.length; i++) {
+			assertEquals(weights[i] / total, counts[i] / (double) SAMPLES, 0.005);
+			if (weights[i] == 0) {
+				assertEquals(0, counts[i]);
+			}
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package fwcd.fructose.game.ai;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import fwcd.fructose.game.WinEvaluator;
+
+public class AlphaBetaTest {
+	@Test
+	public void testFindsWinningMoves() {
+		for (boolean withTable : new boolean[] {true, false}) {
+			for (int stones=5; stones<=15; stones++) {
+				if (stones % 4 != 0) {
+					AlphaBeta<Nim.Take, Nim.Player> ai = new AlphaBeta<>();
+					if (!withTable) {
+						ai.setTranspositionTableSize(0);
+					}
+					
+					// Leaving a multiple of four stones wins
+					assertEquals(new Nim.Take(stones % 4), ai.chooseMove(new Nim.State(stones)));
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testTranspositionsSaveNodes() {
+		AlphaBeta<Nim.Take, Nim.Player> plain = new AlphaBeta<>();
+		plain.setTranspositionTableSize(0);
+		plain.chooseMove(new Nim.State(17));
+		
+		AlphaBeta<Nim.Take, Nim.Player> cached = new AlphaBeta<>();
+		cached.chooseMove(new Nim.State(17));
+		
+		assertTrue(cached.getLastNodes() < plain.getLastNodes());
+		assertTrue(cached.getLastNodesPerSecond() > 0);
+		assertTrue(cached.getLastCompletedDepth() >= 0);
+	}
+	
+	@Test
+	public void testLazySmp() {
+		for (int stones : new int[] {9, 14, 23}) {
+			AlphaBeta<Nim.Take, Nim.Player> ai = new AlphaBeta<>();
+			ai.setThreadCount(4);
+			assertEquals(new Nim.Take(stones % 4), ai.chooseMove(new Nim.State(stones)));
+			assertTrue(ai.getLastNodes() > 0);
+		}
+		
+		AlphaBeta<Nim.Take, Nim.Player> limited = new AlphaBeta<>(new WinEvaluator<>(), 3);
+		limited.setThreadCount(3);
+		limited.chooseMove(new Nim.State(40));
+		assertEquals(3, limited.getLastCompletedDepth());
+	}
+	
+	@Test
+	public void testHelperExecutors() {
+		AtomicInteger created = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(2, task -> {
+			created.incrementAndGet();
+			Thread thread = new Thread(task);
+			thread.setDaemon(true);
+			return thread;
+		});
+		
+		try {
+			AlphaBeta<Nim.Take, Nim.Player> ai = new AlphaBeta<>();
+			ai.setThreadCount(3);
+			ai.setExecutor(executor);
+			assertEquals(new Nim.Take(2), ai.chooseMove(new Nim.State(14)));
+			assertEquals(2, created.get());
+			
+			// Executors that have been set are not shut down by the AI
+			ai.shutdown();
+			assertFalse(executor.isShutdown());
+		} finally {
+			executor.shutdown();
+		}
+		
+		// Without an executor, the AI keeps its own pool across searches
+		long helpers = countHelperThreads();
+		AlphaBeta<Nim.Take, Nim.Player> ai = new AlphaBeta<>();
+		ai.setThreadCount(3);
+		ai.chooseMove(new Nim.State(14));
+		ai.chooseMove(new Nim.State(13));
+		assertEquals(helpers + 2, countHelperThreads());
+		ai.shutdown();
+	}
+	
+	private long countHelperThreads() {
+		return Thread.getAllStackTraces().keySet().stream()
+				.filter(thread -> thread.getName().equals("Alpha beta helper"))
+				.count();
+	}
+	
+	@Test
+	public void testDepthLimit() {
+		AlphaBeta<Nim.Take, Nim.Player> ai = new AlphaBeta<>(new WinEvaluator<>(), 2);
+		ai.chooseMove(new Nim.State(40));
+		assertEquals(2, ai.getLastCompletedDepth());
+	}
+	
+	@Test
+	public void testTranspositionTable() {
+		TranspositionTable table = new TranspositionTable(4);
+		TranspositionTable.Entry entry = new TranspositionTable.Entry();
+		assertEquals(4, table.capacity());
+		assertFalse(table.probe(42, entry));
+		
+		table.store(42, 3, TranspositionTable.Bound.LOWER, -1.5, 2);
+		assertTrue(table.probe(42, entry));
+		assertEquals(3, entry.getDepth());
+		assertEquals(TranspositionTable.Bound.LOWER, entry.getBound());
+		assertEquals(-1.5, entry.getScore(), 0);
+		assertEquals(2, entry.getMoveIndex());
+		
+		// The best move of the same position is kept
+		table.store(42, 4, TranspositionTable.Bound.UPPER, Double.NEGATIVE_INFINITY, TranspositionTable.NO_MOVE);
+		assertTrue(table.probe(42, entry));
+		assertEquals(2, entry.getMoveIndex());
+		assertEquals(Double.NEGATIVE_INFINITY, entry.getScore(), 0);
+		
+		table.clear();
+		assertFalse(table.probe(42, entry));
+	}
+}
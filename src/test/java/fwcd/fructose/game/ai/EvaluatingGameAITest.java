@@ -0,0 +1,72 @@
+package fwcd.fructose.game.ai;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import fwcd.fructose.game.GameState;
+import fwcd.fructose.time.Timer;
+
+public class EvaluatingGameAITest {
+	/**
+	 * Rates a move by the amount of taken stones. Taking
+	 * three stones takes "forever" unless interrupted.
+	 */
+	private static class StoneCounter extends EvaluatingGameAI<Nim.Take, Nim.Player> {
+		private final Map<Nim.Take, Integer> calls = new ConcurrentHashMap<>();
+		private final CountDownLatch interrupted = new CountDownLatch(1);
+		private final boolean slowThree;
+		
+		public StoneCounter(boolean slowThree) {
+			this.slowThree = slowThree;
+		}
+		
+		@Override
+		protected double rateMove(GameState<Nim.Take, Nim.Player> gameBeforeMove, Nim.Take move, Timer timer, SearchProgress<Nim.Take> progress) {
+			calls.merge(move, 1, Integer::sum);
+			
+			if (slowThree && move.stones == 3) {
+				try {
+					Thread.sleep(20000);
+				} catch (InterruptedException e) {
+					interrupted.countDown();
+				}
+			}
+			
+			return move.stones;
+		}
+	}
+	
+	@Test
+	public void testRatesEveryMoveOnce() {
+		StoneCounter ai = new StoneCounter(false);
+		assertEquals(new Nim.Take(3), ai.chooseMove(new Nim.State(10)));
+		assertEquals(3, ai.calls.size());
+		
+		for (int count : ai.calls.values()) {
+			assertEquals(1, count);
+		}
+		
+		ai.setParallelization(false);
+		ai.calls.clear();
+		assertEquals(new Nim.Take(3), ai.chooseMove(new Nim.State(10)));
+		assertEquals(3, ai.calls.size());
+	}
+	
+	@Test
+	public void testCancelsOutstandingRatings() throws InterruptedException {
+		StoneCounter ai = new StoneCounter(true);
+		ai.setSoftMaxTime(200);
+		
+		long start = System.currentTimeMillis();
+		assertEquals(new Nim.Take(2), ai.chooseMove(new Nim.State(10)));
+		assertTrue(System.currentTimeMillis() - start < 10000);
+		assertTrue(ai.interrupted.await(10, TimeUnit.SECONDS));
+	}
+}
@@ -0,0 +1,223 @@
+package fwcd.fructose.game.ai;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import fwcd.fructose.game.GameState;
+
+public class MCTSTest {
+	@Test
+	public void testSequential() {
+		assertFindsWinningMove(1, MCTS.Parallelism.TREE);
+	}
+	
+	@Test
+	public void testRootParallel() {
+		assertFindsWinningMove(4, MCTS.Parallelism.ROOT);
+	}
+	
+	@Test
+	public void testTreeParallel() {
+		assertFindsWinningMove(4, MCTS.Parallelism.TREE);
+	}
+	
+	@Test
+	public void testConcurrentIterationsKeepCountsConsistent() throws InterruptedException {
+		MCTSNode<Nim.Take, Nim.Player> root = new MCTSNode<>(Nim.Player.FIRST, new Nim.State(9));
+		Thread[] threads = new Thread[4];
+		
+		for (int i=0; i<threads.length; i++) {
+			threads[i] = new Thread(() -> {
+				for (int j=0; j<2000; j++) {
+					root.performIteration();
+				}
+			});
+			threads[i].start();
+		}
+		
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		
+		int childSimulations = 0;
+		for (MCTSNode<Nim.Take, Nim.Player> child : root.getExploredChilds()) {
+			childSimulations += child.getSimulations();
+		}
+		
+		assertEquals(8000, root.getSimulations());
+		assertEquals(8000, childSimulations);
+	}
+	
+	@Test
+	public void testSubtreeReuse() {
+		MCTS<Nim.Take, Nim.Player> ai = new MCTS<>();
+		ai.setSoftMaxTime(100);
+		Nim.State game = new Nim.State(12);
+		
+		ai.chooseMove(game);
+		assertEquals(0, ai.getLastReusedSimulations());
+		
+		// Located by the observed moves
+		play(game, new Nim.Take(1), ai);
+		play(game, new Nim.Take(2), ai);
+		ai.chooseMove(game);
+		assertTrue(ai.getLastReusedSimulations() > 0);
+		
+		// Located by state equality
+		game.perform(new Nim.Take(1));
+		game.perform(new Nim.Take(1));
+		ai.chooseMove(game);
+		assertTrue(ai.getLastReusedSimulations() > 0);
+		
+		ai.setReuseTree(false);
+		game.perform(new Nim.Take(1));
+		game.perform(new Nim.Take(1));
+		ai.chooseMove(game);
+		assertEquals(0, ai.getLastReusedSimulations());
+	}
+	
+	@Test
+	public void testCompactTree() {
+		assertFindsWinningMove(1, MCTS.Parallelism.TREE, true);
+		assertFindsWinningMove(2, MCTS.Parallelism.TREE, true);
+	}
+	
+	@Test
+	public void testProgressiveWidening() {
+		MCTSArena<Nim.Take, Nim.Player> arena = new MCTSArena<>(Nim.Player.FIRST, new Nim.State(12));
+		arena.setWidening(1, 0);
+		
+		for (int i=0; i<200; i++) {
+			arena.performIteration();
+		}
+		
+		Map<Nim.Take, Integer> visits = new HashMap<>();
+		arena.collectMoveVisits(visits);
+		assertEquals(1, visits.size());
+		assertEquals(200, arena.getSimulations());
+		
+		arena.setMaxNodes(arena.size());
+		int size = arena.size();
+		arena.performIteration();
+		assertEquals(size, arena.size());
+	}
+	
+	@Test
+	public void testArenaReroot() {
+		Nim.State game = new Nim.State(12);
+		MCTSArena<Nim.Take, Nim.Player> arena = new MCTSArena<>(Nim.Player.FIRST, game.copy());
+		
+		for (int i=0; i<2000; i++) {
+			arena.performIteration();
+		}
+		
+		// Rerooting at the root copies the whole tree
+		MCTSArena<Nim.Take, Nim.Player> whole = arena.reroot(game, Collections.emptyList());
+		assertEquals(arena.size(), whole.size());
+		assertEquals(arena.getSimulations(), whole.getSimulations());
+		
+		game.perform(new Nim.Take(1));
+		game.perform(new Nim.Take(1));
+		MCTSArena<Nim.Take, Nim.Player> byMoves = arena.reroot(game, Arrays.asList(new Nim.Take(1), new Nim.Take(1)));
+		MCTSArena<Nim.Take, Nim.Player> byState = arena.reroot(game, Collections.emptyList());
+		
+		assertTrue(byMoves.getSimulations() > 0);
+		assertEquals(byMoves.getSimulations(), byState.getSimulations());
+		assertEquals(byMoves.size(), byState.size());
+		assertEquals(game, byMoves.getRootState());
+		
+		// The opponent is to move after a single move
+		game.perform(new Nim.Take(1));
+		assertEquals(null, arena.reroot(game, Collections.emptyList()));
+	}
+	
+	@Test
+	public void testDrawsArePreferredOverLosses() {
+		MCTSNode<Nim.Take, Nim.Player> node = new MCTSNode<>(Nim.Player.FIRST, new DrawOrLose());
+		MCTSArena<Nim.Take, Nim.Player> arena = new MCTSArena<>(Nim.Player.FIRST, new DrawOrLose());
+		
+		for (int i=0; i<400; i++) {
+			node.performIteration();
+			arena.performIteration();
+		}
+		
+		for (MCTSTree<Nim.Take, Nim.Player> tree : Arrays.<MCTSTree<Nim.Take, Nim.Player>>asList(node, arena)) {
+			Map<Nim.Take, Integer> visits = new HashMap<>();
+			tree.collectMoveVisits(visits);
+			assertTrue(visits.get(DrawOrLose.DRAW) > 2 * visits.get(DrawOrLose.LOSE));
+		}
+	}
+	
+	/**
+	 * A game with a single move, which either ends
+	 * in a draw or lets the opponent win.
+	 */
+	private static class DrawOrLose implements GameState<Nim.Take, Nim.Player> {
+		static final Nim.Take DRAW = new Nim.Take(1);
+		static final Nim.Take LOSE = new Nim.Take(2);
+		private Nim.Take taken = null;
+		
+		@Override
+		public List<Nim.Take> getLegalMoves() {
+			return (taken == null) ? Arrays.asList(DRAW, LOSE) : Collections.emptyList();
+		}
+		
+		@Override
+		public Set<Nim.Player> getWinners() {
+			return LOSE.equals(taken) ? Collections.singleton(Nim.Player.SECOND) : Collections.emptySet();
+		}
+		
+		@Override
+		public Nim.Player getCurrentRole() {
+			return (taken == null) ? Nim.Player.FIRST : Nim.Player.SECOND;
+		}
+		
+		@Override
+		public boolean perform(Nim.Take move) {
+			taken = move;
+			return true;
+		}
+		
+		@Override
+		public int getMoveCount() {
+			return (taken == null) ? 0 : 1;
+		}
+		
+		@Override
+		public DrawOrLose copy() {
+			DrawOrLose copy = new DrawOrLose();
+			copy.taken = taken;
+			return copy;
+		}
+	}
+	
+	private void play(Nim.State game, Nim.Take move, MCTS<Nim.Take, Nim.Player> observer) {
+		observer.onGameMove(game, move);
+		game.perform(move);
+	}
+	
+	private void assertFindsWinningMove(int threads, MCTS.Parallelism parallelism) {
+		assertFindsWinningMove(threads, parallelism, false);
+	}
+	
+	private void assertFindsWinningMove(int threads, MCTS.Parallelism parallelism, boolean compactTree) {
+		MCTS<Nim.Take, Nim.Player> ai = new MCTS<>();
+		ai.setCompactTree(compactTree);
+		ai.setParallelism(threads, parallelism);
+		ai.setSoftMaxTime(150);
+		
+		// Taking all three stones wins immediately
+		assertEquals(new Nim.Take(3), ai.chooseMove(new Nim.State(3)));
+		assertTrue(ai.getLastIterations() > 0);
+		assertTrue(ai.getLastIterationsPerSecond() > 0);
+	}
+}
@@ -0,0 +1,97 @@
+package fwcd.fructose.game.ai;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import fwcd.fructose.game.WinEvaluator;
+
+public class MinimaxTest {
+	@Test
+	public void testParallelPlies() {
+		for (int parallelPlies=0; parallelPlies<=3; parallelPlies+=3) {
+			Minimax<Nim.Take, Nim.Player> ai = new Minimax<>();
+			ai.setParallelPlies(parallelPlies);
+			
+			// Leaving a multiple of four stones wins
+			assertEquals(new Nim.Take(1), ai.chooseMove(new Nim.State(9)));
+			assertEquals(new Nim.Take(3), ai.chooseMove(new Nim.State(11)));
+		}
+	}
+	
+	@Test
+	public void testParallelPliesAvoidTheCommonPool() {
+		ForkJoinPool pool = new ForkJoinPool(2);
+		
+		try {
+			// Rated on the given pool
+			Set<Object> pools = poolsOfParallelSearch(pool);
+			assertEquals(1, pools.size());
+			assertTrue(pools.contains(pool));
+		} finally {
+			pool.shutdown();
+		}
+		
+		// Rated on a pool owned by the AI
+		Set<Object> pools = poolsOfParallelSearch(null);
+		assertEquals(1, pools.size());
+		assertTrue(pools.iterator().next() instanceof ForkJoinPool);
+		assertFalse(pools.contains(ForkJoinPool.commonPool()));
+		
+		// The first ply is rated on the common pool, the plies below it are not
+		pools = poolsOfParallelSearch(ForkJoinPool.commonPool());
+		assertEquals(1, pools.size());
+		assertFalse(pools.contains(ForkJoinPool.commonPool()));
+	}
+	
+	@Test
+	public void testStopsWhenCancelled() throws InterruptedException {
+		AtomicLong evaluations = new AtomicLong();
+		WinEvaluator<Nim.Take, Nim.Player> winEvaluator = new WinEvaluator<>();
+		Minimax<Nim.Take, Nim.Player> ai = new Minimax<>((role, gameBeforeMove, gameAfterMove, move, depth) -> {
+			evaluations.incrementAndGet();
+			return winEvaluator.rate(role, gameBeforeMove, gameAfterMove, move, depth);
+		}, Integer.MAX_VALUE);
+		ai.setParallelPlies(2);
+		ai.setHardMaxTime(300);
+		ai.setTimeoutMoveChooser(game -> new Nim.Take(1), 10);
+		
+		// The tree is far too large, thus only the hard limit ends the selection
+		ai.chooseMove(new Nim.State(200));
+		Thread.sleep(300);
+		long afterCancellation = evaluations.get();
+		Thread.sleep(300);
+		
+		assertTrue(afterCancellation > 0);
+		assertEquals(afterCancellation, evaluations.get());
+		ai.shutdown();
+	}
+	
+	/**
+	 * @return The pools on which the positions were evaluated ("none" if a position was evaluated outside of a pool)
+	 */
+	private Set<Object> poolsOfParallelSearch(ExecutorService executor) {
+		Set<Object> pools = ConcurrentHashMap.newKeySet();
+		WinEvaluator<Nim.Take, Nim.Player> winEvaluator = new WinEvaluator<>();
+		Minimax<Nim.Take, Nim.Player> ai = new Minimax<>((role, gameBeforeMove, gameAfterMove, move, depth) -> {
+			ForkJoinPool current = ForkJoinTask.getPool();
+			pools.add((current == null) ? "none" : current);
+			return winEvaluator.rate(role, gameBeforeMove, gameAfterMove, move, depth);
+		}, Integer.MAX_VALUE);
+		ai.setParallelPlies(3);
+		ai.setExecutor(executor);
+		
+		assertEquals(new Nim.Take(1), ai.chooseMove(new Nim.State(9)));
+		ai.shutdown();
+		return pools;
+	}
+}
@@ -0,0 +1,145 @@
+package fwcd.fructose.game.ai;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import fwcd.fructose.game.GameMove;
+import fwcd.fructose.game.GameRole;
+import fwcd.fructose.game.GameState;
+
+/**
+ * A simple test game: The players alternately take one to
+ * three stones from a pile, whoever takes the last stone wins.
+ */
+final class Nim {
+	private Nim() {}
+	
+	enum Player implements GameRole {
+		FIRST, SECOND;
+		
+		@Override
+		public Player getOpponent() {
+			return (this == FIRST) ? SECOND : FIRST;
+		}
+		
+		@Override
+		public boolean hasOpponent() {
+			return true;
+		}
+	}
+	
+	static class Take implements GameMove {
+		final int stones;
+		
+		Take(int stones) {
+			this.stones = stones;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			return (obj instanceof Take) && ((Take) obj).stones == stones;
+		}
+		
+		@Override
+		public int hashCode() {
+			return stones;
+		}
+		
+		@Override
+		public String toString() {
+			return "Take " + Integer.toString(stones);
+		}
+	}
+	
+	static class State implements GameState<Take, Player> {
+		private int stones;
+		private Player current = Player.FIRST;
+		private Player winner = null;
+		private int moveCount = 0;
+		
+		State(int stones) {
+			this.stones = stones;
+		}
+		
+		int getStones() {
+			return stones;
+		}
+		
+		@Override
+		public List<Take> getLegalMoves() {
+			List<Take> moves = new ArrayList<>();
+			
+			if (winner == null) {
+				for (int i=1; i<=Math.min(3, stones); i++) {
+					moves.add(new Take(i));
+				}
+			}
+			
+			return moves;
+		}
+		
+		@Override
+		public Set<Player> getWinners() {
+			return (winner == null) ? Collections.emptySet() : Collections.singleton(winner);
+		}
+		
+		@Override
+		public Player getCurrentRole() {
+			return current;
+		}
+		
+		@Override
+		public boolean perform(Take move) {
+			if (winner != null || move.stones < 1 || move.stones > Math.min(3, stones)) {
+				return false;
+			}
+			
+			stones -= move.stones;
+			if (stones == 0) {
+				winner = current;
+			}
+			current = current.getOpponent();
+			moveCount++;
+			return true;
+		}
+		
+		@Override
+		public int getMoveCount() {
+			return moveCount;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof State)) {
+				return false;
+			}
+			State other = (State) obj;
+			return stones == other.stones && current == other.current && winner == other.winner;
+		}
+		
+		@Override
+		public int hashCode() {
+			return (stones * 31 + current.ordinal()) * 31 + ((winner == null) ? 2 : winner.ordinal());
+		}
+		
+		@Override
+		public long positionHash() {
+			// Mixes the position bits as in SplitMix64
+			long z = hashCode() * 0x9E3779B97F4A7C15L;
+			z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+			z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+			return z ^ (z >>> 31);
+		}
+		
+		@Override
+		public State copy() {
+			State copy = new State(stones);
+			copy.current = current;
+			copy.winner = winner;
+			copy.moveCount = moveCount;
+			return copy;
+		}
+	}
+}
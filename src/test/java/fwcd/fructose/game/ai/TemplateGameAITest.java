@@ -0,0 +1,75 @@
+package fwcd.fructose.game.ai;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import fwcd.fructose.game.GameState;
+
+public class TemplateGameAITest {
+	/**
+	 * Publishes a move and then searches until it is cancelled.
+	 */
+	private static class EndlessSearch extends TemplateGameAI<Nim.Take, Nim.Player> {
+		private final Nim.Take published;
+		private final CountDownLatch cancelled = new CountDownLatch(1);
+		
+		public EndlessSearch(Nim.Take published) {
+			this.published = published;
+		}
+		
+		@Override
+		protected Nim.Take selectMove(GameState<Nim.Take, Nim.Player> game, long softMaxTime) {
+			SearchProgress<Nim.Take> progress = getProgress();
+			
+			if (published != null) {
+				progress.publish(published);
+			}
+			
+			while (!progress.isCancelled()) {
+				Thread.yield();
+			}
+			
+			cancelled.countDown();
+			return new Nim.Take(3);
+		}
+	}
+	
+	@Test
+	public void testHardLimitReturnsBestSoFar() throws InterruptedException {
+		EndlessSearch ai = new EndlessSearch(new Nim.Take(2));
+		ai.setHardMaxTime(300);
+		
+		long start = System.currentTimeMillis();
+		assertEquals(new Nim.Take(2), ai.chooseMove(new Nim.State(10)));
+		assertTrue(System.currentTimeMillis() - start < 5000);
+		assertTrue(ai.cancelled.await(5, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void testHardLimitWithoutResult() {
+		EndlessSearch ai = new EndlessSearch(null);
+		ai.setHardMaxTime(300);
+		ai.setTimeoutMoveChooser(game -> new Nim.Take(1), 10);
+		assertEquals(new Nim.Take(1), ai.chooseMove(new Nim.State(10)));
+	}
+	
+	@Test
+	public void testAnytimeSearchers() {
+		MCTS<Nim.Take, Nim.Player> mcts = new MCTS<>();
+		mcts.setHardMaxTime(400);
+		mcts.setTimeoutMoveChooser(game -> new Nim.Take(1), 10);
+		assertEquals(new Nim.Take(3), mcts.chooseMove(new Nim.State(3)));
+		
+		AlphaBeta<Nim.Take, Nim.Player> alphaBeta = new AlphaBeta<>();
+		alphaBeta.setTranspositionTableSize(0);
+		alphaBeta.setHardMaxTime(400);
+		alphaBeta.setTimeoutMoveChooser(game -> new Nim.Take(3), 10);
+		// Too large to be solved in time, but the shallow iterations (which rate all moves equally) are published
+		assertEquals(new Nim.Take(1), alphaBeta.chooseMove(new Nim.State(201)));
+	}
+}
@@ -0,0 +1,140 @@
+package fwcd.fructose.genetic.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import fwcd.fructose.genetic.operators.GaussianFloatMutator;
+import fwcd.fructose.genetic.operators.SinglePointFloatCrossover;
+
+public class ContiguousFloatPopulationTest {
+	@Test
+	public void testStore() {
+		FloatGenomeStore store = new FloatGenomeStore(3, 1);
+		store.add(new float[] {1, 2, 3});
+		store.add(new float[] {4, 5, 6});
+		store.add(new float[] {7, 8, 9});
+		
+		assertEquals(3, store.size());
+		assertEquals(6, store.offsetOf(2));
+		assertTrue(Arrays.equals(new float[] {4, 5, 6}, store.toArray(1)));
+		
+		store.view(1).put(2, 0);
+		store.copy(store, 1, 0);
+		assertTrue(Arrays.equals(new float[] {4, 5, 0}, store.toArray(0)));
+	}
+	
+	@Test
+	public void testSkipSampledMutationRate() {
+		GaussianFloatMutator mutator = new GaussianFloatMutator(-10, 10, 1, 5);
+		Random random = new Random(3);
+		float[] genes = new float[1000];
+		int mutated = 0;
+		
+		for (int round=0; round<200; round++) {
+			Arrays.fill(genes, 0);
+			// Only the range is touched
+			mutator.mutate(genes, 100, 500, random);
+			
+			for (int i=0; i<genes.length; i++) {
+				if (genes[i] != 0) {
+					assertTrue(i >= 100 && i < 600);
+					mutated++;
+				}
+			}
+		}
+		
+		// One mutation per genome is expected
+		assertEquals(1, mutated / 200D, 0.2);
+	}
+	
+	@Test
+	public void testSinglePointCrossoverRange() {
+		SinglePointFloatCrossover crossover = new SinglePointFloatCrossover();
+		crossover.setRandomlyChooseOffset(false);
+		crossover.setRandomlySwapParents(false);
+		float[] data = {9, 1, 1, 1, 1, 2, 2, 2, 2};
+		float[] dest = new float[5];
+		
+		crossover.crossover(data, 1, data, 5, dest, 1, 4, new Random());
+		assertTrue(Arrays.equals(new float[] {0, 1, 1, 2, 2}, dest));
+	}
+	
+	@Test
+	public void testEvolution() {
+		ContiguousFloatPopulation population = new ContiguousFloatPopulation(8, genes -> {
+			float error = 0;
+			for (float gene : genes) {
+				error += Math.abs(gene - 1);
+			}
+			return -error;
+		});
+		Random random = new Random(5);
+		
+		for (int i=0; i<40; i++) {
+			float[] genes = new float[8];
+			for (int j=0; j<genes.length; j++) {
+				genes[j] = random.nextFloat() * 4 - 2;
+			}
+			population.addGenes(genes);
+		}
+		
+		population.setRandom(new Random(6));
+		population.setEliteCount(2);
+		float initial = population.getFitness(indexOf(population, population.selectBestGenes()));
+		population.evolve(100);
+		float evolved = population.getFitness(indexOf(population, population.selectBestGenes()));
+		
+		assertEquals(100, population.getGeneration());
+		assertEquals(40, population.size());
+		assertTrue(evolved >= initial);
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		population.saveTo(out);
+		ContiguousFloatPopulation loaded = new ContiguousFloatPopulation(8, genes -> 0);
+		loaded.loadFrom(new ByteArrayInputStream(out.toByteArray()));
+		
+		assertEquals(40, loaded.size());
+		assertTrue(Arrays.equals(population.getGenes(7), loaded.getGenes(7)));
+	}
+	
+	@Test
+	public void testDistinctParents() {
+		ContiguousFloatPopulation population = new ContiguousFloatPopulation(1, genes -> genes[0]);
+		AtomicInteger identicalPairs = new AtomicInteger();
+		
+		for (int i=0; i<20; i++) {
+			population.addGenes(new float[] {i + 1});
+		}
+		
+		population.setRandom(new Random(7));
+		population.setEliteCount(0);
+		population.setMutationChance(0);
+		population.setCrossover((genesA, offsetA, genesB, offsetB, dest, destOffset, length, random) -> {
+			if (offsetA == offsetB) {
+				identicalPairs.incrementAndGet();
+			}
+			System.arraycopy(genesA, offsetA, dest, destOffset, length);
+		});
+		population.evolve();
+		
+		// The parents are sampled in order, pairing them without shuffling would breed mostly clones
+		assertTrue(identicalPairs.get() < 5);
+	}
+	
+	private int indexOf(Population<float[]> population, float[] genes) {
+		for (int i=0; i<population.size(); i++) {
+			if (Arrays.equals(population.getGenes(i), genes)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,99 @@
+package fwcd.fructose.genetic.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import fwcd.fructose.genetic.operators.FitnessFunction;
+
+public class ContinuousPopulationTest {
+	private static final int DIMENSIONS = 8;
+	private static final FitnessFunction<float[]> SPHERE = genes -> {
+		float sum = 0;
+		for (float gene : genes) {
+			sum += gene * gene;
+		}
+		return -sum;
+	};
+	/** An ill-conditioned ellipsoid, which requires covariance adaptation. */
+	private static final FitnessFunction<float[]> ELLIPSOID = genes -> {
+		float sum = 0;
+		for (int i=0; i<genes.length; i++) {
+			sum += Math.pow(1000, i / (genes.length - 1D)) * genes[i] * genes[i];
+		}
+		return -sum;
+	};
+	
+	@Test
+	public void testDifferentialEvolution() {
+		for (DifferentialEvolutionPopulation.Strategy strategy : DifferentialEvolutionPopulation.Strategy.values()) {
+			DifferentialEvolutionPopulation population = newDifferentialEvolution(strategy, null);
+			population.evolve(300);
+			
+			assertEquals(300, population.getGeneration());
+			assertTrue(SPHERE.getFitness(population.selectBestGenes()) > -1e-3F);
+		}
+	}
+	
+	@Test
+	public void testParallelDifferentialEvolutionIsReproducible() {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		
+		try {
+			DifferentialEvolutionPopulation sequential = newDifferentialEvolution(DifferentialEvolutionPopulation.Strategy.RAND_1_BIN, null);
+			DifferentialEvolutionPopulation parallel = newDifferentialEvolution(DifferentialEvolutionPopulation.Strategy.RAND_1_BIN, executor);
+			sequential.evolve(50);
+			parallel.evolve(50);
+			
+			for (int i=0; i<sequential.size(); i++) {
+				assertTrue(Arrays.equals(sequential.getGenes(i), parallel.getGenes(i)));
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testCmaEs() {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		
+		try {
+			float[] start = new float[DIMENSIONS];
+			Arrays.fill(start, 3);
+			CmaEsPopulation population = new CmaEsPopulation(ELLIPSOID, start, 1);
+			population.setRandom(new Random(11));
+			population.setFitnessExecutor(executor);
+			population.evolve(400);
+			
+			assertEquals(400, population.getGeneration());
+			assertTrue(population.getBestFitness() > -1e-4F);
+			assertTrue(population.getSigma() < 0.1);
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	private DifferentialEvolutionPopulation newDifferentialEvolution(DifferentialEvolutionPopulation.Strategy strategy, ExecutorService executor) {
+		Random random = new Random(9);
+		DifferentialEvolutionPopulation population = new DifferentialEvolutionPopulation(SPHERE);
+		population.setStrategy(strategy);
+		population.setFitnessExecutor(executor);
+		population.setRandom(new Random(10));
+		
+		for (int i=0; i<30; i++) {
+			float[] genes = new float[DIMENSIONS];
+			for (int j=0; j<DIMENSIONS; j++) {
+				genes[j] = random.nextFloat() * 10 - 5;
+			}
+			population.addGenes(genes);
+		}
+		
+		return population;
+	}
+}
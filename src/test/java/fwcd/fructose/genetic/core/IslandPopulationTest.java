@@ -0,0 +1,137 @@
+package fwcd.fructose.genetic.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import fwcd.fructose.genetic.operators.FitnessFunction;
+
+public class IslandPopulationTest {
+	private static final FitnessFunction<float[]> FITNESS = genes -> -Math.abs(genes[0] - 10);
+	
+	@Test
+	public void testTopologies() {
+		assertArrayEquals(new int[] {0}, MigrationTopology.RING.getTargets(3, 4));
+		assertArrayEquals(new int[0], MigrationTopology.RING.getTargets(0, 1));
+		assertArrayEquals(new int[] {0, 1, 3}, MigrationTopology.FULLY_CONNECTED.getTargets(2, 4));
+	}
+	
+	@Test
+	public void testRingMigration() {
+		List<ManualPopulation> islands = new ArrayList<>();
+		
+		for (int i=0; i<4; i++) {
+			ManualPopulation island = new ManualPopulation();
+			island.setMutationChance(0);
+			island.setSurvivorsPerGeneration(10);
+			island.addGenes(new float[] {(i == 0) ? 10 : 0});
+			island.addGenes(new float[] {-i});
+			islands.add(island);
+		}
+		
+		IslandPopulation<float[]> population = new IslandPopulation<>(FITNESS, islands);
+		population.setMigrationInterval(1);
+		population.setMigrantCount(1);
+		population.setMigrantCopier(float[]::clone);
+		population.setSeed(7);
+		
+		population.evolve(2);
+		assertTrue(contains(islands.get(1), 10));
+		assertTrue(contains(islands.get(2), 10));
+		assertTrue(!contains(islands.get(3), 10));
+		
+		population.evolve();
+		assertTrue(contains(islands.get(3), 10));
+		assertEquals(3, population.getGeneration());
+		assertEquals(8, population.size());
+		assertEquals(0, population.getBestFitness(), 0);
+		assertEquals(10, population.selectBestGenes()[0], 0);
+	}
+	
+	@Test
+	public void testReusesCachedFitness() {
+		AtomicInteger evaluations = new AtomicInteger();
+		FitnessFunction<float[]> counting = genes -> {
+			evaluations.incrementAndGet();
+			return FITNESS.getFitness(genes);
+		};
+		List<TemplatePopulation<float[]>> islands = new ArrayList<>();
+		
+		for (int i=0; i<2; i++) {
+			TemplatePopulation<float[]> island = new TemplatePopulation<float[]>() {
+				@Override
+				public void evolve() {
+					incrementGeneration();
+				}
+			};
+			island.setFitnessFunction(counting);
+			for (int j=0; j<3; j++) {
+				island.addGenes(new float[] {i * 3 + j});
+			}
+			islands.add(island);
+		}
+		
+		IslandPopulation<float[]> population = new IslandPopulation<>(counting, islands);
+		population.setMigrationInterval(1);
+		population.setMigrantCount(1);
+		population.setSeed(3);
+		population.evolve(3);
+		
+		// Every individual is evaluated once, afterwards only the replaced ones
+		assertEquals(6 + (2 * 2), evaluations.get());
+		assertEquals(-5, population.getBestFitness(), 0);
+		assertEquals(5, population.selectBestGenes()[0], 0);
+		assertEquals(6 + (2 * 2), evaluations.get());
+	}
+	
+	@Test
+	public void testSeededEvolutionIsReproducible() {
+		List<float[]> first = evolveSeeded(42);
+		List<float[]> second = evolveSeeded(42);
+		
+		assertEquals(first.size(), second.size());
+		for (int i=0; i<first.size(); i++) {
+			assertTrue(Arrays.equals(first.get(i), second.get(i)));
+		}
+	}
+	
+	private List<float[]> evolveSeeded(long seed) {
+		List<BreedingPopulation<float[]>> islands = new ArrayList<>();
+		
+		for (int i=0; i<4; i++) {
+			List<float[]> individuals = new ArrayList<>();
+			for (int j=0; j<6; j++) {
+				individuals.add(new float[] {i * 6 + j, j});
+			}
+			
+			islands.add(new BreedingPopulation<>(
+					(a, b) -> new float[] {(a[0] + b[0]) / 2, a[1] + 1},
+					FITNESS,
+					genes -> new float[] {genes[0] + 0.5F, genes[1]},
+					individuals,
+					0.3F
+			));
+		}
+		
+		IslandPopulation<float[]> population = new IslandPopulation<>(FITNESS, islands);
+		population.setTopology(MigrationTopology.FULLY_CONNECTED);
+		population.setMigrationInterval(5);
+		population.setSeed(seed);
+		population.evolve(23);
+		population.evolve(7);
+		
+		assertEquals(30, population.getGeneration());
+		return population.getAllGenes();
+	}
+	
+	private boolean contains(Population<float[]> island, float value) {
+		return island.streamGenes().anyMatch(genes -> genes[0] == value);
+	}
+}
@@ -0,0 +1,63 @@
+package fwcd.fructose.genetic.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import fwcd.fructose.genetic.operators.GaussianFloatMutator;
+import fwcd.fructose.genetic.operators.UniformFloatCrossover;
+
+public class TemplatePopulationTest {
+	@Test
+	public void testFitnessCache() {
+		AtomicInteger evaluations = new AtomicInteger();
+		List<float[]> individuals = new ArrayList<>();
+		
+		for (int i=0; i<20; i++) {
+			individuals.add(new float[] {i, 1});
+		}
+		
+		BreedingPopulation<float[]> population = new BreedingPopulation<>(
+				new UniformFloatCrossover(),
+				genes -> {
+					evaluations.incrementAndGet();
+					return genes[0] + genes[1];
+				},
+				new GaussianFloatMutator(),
+				individuals,
+				0.1F
+		);
+		population.setMutationChance(0);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		population.setFitnessExecutor(executor);
+		
+		try {
+			float[] best = population.selectBestGenes();
+			assertEquals(20, evaluations.get());
+			assertSame(best, population.selectBestGenes());
+			assertEquals(20, evaluations.get());
+			
+			population.evolve();
+			// The selection reuses the cached fitness values
+			assertEquals(20, evaluations.get());
+			
+			// Only the two offspring are evaluated again
+			population.selectBestGenes();
+			population.selectBestGenes();
+			assertEquals(22, evaluations.get());
+			
+			population.evolve();
+			population.selectBestGenes();
+			assertEquals(24, evaluations.get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
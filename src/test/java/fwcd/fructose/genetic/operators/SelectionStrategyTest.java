@@ -0,0 +1,82 @@
+package fwcd.fructose.genetic.operators;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SelectionStrategyTest {
+	private static final float[] FITNESSES = {3, -1, 0, 5, 2, 10, 0};
+	private static final int COUNT = 6; // The last value is unused
+	
+	@Test
+	public void testTournament() {
+		Selection selection = new TournamentSelection(64).prepare(FITNESSES, COUNT);
+		Random random = new Random(1);
+		
+		for (int i=0; i<100; i++) {
+			assertEquals(5, selection.select(random));
+		}
+	}
+	
+	@Test
+	public void testTruncation() {
+		Selection selection = new TruncationSelection(0.5).prepare(FITNESSES, COUNT);
+		int[] picks = new int[1000];
+		selection.select(picks, new Random(2));
+		
+		for (int pick : picks) {
+			assertTrue(pick == 0 || pick == 3 || pick == 5);
+		}
+	}
+	
+	@Test
+	public void testLinearRank() {
+		Selection selection = new LinearRankSelection(2).prepare(FITNESSES, COUNT);
+		int[] counts = count(selection, 60000);
+		
+		// The weights are proportional to the ranks 0..5
+		assertEquals(0, counts[1]);
+		assertEquals(5 / 15D, counts[5] / 60000D, 0.01);
+		assertEquals(4 / 15D, counts[3] / 60000D, 0.01);
+		assertEquals(1 / 15D, counts[2] / 60000D, 0.01);
+	}
+	
+	@Test
+	public void testStochasticUniversalSampling() {
+		Selection selection = new StochasticUniversalSampling().prepare(FITNESSES, COUNT);
+		Random random = new Random(3);
+		int[] picks = new int[20];
+		
+		for (int round=0; round<50; round++) {
+			selection.select(picks, random);
+			int[] counts = new int[COUNT];
+			for (int pick : picks) {
+				counts[pick]++;
+			}
+			
+			// Every individual receives floor or ceil of its expected share
+			for (int i=0; i<COUNT; i++) {
+				double expected = Math.max(FITNESSES[i], 0) / 20D * picks.length;
+				assertTrue(counts[i] >= Math.floor(expected) && counts[i] <= Math.ceil(expected));
+			}
+		}
+		
+		int[] counts = count(selection, 40000);
+		assertEquals(0.5, counts[5] / 40000D, 0.01);
+		assertEquals(0, counts[1]);
+	}
+	
+	private static int[] count(Selection selection, int samples) {
+		Random random = new Random(4);
+		int[] counts = new int[COUNT];
+		
+		for (int i=0; i<samples; i++) {
+			counts[selection.select(random)]++;
+		}
+		
+		return counts;
+	}
+}
@@ -0,0 +1,125 @@
+package fwcd.fructose.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class CheckpointServiceTest {
+	@Test
+	public void testRotation() throws IOException {
+		File directory = Files.createTempDirectory("checkpoints").toFile();
+		
+		try (CheckpointService checkpoints = new CheckpointService(directory, "test", 2)) {
+			assertFalse(checkpoints.getLatestIndex().isPresent());
+			
+			int[] state = new int[1];
+			for (int i=1; i<=5; i++) {
+				state[0] = i;
+				checkpoints.save(i * 10, CheckpointService.serialized(state));
+				// Snapshots are independent of later modifications
+				state[0] = -1;
+				checkpoints.awaitPending();
+			}
+			
+			List<File> files = checkpoints.getCheckpoints();
+			assertEquals(2, files.size());
+			assertEquals("test-40.ckpt", files.get(0).getName());
+			assertEquals("test-50.ckpt", files.get(1).getName());
+			assertEquals(Long.valueOf(50), checkpoints.getLatestIndex().unwrap());
+			
+			int[] latest = checkpoints.<int[]>readLatest(in -> (int[]) new ObjectInputStream(in).readObject()).unwrap();
+			assertEquals(5, latest[0]);
+		}
+		
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+	
+	@Test
+	public void testFailedWrite() throws Exception {
+		File directory = Files.createTempDirectory("checkpoints").toFile();
+		
+		try (CheckpointService checkpoints = new CheckpointService(directory, "test", 2)) {
+			CountDownLatch started = new CountDownLatch(1);
+			checkpoints.save(1, out -> {
+				started.countDown();
+				out.write(1);
+				throw new IOException("Snapshot failed");
+			});
+			started.await();
+			// A later successful write does not hide the failure
+			checkpoints.save(2, CheckpointService.serialized(2));
+			
+			try {
+				checkpoints.awaitPending();
+				fail("Expected the failed write to be reported");
+			} catch (UncheckedIOException e) {
+				assertEquals("Snapshot failed", e.getCause().getMessage());
+			}
+			
+			// The failure is only reported once
+			checkpoints.awaitPending();
+			assertEquals(1, checkpoints.getCheckpoints().size());
+			assertTrue(new File(directory, "test-2.ckpt").isFile());
+			assertFalse(new File(directory, "test-1.ckpt.tmp").exists());
+		}
+		
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+	
+	@Test
+	public void testReplacesWaitingSnapshots() throws Exception {
+		File directory = Files.createTempDirectory("checkpoints").toFile();
+		
+		try (CheckpointService checkpoints = new CheckpointService(directory, "test", 3)) {
+			CountDownLatch started = new CountDownLatch(1);
+			CountDownLatch release = new CountDownLatch(1);
+			checkpoints.save(1, out -> {
+				started.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+				out.write(1);
+			});
+			started.await();
+			
+			// The writer is busy, thus only the newest of these snapshots is written
+			Future<File> second = checkpoints.save(2, CheckpointService.serializedLater(new int[] {2}));
+			Future<File> third = checkpoints.save(3, CheckpointService.serializedLater(new int[] {3}));
+			release.countDown();
+			checkpoints.awaitPending();
+			
+			assertEquals("test-3.ckpt", second.get().getName());
+			assertEquals(third.get(), second.get());
+			assertEquals(2, checkpoints.getCheckpoints().size());
+			assertFalse(new File(directory, "test-2.ckpt").exists());
+			
+			int[] latest = checkpoints.<int[]>readLatest(in -> (int[]) new ObjectInputStream(in).readObject()).unwrap();
+			assertEquals(3, latest[0]);
+		}
+		
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+}
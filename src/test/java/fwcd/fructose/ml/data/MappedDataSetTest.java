@@ -0,0 +1,85 @@
+package fwcd.fructose.ml.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class MappedDataSetTest {
+	private static final float EPSILON = 0.000001F;
+	
+	private MappedDataSet createDataSet(int records) throws IOException {
+		File file = File.createTempFile("fructose-dataset", ".bin");
+		file.deleteOnExit();
+		
+		try (MappedDataSet.Writer writer = new MappedDataSet.Writer(file, 3, 1)) {
+			for (int i=0; i<records; i++) {
+				writer.add(new float[] {i, i * 2, i * 3}, new float[] {-i});
+			}
+		}
+		
+		return new MappedDataSet(file);
+	}
+	
+	@Test
+	public void testRecords() throws IOException {
+		MappedDataSet data = createDataSet(10);
+		assertEquals(10, data.size());
+		assertEquals(3, data.getFeatureWidth());
+		assertEquals(1, data.getLabelWidth());
+		
+		float[] features = new float[3];
+		data.readFeatures(7, features, 0);
+		assertArrayEquals(new float[] {7, 14, 21}, features, EPSILON);
+		assertArrayEquals(new float[] {-4}, data.getLabels(4).asArray(), EPSILON);
+	}
+	
+	@Test
+	public void testSequentialBatches() throws IOException {
+		MappedDataSet data = createDataSet(10);
+		int batches = 0;
+		
+		try (MiniBatchIterator it = data.batches(4)) {
+			while (it.next()) {
+				int first = batches * 4;
+				assertEquals(Math.min(4, 10 - first), it.size());
+				for (int i=0; i<it.size(); i++) {
+					assertEquals(first + i, it.getFeatures()[i * 3], EPSILON);
+					assertEquals(-(first + i), it.getLabels()[i], EPSILON);
+				}
+				batches++;
+			}
+			assertFalse(it.next());
+		}
+		
+		assertEquals(3, batches);
+	}
+	
+	@Test
+	public void testShuffledBatches() throws IOException {
+		MappedDataSet data = createDataSet(25);
+		for (boolean prefetch : new boolean[] {true, false}) {
+			boolean[] visited = new boolean[25];
+			try (MiniBatchIterator it = data.batches(8, new Random(42), prefetch)) {
+				while (it.next()) {
+					for (int i=0; i<it.size(); i++) {
+						int record = (int) it.getFeatures()[i * 3];
+						assertEquals(record * 3, it.getFeatures()[(i * 3) + 2], EPSILON);
+						assertEquals(-record, it.getLabels()[i], EPSILON);
+						visited[record] = true;
+					}
+				}
+			}
+			
+			for (boolean v : visited) {
+				assertTrue(v);
+			}
+		}
+	}
+}
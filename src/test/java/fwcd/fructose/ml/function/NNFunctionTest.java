@@ -0,0 +1,79 @@
+package fwcd.fructose.ml.function;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import fwcd.fructose.ml.math.FloatMath;
+import fwcd.fructose.ml.math.NNVector;
+
+public class NNFunctionTest {
+	private static final float EPSILON = 0.000001F;
+	
+	private float[] range() {
+		float[] values = new float[101];
+		for (int i=0; i<values.length; i++) {
+			values[i] = (i - 50) * 0.2F;
+		}
+		return values;
+	}
+	
+	@Test
+	public void testBulkMatchesScalar() {
+		float[] in = range();
+		
+		for (NNFunction function : NNFunction.values()) {
+			float[] out = new float[in.length];
+			float[] derivatives = new float[in.length];
+			float[] derivativesUsingF = new float[in.length];
+			
+			function.apply(in, out, 1, in.length - 1);
+			function.applyDerivative(in, derivatives, 1, in.length - 1);
+			function.applyDerivativeUsingF(out, derivativesUsingF, 1, in.length - 1);
+			
+			assertEquals(function.name(), 0, out[0], 0);
+			assertEquals(function.name(), 0, out[in.length - 1], 0);
+			
+			for (int i=1; i<in.length-1; i++) {
+				assertEquals(function.name(), function.f(in[i]), out[i], EPSILON);
+				assertEquals(function.name(), function.df(in[i]), derivatives[i], EPSILON);
+				assertEquals(function.name(), function.dfUsingF(out[i]), derivativesUsingF[i], EPSILON);
+			}
+			
+			float[] inPlace = in.clone();
+			function.apply(inPlace, inPlace, 0, inPlace.length);
+			function.apply(in, out, 0, in.length);
+			assertArrayEquals(out, inPlace, 0);
+		}
+	}
+	
+	@Test
+	public void testFastApproximations() {
+		for (float x=-80; x<80; x+=0.013F) {
+			double exact = Math.exp(x);
+			assertEquals(exact, FloatMath.fastExp(x), exact * 0.000001);
+			assertEquals(NNFunction.SIGMOID.f(x), NNFunction.FAST_SIGMOID.f(x), EPSILON);
+			assertEquals(NNFunction.TANH.f(x), NNFunction.FAST_TANH.f(x), EPSILON);
+		}
+		
+		assertEquals(0, FloatMath.fastExp(-200), 0);
+		assertEquals(Float.POSITIVE_INFINITY, FloatMath.fastExp(200), 0);
+	}
+	
+	@Test
+	public void testSoftmax() {
+		NNVector result = new NNVector(1000F, 1001F, 1002F).softmax();
+		float sum = 0;
+		
+		for (float value : result.asArray()) {
+			assertTrue(value > 0);
+			sum += value;
+		}
+		
+		assertEquals(1, sum, EPSILON);
+		assertEquals(0.66524096F, result.get(2), EPSILON);
+		assertEquals(0.09003057F, result.get(0), EPSILON);
+	}
+}
@@ -0,0 +1,103 @@
+package fwcd.fructose.ml.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Test;
+
+import fwcd.fructose.exception.SerializationException;
+import fwcd.fructose.ml.function.NNFunction;
+import fwcd.fructose.ml.math.NNVector;
+import fwcd.fructose.ml.neural.Perceptron;
+import fwcd.fructose.ml.neural.SimplePerceptron;
+
+public class ModelFileTest {
+	private static final float EPSILON = 0.000001F;
+	
+	private File tempFile() throws IOException {
+		File file = File.createTempFile("fructose-model", ".bin");
+		file.deleteOnExit();
+		return file;
+	}
+	
+	@Test
+	public void testSimplePerceptron() throws IOException {
+		File file = tempFile();
+		SimplePerceptron perceptron = new SimplePerceptron(3, 5, 2);
+		perceptron.saveBinary(file);
+		
+		SimplePerceptron loaded = SimplePerceptron.readBinary(file);
+		assertArrayEquals(perceptron.getWeights(), loaded.getWeights(), EPSILON);
+		
+		float[] input = {0.5F, -1, 2};
+		assertArrayEquals(perceptron.compute(input), loaded.compute(input), EPSILON);
+	}
+	
+	@Test
+	public void testPerceptron() throws IOException {
+		File file = tempFile();
+		Perceptron perceptron = new Perceptron.Builder()
+				.layer(4)
+				.layer(3)
+				.layer(2)
+				.activationFunc(NNFunction.TANH)
+				.build();
+		perceptron.saveBinary(file);
+		
+		Perceptron loaded = Perceptron.readBinary(file);
+		NNVector input = new NNVector(1, 0.5F, -0.25F, 2);
+		assertArrayEquals(perceptron.compute(input).asArray(), loaded.compute(input).asArray(), EPSILON);
+	}
+	
+	@Test
+	public void testCorruption() throws IOException {
+		File file = tempFile();
+		new SimplePerceptron(2, 2).saveBinary(file);
+		
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.seek(raf.length() - 1);
+			int last = raf.read();
+			raf.seek(raf.length() - 1);
+			raf.write(last ^ 0xFF);
+		}
+		
+		try {
+			SimplePerceptron.readBinary(file);
+			fail("Corrupted model file should not be loadable");
+		} catch (SerializationException e) {
+			// Expected
+		}
+	}
+	
+	@Test
+	public void testValues() throws IOException {
+		File file = tempFile();
+		
+		try (ModelFileWriter writer = new ModelFileWriter(file, ModelFile.Type.Q_TABLE, ModelFile.DataType.FLOAT64, null, 7)) {
+			writer.writeLongs(new long[] {Long.MAX_VALUE, -3}, 0, 2);
+			writer.writeDoubles(new double[] {0.25, -1.5}, 0, 2);
+			writer.writeInts(new int[] {42}, 0, 1);
+		}
+		
+		ModelFile model = ModelFile.open(file, ModelFile.Type.Q_TABLE);
+		assertArrayEquals(new int[] {7}, model.getLayerSizes());
+		assertEquals(null, model.getActivation());
+		
+		long[] longs = new long[2];
+		double[] doubles = new double[2];
+		int[] ints = new int[1];
+		model.readLongs(longs, 0, 2);
+		model.readDoubles(doubles, 0, 2);
+		model.readInts(ints, 0, 1);
+		
+		assertArrayEquals(new long[] {Long.MAX_VALUE, -3}, longs);
+		assertArrayEquals(new double[] {0.25, -1.5}, doubles, EPSILON);
+		assertArrayEquals(new int[] {42}, ints);
+		assertEquals(0, model.remaining());
+	}
+}
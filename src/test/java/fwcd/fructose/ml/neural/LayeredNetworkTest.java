@@ -0,0 +1,136 @@
+package fwcd.fructose.ml.neural;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import fwcd.fructose.exception.SizeMismatchException;
+import fwcd.fructose.ml.function.NNFunction;
+import fwcd.fructose.ml.function.NNWeightInit;
+import fwcd.fructose.ml.math.NNTensor;
+import fwcd.fructose.ml.neural.layers.Conv2DLayer;
+import fwcd.fructose.ml.neural.layers.DenseLayer;
+import fwcd.fructose.ml.neural.layers.FlattenLayer;
+import fwcd.fructose.ml.neural.layers.MaxPoolLayer;
+import fwcd.fructose.ml.neural.layers.ParameterGradient;
+import fwcd.fructose.ml.neural.layers.ParameterizedLayer;
+
+public class LayeredNetworkTest {
+	private float cost(LayeredNetwork<NNTensor, NNTensor> net, NNTensor input, NNTensor expected) {
+		float[] output = net.compute(input).asArray();
+		float cost = 0;
+		for (int i=0; i<output.length; i++) {
+			float diff = output[i] - expected.get(i);
+			cost += diff * diff;
+		}
+		return cost / input.batchSize();
+	}
+	
+	@Test
+	public void testGradients() {
+		final float learningRate = 1e-3F;
+		final float h = 1e-2F;
+		LayeredNetwork<NNTensor, NNTensor> net = new LayeredNetwork.Builder()
+				.learningRate(learningRate)
+				.inLayer(new Conv2DLayer(2, 3, 3, 2, 1, NNFunction.TANH, NNWeightInit.XAVIER))
+				.layer(new FlattenLayer())
+				.outLayer(new DenseLayer(3 * 2 * 2, 2, NNFunction.IDENTITY, NNWeightInit.XAVIER))
+				.build();
+		NNTensor input = new NNTensor(4, 4, 2, 3);
+		for (int i=0; i<input.size(); i++) {
+			input.set(i, (float) Math.sin(i * 0.37));
+		}
+		NNTensor expected = new NNTensor(new float[] {0.5F, -0.5F, 1, 0, -1, 0.25F}, 2, 3);
+		
+		// Estimate the gradient numerically using central differences
+		ParameterizedLayer<?> conv = (ParameterizedLayer<?>) net.getLayers().get(0);
+		ParameterizedLayer<?> dense = (ParameterizedLayer<?>) net.getLayers().get(2);
+		float[][] params = {conv.getWeights(), conv.getBiases(), dense.getWeights(), dense.getBiases()};
+		float[][] numerical = new float[params.length][];
+		float[][] before = new float[params.length][];
+		
+		for (int p=0; p<params.length; p++) {
+			numerical[p] = new float[params[p].length];
+			before[p] = params[p].clone();
+			for (int i=0; i<params[p].length; i++) {
+				float original = params[p][i];
+				params[p][i] = original + h;
+				float plus = cost(net, input, expected);
+				params[p][i] = original - h;
+				float minus = cost(net, input, expected);
+				params[p][i] = original;
+				numerical[p][i] = (plus - minus) / (2 * h);
+			}
+		}
+		
+		// Plain gradient descent steps by -learningRate * gradient
+		net.backpropBatch(input, expected);
+		
+		for (int p=0; p<params.length; p++) {
+			for (int i=0; i<params[p].length; i++) {
+				float analytical = (before[p][i] - params[p][i]) / learningRate;
+				assertEquals(numerical[p][i], analytical, 0.02 + 0.05 * Math.abs(numerical[p][i]));
+			}
+		}
+	}
+	
+	@Test
+	public void testMaxPool() {
+		MaxPoolLayer pool = new MaxPoolLayer(2);
+		NNTensor input = new NNTensor(new float[] {
+				1, 5, 2, 0,
+				3, 4, 8, 1,
+				0, 0, 7, 6,
+				9, 2, 6, 6
+		}, 4, 4, 1, 1);
+		NNTensor output = pool.forwardprop(input);
+		assertArrayEquals(new float[] {5, 8, 9, 7}, output.asArray(), 0);
+		
+		NNTensor error = new NNTensor(new float[] {1, 2, 3, 4}, 2, 2, 1, 1);
+		NNTensor inputError = pool.backprop(input, output, error, null).getPreviousLayerError();
+		assertArrayEquals(new float[] {
+				0, 1, 0, 0,
+				0, 0, 2, 0,
+				0, 0, 4, 0,
+				3, 0, 0, 0
+		}, inputError.asArray(), 0);
+	}
+	
+	@Test
+	public void testBatchMatchesSamples() {
+		DenseLayer layer = new DenseLayer(3, 2, NNFunction.SIGMOID, NNWeightInit.XAVIER);
+		NNTensor batch = new NNTensor(new float[] {1, 2, 3, -1, 0, 4}, 3, 2);
+		NNTensor batchOut = layer.forwardprop(batch);
+		
+		for (int b=0; b<2; b++) {
+			NNTensor sampleOut = layer.forwardprop(batch.getSample(b));
+			assertArrayEquals(sampleOut.asArray(), batchOut.getSample(b).asArray(), 1e-6F);
+		}
+	}
+	
+	@Test
+	public void testLearning() {
+		LayeredNetwork<NNTensor, NNTensor> net = new LayeredNetwork.Builder()
+				.learningRate(0.5)
+				.inLayer(new DenseLayer(2, 8, NNFunction.TANH, NNWeightInit.XAVIER))
+				.outLayer(new DenseLayer(8, 1, NNFunction.SIGMOID, NNWeightInit.XAVIER))
+				.build();
+		NNTensor input = new NNTensor(new float[] {0, 0, 0, 1, 1, 0, 1, 1}, 2, 4);
+		NNTensor expected = new NNTensor(new float[] {0, 1, 1, 0}, 1, 4);
+		
+		for (int i=0; i<3000; i++) {
+			net.backpropBatch(input, expected);
+		}
+		
+		assertTrue(cost(net, input, expected) < 0.1F);
+	}
+	
+	@Test(expected = SizeMismatchException.class)
+	public void testGradientBiasMismatch() {
+		NNParameters hyp = new NNParameters(0.1);
+		ParameterGradient<DenseLayer> gradient = new ParameterGradient<>(new float[4], new float[2], 1, hyp);
+		gradient.addInPlace(new ParameterGradient<>(new float[4], new float[3], 1, hyp));
+	}
+}
@@ -0,0 +1,79 @@
+package fwcd.fructose.ml.neural;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Field;
+
+import org.junit.Test;
+
+import fwcd.fructose.ml.data.LabelledData;
+import fwcd.fructose.ml.math.NNVector;
+import fwcd.fructose.ml.optimizer.AdamOptimizer;
+import fwcd.fructose.ml.optimizer.SGDOptimizer;
+
+public class PerceptronTest {
+	@Test
+	public void testDeserializesModelsWithoutOptimizer() throws Exception {
+		Perceptron perceptron = new Perceptron.Builder()
+				.layer(2)
+				.layer(3)
+				.layer(1)
+				.build();
+		
+		// Models saved before optimizers existed contain none of these fields, which thus deserialize as null
+		for (String name : new String[] {"optimizer", "learningRateSchedule", "optimizerState"}) {
+			Field field = Perceptron.class.getDeclaredField(name);
+			field.setAccessible(true);
+			field.set(perceptron, null);
+		}
+		
+		Perceptron loaded = roundTrip(perceptron);
+		assertTrue(loaded.getOptimizer() instanceof SGDOptimizer);
+		
+		LabelledData<NNVector, NNVector> data = new LabelledData<>();
+		data.add(new NNVector(0F, 1F), new NNVector(1F));
+		loaded.backprop(data);
+		assertFalse(Float.isNaN(loaded.cost(data)));
+	}
+	
+	@Test
+	public void testCopyIsIndependent() {
+		Perceptron perceptron = new Perceptron.Builder()
+				.layer(2)
+				.layer(3)
+				.layer(1)
+				.optimizer(new AdamOptimizer())
+				.build();
+		LabelledData<NNVector, NNVector> data = new LabelledData<>();
+		data.add(new NNVector(0F, 1F), new NNVector(1F));
+		perceptron.backprop(data);
+		
+		Perceptron copy = perceptron.copy();
+		float cost = copy.cost(data);
+		assertEquals(perceptron.cost(data), cost, 0);
+		
+		perceptron.backprop(data);
+		assertEquals(cost, copy.cost(data), 0);
+		
+		// Both continue with the same optimizer state (e.g. the same moments)
+		copy.backprop(data);
+		assertEquals(perceptron.cost(data), copy.cost(data), 0);
+	}
+	
+	private Perceptron roundTrip(Perceptron perceptron) throws IOException, ClassNotFoundException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(perceptron);
+		}
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			return (Perceptron) in.readObject();
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package fwcd.fructose.ml.neural;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import fwcd.fructose.ml.function.NNFunction;
+import fwcd.fructose.ml.math.Float16;
+import fwcd.fructose.ml.math.NNVector;
+
+public class QuantizedPerceptronTest {
+	private List<float[]> randomInputs(int count, int size) {
+		Random random = new Random(7);
+		List<float[]> inputs = new ArrayList<>();
+		
+		for (int i=0; i<count; i++) {
+			float[] input = new float[size];
+			for (int j=0; j<size; j++) {
+				input[j] = (float) random.nextGaussian();
+			}
+			inputs.add(input);
+		}
+		
+		return inputs;
+	}
+	
+	@Test
+	public void testFloat16() {
+		float[] exact = {0, -0F, 1, -2.5F, 65504, 0x1p-24F, 0.099975586F};
+		for (float value : exact) {
+			assertEquals(value, Float16.toFloat(Float16.fromFloat(value)), 0);
+		}
+		
+		assertEquals(Float.POSITIVE_INFINITY, Float16.toFloat(Float16.fromFloat(1e6F)), 0);
+		assertTrue(Float.isNaN(Float16.toFloat(Float16.fromFloat(Float.NaN))));
+		assertEquals(0.1F, Float16.toFloat(Float16.fromFloat(0.1F)), 0.0001F);
+	}
+	
+	@Test
+	public void testSimplePerceptron() {
+		SimplePerceptron perceptron = new SimplePerceptron(16, 32, 8);
+		List<float[]> inputs = randomInputs(50, 16);
+		
+		for (QuantizationMode mode : QuantizationMode.values()) {
+			QuantizedPerceptron quantized = perceptron.quantize(mode);
+			QuantizationReport report = quantized.evaluate(perceptron::compute, inputs);
+			
+			assertEquals(50, report.getSamples());
+			assertTrue(mode + ": " + report, report.getMeanAbsError() < 0.05 * meanAbs(perceptron, inputs));
+			assertTrue(mode + ": " + report, report.getCompressionRatio() > ((mode == QuantizationMode.INT8) ? 2.5 : 1.5));
+		}
+	}
+	
+	@Test
+	public void testPerceptron() {
+		Perceptron perceptron = new Perceptron.Builder()
+				.layer(10)
+				.layer(12)
+				.layer(3)
+				.activationFunc(NNFunction.SIGMOID)
+				.build();
+		List<float[]> inputs = randomInputs(50, 10);
+		
+		for (QuantizationMode mode : QuantizationMode.values()) {
+			QuantizedPerceptron quantized = perceptron.quantize(mode);
+			QuantizationReport report = quantized.evaluate(in -> perceptron.compute(new NNVector(in)).asArray(), inputs);
+			assertTrue(mode + ": " + report, report.getMaxAbsError() < 0.02);
+		}
+	}
+	
+	private double meanAbs(SimplePerceptron perceptron, List<float[]> inputs) {
+		double sum = 0;
+		int count = 0;
+		
+		for (float[] input : inputs) {
+			for (float value : perceptron.compute(input)) {
+				sum += Math.abs(value);
+				count++;
+			}
+		}
+		
+		return sum / count;
+	}
+}
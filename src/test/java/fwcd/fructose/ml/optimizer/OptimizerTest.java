@@ -0,0 +1,64 @@
+package fwcd.fructose.ml.optimizer;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class OptimizerTest {
+	/**
+	 * Minimizes (p - 3)^2 + (q + 1)^2 and returns the final parameters.
+	 */
+	private float[] minimize(Optimizer optimizer, float learningRate, int steps) {
+		float[] params = {0, 0};
+		float[] gradient = new float[2];
+		OptimizerState state = optimizer.createState(params.length);
+		
+		for (int i=0; i<steps; i++) {
+			gradient[0] = 2 * (params[0] - 3);
+			gradient[1] = 2 * (params[1] + 1);
+			state.nextStep();
+			optimizer.update(state, 0, params, gradient, params.length, 1, learningRate);
+		}
+		
+		return params;
+	}
+	
+	@Test
+	public void testConvergence() {
+		Optimizer[] optimizers = {
+				new SGDOptimizer(),
+				new SGDOptimizer(0.9F),
+				new SGDOptimizer(0.9F, true),
+				new RMSPropOptimizer(),
+				new AdamOptimizer()
+		};
+		
+		for (Optimizer optimizer : optimizers) {
+			float[] result = minimize(optimizer, 0.01F, 5000);
+			assertEquals(3, result[0], 0.05);
+			assertEquals(-1, result[1], 0.05);
+		}
+	}
+	
+	@Test
+	public void testPlainStep() {
+		float[] params = {1, 2, 3};
+		float[] gradient = {4, 8, -2};
+		Optimizer sgd = new SGDOptimizer();
+		sgd.update(sgd.createState(3), 0, params, gradient, 3, 0.5F, 0.1F);
+		assertEquals(0.8F, params[0], 0.0001);
+		assertEquals(1.6F, params[1], 0.0001);
+		assertEquals(3.1F, params[2], 0.0001);
+	}
+	
+	@Test
+	public void testSchedules() {
+		assertEquals(0.5F, LearningRateSchedule.constant().getLearningRate(0.5F, 100), 0.0001);
+		LearningRateSchedule stepDecay = LearningRateSchedule.stepDecay(0.5F, 10);
+		assertEquals(1F, stepDecay.getLearningRate(1, 1), 0.0001);
+		assertEquals(1F, stepDecay.getLearningRate(1, 10), 0.0001);
+		assertEquals(0.5F, stepDecay.getLearningRate(1, 11), 0.0001);
+		assertEquals(1F, LearningRateSchedule.cosineAnnealing(100, 0).getLearningRate(1, 1), 0.0001);
+		assertEquals(0.5F, LearningRateSchedule.cosineAnnealing(100, 0).getLearningRate(1, 51), 0.0001);
+	}
+}
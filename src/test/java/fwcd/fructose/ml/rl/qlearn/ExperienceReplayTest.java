@@ -0,0 +1,125 @@
+package fwcd.fructose.ml.rl.qlearn;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import fwcd.fructose.ml.math.NNVector;
+import fwcd.fructose.ml.neural.Perceptron;
+import fwcd.fructose.ml.rl.qlearn.as.RandomSelector;
+import fwcd.fructose.ml.rl.qlearn.core.QNeuralFunction;
+import fwcd.fructose.ml.rl.qlearn.env.QAction;
+import fwcd.fructose.ml.rl.qlearn.env.QState;
+import fwcd.fructose.ml.rl.qlearn.env.QStep;
+import fwcd.fructose.ml.rl.qlearn.env.QStepResult;
+import fwcd.fructose.ml.rl.qlearn.replay.PrioritizedReplayBuffer;
+import fwcd.fructose.ml.telemetry.MetricsRingBuffer;
+import fwcd.fructose.ml.telemetry.TrainingMetrics;
+
+public class ExperienceReplayTest {
+	private static final int LENGTH = 4;
+	
+	@Test
+	public void testMiniBatches() {
+		Perceptron net = new Perceptron.Builder()
+				.layer(LENGTH + 2)
+				.layer(8)
+				.layer(1)
+				.build();
+		QNeuralFunction<ChainState, ChainAction> qFunction = new QNeuralFunction<>(net);
+		QTrainer<ChainState, ChainAction> trainer = new QTrainer<>(qFunction, new RandomSelector<>());
+		PrioritizedReplayBuffer buffer = new PrioritizedReplayBuffer(256, LENGTH + 2, 2, 0.6, 0.4);
+		ExperienceReplay<ChainState, ChainAction> replay = new ExperienceReplay<>(buffer, 16, 2, new Random(3));
+		MetricsRingBuffer history = new MetricsRingBuffer(4, true);
+		
+		replay.setTargetRefreshInterval(50);
+		trainer.setExperienceReplay(replay);
+		trainer.getTrainingMonitor().addListener(history);
+		trainer.train(new ChainState(0), 300, 50);
+		
+		assertEquals(256, buffer.size());
+		
+		TrainingMetrics epoch = history.latest();
+		assertEquals(TrainingMetrics.Kind.EPOCH, epoch.getKind());
+		assertTrue(epoch.getSamples() >= 300 * (LENGTH - 1));
+		assertTrue(Double.isFinite(epoch.getLoss()));
+		
+		ChainState beforeGoal = new ChainState(LENGTH - 2);
+		double right = qFunction.predict(beforeGoal, ChainAction.RIGHT);
+		double left = qFunction.predict(beforeGoal, ChainAction.LEFT);
+		assertTrue("Q(right) = " + right + ", Q(left) = " + left, right > left);
+	}
+	
+	@Test
+	public void testDuplicateSamplesKeepTheirWeight() {
+		Perceptron net = new Perceptron.Builder()
+				.layer(LENGTH + 2)
+				.layer(1)
+				.build();
+		QTrainer<ChainState, ChainAction> trainer = new QTrainer<>(new QNeuralFunction<ChainState, ChainAction>(net), new RandomSelector<>());
+		MetricsRingBuffer batches = new MetricsRingBuffer(64, true);
+		
+		// The corridor only contains a few distinct transitions, thus every batch contains duplicates
+		trainer.setExperienceReplay(new ExperienceReplay<>(new PrioritizedReplayBuffer(64, LENGTH + 2, 2, 0.6, 0.4), 16, 1, new Random(5)));
+		net.getTrainingMonitor().addListener(batches);
+		trainer.train(new ChainState(0), 20, 50);
+		
+		assertTrue(batches.size() > 0);
+		for (TrainingMetrics batch : batches.snapshot()) {
+			if (batch.getKind() == TrainingMetrics.Kind.BATCH) {
+				assertEquals(16, batch.getSamples());
+			}
+		}
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void testRequiresNeuralFunction() {
+		QTrainer<ChainState, ChainAction> trainer = new QTrainer<>();
+		trainer.setExperienceReplay(new ExperienceReplay<>(new PrioritizedReplayBuffer(8, LENGTH + 2, 2, 0.6, 0.4), 4, 1));
+		trainer.train(new ChainState(0), 1);
+	}
+	
+	private static enum ChainAction implements QAction {
+		LEFT, RIGHT;
+	}
+	
+	/**
+	 * A corridor where only the rightmost cell is rewarded.
+	 */
+	private static class ChainState implements QState<ChainState, ChainAction> {
+		private final int position;
+		
+		ChainState(int position) {
+			this.position = position;
+		}
+		
+		@Override
+		public NNVector toNeurons(ChainAction action) {
+			NNVector neurons = new NNVector(LENGTH + 2);
+			neurons.set(position, 1);
+			neurons.set(LENGTH + action.ordinal(), 1);
+			return neurons;
+		}
+		
+		@Override
+		public List<? extends ChainAction> getActions() {
+			return Arrays.asList(ChainAction.values());
+		}
+		
+		@Override
+		public QStepResult<ChainState, ChainAction> spawnChild(QStep<ChainState, ChainAction> step) {
+			int next = (step.getAction() == ChainAction.RIGHT) ? position + 1 : Math.max(0, position - 1);
+			return new QStepResult<>((next == LENGTH - 1) ? 1 : 0, new ChainState(next));
+		}
+		
+		@Override
+		public boolean isFinalState() {
+			return position == LENGTH - 1;
+		}
+	}
+}
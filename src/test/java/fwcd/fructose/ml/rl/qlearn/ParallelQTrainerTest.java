@@ -0,0 +1,142 @@
+package fwcd.fructose.ml.rl.qlearn;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import fwcd.fructose.ml.function.LearningFunction;
+import fwcd.fructose.ml.math.NNVector;
+import fwcd.fructose.ml.rl.qlearn.as.RandomSelector;
+import fwcd.fructose.ml.rl.qlearn.core.AsyncQNeuralFunction;
+import fwcd.fructose.ml.rl.qlearn.core.CompositeLearner;
+import fwcd.fructose.ml.rl.qlearn.core.ConcurrentQTable;
+import fwcd.fructose.ml.rl.qlearn.env.QAction;
+import fwcd.fructose.ml.rl.qlearn.env.QState;
+import fwcd.fructose.ml.rl.qlearn.env.QStep;
+import fwcd.fructose.ml.rl.qlearn.env.QStepResult;
+
+public class ParallelQTrainerTest {
+	private static final int LENGTH = 6;
+	
+	@Test
+	public void testChain() {
+		ConcurrentQTable<ChainState, ChainAction> table = new ConcurrentQTable<>(2, 4);
+		ParallelQTrainer<ChainState, ChainAction> trainer = new ParallelQTrainer<>(new CompositeLearner<>(table, new RandomSelector<>()), 4);
+		trainer.setLearnFactor(0.5);
+		
+		QTrainingStats stats = trainer.train(new ChainState(0), 2000, 100);
+		
+		assertEquals(2000, stats.getEpisodes());
+		assertTrue(stats.getSteps() >= 2000 * (LENGTH - 1));
+		assertTrue(stats.getEpisodesPerSecond() > 0);
+		assertEquals(LENGTH - 1, table.size());
+		
+		for (int position=0; position<LENGTH-1; position++) {
+			double left = table.get(position, ChainAction.LEFT.actionIndex());
+			double right = table.get(position, ChainAction.RIGHT.actionIndex());
+			assertTrue("Right should be preferred at " + position, right > left);
+		}
+		
+		assertEquals(1, table.get(LENGTH - 2, ChainAction.RIGHT.actionIndex()), 1e-3);
+	}
+	
+	@Test
+	public void testConcurrentUpdates() throws InterruptedException {
+		ConcurrentQTable<ChainState, ChainAction> table = new ConcurrentQTable<>(2, 2);
+		Thread[] threads = new Thread[4];
+		
+		for (int t=0; t<threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				for (int i=0; i<10000; i++) {
+					table.update(i % 100, i % 2, v -> v + 1);
+				}
+			});
+			threads[t].start();
+		}
+		
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		
+		assertEquals(100, table.size());
+		for (int key=0; key<100; key++) {
+			assertEquals(threads.length * 100, table.get(key, key % 2), 0);
+		}
+	}
+	
+	@Test
+	public void testAsyncKeepsDuplicateExamples() {
+		List<NNVector> taught = new ArrayList<>();
+		AsyncQNeuralFunction<ChainState, ChainAction> qFunc = new AsyncQNeuralFunction<>(new LearningFunction<NNVector, NNVector>() {
+			@Override
+			public NNVector compute(NNVector input) {
+				return new NNVector(0F);
+			}
+			
+			@Override
+			public void teach(Map<NNVector, NNVector> examples) {
+				taught.addAll(examples.keySet());
+			}
+		}, 3);
+		
+		// Equal inputs taught by different episodes
+		for (int i=0; i<3; i++) {
+			qFunc.teach(new ChainState(1), ChainAction.LEFT, i);
+		}
+		
+		assertEquals(3, taught.size());
+		assertEquals(0, qFunc.getPendingCount());
+	}
+	
+	private static enum ChainAction implements QAction {
+		LEFT, RIGHT;
+		
+		@Override
+		public int actionIndex() {
+			return ordinal();
+		}
+	}
+	
+	/**
+	 * A corridor where only the rightmost cell is rewarded.
+	 */
+	private static class ChainState implements QState<ChainState, ChainAction> {
+		private final int position;
+		
+		ChainState(int position) {
+			this.position = position;
+		}
+		
+		@Override
+		public long stateKey() {
+			return position;
+		}
+		
+		@Override
+		public List<? extends ChainAction> getActions() {
+			return Arrays.asList(ChainAction.values());
+		}
+		
+		@Override
+		public QStepResult<ChainState, ChainAction> spawnChild(QStep<ChainState, ChainAction> step) {
+			int next = (step.getAction() == ChainAction.RIGHT) ? position + 1 : Math.max(0, position - 1);
+			return new QStepResult<>((next == LENGTH - 1) ? 1 : 0, new ChainState(next));
+		}
+		
+		@Override
+		public boolean isFinalState() {
+			return position == LENGTH - 1;
+		}
+		
+		@Override
+		public NNVector toNeurons(ChainAction action) {
+			return new NNVector((float) position, action.actionIndex());
+		}
+	}
+}
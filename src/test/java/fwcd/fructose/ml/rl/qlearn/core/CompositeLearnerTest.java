@@ -0,0 +1,117 @@
+package fwcd.fructose.ml.rl.qlearn.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import fwcd.fructose.ml.math.NNVector;
+import fwcd.fructose.ml.neural.Perceptron;
+import fwcd.fructose.ml.rl.qlearn.as.BoltzmannSelector;
+import fwcd.fructose.ml.rl.qlearn.as.GreedySelector;
+import fwcd.fructose.ml.rl.qlearn.env.QAction;
+import fwcd.fructose.ml.rl.qlearn.env.QState;
+import fwcd.fructose.ml.rl.qlearn.env.QStep;
+import fwcd.fructose.ml.rl.qlearn.env.QStepResult;
+
+public class CompositeLearnerTest {
+	@Test
+	public void testBatchedPrediction() {
+		Perceptron net = new Perceptron.Builder()
+				.layer(4)
+				.layer(5)
+				.layer(1)
+				.build();
+		QNeuralFunction<DummyState, DummyAction> qFunction = new QNeuralFunction<>(net);
+		DummyState state = new DummyState(1);
+		List<DummyAction> actions = Arrays.asList(DummyAction.values());
+		double[] qValues = new double[actions.size()];
+		
+		qFunction.predictAll(state, actions, qValues);
+		
+		for (int i=0; i<actions.size(); i++) {
+			assertEquals(qFunction.predict(state, actions.get(i)), qValues[i], 0);
+		}
+	}
+	
+	@Test
+	public void testPrimitivePrediction() {
+		PrimitiveQTable<DummyState, DummyAction> table = new PrimitiveQTable<>(3);
+		table.set(7, 2, 5);
+		table.set(7, 0, -1);
+		
+		CompositeLearner<DummyState, DummyAction> learner = new CompositeLearner<>(table, new GreedySelector<>());
+		DummyState state = new DummyState(7);
+		QStep<DummyState, DummyAction> step = learner.pickStep(state, 0);
+		
+		assertSame(DummyAction.C, step.getAction());
+		assertEquals(5, step.getQValue(), 0);
+		assertEquals(5, learner.maxQ(state), 0);
+		assertEquals(0, learner.maxQ(new DummyState(8)), 0);
+	}
+	
+	@Test
+	public void testBoltzmann() {
+		BoltzmannSelector<DummyAction> selector = new BoltzmannSelector<>();
+		int[] counts = new int[3];
+		
+		for (int i=0; i<3000; i++) {
+			counts[selector.select(new double[] {0, 0, 0}, 3)]++;
+		}
+		for (int count : counts) {
+			assertTrue(count > 800);
+		}
+		
+		counts = new int[3];
+		for (int i=0; i<3000; i++) {
+			counts[selector.select(new double[] {-2, 1e6, 3, Double.NaN}, 3)]++;
+		}
+		assertTrue(counts[1] > counts[0] && counts[1] > counts[2]);
+	}
+	
+	private static enum DummyAction implements QAction {
+		A, B, C;
+		
+		@Override
+		public int actionIndex() {
+			return ordinal();
+		}
+	}
+	
+	private static class DummyState implements QState<DummyState, DummyAction> {
+		private final long key;
+		
+		DummyState(long key) {
+			this.key = key;
+		}
+		
+		@Override
+		public long stateKey() {
+			return key;
+		}
+		
+		@Override
+		public NNVector toNeurons(DummyAction action) {
+			return new NNVector(key, action.ordinal(), 1, -key);
+		}
+		
+		@Override
+		public List<? extends DummyAction> getActions() {
+			return Arrays.asList(DummyAction.values());
+		}
+		
+		@Override
+		public QStepResult<DummyState, DummyAction> spawnChild(QStep<DummyState, DummyAction> step) {
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		public boolean isFinalState() {
+			return false;
+		}
+	}
+}
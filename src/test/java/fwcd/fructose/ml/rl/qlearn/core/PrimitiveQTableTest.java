@@ -0,0 +1,176 @@
+package fwcd.fructose.ml.rl.qlearn.core;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import fwcd.fructose.ml.rl.qlearn.env.QAction;
+import fwcd.fructose.ml.rl.qlearn.env.QState;
+import fwcd.fructose.ml.rl.qlearn.env.QStep;
+import fwcd.fructose.ml.rl.qlearn.env.QStepResult;
+
+public class PrimitiveQTableTest {
+	@Test
+	public void testGrowth() {
+		for (boolean floatStorage : new boolean[] {false, true}) {
+			PrimitiveQTable<DummyState, DummyAction> table = new PrimitiveQTable<>(3, 4, floatStorage);
+			Map<Long, double[]> expected = new HashMap<>();
+			Random random = new Random(1);
+			
+			for (int i=0; i<20000; i++) {
+				long key = (i % 7 == 0) ? Long.MIN_VALUE + i : random.nextInt(5000) * 31L;
+				if (i == 100) {
+					key = Long.MIN_VALUE;
+				}
+				int action = random.nextInt(3);
+				double value = random.nextInt(1000) / 4D;
+				
+				table.set(key, action, value);
+				expected.computeIfAbsent(key, k -> new double[3])[action] = value;
+				
+				// Verify a few entries while the table may be migrating
+				if (i % 97 == 0) {
+					assertEntries(table, expected);
+				}
+			}
+			
+			assertEntries(table, expected);
+			assertEquals(0, table.get(42, 1), 0);
+		}
+	}
+	
+	private void assertEntries(PrimitiveQTable<?, ?> table, Map<Long, double[]> expected) {
+		assertEquals(expected.size(), table.size());
+		
+		for (Map.Entry<Long, double[]> entry : expected.entrySet()) {
+			for (int action=0; action<3; action++) {
+				assertEquals(entry.getValue()[action], table.get(entry.getKey(), action), 0);
+			}
+		}
+	}
+	
+	@Test
+	public void testQFunction() throws IOException {
+		PrimitiveQTable<DummyState, DummyAction> table = new PrimitiveQTable<>(2);
+		table.teach(new DummyState(5), new DummyAction(1), 0.5);
+		table.teach(new DummyState(Long.MIN_VALUE), new DummyAction(0), -2);
+		
+		assertEquals(0.5, table.predict(new DummyState(5), new DummyAction(1)), 0);
+		assertEquals(0, table.predict(new DummyState(5), new DummyAction(0)), 0);
+		assertEquals(2, table.size());
+		
+		File file = File.createTempFile("fructose-qtable", ".bin");
+		file.deleteOnExit();
+		table.saveBinary(file);
+		
+		PrimitiveQTable<DummyState, DummyAction> loaded = PrimitiveQTable.readBinary(file);
+		assertEquals(2, loaded.size());
+		assertEquals(0.5, loaded.get(5, 1), 0);
+		assertEquals(-2, loaded.get(Long.MIN_VALUE, 0), 0);
+		
+		double[] row = new double[2];
+		loaded.getRow(5, row);
+		assertEquals(0, row[0], 0);
+		assertEquals(0.5, row[1], 0);
+	}
+	
+	@Test
+	public void testSaveWhileResizing() throws IOException {
+		// 32 slots, the 25th state starts a resize that migrates 16 old slots per insertion
+		PrimitiveQTable<DummyState, DummyAction> table = new PrimitiveQTable<>(1, 20, false);
+		for (int i=0; i<25; i++) {
+			table.set(i * 7L, 0, i);
+		}
+		
+		File file = File.createTempFile("fructose-qtable", ".bin");
+		file.deleteOnExit();
+		table.saveBinary(file);
+		
+		PrimitiveQTable<DummyState, DummyAction> loaded = PrimitiveQTable.readBinary(file);
+		assertEquals(25, loaded.size());
+		
+		for (int i=25; i<40; i++) {
+			table.set(i * 7L, 0, i);
+			loaded.set(i * 7L, 0, i);
+		}
+		
+		for (int i=0; i<40; i++) {
+			assertEquals(i, table.get(i * 7L, 0), 0);
+			assertEquals(i, loaded.get(i * 7L, 0), 0);
+		}
+	}
+	
+	@Test
+	public void testCopyWhileResizing() {
+		PrimitiveQTable<DummyState, DummyAction> table = new PrimitiveQTable<>(1, 20, true);
+		for (int i=0; i<25; i++) {
+			table.set(i * 7L, 0, i);
+		}
+		
+		PrimitiveQTable<DummyState, DummyAction> copy = table.copy();
+		table.set(0, 0, -1);
+		for (int i=25; i<40; i++) {
+			table.set(i * 7L, 0, i);
+		}
+		
+		assertEquals(25, copy.size());
+		assertEquals(0, copy.get(0, 0), 0);
+		assertEquals(0, copy.get(39 * 7L, 0), 0);
+		
+		for (int i=25; i<40; i++) {
+			copy.set(i * 7L, 0, i);
+		}
+		
+		for (int i=1; i<40; i++) {
+			assertEquals(i, copy.get(i * 7L, 0), 0);
+		}
+	}
+	
+	private static class DummyAction implements QAction {
+		private final int index;
+		
+		DummyAction(int index) {
+			this.index = index;
+		}
+		
+		@Override
+		public int actionIndex() {
+			return index;
+		}
+	}
+	
+	private static class DummyState implements QState<DummyState, DummyAction> {
+		private final long key;
+		
+		DummyState(long key) {
+			this.key = key;
+		}
+		
+		@Override
+		public long stateKey() {
+			return key;
+		}
+		
+		@Override
+		public List<? extends DummyAction> getActions() {
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		public QStepResult<DummyState, DummyAction> spawnChild(QStep<DummyState, DummyAction> step) {
+			throw new UnsupportedOperationException();
+		}
+		
+		@Override
+		public boolean isFinalState() {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package fwcd.fructose.ml.rl.qlearn.replay;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.Test;
+
+import fwcd.fructose.ml.math.NNVector;
+
+public class ReplayBufferTest {
+	@Test
+	public void testRing() {
+		ReplayBuffer buffer = new ReplayBuffer(3, 2, 2);
+		float[] dest = new float[2];
+		
+		for (int i=0; i<5; i++) {
+			buffer.add(new NNVector(i, -i), i, (i % 2 == 0)
+					? Collections.emptyList()
+					: Arrays.asList(new NNVector(i, 1F), new NNVector(i, 2F)));
+		}
+		
+		assertEquals(3, buffer.size());
+		// Transitions 3 and 4 overwrote 0 and 1
+		assertEquals(3, buffer.getReward(0), 0);
+		assertEquals(4, buffer.getReward(1), 0);
+		assertEquals(2, buffer.getReward(2), 0);
+		
+		buffer.readInput(1, dest);
+		assertEquals(4, dest[0], 0);
+		assertEquals(-4, dest[1], 0);
+		
+		assertFalse(buffer.isFinal(0));
+		assertTrue(buffer.isFinal(1));
+		assertEquals(2, buffer.getNextActionCount(0));
+		buffer.readNextInput(0, 1, dest);
+		assertEquals(3, dest[0], 0);
+		assertEquals(2, dest[1], 0);
+		
+		int[] indices = new int[100];
+		buffer.sample(indices, new Random(1));
+		for (int index : indices) {
+			assertTrue(index >= 0 && index < 3);
+		}
+	}
+	
+	@Test
+	public void testPrioritized() {
+		PrioritizedReplayBuffer buffer = new PrioritizedReplayBuffer(5, 1, 1, 1, 1);
+		for (int i=0; i<5; i++) {
+			buffer.add(new NNVector((float) i), 0, Collections.emptyList());
+		}
+		
+		int[] all = {0, 1, 2, 3, 4};
+		buffer.updatePriorities(all, new double[] {1, 0, 2, 0, 5});
+		assertEquals(0.125, buffer.getProbability(0), 1e-5);
+		assertEquals(0.625, buffer.getProbability(4), 1e-5);
+		
+		int[] counts = new int[5];
+		int[] indices = new int[1000];
+		Random random = new Random(7);
+		
+		for (int round=0; round<20; round++) {
+			buffer.sample(indices, random);
+			for (int index : indices) {
+				counts[index]++;
+			}
+		}
+		
+		assertEquals(0.125, counts[0] / 20000D, 0.01);
+		assertEquals(0.25, counts[2] / 20000D, 0.01);
+		assertEquals(0.625, counts[4] / 20000D, 0.01);
+		assertTrue(counts[1] + counts[3] < 20);
+		
+		double[] weights = new double[3];
+		buffer.getWeights(new int[] {0, 2, 4}, weights);
+		assertEquals(1, weights[0], 1e-9);
+		assertEquals(0.5, weights[1], 1e-6);
+		assertEquals(0.2, weights[2], 1e-6);
+	}
+}
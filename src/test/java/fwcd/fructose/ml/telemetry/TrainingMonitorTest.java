@@ -0,0 +1,97 @@
+package fwcd.fructose.ml.telemetry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import org.junit.Test;
+
+import fwcd.fructose.ml.data.LabelledData;
+import fwcd.fructose.ml.math.NNVector;
+import fwcd.fructose.ml.neural.Perceptron;
+
+public class TrainingMonitorTest {
+	private LabelledData<NNVector, NNVector> xor() {
+		LabelledData<NNVector, NNVector> data = new LabelledData<>();
+		data.add(new NNVector(0F, 0F), new NNVector(0F));
+		data.add(new NNVector(0F, 1F), new NNVector(1F));
+		data.add(new NNVector(1F, 0F), new NNVector(1F));
+		data.add(new NNVector(1F, 1F), new NNVector(0F));
+		return data;
+	}
+	
+	@Test
+	public void testPerceptronMetrics() {
+		Perceptron perceptron = new Perceptron.Builder()
+				.layer(2)
+				.layer(4)
+				.layer(1)
+				.build();
+		MetricsRingBuffer history = new MetricsRingBuffer(8);
+		perceptron.getTrainingMonitor().addListener(history);
+		perceptron.getTrainingMonitor().setNormInterval(1);
+		
+		LabelledData<NNVector, NNVector> data = xor();
+		for (int i=0; i<10; i++) {
+			perceptron.backprop(data);
+		}
+		perceptron.getTrainingMonitor().endEpoch();
+		
+		List<TrainingMetrics> metrics = history.snapshot();
+		assertEquals(8, metrics.size());
+		
+		TrainingMetrics batch = metrics.get(6);
+		assertEquals(TrainingMetrics.Kind.BATCH, batch.getKind());
+		assertEquals(9, batch.getBatch());
+		assertEquals(4, batch.getSamples());
+		assertEquals(3, batch.getLayerCount());
+		assertTrue(batch.getWeightNorm(1) > 0);
+		assertTrue(batch.getGradientNorm(2) >= 0);
+		assertTrue(batch.getForwardNanos(1) > 0);
+		assertFalse(Double.isNaN(batch.getLoss()));
+		
+		TrainingMetrics epoch = history.latest();
+		assertEquals(TrainingMetrics.Kind.EPOCH, epoch.getKind());
+		assertEquals(10, epoch.getBatch());
+		assertEquals(40, epoch.getSamples());
+		assertTrue(epoch.getSamplesPerSecond() > 0);
+	}
+	
+	@Test
+	public void testInactiveMonitor() {
+		Perceptron perceptron = new Perceptron.Builder()
+				.layer(2)
+				.layer(1)
+				.build();
+		assertFalse(perceptron.getTrainingMonitor().isActive());
+		perceptron.backprop(xor());
+	}
+	
+	@Test
+	public void testLogSink() {
+		TrainingMonitor monitor = new TrainingMonitor();
+		StringWriter csv = new StringWriter();
+		StringWriter json = new StringWriter();
+		monitor.addListener(new MetricsLogSink(csv, MetricsLogSink.Format.CSV));
+		monitor.addListener(new MetricsLogSink(json, MetricsLogSink.Format.JSON_LINES, false));
+		
+		monitor.beginBatch(2);
+		monitor.addForwardNanos(0, 5);
+		monitor.endBatch(3, 0.5);
+		monitor.endEpoch();
+		
+		String[] csvLines = csv.toString().split("\n");
+		assertEquals(3, csvLines.length);
+		assertTrue(csvLines[0].startsWith("kind,epoch,batch"));
+		assertTrue(csvLines[1].startsWith("BATCH,0,0,3,0.500000,"));
+		assertTrue(csvLines[1].contains(",5;0,0;0,NaN;NaN,NaN;NaN"));
+		
+		String[] jsonLines = json.toString().split("\n");
+		assertEquals(1, jsonLines.length);
+		assertTrue(jsonLines[0].startsWith("{\"kind\":\"EPOCH\",\"epoch\":0,\"batch\":1,\"samples\":3,\"loss\":0.500000,"));
+		assertTrue(jsonLines[0].endsWith("\"weightNorms\":[null,null],\"gradientNorms\":[null,null]}"));
+	}
+}
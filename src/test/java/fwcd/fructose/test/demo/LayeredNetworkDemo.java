@@ -1,13 +1,46 @@
 package fwcd.fructose.test.demo;
 
+import fwcd.fructose.ml.function.NNFunction;
+import fwcd.fructose.ml.function.NNWeightInit;
+import fwcd.fructose.ml.math.NNTensor;
+import fwcd.fructose.ml.neural.LayeredNetwork;
+import fwcd.fructose.ml.neural.layers.Conv2DLayer;
+import fwcd.fructose.ml.neural.layers.DenseLayer;
+import fwcd.fructose.ml.neural.layers.FlattenLayer;
+import fwcd.fructose.ml.neural.layers.MaxPoolLayer;
+import fwcd.fructose.ml.optimizer.AdamOptimizer;
+
 public class LayeredNetworkDemo {
 	public static void main(String[] args) {
-//		LayeredNetwork<?, ?> test = new LayeredNetwork.Builder()
-//				.learningRate(1.0D)
-//				.inLayer(null) // TODO
-//				.layer(null) // TODO
-//				.layer(null) // TODO
-//				.outLayer(null) // TODO
-//				.build();
+		// Learns to tell horizontal from vertical lines in 6x6 images
+		LayeredNetwork<NNTensor, NNTensor> net = new LayeredNetwork.Builder()
+				.learningRate(0.01D)
+				.optimizer(new AdamOptimizer())
+				.inLayer(new Conv2DLayer(1, 4, 3, 1, 1, NNFunction.LEAKY_RELU, NNWeightInit.XAVIER))
+				.layer(new MaxPoolLayer(2))
+				.layer(new FlattenLayer())
+				.outLayer(new DenseLayer(4 * 3 * 3, 2, NNFunction.SIGMOID, NNWeightInit.XAVIER))
+				.build();
+		
+		int batch = 12;
+		NNTensor images = new NNTensor(6, 6, 1, batch);
+		NNTensor labels = new NNTensor(2, batch);
+		
+		for (int b=0; b<batch; b++) {
+			boolean horizontal = b % 2 == 0;
+			int line = b / 2;
+			for (int i=0; i<6; i++) {
+				int x = horizontal ? i : line;
+				int y = horizontal ? line : i;
+				images.set((b * 36) + (y * 6) + x, 1);
+			}
+			labels.set((b * 2) + (horizontal ? 0 : 1), 1);
+		}
+		
+		for (int epoch=0; epoch<500; epoch++) {
+			net.backpropBatch(images, labels);
+		}
+		
+		System.out.println(net.compute(images));
 	}
 }